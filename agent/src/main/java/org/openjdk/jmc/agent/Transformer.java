@@ -35,6 +35,7 @@ package org.openjdk.jmc.agent;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -44,6 +45,7 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
 import org.openjdk.jmc.agent.jfr.impl.JFRClassVisitor;
+import org.openjdk.jmc.agent.jfr.impl.ProbeSampler;
 import org.openjdk.jmc.agent.jfrlegacy.impl.JFRLegacyClassVisitor;
 import org.openjdk.jmc.agent.util.VersionUtils;
 import org.openjdk.jmc.agent.util.VersionUtils.JFRVersion;
@@ -70,13 +72,52 @@ public class Transformer implements ClassFileTransformer {
 		if (transformDataList == null) {
 			return null;
 		}
+		long start = System.nanoTime();
+		List<JFRTransformDescriptor> jfrTransformDataList = new ArrayList<>(transformDataList.size());
 		for (TransformDescriptor td : transformDataList) {
-			// FIXME: Optimization, should do all transforms to one class in one go, instead of creating one class writer per transform.
-			classfileBuffer = doTransform(td, classfileBuffer, definingClassLoader, classBeingRedefined,
-					protectionDomain);
+			jfrTransformDataList.add((JFRTransformDescriptor) td);
+		}
+		byte[] transformedBuffer = null;
+		if (jfrTransformDataList.size() > 1 && VersionUtils.getAvailableJFRVersion() == JFRVersion.JFRNEXT) {
+			// Apply all transforms to the class in one go, instead of creating one class writer per transform
+			try {
+				transformedBuffer = doJFRLogging(jfrTransformDataList, classfileBuffer, definingClassLoader,
+						classBeingRedefined, protectionDomain);
+			} catch (Throwable t) {
+				Logger.getLogger(getClass().getName()).log(Level.WARNING,
+						"Failed to instrument " + jfrTransformDataList.get(0).getClassName() //$NON-NLS-1$
+								+ " in one pass, applying the probes one by one", //$NON-NLS-1$
+						t);
+			}
+		}
+		for (TransformDescriptor td : transformDataList) {
+			if (transformedBuffer == null) {
+				classfileBuffer = doTransform(td, classfileBuffer, definingClassLoader, classBeingRedefined,
+						protectionDomain);
+			}
 			td.setPendingTransforms(false);
 		}
-		return classfileBuffer;
+		// The probes of a class are transformed together, so the time is reported for the class as a whole
+		long nanos = System.nanoTime() - start;
+		for (TransformDescriptor td : transformDataList) {
+			ProbeSampler.recordTransformation(td.getId(), nanos, classBeingRedefined != null);
+		}
+		return transformedBuffer != null ? transformedBuffer : classfileBuffer;
+	}
+
+	private byte[] doJFRLogging(
+		List<JFRTransformDescriptor> tdList, byte[] classfileBuffer, ClassLoader definingClassLoader,
+		Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
+		ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		JFRClassVisitor visitor = new JFRClassVisitor(classWriter, tdList, definingClassLoader, classBeingRedefined,
+				protectionDomain);
+		ClassReader reader = new ClassReader(classfileBuffer);
+		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
+		byte[] transformedBuffer = classWriter.toByteArray();
+		// Only define the event classes once the transform has succeeded, so that they are not defined twice
+		// if the probes are applied one by one after a failure
+		visitor.defineEventClasses();
+		return transformedBuffer;
 	}
 
 	private byte[] doTransform(
@@ -96,11 +137,17 @@ public class Transformer implements ClassFileTransformer {
 		}
 		try {
 			ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-			ClassVisitor visitor = VersionUtils.getAvailableJFRVersion() == JFRVersion.JFRNEXT
-					? new JFRClassVisitor(classWriter, td, definingClassLoader, classBeingRedefined, protectionDomain)
-					: new JFRLegacyClassVisitor(classWriter, td, definingClassLoader, classBeingRedefined,
-							protectionDomain);
 			ClassReader reader = new ClassReader(classfileBuffer);
+			if (VersionUtils.getAvailableJFRVersion() == JFRVersion.JFRNEXT) {
+				JFRClassVisitor visitor = new JFRClassVisitor(classWriter, td, definingClassLoader,
+						classBeingRedefined, protectionDomain);
+				reader.accept(visitor, ClassReader.EXPAND_FRAMES);
+				byte[] transformedBuffer = classWriter.toByteArray();
+				visitor.defineEventClasses();
+				return transformedBuffer;
+			}
+			ClassVisitor visitor = new JFRLegacyClassVisitor(classWriter, td, definingClassLoader,
+					classBeingRedefined, protectionDomain);
 			reader.accept(visitor, ClassReader.EXPAND_FRAMES);
 			return classWriter.toByteArray();
 		} catch (Throwable t) {
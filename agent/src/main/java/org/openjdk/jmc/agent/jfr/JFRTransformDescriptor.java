@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +58,12 @@ public class JFRTransformDescriptor extends TransformDescriptor {
 	private static final String ATTRIBUTE_JFR_EVENT_PATH = "path"; //$NON-NLS-1$
 	private static final String ATTRIBUTE_STACK_TRACE = "stacktrace"; //$NON-NLS-1$
 	private static final String ATTRIBUTE_RETHROW = "rethrow"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_AGGREGATE = "aggregate"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_AGGREGATE_PERIOD = "aggregateperiod"; //$NON-NLS-1$
+	private static final String DEFAULT_AGGREGATE_PERIOD = "1 s"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_SAMPLE_RATE = "samplerate"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_MAX_RATE = "maxrate"; //$NON-NLS-1$
+	private static final String ATTRIBUTE_THRESHOLD = "threshold"; //$NON-NLS-1$
 
 	private final String classPrefix;
 	private final String eventDescription;
@@ -68,6 +75,11 @@ public class JFRTransformDescriptor extends TransformDescriptor {
 	private final boolean allowToString;
 	private final boolean allowConverter;
 	private final boolean emitOnException;
+	private final boolean aggregate;
+	private final String aggregatePeriod;
+	private final int sampleRate;
+	private final int maxRate;
+	private final long thresholdNanos;
 	private boolean matchFound;
 	private final List<Parameter> parameters;
 	private final ReturnValue returnValue;
@@ -87,6 +99,11 @@ public class JFRTransformDescriptor extends TransformDescriptor {
 		allowToString = getBoolean(ATTRIBUTE_ALLOW_TO_STRING, false);
 		allowConverter = getBoolean(ATTRIBUTE_ALLOW_CONVERTER, false);
 		emitOnException = getBoolean(ATTRIBUTE_EMIT_ON_EXCEPTION, false);
+		aggregate = getBoolean(ATTRIBUTE_AGGREGATE, false);
+		aggregatePeriod = initializeAggregatePeriod();
+		sampleRate = getInt(ATTRIBUTE_SAMPLE_RATE, 1, 1);
+		maxRate = getInt(ATTRIBUTE_MAX_RATE, 0, 0);
+		thresholdNanos = initializeThreshold();
 		this.parameters = parameters;
 		this.fields = fields;
 		this.returnValue = returnValue;
@@ -160,6 +177,44 @@ public class JFRTransformDescriptor extends TransformDescriptor {
 		return emitOnException;
 	}
 
+	/**
+	 * @return {@code true} if the latencies of the invocations should be aggregated in the agent and
+	 *         emitted as a periodic summary event, rather than as one event per invocation
+	 */
+	public boolean isAggregate() {
+		return aggregate;
+	}
+
+	/**
+	 * @return the period between summary events of an aggregated event, for example "1 s"
+	 */
+	public String getAggregatePeriod() {
+		return aggregatePeriod;
+	}
+
+	/**
+	 * @return the sampling rate of the probe, where only one in this many invocations creates an
+	 *         event. 1 means that every invocation creates an event.
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return the maximum number of events per second the probe may commit, or 0 for no limit
+	 */
+	public int getMaxRate() {
+		return maxRate;
+	}
+
+	/**
+	 * @return the minimum duration in nanoseconds of an invocation for an event to be committed, or 0
+	 *         to commit events regardless of duration
+	 */
+	public long getThresholdNanos() {
+		return thresholdNanos;
+	}
+
 	private String initializeClassPrefix() {
 		String prefix = getTransformationAttribute(ATTRIBUTE_CLASS_PREFIX);
 		if (prefix != null && TypeUtils.isValidJavaIdentifier(prefix)) {
@@ -202,6 +257,76 @@ public class JFRTransformDescriptor extends TransformDescriptor {
 		return eventPath;
 	}
 
+	private String initializeAggregatePeriod() {
+		String period = getTransformationAttribute(ATTRIBUTE_AGGREGATE_PERIOD);
+		if (period == null || period.isEmpty()) {
+			return DEFAULT_AGGREGATE_PERIOD;
+		}
+		return period.trim();
+	}
+
+	private long initializeThreshold() {
+		String threshold = getTransformationAttribute(ATTRIBUTE_THRESHOLD);
+		if (threshold == null || threshold.isEmpty()) {
+			return 0;
+		}
+		try {
+			return parseTimespanNanos(threshold);
+		} catch (IllegalArgumentException e) {
+			Logger.getLogger(JFRTransformDescriptor.class.getName()).log(Level.WARNING,
+					"Invalid threshold " + threshold + " for the event " + eventLabel + ". Assuming no threshold."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return 0;
+		}
+	}
+
+	/**
+	 * Parses a timespan in the same format as the JFR settings, such as "20 ms".
+	 */
+	private static long parseTimespanNanos(String timespan) {
+		String[] parts = timespan.trim().split("\\s+"); //$NON-NLS-1$
+		if (parts.length != 2) {
+			throw new IllegalArgumentException(timespan);
+		}
+		long value = Long.parseLong(parts[0]);
+		switch (parts[1]) {
+		case "ns": //$NON-NLS-1$
+			return value;
+		case "us": //$NON-NLS-1$
+			return TimeUnit.MICROSECONDS.toNanos(value);
+		case "ms": //$NON-NLS-1$
+			return TimeUnit.MILLISECONDS.toNanos(value);
+		case "s": //$NON-NLS-1$
+			return TimeUnit.SECONDS.toNanos(value);
+		case "m": //$NON-NLS-1$
+			return TimeUnit.MINUTES.toNanos(value);
+		case "h": //$NON-NLS-1$
+			return TimeUnit.HOURS.toNanos(value);
+		case "d": //$NON-NLS-1$
+			return TimeUnit.DAYS.toNanos(value);
+		default:
+			throw new IllegalArgumentException(timespan);
+		}
+	}
+
+	private int getInt(String attribute, int defaultValue, int minValue) {
+		String strVal = getTransformationAttribute(attribute);
+		if (strVal == null || strVal.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			int value = Integer.parseInt(strVal.trim());
+			if (value >= minValue) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// Fall through to the warning
+		}
+		Logger.getLogger(JFRTransformDescriptor.class.getName()).log(Level.WARNING, "Invalid value " + strVal //$NON-NLS-1$
+				+ " of the attribute " + attribute + " for the event " + eventLabel + ". Assuming " + defaultValue //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ "."); //$NON-NLS-1$
+		return defaultValue;
+	}
+
 	private boolean getBoolean(String attribute, boolean defaultValue) {
 		String strVal = getTransformationAttribute(attribute);
 		if (strVal == null || strVal.isEmpty()) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.jfr;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The overhead statistics of an event probe, counted since the probe was first defined.
+ * <p>
+ * Invocations are only counted while the event of the probe is enabled. The transformation times
+ * are for the whole class of the probe, which is transformed for all its probes at once, so probes
+ * in the same class report the same times.
+ * <p>
+ * The capture overhead is the time spent converting the captured values and committing the event.
+ * It is only measured for a sample of the committed events, and the total overhead is estimated
+ * from the mean of the samples.
+ */
+public class ProbeStatistics {
+	private final String id;
+	private final long invocations;
+	private final long committedEvents;
+	private final long droppedBySampling;
+	private final long droppedByThreshold;
+	private final long droppedByRateLimit;
+	private final long transformations;
+	private final long transformationNanos;
+	private final long retransformations;
+	private final long retransformationNanos;
+	private final long captureOverheadSamples;
+	private final long meanCaptureOverheadNanos;
+
+	public ProbeStatistics(String id, long invocations, long committedEvents, long droppedBySampling,
+			long droppedByThreshold, long droppedByRateLimit, long transformations, long transformationNanos,
+			long retransformations, long retransformationNanos, long captureOverheadSamples,
+			long meanCaptureOverheadNanos) {
+		this.id = id;
+		this.invocations = invocations;
+		this.committedEvents = committedEvents;
+		this.droppedBySampling = droppedBySampling;
+		this.droppedByThreshold = droppedByThreshold;
+		this.droppedByRateLimit = droppedByRateLimit;
+		this.transformations = transformations;
+		this.transformationNanos = transformationNanos;
+		this.retransformations = retransformations;
+		this.retransformationNanos = retransformationNanos;
+		this.captureOverheadSamples = captureOverheadSamples;
+		this.meanCaptureOverheadNanos = meanCaptureOverheadNanos;
+	}
+
+	public static ProbeStatistics from(CompositeData cd) {
+		return new ProbeStatistics((String) cd.get("id"), (Long) cd.get("invocations"), //$NON-NLS-1$ //$NON-NLS-2$
+				(Long) cd.get("committedEvents"), (Long) cd.get("droppedBySampling"), //$NON-NLS-1$ //$NON-NLS-2$
+				(Long) cd.get("droppedByThreshold"), (Long) cd.get("droppedByRateLimit"), //$NON-NLS-1$ //$NON-NLS-2$
+				(Long) cd.get("transformations"), (Long) cd.get("transformationNanos"), //$NON-NLS-1$ //$NON-NLS-2$
+				(Long) cd.get("retransformations"), (Long) cd.get("retransformationNanos"), //$NON-NLS-1$ //$NON-NLS-2$
+				(Long) cd.get("captureOverheadSamples"), (Long) cd.get("meanCaptureOverheadNanos")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * @return the id of the event probe
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the number of invocations of the instrumented method while the event was enabled
+	 */
+	public long getInvocations() {
+		return invocations;
+	}
+
+	/**
+	 * @return the number of events committed
+	 */
+	public long getCommittedEvents() {
+		return committedEvents;
+	}
+
+	/**
+	 * @return the number of invocations that did not create an event because of the sample rate
+	 */
+	public long getDroppedBySampling() {
+		return droppedBySampling;
+	}
+
+	/**
+	 * @return the number of events not committed because the invocation was shorter than the
+	 *         threshold
+	 */
+	public long getDroppedByThreshold() {
+		return droppedByThreshold;
+	}
+
+	/**
+	 * @return the number of events not committed because of the maximum event rate
+	 */
+	public long getDroppedByRateLimit() {
+		return droppedByRateLimit;
+	}
+
+	/**
+	 * @return the number of times the class of the probe was transformed when it was loaded
+	 */
+	public long getTransformations() {
+		return transformations;
+	}
+
+	/**
+	 * @return the time in nanoseconds spent transforming the class of the probe when it was loaded,
+	 *         shared with the other probes in the class
+	 */
+	public long getTransformationNanos() {
+		return transformationNanos;
+	}
+
+	/**
+	 * @return the number of times the class of the probe was retransformed
+	 */
+	public long getRetransformations() {
+		return retransformations;
+	}
+
+	/**
+	 * @return the time in nanoseconds spent retransforming the class of the probe, shared with the
+	 *         other probes in the class
+	 */
+	public long getRetransformationNanos() {
+		return retransformationNanos;
+	}
+
+	/**
+	 * @return the number of committed events for which the capture overhead was measured
+	 */
+	public long getCaptureOverheadSamples() {
+		return captureOverheadSamples;
+	}
+
+	/**
+	 * @return the mean capture overhead in nanoseconds of the sampled events, or 0 if no events
+	 *         have been sampled
+	 */
+	public long getMeanCaptureOverheadNanos() {
+		return meanCaptureOverheadNanos;
+	}
+
+	/**
+	 * @return the estimated total capture overhead in nanoseconds of all committed events
+	 */
+	public long getEstimatedCaptureOverheadNanos() {
+		return meanCaptureOverheadNanos * committedEvents;
+	}
+
+	@Override
+	public String toString() {
+		return id + ": " + invocations + " invocations, " + committedEvents //$NON-NLS-1$ //$NON-NLS-2$
+				+ " committed events"; //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.jfr.impl;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+
+/**
+ * This class is responsible for transforming a method instrumented by an aggregating probe. Rather
+ * than creating an event per invocation, the latency of the invocation is recorded in the
+ * histogram of the probe, which is periodically emitted as a summary event by the
+ * {@link LatencyAggregator}.
+ */
+public class JFRAggregateMethodAdvisor extends AdviceAdapter {
+	private static final String THROWABLE_BINARY_NAME = "java/lang/Throwable"; //$NON-NLS-1$
+	private static final String AGGREGATOR_BINARY_NAME = Type.getInternalName(LatencyAggregator.class);
+	private static final String SAMPLER_BINARY_NAME = Type.getInternalName(ProbeSampler.class);
+
+	private final JFRTransformDescriptor transformDescriptor;
+	private final int aggregateId;
+	private final int samplerId;
+	private int startLocal = -1;
+
+	private Label tryBegin = new Label();
+	private Label tryEnd = new Label();
+
+	private boolean shouldInstrumentThrow;
+
+	protected JFRAggregateMethodAdvisor(JFRTransformDescriptor transformDescriptor, int api, MethodVisitor mv,
+			int access, String name, String desc) {
+		super(api, mv, access, name, desc);
+		this.transformDescriptor = transformDescriptor;
+		this.aggregateId = LatencyAggregator.getId(transformDescriptor.getEventClassName());
+		this.samplerId = ProbeSampler.register(transformDescriptor);
+
+		// With rethrow, the throws are recorded by the handler wrapping the method instead
+		this.shouldInstrumentThrow = !transformDescriptor.isUseRethrow();
+	}
+
+	@Override
+	protected void onMethodEnter() {
+		startLocal = newLocal(Type.LONG_TYPE);
+		push(samplerId);
+		visitMethodInsn(INVOKESTATIC, SAMPLER_BINARY_NAME, "enterAggregate", "(I)J", false); //$NON-NLS-1$ //$NON-NLS-2$
+		storeLocal(startLocal);
+		// The handler must not cover code before the start time is stored, such as a super constructor call
+		if (transformDescriptor.isUseRethrow()) {
+			visitLabel(tryBegin);
+		}
+	}
+
+	@Override
+	public void visitMaxs(int maxStack, int maxLocals) {
+		// The handler is added before visitMaxs, so that it is included when the maxs are computed
+		if (transformDescriptor.isUseRethrow() && startLocal != -1) {
+			visitLabel(tryEnd);
+			visitTryCatchBlock(tryBegin, tryEnd, tryEnd, THROWABLE_BINARY_NAME);
+
+			visitFrame(Opcodes.F_NEW, 0, null, 1, new Object[] {THROWABLE_BINARY_NAME});
+
+			// Simply rethrow. The latency is recorded by onMethodExit()
+			shouldInstrumentThrow = true;
+			visitInsn(ATHROW);
+		}
+
+		super.visitMaxs(maxStack, maxLocals);
+	}
+
+	@Override
+	protected void onMethodExit(int opcode) {
+		if (opcode == ATHROW && !shouldInstrumentThrow) {
+			return;
+		}
+		push(aggregateId);
+		push(samplerId);
+		loadLocal(startLocal);
+		visitMethodInsn(INVOKESTATIC, AGGREGATOR_BINARY_NAME, "record", "(IIJ)V", false); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -34,6 +34,8 @@ package org.openjdk.jmc.agent.jfr.impl;
 
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.objectweb.asm.ClassVisitor;
@@ -47,57 +49,102 @@ import org.openjdk.jmc.agent.util.TypeUtils;
 
 /**
  * This class visits a class to be instrumented, discovers methods to be visited and visits them. It
- * will also kick off the generation of the event class and register the created event class.
+ * will also kick off the generation of the event classes and register the created event classes,
+ * see {@link #defineEventClasses()}.
+ * All the transform descriptors for the class are applied in the same pass, so that the class is
+ * only parsed and written once no matter how many probes it has.
  */
 public class JFRClassVisitor extends ClassVisitor {
-	private final JFRTransformDescriptor transformDescriptor;
+	private final List<JFRTransformDescriptor> transformDescriptors;
 	private final ClassLoader definingClassLoader;
 	private final Class<?> inspectionClass;
 	private final ProtectionDomain protectionDomain;
 
 	public JFRClassVisitor(ClassWriter cv, JFRTransformDescriptor descriptor, ClassLoader definingLoader,
 			Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
+		this(cv, Collections.singletonList(descriptor), definingLoader, classBeingRedefined, protectionDomain);
+	}
+
+	public JFRClassVisitor(ClassWriter cv, List<JFRTransformDescriptor> descriptors, ClassLoader definingLoader,
+			Class<?> classBeingRedefined, ProtectionDomain protectionDomain) {
 		super(Opcodes.ASM8, cv);
-		this.transformDescriptor = descriptor;
+		this.transformDescriptors = descriptors;
 		this.definingClassLoader = definingLoader;
 		this.protectionDomain = protectionDomain;
 
 		try {
 			InspectionClassLoader inspectionClassLoader = classBeingRedefined != null ? null
 					: new InspectionClassLoader(definingClassLoader);
-			this.inspectionClass = classBeingRedefined != null || descriptor.getFields().isEmpty() ? classBeingRedefined
-					: inspectionClassLoader.loadClass(TypeUtils.getCanonicalName(transformDescriptor.getClassName()));
+			this.inspectionClass = classBeingRedefined != null || !hasFields(descriptors) ? classBeingRedefined
+					: inspectionClassLoader
+							.loadClass(TypeUtils.getCanonicalName(descriptors.get(0).getClassName()));
 		} catch (ClassNotFoundException e) {
 			throw new IllegalStateException(e); // This should not happen
 		}
 	}
 
+	private static boolean hasFields(List<JFRTransformDescriptor> descriptors) {
+		for (JFRTransformDescriptor descriptor : descriptors) {
+			if (!descriptor.getFields().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
 		MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
-		if (name.equals(transformDescriptor.getMethod().getName())
-				&& desc.equals(transformDescriptor.getMethod().getSignature())) {
-			transformDescriptor.matchFound(true);
-			return new JFRMethodAdvisor(transformDescriptor, inspectionClass, Opcodes.ASM8, mv, access, name, desc);
+		// Several probes on the same method are applied by chaining their advisors
+		for (JFRTransformDescriptor transformDescriptor : transformDescriptors) {
+			if (name.equals(transformDescriptor.getMethod().getName())
+					&& desc.equals(transformDescriptor.getMethod().getSignature())) {
+				transformDescriptor.matchFound(true);
+				if (transformDescriptor.isAggregate()) {
+					mv = new JFRAggregateMethodAdvisor(transformDescriptor, Opcodes.ASM8, mv, access, name, desc);
+				} else {
+					mv = new JFRMethodAdvisor(transformDescriptor, inspectionClass, Opcodes.ASM8, mv, access, name,
+							desc);
+				}
+			}
 		}
 		return mv;
 	}
 
 	@Override
 	public void visitEnd() {
-		try {
-			reflectiveRegister(generateEventClass());
-		} catch (Exception e) {
-			Agent.getLogger().log(Level.SEVERE, "Failed to generate event class for " + transformDescriptor.toString(), //$NON-NLS-1$
-					e);
-		}
-		if (!transformDescriptor.isMatchFound()) {
-			Agent.getLogger().warning("Method " + transformDescriptor.getMethod().getName() + " "
-					+ transformDescriptor.getMethod().getSignature() + " not found."); // $NON-NLS-1$
+		for (JFRTransformDescriptor transformDescriptor : transformDescriptors) {
+			if (!transformDescriptor.isMatchFound()) {
+				Agent.getLogger().warning("Method " + transformDescriptor.getMethod().getName() + " "
+						+ transformDescriptor.getMethod().getSignature() + " not found."); // $NON-NLS-1$
+			}
 		}
 		super.visitEnd();
 	}
 
+	/**
+	 * Generates and registers the event classes for the transform descriptors. This must only be
+	 * done once the class has been transformed successfully, since an event class can only be
+	 * defined once and the transformation may be retried with the descriptors one by one.
+	 */
+	public void defineEventClasses() {
+		ProbeSampler.registerStatisticsEvent();
+		for (JFRTransformDescriptor transformDescriptor : transformDescriptors) {
+			try {
+				Class<?> eventClass = generateEventClass(transformDescriptor);
+				if (transformDescriptor.isAggregate()) {
+					LatencyAggregator.registerPeriodicEvent(transformDescriptor.getEventClassName(), eventClass);
+				} else {
+					reflectiveRegister(eventClass);
+				}
+			} catch (Exception e) {
+				Agent.getLogger().log(Level.SEVERE,
+						"Failed to generate event class for " + transformDescriptor.toString(), //$NON-NLS-1$
+						e);
+			}
+		}
+	}
+
 	// NOTE: multi-release jars should let us compile against jdk9 and do a direct call here
 	private void reflectiveRegister(Class<?> generateEventClass) throws Exception {
 		Class<?> jfr = Class.forName("jdk.jfr.FlightRecorder"); //$NON-NLS-1$
@@ -105,7 +152,7 @@ public class JFRClassVisitor extends ClassVisitor {
 		registerMethod.invoke(null, generateEventClass);
 	}
 
-	private Class<?> generateEventClass() throws Exception {
+	private Class<?> generateEventClass(JFRTransformDescriptor transformDescriptor) throws Exception {
 		byte[] eventClass = JFREventClassGenerator.generateEventClass(transformDescriptor, inspectionClass);
 		return TypeUtils.defineClass(transformDescriptor.getEventClassName(), eventClass, 0, eventClass.length,
 				definingClassLoader, protectionDomain);
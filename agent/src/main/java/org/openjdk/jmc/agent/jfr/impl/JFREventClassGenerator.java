@@ -68,7 +68,11 @@ public class JFREventClassGenerator {
 
 		String parameterizedClassName = TypeUtils.parameterize(td.getEventClassName());
 		generateClassAnnotations(cw, td);
-		generateAttributeFields(cw, td, classBeingRedefined);
+		if (td.isAggregate()) {
+			generateAggregateFields(cw);
+		} else {
+			generateAttributeFields(cw, td, classBeingRedefined);
+		}
 		generateInit(cw, td.getEventClassName(), parameterizedClassName);
 		cw.visitEnd();
 		return cw.toByteArray();
@@ -89,6 +93,105 @@ public class JFREventClassGenerator {
 		}
 	}
 
+	/*
+	 * The summary event of an aggregating probe has a fixed set of fields, which are set
+	 * reflectively by the LatencyAggregator, so they are public.
+	 */
+	private static void generateAggregateFields(ClassWriter cw) {
+		createSummaryField(cw, LatencyAggregator.FIELD_INVOCATIONS, "Invocations", //$NON-NLS-1$
+				"The number of invocations during the period", false); //$NON-NLS-1$
+		createSummaryField(cw, LatencyAggregator.FIELD_MINIMUM, "Minimum", "The shortest invocation", true); //$NON-NLS-1$ //$NON-NLS-2$
+		createSummaryField(cw, LatencyAggregator.FIELD_MEAN, "Mean", "The mean invocation duration", true); //$NON-NLS-1$ //$NON-NLS-2$
+		for (int i = 0; i < LatencyAggregator.PERCENTILE_FIELDS.length; i++) {
+			createSummaryField(cw, LatencyAggregator.PERCENTILE_FIELDS[i], LatencyAggregator.PERCENTILE_LABELS[i],
+					"The " + LatencyAggregator.PERCENTILE_LABELS[i].toLowerCase() + " of the invocation durations", //$NON-NLS-1$ //$NON-NLS-2$
+					true);
+		}
+		createSummaryField(cw, LatencyAggregator.FIELD_MAXIMUM, "Maximum", "The longest invocation", true); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static void createSummaryField(
+		ClassWriter cw, String name, String label, String description, boolean isTimespan) {
+		createPublicField(cw, name, "J", label, description, isTimespan); //$NON-NLS-1$
+	}
+
+	private static void createPublicField(
+		ClassWriter cw, String name, String descriptor, String label, String description, boolean isTimespan) {
+		FieldVisitor fv = cw.visitField(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+		AnnotationVisitor av = fv.visitAnnotation("Ljdk/jfr/Label;", true); //$NON-NLS-1$
+		av.visit("value", label); //$NON-NLS-1$
+		av.visitEnd();
+		av = fv.visitAnnotation("Ljdk/jfr/Description;", true); //$NON-NLS-1$
+		av.visit("value", description); //$NON-NLS-1$
+		av.visitEnd();
+		if (isTimespan) {
+			av = fv.visitAnnotation("Ljdk/jfr/Timespan;", true); //$NON-NLS-1$
+			av.visit("value", "NANOSECONDS"); //$NON-NLS-1$ //$NON-NLS-2$
+			av.visitEnd();
+		}
+		fv.visitEnd();
+	}
+
+	/**
+	 * Generates the periodic event class with the statistics of a probe, which is defined by the
+	 * {@link ProbeSampler}. The fields are set reflectively, so they are public.
+	 *
+	 * @return the bytes of the event class
+	 */
+	public static byte[] generateStatisticsEventClass() {
+		ClassWriter cw = new ClassWriter(0);
+		String className = ProbeSampler.STATISTICS_EVENT_CLASS_NAME;
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER, className, null, CLASS_EVENT, null);
+		cw.visitSource(TypeUtils.getNamePart(className) + TypeUtils.JAVA_FILE_EXTENSION, null);
+
+		AnnotationVisitor av = cw.visitAnnotation("Ljdk/jfr/Name;", true); //$NON-NLS-1$
+		av.visit("value", "org.openjdk.jmc.agent.ProbeStatistics"); //$NON-NLS-1$ //$NON-NLS-2$
+		av.visitEnd();
+		av = cw.visitAnnotation("Ljdk/jfr/Label;", true); //$NON-NLS-1$
+		av.visit("value", "Agent Probe Statistics"); //$NON-NLS-1$ //$NON-NLS-2$
+		av.visitEnd();
+		av = cw.visitAnnotation("Ljdk/jfr/Description;", true); //$NON-NLS-1$
+		av.visit("value", "The invocations, events and overhead of an event probe, since it was defined"); //$NON-NLS-1$ //$NON-NLS-2$
+		av.visitEnd();
+		av = cw.visitAnnotation("Ljdk/jfr/Category;", true); //$NON-NLS-1$
+		AnnotationVisitor arrayVisitor = av.visitArray("value"); //$NON-NLS-1$
+		arrayVisitor.visit(null, "JMC Agent"); //$NON-NLS-1$
+		arrayVisitor.visitEnd();
+		av.visitEnd();
+		av = cw.visitAnnotation("Ljdk/jfr/StackTrace;", true); //$NON-NLS-1$
+		av.visit("value", false); //$NON-NLS-1$
+		av.visitEnd();
+		av = cw.visitAnnotation("Ljdk/jfr/Period;", true); //$NON-NLS-1$
+		av.visit("value", "10 s"); //$NON-NLS-1$ //$NON-NLS-2$
+		av.visitEnd();
+
+		createPublicField(cw, ProbeSampler.FIELD_PROBE, "Ljava/lang/String;", "Probe", "The id of the event probe", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				false);
+		createSummaryField(cw, ProbeSampler.FIELD_INVOCATIONS, "Invocations", //$NON-NLS-1$
+				"The number of invocations of the instrumented method while the event was enabled", false); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_COMMITTED, "Committed Events", "The number of events committed", //$NON-NLS-1$ //$NON-NLS-2$
+				false);
+		createSummaryField(cw, ProbeSampler.FIELD_DROPPED_BY_SAMPLING, "Dropped by Sampling", //$NON-NLS-1$
+				"The number of invocations that did not create an event because of the sample rate", false); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_DROPPED_BY_THRESHOLD, "Dropped by Threshold", //$NON-NLS-1$
+				"The number of events not committed because the invocation was shorter than the threshold", false); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_DROPPED_BY_RATE_LIMIT, "Dropped by Rate Limit", //$NON-NLS-1$
+				"The number of events not committed because of the maximum event rate", false); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_TRANSFORMATION_TIME, "Transformation Time", //$NON-NLS-1$
+				"The time spent transforming the class of the probe, together with its other probes, when it was loaded", //$NON-NLS-1$
+				true);
+		createSummaryField(cw, ProbeSampler.FIELD_RETRANSFORMATION_TIME, "Retransformation Time", //$NON-NLS-1$
+				"The time spent retransforming the class of the probe, together with its other probes", true); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_MEAN_CAPTURE_OVERHEAD, "Mean Capture Overhead", //$NON-NLS-1$
+				"The sampled mean time spent converting the captured values and committing an event", true); //$NON-NLS-1$
+		createSummaryField(cw, ProbeSampler.FIELD_ESTIMATED_CAPTURE_OVERHEAD, "Estimated Capture Overhead", //$NON-NLS-1$
+				"The estimated total time spent converting the captured values and committing the events", true); //$NON-NLS-1$
+
+		generateInit(cw, className, TypeUtils.parameterize(className));
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
 	private static void createField(ClassWriter cw, JFRTransformDescriptor td, Attribute attribute, Type type) {
 		if (!td.isAllowedEventFieldType(attribute, type)) {
 			Logger.getLogger(JFREventClassGenerator.class.getName())
@@ -238,11 +341,18 @@ public class JFREventClassGenerator {
 		arrayVisitor.visitEnd();
 		av.visitEnd();
 
-		// Stacktrace on/off
+		// Stacktrace on/off, summary events are emitted from the periodic thread so never need one
 		av = cw.visitAnnotation("Ljdk/jfr/StackTrace;", true);
-		av.visit("value", td.isRecordStackTrace());
+		av.visit("value", td.isRecordStackTrace() && !td.isAggregate());
 		av.visitEnd();
 
+		// Default period of the summary event
+		if (td.isAggregate()) {
+			av = cw.visitAnnotation("Ljdk/jfr/Period;", true);
+			av.visit("value", td.getAggregatePeriod());
+			av.visitEnd();
+		}
+
 		// Note that thread is always recorded these days
 	}
 }
@@ -34,6 +34,7 @@ package org.openjdk.jmc.agent.jfr.impl;
 
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.objectweb.asm.Label;
@@ -59,13 +60,16 @@ import org.openjdk.jmc.agent.util.expression.ReferenceChainElement;
  */
 public class JFRMethodAdvisor extends AdviceAdapter {
 	private static final String THROWABLE_BINARY_NAME = "java/lang/Throwable"; //$NON-NLS-1$
+	private static final String SAMPLER_BINARY_NAME = Type.getInternalName(ProbeSampler.class);
 
 	private final JFRTransformDescriptor transformDescriptor;
 	private final Class<?> inspectionClass;
 	private final Type[] argumentTypesRef;
 	private final Type returnTypeRef;
 	private final Type eventType;
+	private final int samplerId;
 	private int eventLocal = -1;
+	private int startLocal = -1;
 
 	private Label tryBegin = new Label();
 	private Label tryEnd = new Label();
@@ -73,6 +77,27 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 
 	private boolean shouldInstrumentThrow;
 
+	/**
+	 * A parameter or field value captured into a local on method entry.
+	 */
+	private static class CapturedValue {
+		private final Attribute attribute;
+		private final int argumentIndex;
+		private final ReferenceChain refChain;
+		private final Type type;
+		private final int local;
+
+		CapturedValue(Attribute attribute, int argumentIndex, ReferenceChain refChain, Type type, int local) {
+			this.attribute = attribute;
+			this.argumentIndex = argumentIndex;
+			this.refChain = refChain;
+			this.type = type;
+			this.local = local;
+		}
+	}
+
+	private final List<CapturedValue> capturedValues = new ArrayList<>();
+
 	protected JFRMethodAdvisor(JFRTransformDescriptor transformDescriptor, Class<?> inspectionClass, int api,
 			MethodVisitor mv, int access, String name, String desc) {
 		super(api, mv, access, name, desc);
@@ -82,6 +107,7 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 		this.argumentTypesRef = Type.getArgumentTypes(desc);
 		this.returnTypeRef = Type.getReturnType(desc);
 		this.eventType = Type.getObjectType(transformDescriptor.getEventClassName());
+		this.samplerId = ProbeSampler.register(transformDescriptor);
 
 		this.shouldInstrumentThrow = !transformDescriptor.isUseRethrow() || !transformDescriptor.isEmitOnException(); // don't instrument inner throws if rethrow is enabled
 	}
@@ -96,7 +122,8 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 	}
 
 	@Override
-	public void visitEnd() {
+	public void visitMaxs(int maxStack, int maxLocals) {
+		// The handler is added before visitMaxs, so that it is included when the maxs are computed
 		if (transformDescriptor.isUseRethrow() && !transformDescriptor.isEmitOnException()) {
 			visitLabel(tryEnd);
 			visitTryCatchBlock(tryBegin, tryEnd, tryEnd, THROWABLE_BINARY_NAME);
@@ -111,6 +138,7 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 			visitTryCatchBlock(tryBegin, tryEnd, catchBegin, THROWABLE_BINARY_NAME);
 			if (!transformDescriptor.isUseRethrow()) {
 				visitFrame(Opcodes.F_NEW, 0, null, 1, new Object[] {THROWABLE_BINARY_NAME});
+				visitInsn(POP);
 				visitInsn(RETURN);
 			} else {
 				visitFrame(Opcodes.F_NEW, 0, null, 1, new Object[] {THROWABLE_BINARY_NAME});
@@ -118,7 +146,7 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 				visitInsn(ATHROW);
 			}
 		}
-		super.visitEnd();
+		super.visitMaxs(maxStack, maxLocals);
 	}
 
 	@Override
@@ -131,35 +159,22 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 	}
 
 	/**
-	 * Generates the transformation for instantiating the event type, setting its parameter and
-	 * field attributes and call begin().
+	 * Generates the transformation for instantiating the event type and, if the event is enabled,
+	 * capturing the values of its parameter and field attributes and calling begin(). The captured
+	 * values are kept in locals as is, and are only converted and written to the event if it is to
+	 * be committed on method exit.
 	 */
-	private void createEvent() throws IllegalSyntaxException, MalformedConverterException {
-		mv.visitTypeInsn(NEW, transformDescriptor.getEventClassName());
-		mv.visitInsn(DUP);
-		mv.visitInsn(DUP);
-		mv.visitMethodInsn(INVOKESPECIAL, transformDescriptor.getEventClassName(), "<init>", "()V", false); //$NON-NLS-1$ //$NON-NLS-2$
-
-		// write attribute for each parameter
+	private void createEvent() throws IllegalSyntaxException {
+		// capture a raw value for each parameter
 		for (Parameter param : transformDescriptor.getParameters()) {
 			Type argumentType = argumentTypesRef[param.getIndex()];
 			if (transformDescriptor.isAllowedEventFieldType(param, argumentType)) {
-				// Top of the stack is the event instance object reference.
-				mv.visitInsn(DUP);
-				loadArg(param.getIndex());
-				if (param.hasConverter()) {
-					argumentType = convertify(mv, param, argumentType);
-				} else {
-					if (!TypeUtils.isSupportedType(argumentType) && transformDescriptor.isAllowToString()) {
-						TypeUtils.stringify(mv);
-						argumentType = TypeUtils.TYPE_STRING;
-					}
-				}
-				writeAttribute(param, argumentType);
+				capturedValues.add(new CapturedValue(param, param.getIndex(), null, argumentType,
+						newLocal(argumentType)));
 			}
 		}
 
-		// write attribute for each event field
+		// capture a raw value for each event field
 		for (Field field : transformDescriptor.getFields()) {
 			ReferenceChain refChain = field.resolveReferenceChain(inspectionClass).normalize();
 
@@ -170,39 +185,86 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 
 			Type fieldType = refChain.getType();
 			if (transformDescriptor.isAllowedEventFieldType(field, fieldType)) {
-				mv.visitInsn(DUP);
-				loadField(refChain);
-
-				if (field.hasConverter()) {
-					fieldType = convertify(mv, field, fieldType);
-				} else {
-					if (!TypeUtils.isSupportedType(fieldType) && transformDescriptor.isAllowToString()) {
-						TypeUtils.stringify(mv);
-						fieldType = TypeUtils.TYPE_STRING;
-					}
-				}
-
-				writeAttribute(field, fieldType);
+				capturedValues.add(new CapturedValue(field, -1, refChain, fieldType, newLocal(fieldType)));
 			}
 		}
 
+		// The capture locals are part of every following frame, so they must be assigned on both paths
+		for (CapturedValue value : capturedValues) {
+			mv.visitInsn(TypeUtils.getConstZeroOpcode(value.type));
+			mv.visitVarInsn(value.type.getOpcode(ISTORE), value.local);
+		}
+		startLocal = newLocal(Type.LONG_TYPE);
+		mv.visitInsn(LCONST_0);
+		mv.visitVarInsn(LSTORE, startLocal);
+
+		Label notSampled = new Label();
+		Label sampled = new Label();
+		Label storeEvent = new Label();
+		mv.visitTypeInsn(NEW, transformDescriptor.getEventClassName());
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, transformDescriptor.getEventClassName(), "<init>", "()V", false); //$NON-NLS-1$ //$NON-NLS-2$
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKEVIRTUAL, transformDescriptor.getEventClassName(), "isEnabled", "()Z", false); //$NON-NLS-1$ //$NON-NLS-2$
+		mv.visitJumpInsn(IFEQ, notSampled);
+
+		// Only for enabled events, the sampler counts the invocation, decides if it gets an event, and
+		// provides the start time for the threshold
+		push(samplerId);
+		mv.visitMethodInsn(INVOKESTATIC, SAMPLER_BINARY_NAME, "enter", "(I)J", false); //$NON-NLS-1$ //$NON-NLS-2$
+		mv.visitVarInsn(LSTORE, startLocal);
+		mv.visitVarInsn(LLOAD, startLocal);
+		mv.visitLdcInsn(ProbeSampler.NOT_SAMPLED);
+		mv.visitInsn(LCMP);
+		mv.visitJumpInsn(IFNE, sampled);
+
+		// disabled or not sampled, keep a null event so that nothing is done on method exit
+		mv.visitLabel(notSampled);
+		visitEntryFrame(eventType.getInternalName());
+		mv.visitInsn(POP);
+		mv.visitInsn(ACONST_NULL);
+		mv.visitJumpInsn(GOTO, storeEvent);
+
+		mv.visitLabel(sampled);
+		visitEntryFrame(eventType.getInternalName());
+		for (CapturedValue value : capturedValues) {
+			if (value.refChain == null) {
+				loadArg(value.argumentIndex);
+			} else {
+				loadField(value.refChain);
+			}
+			mv.visitVarInsn(value.type.getOpcode(ISTORE), value.local);
+		}
+		mv.visitInsn(DUP);
 		mv.visitMethodInsn(INVOKEVIRTUAL, transformDescriptor.getEventClassName(), "begin", "()V", false); //$NON-NLS-1$ //$NON-NLS-2$
+
+		mv.visitLabel(storeEvent);
+		visitEntryFrame(eventType.getInternalName());
+		// allocated last, so that it is not part of the frames above where it is still unassigned
 		eventLocal = newLocal(eventType);
 		mv.visitVarInsn(ASTORE, eventLocal);
 	}
 
+	/**
+	 * Visits a frame for the method entry code, with "this", the arguments and the capture locals as
+	 * the local variables.
+	 */
+	private void visitEntryFrame(Object ... stack) {
+		List<Object> locals = new ArrayList<>();
+		if (!Modifier.isStatic(getAccess())) {
+			locals.add(transformDescriptor.getClassName()); // "this"
+		}
+		for (Type argType : argumentTypesRef) {
+			locals.add(TypeUtils.getFrameVerificationType(argType));
+		}
+		// The capture locals are added by the local variable sorter
+		visitFrame(F_NEW, locals.size(), locals.toArray(), stack.length, stack);
+	}
+
 	private void loadField(ReferenceChain refChain) {
 		Type type = refChain.getType();
-		boolean isStatic = Modifier.isStatic(getAccess());
 		Label nullCase = new Label();
 		Label continueCase = new Label();
-		List<Object> localVarVerifications = new ArrayList<>();
-		if (!isStatic) {
-			localVarVerifications.add(Type.getInternalName(inspectionClass)); // "this"
-		}
-		for (Type argType : argumentTypesRef) {
-			localVarVerifications.add(TypeUtils.getFrameVerificationType(argType));
-		}
 
 		// Assumes the reference chain is normalized already. See ReferenceChain.normalize()
 		List<ReferenceChainElement> refs = refChain.getReferences();
@@ -248,17 +310,13 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 
 		// null reference on path, load zero value
 		mv.visitLabel(nullCase);
-		mv.visitFrame(F_NEW, localVarVerifications.size(), localVarVerifications.toArray(), 4,
-				new Object[] {eventType.getInternalName(), eventType.getInternalName(), eventType.getInternalName(),
-						Type.getInternalName(Object.class)});
+		visitEntryFrame(eventType.getInternalName(), Type.getInternalName(Object.class));
 		mv.visitInsn(POP);
 		mv.visitInsn(TypeUtils.getConstZeroOpcode(type));
 
 		// must verify frame for jump targets
 		mv.visitLabel(continueCase);
-		mv.visitFrame(F_NEW, localVarVerifications.size(), localVarVerifications.toArray(), 4,
-				new Object[] {eventType.getInternalName(), eventType.getInternalName(), eventType.getInternalName(),
-						TypeUtils.getFrameVerificationType(type)});
+		visitEntryFrame(eventType.getInternalName(), TypeUtils.getFrameVerificationType(type));
 	}
 
 	private void writeAttribute(Attribute param, Type type) {
@@ -286,17 +344,86 @@ public class JFRMethodAdvisor extends AdviceAdapter {
 		if (opcode == ATHROW && !shouldInstrumentThrow) {
 			return;
 		}
-		if (returnTypeRef.getSort() != Type.VOID && opcode != ATHROW) {
-			ReturnValue returnValue = transformDescriptor.getReturnValue();
-			if (returnValue != null) {
-				try {
+		Label skipCommit = new Label();
+		mv.visitVarInsn(ALOAD, eventLocal);
+		mv.visitJumpInsn(IFNULL, skipCommit);
+		mv.visitVarInsn(ALOAD, eventLocal);
+		mv.visitMethodInsn(INVOKEVIRTUAL, transformDescriptor.getEventClassName(), "shouldCommit", "()Z", false); //$NON-NLS-1$ //$NON-NLS-2$
+		mv.visitJumpInsn(IFEQ, skipCommit);
+		// The threshold and rate limit are checked before the captured values are converted. The start
+		// time is no longer needed, so the local is reused for the start of the capture overhead sample.
+		push(samplerId);
+		mv.visitVarInsn(LLOAD, startLocal);
+		mv.visitMethodInsn(INVOKESTATIC, SAMPLER_BINARY_NAME, "exit", "(IJ)J", false); //$NON-NLS-1$ //$NON-NLS-2$
+		mv.visitVarInsn(LSTORE, startLocal);
+		mv.visitVarInsn(LLOAD, startLocal);
+		mv.visitLdcInsn(ProbeSampler.DROPPED);
+		mv.visitInsn(LCMP);
+		mv.visitJumpInsn(IFEQ, skipCommit);
+
+		try {
+			writeCapturedValues();
+			if (returnTypeRef.getSort() != Type.VOID && opcode != ATHROW) {
+				ReturnValue returnValue = transformDescriptor.getReturnValue();
+				if (returnValue != null) {
 					emitSettingReturnParam(opcode, returnValue);
-				} catch (MalformedConverterException e) {
-					throw new RuntimeException();
 				}
 			}
+		} catch (MalformedConverterException e) {
+			throw new RuntimeException(e);
 		}
 		commitEvent();
+		push(samplerId);
+		mv.visitVarInsn(LLOAD, startLocal);
+		mv.visitMethodInsn(INVOKESTATIC, SAMPLER_BINARY_NAME, "committed", "(IJ)V", false); //$NON-NLS-1$ //$NON-NLS-2$
+
+		mv.visitLabel(skipCommit);
+		visitExitFrame(opcode);
+	}
+
+	/**
+	 * Generates the conversion of the values captured on method entry, and writes them to the event.
+	 */
+	private void writeCapturedValues() throws MalformedConverterException {
+		for (CapturedValue value : capturedValues) {
+			mv.visitVarInsn(ALOAD, eventLocal);
+			mv.visitVarInsn(value.type.getOpcode(ILOAD), value.local);
+
+			Type type = value.type;
+			if (value.attribute.hasConverter()) {
+				type = convertify(mv, value.attribute, type);
+			} else {
+				if (!TypeUtils.isSupportedType(type) && transformDescriptor.isAllowToString()) {
+					TypeUtils.stringify(mv);
+					type = TypeUtils.TYPE_STRING;
+				}
+			}
+
+			writeAttribute(value.attribute, type);
+		}
+	}
+
+	/**
+	 * Visits a frame for the method exit code. Only the locals added by the advisor are needed, the
+	 * rest are left unspecified since the exit code is followed by a return or throw instruction.
+	 */
+	private void visitExitFrame(int opcode) {
+		int argumentSlots = Modifier.isStatic(getAccess()) ? 0 : 1;
+		for (Type argType : argumentTypesRef) {
+			argumentSlots += argType.getSize();
+		}
+		// The advisor locals are added by the local variable sorter
+		Object[] locals = new Object[argumentSlots];
+		Arrays.fill(locals, TOP);
+		Object[] stack;
+		if (opcode == ATHROW) {
+			stack = new Object[] {THROWABLE_BINARY_NAME};
+		} else if (opcode != RETURN) {
+			stack = new Object[] {TypeUtils.getFrameVerificationType(returnTypeRef)};
+		} else {
+			stack = new Object[0];
+		}
+		visitFrame(F_NEW, locals.length, locals, stack.length, stack);
 	}
 
 	private void emitSettingReturnParam(int opcode, ReturnValue returnValue) throws MalformedConverterException {
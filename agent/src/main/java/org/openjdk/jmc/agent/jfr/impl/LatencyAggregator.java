@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.jfr.impl;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.openjdk.jmc.agent.Agent;
+
+/**
+ * Keeps the latency histograms of the aggregating probes, and emits their periodic summary events.
+ * <p>
+ * Instrumented methods call {@link #record(int, int, long)} with the id of their probe, which is
+ * resolved when the method is transformed. The invocations are sampled and counted by the
+ * {@link ProbeSampler}, like the invocations of other probes. The ids are stable for the lifetime of the agent, so a
+ * retransformed method keeps recording into the same histogram.
+ */
+public final class LatencyAggregator {
+	static final String FIELD_INVOCATIONS = "invocations"; //$NON-NLS-1$
+	static final String FIELD_MINIMUM = "minimum"; //$NON-NLS-1$
+	static final String FIELD_MEAN = "mean"; //$NON-NLS-1$
+	static final String FIELD_MAXIMUM = "maximum"; //$NON-NLS-1$
+	static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	static final String[] PERCENTILE_FIELDS = {"p50", "p90", "p99", "p999"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	static final String[] PERCENTILE_LABELS = {"50th Percentile", "90th Percentile", "99th Percentile", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"99.9th Percentile"}; //$NON-NLS-1$
+
+	private static final Map<String, Integer> IDS = new HashMap<>();
+	private static volatile Aggregate[] aggregates = new Aggregate[0];
+
+	private LatencyAggregator() {
+		throw new UnsupportedOperationException("Toolkit!"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Records the latency of an invocation of an instrumented method, unless the invocation is
+	 * dropped by the {@link ProbeSampler}. Called from the instrumented code on method exit.
+	 *
+	 * @param id
+	 *            the id of the probe, as returned by {@link #getId(String)}
+	 * @param samplerId
+	 *            the id of the probe in the {@link ProbeSampler}
+	 * @param start
+	 *            the value returned by {@link ProbeSampler#enterAggregate(int)}
+	 */
+	public static void record(int id, int samplerId, long start) {
+		if (start == ProbeSampler.NOT_SAMPLED) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		long overheadStart = ProbeSampler.exit(samplerId, start);
+		if (overheadStart != ProbeSampler.DROPPED) {
+			aggregates[id].histogram.record(nanos);
+			ProbeSampler.committed(samplerId, overheadStart);
+		}
+	}
+
+	/**
+	 * Gets the id of the probe generating the given event class, allocating a new id and histogram
+	 * the first time the event class is seen.
+	 *
+	 * @param eventClassName
+	 *            the internal name of the summary event class
+	 * @return the id to pass to {@link #record(int, int, long)}
+	 */
+	public static synchronized int getId(String eventClassName) {
+		Integer id = IDS.get(eventClassName);
+		if (id == null) {
+			id = aggregates.length;
+			Aggregate[] newAggregates = Arrays.copyOf(aggregates, id + 1);
+			newAggregates[id] = new Aggregate();
+			aggregates = newAggregates;
+			IDS.put(eventClassName, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @param eventClassName
+	 *            the internal name of the summary event class
+	 * @return the histogram of the probe generating the given event class, or {@code null} if there
+	 *         is no such probe
+	 */
+	public static synchronized LatencyHistogram getHistogram(String eventClassName) {
+		Integer id = IDS.get(eventClassName);
+		return id != null ? aggregates[id].histogram : null;
+	}
+
+	/**
+	 * Registers the summary event class of a probe as a periodic event, which is emitted from the
+	 * histogram of the probe. If the probe already had a summary event class, it is replaced.
+	 *
+	 * @param eventClassName
+	 *            the internal name of the summary event class
+	 * @param eventClass
+	 *            the generated summary event class
+	 * @throws Exception
+	 *             if the event class could not be registered with the flight recorder
+	 */
+	public static synchronized void registerPeriodicEvent(String eventClassName, Class<?> eventClass)
+			throws Exception {
+		Aggregate aggregate = aggregates[getId(eventClassName)];
+		Emitter emitter = new Emitter(aggregate.histogram, eventClass);
+		// NOTE: multi-release jars should let us compile against jdk9 and do direct calls here
+		Class<?> jfr = Class.forName("jdk.jfr.FlightRecorder"); //$NON-NLS-1$
+		if (aggregate.emitter != null) {
+			jfr.getDeclaredMethod("removePeriodicEvent", Runnable.class).invoke(null, aggregate.emitter); //$NON-NLS-1$
+		}
+		jfr.getDeclaredMethod("addPeriodicEvent", Class.class, Runnable.class).invoke(null, eventClass, emitter); //$NON-NLS-1$
+		aggregate.emitter = emitter;
+	}
+
+	private static final class Aggregate {
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private Emitter emitter;
+	}
+
+	/**
+	 * Called by the flight recorder at the period of the summary event.
+	 */
+	private static final class Emitter implements Runnable {
+		private final LatencyHistogram histogram;
+		private final Class<?> eventClass;
+		private final java.lang.reflect.Field invocations;
+		private final java.lang.reflect.Field minimum;
+		private final java.lang.reflect.Field mean;
+		private final java.lang.reflect.Field maximum;
+		private final java.lang.reflect.Field[] percentiles;
+		private final Method commit;
+
+		Emitter(LatencyHistogram histogram, Class<?> eventClass) throws ReflectiveOperationException {
+			this.histogram = histogram;
+			this.eventClass = eventClass;
+			invocations = eventClass.getField(FIELD_INVOCATIONS);
+			minimum = eventClass.getField(FIELD_MINIMUM);
+			mean = eventClass.getField(FIELD_MEAN);
+			maximum = eventClass.getField(FIELD_MAXIMUM);
+			percentiles = new java.lang.reflect.Field[PERCENTILE_FIELDS.length];
+			for (int i = 0; i < percentiles.length; i++) {
+				percentiles[i] = eventClass.getField(PERCENTILE_FIELDS[i]);
+			}
+			commit = eventClass.getMethod("commit"); //$NON-NLS-1$
+		}
+
+		@Override
+		public void run() {
+			LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+			if (snapshot.getCount() == 0) {
+				return;
+			}
+			try {
+				Object event = eventClass.getConstructor().newInstance();
+				invocations.setLong(event, snapshot.getCount());
+				minimum.setLong(event, snapshot.getMinimum());
+				mean.setLong(event, snapshot.getMean());
+				maximum.setLong(event, snapshot.getMaximum());
+				for (int i = 0; i < percentiles.length; i++) {
+					percentiles[i].setLong(event, snapshot.getPercentile(PERCENTILES[i]));
+				}
+				commit.invoke(event);
+			} catch (ReflectiveOperationException e) {
+				Agent.getLogger().log(Level.WARNING, "Failed to emit the summary event " + eventClass.getName(), e); //$NON-NLS-1$
+			}
+		}
+	}
+}
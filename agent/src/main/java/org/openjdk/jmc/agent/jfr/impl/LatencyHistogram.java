@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.jfr.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, used by aggregating probes.
+ * <p>
+ * The values are counted in log-linear buckets, where each power of two is divided into
+ * {@value #SUB_BUCKET_COUNT} buckets, so that the value representing a bucket is within about 3%
+ * of the values in it. To avoid contention between threads recording into the same histogram, the
+ * counts are striped over several arrays, and a thread always records into the same stripe.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// Values at or above 2^MAX_EXPONENT ns (about 39 hours) are counted in the last bucket
+	private static final int MAX_EXPONENT = 47;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+	private static final int MAX_STRIPES = 16;
+
+	// Stripe layout: the sum, the minimum and maximum values, followed by the bucket counts
+	private static final int SUM = 0;
+	private static final int MIN = 1;
+	private static final int MAX = 2;
+	private static final int BUCKETS = 3;
+
+	private final AtomicLongArray[] stripes;
+
+	public LatencyHistogram() {
+		int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+		stripes = new AtomicLongArray[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new AtomicLongArray(BUCKETS + BUCKET_COUNT);
+			stripes[i].set(MIN, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 *            the latency in nanoseconds. Negative values are counted as zero.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+		stripe.getAndIncrement(BUCKETS + getBucket(value));
+		stripe.getAndAdd(SUM, value);
+		long min;
+		while (value < (min = stripe.get(MIN)) && !stripe.compareAndSet(MIN, min, value)) {
+			// retry
+		}
+		long max;
+		while (value > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the latencies recorded since the last time this method was called, and
+	 * resets the histogram. Latencies recorded concurrently with the reset are counted in either
+	 * this or the next snapshot.
+	 *
+	 * @return a snapshot of the recorded latencies
+	 */
+	public Snapshot snapshotAndReset() {
+		long[] counts = new long[BUCKET_COUNT];
+		long sum = 0;
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (AtomicLongArray stripe : stripes) {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				if (stripe.get(BUCKETS + i) != 0) {
+					counts[i] += stripe.getAndSet(BUCKETS + i, 0);
+				}
+			}
+			sum += stripe.getAndSet(SUM, 0);
+			min = Math.min(min, stripe.getAndSet(MIN, Long.MAX_VALUE));
+			max = Math.max(max, stripe.getAndSet(MAX, 0));
+		}
+		return new Snapshot(counts, sum, min, max);
+	}
+
+	private static int getBucket(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long getBucketLowerBound(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		int subBucket = bucket % SUB_BUCKET_COUNT;
+		return (SUB_BUCKET_COUNT + (long) subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * The latencies recorded in a histogram during a period of time.
+	 */
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long min;
+		private final long max;
+
+		private Snapshot(long[] counts, long sum, long min, long max) {
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * @return the number of recorded latencies
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the smallest recorded latency, or 0 if no latencies were recorded
+		 */
+		public long getMinimum() {
+			return count > 0 ? min : 0;
+		}
+
+		/**
+		 * @return the largest recorded latency, or 0 if no latencies were recorded
+		 */
+		public long getMaximum() {
+			return count > 0 ? max : 0;
+		}
+
+		/**
+		 * @return the mean of the recorded latencies, or 0 if no latencies were recorded
+		 */
+		public long getMean() {
+			return count > 0 ? sum / count : 0;
+		}
+
+		/**
+		 * Estimates a percentile of the recorded latencies.
+		 *
+		 * @param percentile
+		 *            the percentile, between 0 and 100
+		 * @return the estimated latency, the exact minimum and maximum for 0 and 100, or 0 if no
+		 *         latencies were recorded
+		 */
+		public long getPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			} else if (percentile <= 0) {
+				return min;
+			} else if (percentile >= 100) {
+				return max;
+			}
+			long rank = (long) Math.ceil(percentile / 100 * count);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && counts[i] > 0) {
+					// The middle of the bucket, kept within the observed range
+					long lower = getBucketLowerBound(i);
+					long upper = i + 1 < counts.length ? getBucketLowerBound(i + 1) : lower;
+					return Math.max(min, Math.min(max, lower + (upper - lower) / 2));
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.jfr.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import org.openjdk.jmc.agent.Agent;
+import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.jfr.ProbeStatistics;
+import org.openjdk.jmc.agent.util.TypeUtils;
+
+/**
+ * Keeps the sampling settings of the probes, and decides which invocations of the instrumented
+ * methods create and commit events.
+ * <p>
+ * Instrumented methods call {@link #enter(int)} once the event has been created and found to be
+ * enabled, {@link #exit(int, long)} before converting the captured values and committing the event,
+ * and {@link #committed(int, long)} after committing it. Methods instrumented by aggregating probes
+ * call {@link #enterAggregate(int)} instead of {@link #enter(int)}, and the {@link LatencyAggregator}
+ * calls the rest when it records the latency. The probe ids are resolved when the method is
+ * transformed, so the settings can be changed at runtime without retransforming the method.
+ * <p>
+ * The 1-in-N sampling is counted per thread, so it does not cause contention. The rate limit is a
+ * token bucket holding one second worth of events, implemented as a single theoretical arrival time
+ * that is only updated when an event is let through. Invocations rejected by the rate limit only
+ * read the shared state.
+ * <p>
+ * The sampler also counts the invocations and events of each probe, and the time spent
+ * transforming its class, in striped counters. The time spent converting the captured values and
+ * committing the event is measured for one in {@value #OVERHEAD_SAMPLE_RATE} committed events. The
+ * {@link ProbeStatistics} are available through {@link #getStatistics(String)} and as a periodic
+ * flight recorder event.
+ */
+public final class ProbeSampler {
+	/**
+	 * Returned by {@link #enter(int)} when no event should be created for the invocation.
+	 */
+	public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+	/**
+	 * Returned by {@link #exit(int, long)} when the event should not be committed.
+	 */
+	public static final long DROPPED = Long.MIN_VALUE;
+
+	static final String STATISTICS_EVENT_CLASS_NAME = "org/openjdk/jmc/agent/jfr/impl/ProbeStatisticsEvent"; //$NON-NLS-1$
+	static final String FIELD_PROBE = "probe"; //$NON-NLS-1$
+	static final String FIELD_INVOCATIONS = "invocations"; //$NON-NLS-1$
+	static final String FIELD_COMMITTED = "committedEvents"; //$NON-NLS-1$
+	static final String FIELD_DROPPED_BY_SAMPLING = "droppedBySampling"; //$NON-NLS-1$
+	static final String FIELD_DROPPED_BY_THRESHOLD = "droppedByThreshold"; //$NON-NLS-1$
+	static final String FIELD_DROPPED_BY_RATE_LIMIT = "droppedByRateLimit"; //$NON-NLS-1$
+	static final String FIELD_TRANSFORMATION_TIME = "transformationTime"; //$NON-NLS-1$
+	static final String FIELD_RETRANSFORMATION_TIME = "retransformationTime"; //$NON-NLS-1$
+	static final String FIELD_MEAN_CAPTURE_OVERHEAD = "meanCaptureOverhead"; //$NON-NLS-1$
+	static final String FIELD_ESTIMATED_CAPTURE_OVERHEAD = "estimatedCaptureOverhead"; //$NON-NLS-1$
+
+	private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final int OVERHEAD_SAMPLE_RATE = 64;
+
+	private static final Map<String, Integer> IDS = new HashMap<>();
+	private static volatile Sampler[] samplers = new Sampler[0];
+	// Set once the statistics event has been registered, or failed to register
+	private static boolean isStatisticsEventRegistered;
+
+	private ProbeSampler() {
+		throw new UnsupportedOperationException("Toolkit!"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Called from the instrumented code on method entry, if the event is enabled.
+	 *
+	 * @param id
+	 *            the id of the probe, as returned by {@link #register(JFRTransformDescriptor)}
+	 * @return {@link #NOT_SAMPLED} if no event should be created, otherwise the start time to pass to
+	 *         {@link #exit(int, long)}
+	 */
+	public static long enter(int id) {
+		Sampler sampler = samplers[id];
+		if (!sampler.sample()) {
+			return NOT_SAMPLED;
+		}
+		// Only read the clock if it is needed for the threshold
+		return sampler.thresholdNanos > 0 ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Called from code instrumented by an aggregating probe on method entry.
+	 *
+	 * @param id
+	 *            the id of the probe, as returned by {@link #register(JFRTransformDescriptor)}
+	 * @return {@link #NOT_SAMPLED} if the latency of the invocation should not be recorded,
+	 *         otherwise the start time of the invocation
+	 */
+	public static long enterAggregate(int id) {
+		return samplers[id].sample() ? System.nanoTime() : NOT_SAMPLED;
+	}
+
+	/**
+	 * Called from the instrumented code on method exit, if the event should otherwise be committed.
+	 *
+	 * @param id
+	 *            the id of the probe, as returned by {@link #register(JFRTransformDescriptor)}
+	 * @param start
+	 *            the value returned by {@link #enter(int)}
+	 * @return {@link #DROPPED} if the event should not be committed, otherwise the value to pass to
+	 *         {@link #committed(int, long)}
+	 */
+	public static long exit(int id, long start) {
+		Sampler sampler = samplers[id];
+		long thresholdNanos = sampler.thresholdNanos;
+		// A start time of 0 means that the threshold was set during the invocation
+		if (thresholdNanos > 0 && start != 0 && System.nanoTime() - start < thresholdNanos) {
+			sampler.droppedByThreshold.increment();
+			return DROPPED;
+		}
+		if (!sampler.tryAcquire()) {
+			sampler.droppedByRateLimit.increment();
+			return DROPPED;
+		}
+		// Only read the clock for the events that have their capture overhead measured
+		return ThreadLocalRandom.current().nextInt(OVERHEAD_SAMPLE_RATE) == 0 ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Called from the instrumented code on method exit, after the event has been committed.
+	 *
+	 * @param id
+	 *            the id of the probe, as returned by {@link #register(JFRTransformDescriptor)}
+	 * @param start
+	 *            the value returned by {@link #exit(int, long)}
+	 */
+	public static void committed(int id, long start) {
+		Sampler sampler = samplers[id];
+		sampler.committed.increment();
+		if (start != 0) {
+			sampler.overheadSamples.increment();
+			sampler.overheadNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Records the time spent transforming a class for one of the probes in it. The time is for the
+	 * class as a whole, and is recorded for each of the probes in the class.
+	 *
+	 * @param probeId
+	 *            the id of the probe
+	 * @param nanos
+	 *            the time spent transforming the class
+	 * @param isRetransformation
+	 *            {@code true} if an already loaded class was retransformed
+	 */
+	public static void recordTransformation(String probeId, long nanos, boolean isRetransformation) {
+		Sampler sampler = getSampler(probeId);
+		if (isRetransformation) {
+			sampler.retransformations.increment();
+			sampler.retransformationNanos.add(nanos);
+		} else {
+			sampler.transformations.increment();
+			sampler.transformationNanos.add(nanos);
+		}
+	}
+
+	/**
+	 * @param probeId
+	 *            the id of the probe
+	 * @return the statistics of the probe, counted since it was first defined
+	 */
+	public static ProbeStatistics getStatistics(String probeId) {
+		Sampler sampler = getSampler(probeId);
+		return sampler.getStatistics(probeId);
+	}
+
+	/**
+	 * Registers the periodic event with the statistics of the probes, unless it already has been
+	 * registered. The event is only emitted for probes that have been used since the previous
+	 * event.
+	 */
+	public static synchronized void registerStatisticsEvent() {
+		if (isStatisticsEventRegistered) {
+			return;
+		}
+		isStatisticsEventRegistered = true;
+		try {
+			byte[] eventClassBytes = JFREventClassGenerator.generateStatisticsEventClass();
+			Class<?> eventClass = TypeUtils.defineClass(STATISTICS_EVENT_CLASS_NAME, eventClassBytes, 0,
+					eventClassBytes.length, ProbeSampler.class.getClassLoader(),
+					ProbeSampler.class.getProtectionDomain());
+			// NOTE: multi-release jars should let us compile against jdk9 and do direct calls here
+			Class<?> jfr = Class.forName("jdk.jfr.FlightRecorder"); //$NON-NLS-1$
+			jfr.getDeclaredMethod("addPeriodicEvent", Class.class, Runnable.class).invoke(null, eventClass, //$NON-NLS-1$
+					new StatisticsEmitter(eventClass));
+		} catch (Exception e) {
+			Agent.getLogger().log(Level.WARNING, "Failed to register the probe statistics event", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Gets the id of a probe. The first time a probe is registered, and whenever it has been
+	 * redefined by a new transform descriptor, its settings are reset to the ones in the descriptor.
+	 * Settings changed at runtime are kept when the class of the probe is retransformed.
+	 *
+	 * @param descriptor
+	 *            the transform descriptor of the probe
+	 * @return the id to pass to {@link #enter(int)} and {@link #exit(int, long)}
+	 */
+	public static synchronized int register(JFRTransformDescriptor descriptor) {
+		int id = getId(descriptor.getId());
+		Sampler sampler = samplers[id];
+		if (sampler.descriptor != descriptor) {
+			if (sampler.descriptor != null || !sampler.isConfigured) {
+				sampler.configure(descriptor.getSampleRate(), descriptor.getMaxRate(),
+						descriptor.getThresholdNanos());
+			}
+			sampler.descriptor = descriptor;
+		}
+		return id;
+	}
+
+	/**
+	 * Changes the sampling settings of a probe at runtime.
+	 *
+	 * @param probeId
+	 *            the id of the probe
+	 * @param sampleRate
+	 *            only one in this many invocations creates an event, 1 for every invocation
+	 * @param maxRate
+	 *            the maximum number of events per second, 0 for no limit
+	 * @param thresholdNanos
+	 *            the minimum duration of an invocation for its event to be committed, 0 for no
+	 *            threshold
+	 */
+	public static synchronized void configure(String probeId, int sampleRate, int maxRate, long thresholdNanos) {
+		if (sampleRate < 1 || maxRate < 0 || thresholdNanos < 0) {
+			throw new IllegalArgumentException("Invalid sampling settings for " + probeId); //$NON-NLS-1$
+		}
+		Sampler sampler = getSampler(probeId);
+		sampler.configure(sampleRate, maxRate, thresholdNanos);
+		sampler.isConfigured = true;
+	}
+
+	private static synchronized Sampler getSampler(String probeId) {
+		// The id must be resolved first, since it may replace the array
+		int id = getId(probeId);
+		return samplers[id];
+	}
+
+	private static int getId(String probeId) {
+		Integer id = IDS.get(probeId);
+		if (id == null) {
+			id = samplers.length;
+			Sampler[] newSamplers = Arrays.copyOf(samplers, id + 1);
+			newSamplers[id] = new Sampler();
+			samplers = newSamplers;
+			IDS.put(probeId, id);
+		}
+		return id;
+	}
+
+	private static final class Sampler {
+		private final ThreadLocal<int[]> counter = ThreadLocal.withInitial(() -> new int[1]);
+		private final LongAdder invocations = new LongAdder();
+		private final LongAdder committed = new LongAdder();
+		private final LongAdder droppedBySampling = new LongAdder();
+		private final LongAdder droppedByThreshold = new LongAdder();
+		private final LongAdder droppedByRateLimit = new LongAdder();
+		private final LongAdder transformations = new LongAdder();
+		private final LongAdder transformationNanos = new LongAdder();
+		private final LongAdder retransformations = new LongAdder();
+		private final LongAdder retransformationNanos = new LongAdder();
+		private final LongAdder overheadSamples = new LongAdder();
+		private final LongAdder overheadNanos = new LongAdder();
+		// Any time that is not in the future means that the bucket is full
+		private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime() - ONE_SECOND);
+		private volatile int sampleRate = 1;
+		private volatile long interval;
+		private volatile long thresholdNanos;
+		// The descriptor the settings were last reset from, guarded by the ProbeSampler class
+		private JFRTransformDescriptor descriptor;
+		// If the settings were changed at runtime before the probe was registered
+		private boolean isConfigured;
+
+		void configure(int sampleRate, int maxRate, long thresholdNanos) {
+			this.sampleRate = sampleRate;
+			this.interval = maxRate > 0 ? Math.max(1, ONE_SECOND / maxRate) : 0;
+			this.thresholdNanos = thresholdNanos;
+		}
+
+		boolean sample() {
+			invocations.increment();
+			int sampleRate = this.sampleRate;
+			if (sampleRate > 1) {
+				int[] count = counter.get();
+				if (++count[0] < sampleRate) {
+					droppedBySampling.increment();
+					return false;
+				}
+				count[0] = 0;
+			}
+			return true;
+		}
+
+		boolean tryAcquire() {
+			long interval = this.interval;
+			if (interval == 0) {
+				return true;
+			}
+			long now = System.nanoTime();
+			while (true) {
+				long arrival = theoreticalArrival.get();
+				long next = (arrival - now > 0 ? arrival : now) + interval;
+				if (next - now > ONE_SECOND) {
+					return false;
+				}
+				if (theoreticalArrival.compareAndSet(arrival, next)) {
+					return true;
+				}
+			}
+		}
+
+		ProbeStatistics getStatistics(String probeId) {
+			long samples = overheadSamples.sum();
+			return new ProbeStatistics(probeId, invocations.sum(), committed.sum(), droppedBySampling.sum(),
+					droppedByThreshold.sum(), droppedByRateLimit.sum(), transformations.sum(),
+					transformationNanos.sum(), retransformations.sum(), retransformationNanos.sum(), samples,
+					samples > 0 ? overheadNanos.sum() / samples : 0);
+		}
+	}
+
+	/**
+	 * Called by the flight recorder at the period of the statistics event.
+	 */
+	private static final class StatisticsEmitter implements Runnable {
+		private final Class<?> eventClass;
+		private final java.lang.reflect.Field probe;
+		private final java.lang.reflect.Field invocations;
+		private final java.lang.reflect.Field committed;
+		private final java.lang.reflect.Field droppedBySampling;
+		private final java.lang.reflect.Field droppedByThreshold;
+		private final java.lang.reflect.Field droppedByRateLimit;
+		private final java.lang.reflect.Field transformationTime;
+		private final java.lang.reflect.Field retransformationTime;
+		private final java.lang.reflect.Field meanCaptureOverhead;
+		private final java.lang.reflect.Field estimatedCaptureOverhead;
+		private final Method commit;
+		// The invocation and transformation counts at the previous event, indexed by probe id
+		private long[] previousActivity = new long[0];
+
+		StatisticsEmitter(Class<?> eventClass) throws ReflectiveOperationException {
+			this.eventClass = eventClass;
+			probe = eventClass.getField(FIELD_PROBE);
+			invocations = eventClass.getField(FIELD_INVOCATIONS);
+			committed = eventClass.getField(FIELD_COMMITTED);
+			droppedBySampling = eventClass.getField(FIELD_DROPPED_BY_SAMPLING);
+			droppedByThreshold = eventClass.getField(FIELD_DROPPED_BY_THRESHOLD);
+			droppedByRateLimit = eventClass.getField(FIELD_DROPPED_BY_RATE_LIMIT);
+			transformationTime = eventClass.getField(FIELD_TRANSFORMATION_TIME);
+			retransformationTime = eventClass.getField(FIELD_RETRANSFORMATION_TIME);
+			meanCaptureOverhead = eventClass.getField(FIELD_MEAN_CAPTURE_OVERHEAD);
+			estimatedCaptureOverhead = eventClass.getField(FIELD_ESTIMATED_CAPTURE_OVERHEAD);
+			commit = eventClass.getMethod("commit"); //$NON-NLS-1$
+		}
+
+		@Override
+		public void run() {
+			List<ProbeStatistics> statistics = new ArrayList<>();
+			synchronized (ProbeSampler.class) {
+				previousActivity = Arrays.copyOf(previousActivity, samplers.length);
+				for (Map.Entry<String, Integer> entry : IDS.entrySet()) {
+					ProbeStatistics probeStatistics = samplers[entry.getValue()].getStatistics(entry.getKey());
+					long activity = probeStatistics.getInvocations() + probeStatistics.getTransformations()
+							+ probeStatistics.getRetransformations();
+					if (activity != previousActivity[entry.getValue()]) {
+						previousActivity[entry.getValue()] = activity;
+						statistics.add(probeStatistics);
+					}
+				}
+			}
+			try {
+				for (ProbeStatistics probeStatistics : statistics) {
+					Object event = eventClass.getConstructor().newInstance();
+					probe.set(event, probeStatistics.getId());
+					invocations.setLong(event, probeStatistics.getInvocations());
+					committed.setLong(event, probeStatistics.getCommittedEvents());
+					droppedBySampling.setLong(event, probeStatistics.getDroppedBySampling());
+					droppedByThreshold.setLong(event, probeStatistics.getDroppedByThreshold());
+					droppedByRateLimit.setLong(event, probeStatistics.getDroppedByRateLimit());
+					transformationTime.setLong(event, probeStatistics.getTransformationNanos());
+					retransformationTime.setLong(event, probeStatistics.getRetransformationNanos());
+					meanCaptureOverhead.setLong(event, probeStatistics.getMeanCaptureOverheadNanos());
+					estimatedCaptureOverhead.setLong(event, probeStatistics.getEstimatedCaptureOverheadNanos());
+					commit.invoke(event);
+				}
+			} catch (ReflectiveOperationException e) {
+				Agent.getLogger().log(Level.WARNING, "Failed to emit the probe statistics event", e); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -44,6 +44,8 @@ import java.util.logging.Logger;
 import org.openjdk.jmc.agent.TransformDescriptor;
 import org.openjdk.jmc.agent.TransformRegistry;
 import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.jfr.ProbeStatistics;
+import org.openjdk.jmc.agent.jfr.impl.ProbeSampler;
 
 public class AgentController implements AgentControllerMXBean {
 
@@ -109,6 +111,26 @@ public class AgentController implements AgentControllerMXBean {
 		return (jfrTds.toArray(new JFRTransformDescriptor[0]));
 	}
 
+	public void setSampling(String eventId, int sampleRate, int maxEventsPerSecond, long thresholdNanos) {
+		checkSecurity();
+		for (JFRTransformDescriptor td : retrieveCurrentTransforms()) {
+			if (td.getId().equals(eventId)) {
+				ProbeSampler.configure(eventId, sampleRate, maxEventsPerSecond, thresholdNanos);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No event probe with the id " + eventId); //$NON-NLS-1$
+	}
+
+	public ProbeStatistics[] getProbeStatistics() {
+		checkSecurity();
+		List<ProbeStatistics> statistics = new ArrayList<>();
+		for (JFRTransformDescriptor td : retrieveCurrentTransforms()) {
+			statistics.add(ProbeSampler.getStatistics(td.getId()));
+		}
+		return statistics.toArray(new ProbeStatistics[0]);
+	}
+
 	public String retrieveEventProbes() {
 		checkSecurity();
 		return registry.getCurrentConfiguration();
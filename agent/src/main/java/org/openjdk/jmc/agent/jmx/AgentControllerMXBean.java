@@ -33,6 +33,7 @@
 package org.openjdk.jmc.agent.jmx;
 
 import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.jfr.ProbeStatistics;
 
 public interface AgentControllerMXBean {
 
@@ -54,4 +55,32 @@ public interface AgentControllerMXBean {
 	public String retrieveEventProbes();
 
 	public JFRTransformDescriptor[] retrieveCurrentTransforms();
+
+	/**
+	 * Changes the sampling settings of an event probe, without retransforming the instrumented
+	 * class. The settings are kept until the event probe is redefined.
+	 *
+	 * @param eventId
+	 *            the id of the event probe.
+	 * @param sampleRate
+	 *            only one in this many invocations creates an event, counted per thread. 1 means
+	 *            that every invocation creates an event.
+	 * @param maxEventsPerSecond
+	 *            the maximum number of events per second to commit, or 0 for no limit.
+	 * @param thresholdNanos
+	 *            the minimum duration in nanoseconds of an invocation for its event to be committed,
+	 *            or 0 for no threshold.
+	 * @throws IllegalArgumentException
+	 *             if there is no event probe with the given id, or the settings are invalid.
+	 */
+	public void setSampling(String eventId, int sampleRate, int maxEventsPerSecond, long thresholdNanos);
+
+	/**
+	 * Returns the overhead statistics of the currently defined event probes, counted since each
+	 * event probe was first defined. The same statistics are emitted in the periodic
+	 * {@code org.openjdk.jmc.agent.ProbeStatistics} event.
+	 *
+	 * @return the statistics of the current event probes.
+	 */
+	public ProbeStatistics[] getProbeStatistics();
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.openjdk.jmc.agent.TransformDescriptor;
+import org.openjdk.jmc.agent.TransformRegistry;
+import org.openjdk.jmc.agent.Transformer;
+import org.openjdk.jmc.agent.impl.DefaultTransformRegistry;
+import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.jfr.ProbeStatistics;
+import org.openjdk.jmc.agent.jfr.impl.LatencyAggregator;
+import org.openjdk.jmc.agent.jfr.impl.LatencyHistogram;
+import org.openjdk.jmc.agent.jfr.impl.ProbeSampler;
+import org.openjdk.jmc.agent.test.TestCompressedFrameTransformation.TestClassLoader;
+import org.openjdk.jmc.agent.test.util.TestToolkit;
+
+@SuppressWarnings("nls")
+public class TestAggregateProbes {
+	private static final String CLASS_NAME = TestDummy.class.getName();
+	private static final int INVOCATIONS = 5;
+
+	private static AtomicInteger runCount = new AtomicInteger();
+
+	private static String createProbeXML(String testName, String methodName, boolean rethrow) {
+		return createProbeXML(testName, methodName, rethrow, "");
+	}
+
+	private static String createProbeXML(String testName, String methodName, boolean rethrow, String settings) {
+		return "<jfragent>\n<events>\n<event id=\"demo.jfr.aggregate." + methodName + "\">\n" + "<label>JFR Aggregate "
+				+ methodName + " " + testName + "</label>\n<description>Aggregated " + methodName
+				+ "</description>\n<class>" + CLASS_NAME + "</class>\n<method>\n<name>" + methodName
+				+ "</name>\n<descriptor>()V</descriptor>\n</method>\n<location>WRAP</location>\n<rethrow>" + rethrow
+				+ "</rethrow>\n<aggregate>true</aggregate>\n<aggregateperiod>100 ms</aggregateperiod>\n" + settings
+				+ "</event>\n</events>\n</jfragent>";
+	}
+
+	@Test
+	public void testAggregateNormalReturn() throws Exception {
+		String testName = "Normal" + runCount.getAndIncrement();
+		assertEquals(INVOCATIONS, invokeInstrumented(createProbeXML(testName, "testWithoutException", false),
+				"testWithoutException"));
+	}
+
+	@Test
+	public void testAggregateThrow() throws Exception {
+		String testName = "Throw" + runCount.getAndIncrement();
+		assertEquals(INVOCATIONS,
+				invokeInstrumented(createProbeXML(testName, "testWithException", false), "testWithException"));
+	}
+
+	@Test
+	public void testAggregateRethrow() throws Exception {
+		String testName = "Rethrow" + runCount.getAndIncrement();
+		assertEquals(INVOCATIONS,
+				invokeInstrumented(createProbeXML(testName, "testWithException", true), "testWithException"));
+	}
+
+	@Test
+	public void testAggregateStatistics() throws Exception {
+		String testName = "Statistics" + runCount.getAndIncrement();
+		String xml = createProbeXML(testName, "testWithoutException", false,
+				"<samplerate>" + INVOCATIONS + "</samplerate>\n");
+		assertEquals(1, invokeInstrumented(xml, "testWithoutException"));
+
+		ProbeStatistics statistics = ProbeSampler.getStatistics("demo.jfr.aggregate.testWithoutException");
+		assertTrue(statistics.getInvocations() >= INVOCATIONS);
+		assertTrue(statistics.getDroppedBySampling() >= INVOCATIONS - 1);
+		assertTrue(statistics.getCommittedEvents() >= 1);
+	}
+
+	@Test
+	public void testAggregatePeriod() throws Exception {
+		String xml = createProbeXML("Period" + runCount.getAndIncrement(), "testWithoutException", false);
+		TransformRegistry registry = DefaultTransformRegistry.from(new ByteArrayInputStream(xml.getBytes()));
+		JFRTransformDescriptor td = (JFRTransformDescriptor) registry
+				.getTransformData(Type.getInternalName(TestDummy.class)).get(0);
+		assertTrue(td.isAggregate());
+		assertEquals("100 ms", td.getAggregatePeriod());
+	}
+
+	/**
+	 * Transforms {@link TestDummy}, invokes the instrumented method in a separate class loader and
+	 * returns the number of invocations recorded by the probe.
+	 */
+	private static long invokeInstrumented(String xml, String methodName) throws Exception {
+		TransformRegistry registry = DefaultTransformRegistry.from(new ByteArrayInputStream(xml.getBytes()));
+		String internalName = Type.getInternalName(TestDummy.class);
+		Transformer transformer = new Transformer(registry);
+		byte[] transformedClass = transformer.transform(TestDummy.class.getClassLoader(), internalName,
+				TestDummy.class, null, TestToolkit.getByteCode(TestDummy.class));
+		assertNotNull(transformedClass);
+
+		TransformDescriptor td = registry.getTransformData(internalName).get(0);
+		assertTrue(((JFRTransformDescriptor) td).isMatchFound());
+		LatencyHistogram histogram = LatencyAggregator
+				.getHistogram(((JFRTransformDescriptor) td).getEventClassName());
+		assertNotNull(histogram);
+		histogram.snapshotAndReset();
+
+		TestClassLoader tcl = new TestClassLoader(TestDummy.class.getClassLoader());
+		tcl.putClassBuffer(CLASS_NAME, transformedClass);
+		Class<?> dummyClass = Class.forName(CLASS_NAME, true, tcl);
+		Object dummy = dummyClass.getConstructor().newInstance();
+		Method method = dummyClass.getMethod(methodName);
+		for (int i = 0; i < INVOCATIONS; i++) {
+			try {
+				method.invoke(dummy);
+			} catch (InvocationTargetException e) {
+				if (!(e.getCause() instanceof RuntimeException)) {
+					fail("Unexpected exception " + e.getCause());
+				}
+			}
+		}
+		return histogram.snapshotAndReset().getCount();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openjdk.jmc.agent.jfr.impl.LatencyHistogram;
+
+public class TestLatencyHistogram {
+	private static final double RELATIVE_ERROR = 1.0 / 32;
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100_000; i++) {
+			histogram.record(i * 1000);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(100_000, snapshot.getCount());
+		assertEquals(1000, snapshot.getMinimum());
+		assertEquals(100_000_000, snapshot.getMaximum());
+		assertEquals(50_000_500, snapshot.getMean());
+		assertWithin(50_000_000, snapshot.getPercentile(50));
+		assertWithin(90_000_000, snapshot.getPercentile(90));
+		assertWithin(99_000_000, snapshot.getPercentile(99));
+		assertWithin(99_900_000, snapshot.getPercentile(99.9));
+		assertEquals(100_000_000, snapshot.getPercentile(100));
+	}
+
+	@Test
+	public void testSmallAndLargeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(3);
+		histogram.record(Long.MAX_VALUE);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(3, snapshot.getCount());
+		assertEquals(0, snapshot.getMinimum());
+		assertEquals(0, snapshot.getPercentile(1));
+		assertEquals(3, snapshot.getPercentile(50));
+		assertEquals(Long.MAX_VALUE, snapshot.getMaximum());
+	}
+
+	@Test
+	public void testSnapshotResets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(100);
+		assertEquals(1, histogram.snapshotAndReset().getCount());
+		LatencyHistogram.Snapshot empty = histogram.snapshotAndReset();
+		assertEquals(0, empty.getCount());
+		assertEquals(0, empty.getMinimum());
+		assertEquals(0, empty.getMaximum());
+		assertEquals(0, empty.getPercentile(50));
+		histogram.record(200);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(200, snapshot.getMinimum());
+		assertEquals(200, snapshot.getMaximum());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int threadCount = 8;
+		int recordsPerThread = 50_000;
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			long value = (i + 1) * 1000;
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < recordsPerThread; j++) {
+					histogram.record(value);
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(threadCount * recordsPerThread, snapshot.getCount());
+		assertEquals(1000, snapshot.getMinimum());
+		assertEquals(threadCount * 1000, snapshot.getMaximum());
+		assertEquals((threadCount + 1) * 1000 / 2, snapshot.getMean());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("Expected " + expected + " but was " + actual,
+				Math.abs(actual - expected) <= expected * RELATIVE_ERROR);
+	}
+}
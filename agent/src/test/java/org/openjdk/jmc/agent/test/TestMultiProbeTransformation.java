@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.openjdk.jmc.agent.TransformDescriptor;
+import org.openjdk.jmc.agent.TransformRegistry;
+import org.openjdk.jmc.agent.Transformer;
+import org.openjdk.jmc.agent.impl.DefaultTransformRegistry;
+import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.test.TestCompressedFrameTransformation.TestClassLoader;
+import org.openjdk.jmc.agent.test.util.TestToolkit;
+
+@SuppressWarnings("nls")
+public class TestMultiProbeTransformation {
+	private static final String CLASS_NAME = InstrumentMe.class.getName();
+	private static final String[][] METHODS = {{"printHelloWorldJFR1", "()V"}, {"printHelloWorldJFR3",
+			"(Lorg/openjdk/jmc/agent/test/Gurka;)V"}, {"printHelloWorldJFR7", "()V"}, {"printHelloWorldJFR8", "()V"},
+			{"printHelloWorldJFR14", "(Ljava/lang/Thread;)V"}, {"printInstanceHelloWorldJFR1", "()V"},
+			{"printInstanceHelloWorldJFR3", "(Lorg/openjdk/jmc/agent/test/Gurka;)V"},
+			{"printInstanceHelloWorldJFR8", "()V"}, {"printInstanceHelloWorldJFR10", "()V"},
+			{"printInstanceHelloWorldJFR12", "()V"}};
+
+	private static AtomicInteger runCount = new AtomicInteger();
+
+	/**
+	 * Creates a probe definition with the probes in the given range on methods of
+	 * {@link InstrumentMe}. Once all the methods have a probe, more probes are added to the same
+	 * methods.
+	 */
+	static String createProbesXML(String testName, int fromProbe, int toProbe) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("<jfragent><config><allowtostring>true</allowtostring></config><events>\n");
+		for (int i = fromProbe; i < toProbe; i++) {
+			String[] method = METHODS[i % METHODS.length];
+			builder.append("<event id=\"demo.jfr.multi" + i + "\">\n");
+			builder.append("<label>JFR Multi Probe Event " + i + " " + testName + "</label>\n");
+			builder.append("<description>Multi probe event " + i + "</description>\n");
+			builder.append("<class>" + CLASS_NAME + "</class>\n");
+			builder.append("<method>\n<name>" + method[0] + "</name>\n<descriptor>" + method[1] + "</descriptor>\n");
+			if (method[1].startsWith("(L")) {
+				builder.append("<parameters>\n<parameter index=\"0\">\n<name>arg</name>\n");
+				builder.append("<description>The first parameter</description>\n</parameter>\n</parameters>\n");
+			}
+			builder.append("</method>\n<location>WRAP</location>\n</event>\n");
+		}
+		builder.append("</events></jfragent>");
+		return builder.toString();
+	}
+
+	@Test
+	public void testMultipleProbesInOnePass() throws Exception {
+		int probeCount = METHODS.length + 3;
+		TransformRegistry registry = DefaultTransformRegistry.from(new ByteArrayInputStream(
+				createProbesXML("OnePass" + runCount.getAndIncrement(), 0, probeCount).getBytes()));
+		String internalName = Type.getInternalName(InstrumentMe.class);
+		assertEquals(probeCount, registry.getTransformData(internalName).size());
+
+		Transformer transformer = new Transformer(registry);
+		byte[] transformedClass = transformer.transform(InstrumentMe.class.getClassLoader(), internalName,
+				InstrumentMe.class, null, TestToolkit.getByteCode(InstrumentMe.class));
+
+		assertNotNull(transformedClass);
+		assertFalse(registry.hasPendingTransforms(internalName));
+		List<String> unmatched = new ArrayList<>();
+		for (TransformDescriptor td : registry.getTransformData(internalName)) {
+			if (!((JFRTransformDescriptor) td).isMatchFound()) {
+				unmatched.add(td.getId());
+			}
+		}
+		assertTrue("Probes not applied: " + unmatched, unmatched.isEmpty());
+
+		// Loading and initializing the class makes the JVM verify all the instrumented methods
+		TestClassLoader tcl = new TestClassLoader(InstrumentMe.class.getClassLoader());
+		tcl.putClassBuffer(CLASS_NAME, transformedClass);
+		Class.forName(CLASS_NAME, true, tcl);
+	}
+}
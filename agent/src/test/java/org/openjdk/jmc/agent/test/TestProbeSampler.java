@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.jfr.Recording;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.openjdk.jmc.agent.TransformRegistry;
+import org.openjdk.jmc.agent.Transformer;
+import org.openjdk.jmc.agent.impl.DefaultTransformRegistry;
+import org.openjdk.jmc.agent.jfr.JFRTransformDescriptor;
+import org.openjdk.jmc.agent.jfr.ProbeStatistics;
+import org.openjdk.jmc.agent.jfr.impl.ProbeSampler;
+import org.openjdk.jmc.agent.test.TestCompressedFrameTransformation.TestClassLoader;
+import org.openjdk.jmc.agent.test.util.TestToolkit;
+
+@SuppressWarnings("nls")
+public class TestProbeSampler {
+	private static final String CLASS_NAME = TestDummy.class.getName();
+
+	private static AtomicInteger runCount = new AtomicInteger();
+
+	private static String createProbeXML(String id, String sampling) {
+		return "<jfragent>\n<events>\n<event id=\"" + id + "\">\n<label>JFR Sampled " + id
+				+ "</label>\n<description>Sampled event</description>\n<class>" + CLASS_NAME
+				+ "</class>\n<method>\n<name>testWithoutException</name>\n<descriptor>()V</descriptor>\n"
+				+ "</method>\n<location>WRAP</location>\n" + sampling + "</event>\n</events>\n</jfragent>";
+	}
+
+	private static JFRTransformDescriptor createDescriptor(String id, String sampling) throws Exception {
+		TransformRegistry registry = DefaultTransformRegistry
+				.from(new ByteArrayInputStream(createProbeXML(id, sampling).getBytes()));
+		return (JFRTransformDescriptor) registry.getTransformData(Type.getInternalName(TestDummy.class)).get(0);
+	}
+
+	private static String nextId() {
+		return "demo.jfr.sampled" + runCount.getAndIncrement();
+	}
+
+	@Test
+	public void testDescriptorSettings() throws Exception {
+		JFRTransformDescriptor td = createDescriptor(nextId(),
+				"<samplerate>10</samplerate>\n<maxrate>100</maxrate>\n<threshold>20 ms</threshold>\n");
+		assertEquals(10, td.getSampleRate());
+		assertEquals(100, td.getMaxRate());
+		assertEquals(20_000_000, td.getThresholdNanos());
+
+		td = createDescriptor(nextId(), "");
+		assertEquals(1, td.getSampleRate());
+		assertEquals(0, td.getMaxRate());
+		assertEquals(0, td.getThresholdNanos());
+	}
+
+	@Test
+	public void testSampleRate() throws Exception {
+		int id = ProbeSampler.register(createDescriptor(nextId(), "<samplerate>4</samplerate>\n"));
+		int sampled = 0;
+		for (int i = 0; i < 100; i++) {
+			if (ProbeSampler.enter(id) != ProbeSampler.NOT_SAMPLED) {
+				sampled++;
+			}
+		}
+		assertEquals(25, sampled);
+	}
+
+	@Test
+	public void testMaxRate() throws Exception {
+		int id = ProbeSampler.register(createDescriptor(nextId(), "<maxrate>10</maxrate>\n"));
+		int committed = 0;
+		for (int i = 0; i < 1000; i++) {
+			long start = ProbeSampler.enter(id);
+			if (ProbeSampler.exit(id, start) != ProbeSampler.DROPPED) {
+				committed++;
+			}
+		}
+		// The bucket holds one second worth of events, a few more may be let through if the loop is slow
+		assertTrue("Committed " + committed, committed >= 10 && committed < 20);
+	}
+
+	@Test
+	public void testThreshold() throws Exception {
+		String probeId = nextId();
+		int id = ProbeSampler.register(createDescriptor(probeId, "<threshold>1 h</threshold>\n"));
+		long start = ProbeSampler.enter(id);
+		assertNotEquals(0, start);
+		assertEquals(ProbeSampler.DROPPED, ProbeSampler.exit(id, start));
+
+		ProbeSampler.configure(probeId, 1, 0, 1);
+		start = ProbeSampler.enter(id);
+		Thread.sleep(1);
+		assertNotEquals(ProbeSampler.DROPPED, ProbeSampler.exit(id, start));
+	}
+
+	@Test
+	public void testRuntimeSettings() throws Exception {
+		String probeId = nextId();
+		JFRTransformDescriptor td = createDescriptor(probeId, "");
+		int id = ProbeSampler.register(td);
+		ProbeSampler.configure(probeId, 1000, 0, 0);
+		assertEquals(ProbeSampler.NOT_SAMPLED, ProbeSampler.enter(id));
+
+		// Retransforming with the same descriptor keeps the runtime settings
+		assertEquals(id, ProbeSampler.register(td));
+		assertEquals(ProbeSampler.NOT_SAMPLED, ProbeSampler.enter(id));
+
+		// Redefining the probe resets them
+		assertEquals(id, ProbeSampler.register(createDescriptor(probeId, "")));
+		assertNotEquals(ProbeSampler.NOT_SAMPLED, ProbeSampler.enter(id));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRuntimeSettings() {
+		ProbeSampler.configure(nextId(), 0, 0, 0);
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		String probeId = nextId();
+		int id = ProbeSampler.register(createDescriptor(probeId, "<samplerate>2</samplerate>\n<maxrate>1</maxrate>\n"));
+		int committed = 0;
+		for (int i = 0; i < 200; i++) {
+			long start = ProbeSampler.enter(id);
+			if (start != ProbeSampler.NOT_SAMPLED) {
+				start = ProbeSampler.exit(id, start);
+				if (start != ProbeSampler.DROPPED) {
+					ProbeSampler.committed(id, start);
+					committed++;
+				}
+			}
+		}
+		ProbeSampler.recordTransformation(probeId, 1000, false);
+		ProbeSampler.recordTransformation(probeId, 3000, true);
+
+		ProbeStatistics statistics = ProbeSampler.getStatistics(probeId);
+		assertEquals(probeId, statistics.getId());
+		assertEquals(200, statistics.getInvocations());
+		assertEquals(100, statistics.getDroppedBySampling());
+		assertEquals(0, statistics.getDroppedByThreshold());
+		assertEquals(committed, statistics.getCommittedEvents());
+		assertEquals(100 - committed, statistics.getDroppedByRateLimit());
+		assertEquals(1, statistics.getTransformations());
+		assertEquals(1000, statistics.getTransformationNanos());
+		assertEquals(1, statistics.getRetransformations());
+		assertEquals(3000, statistics.getRetransformationNanos());
+		assertTrue(statistics.getCaptureOverheadSamples() <= committed);
+		assertEquals(statistics.getMeanCaptureOverheadNanos() * committed,
+				statistics.getEstimatedCaptureOverheadNanos());
+	}
+
+	@Test
+	public void testSampledTransformation() throws Exception {
+		String probeId = nextId();
+		String xml = createProbeXML(probeId,
+				"<samplerate>2</samplerate>\n<maxrate>1000</maxrate>\n<threshold>1 ns</threshold>\n");
+		TransformRegistry registry = DefaultTransformRegistry.from(new ByteArrayInputStream(xml.getBytes()));
+		Transformer transformer = new Transformer(registry);
+		byte[] transformedClass = transformer.transform(TestDummy.class.getClassLoader(),
+				Type.getInternalName(TestDummy.class), TestDummy.class, null, TestToolkit.getByteCode(TestDummy.class));
+		assertNotNull(transformedClass);
+
+		// Loading the class makes the JVM verify the instrumented method
+		TestClassLoader tcl = new TestClassLoader(TestDummy.class.getClassLoader());
+		tcl.putClassBuffer(CLASS_NAME, transformedClass);
+		Class<?> dummyClass = Class.forName(CLASS_NAME, true, tcl);
+		Object dummy = dummyClass.getConstructor().newInstance();
+		Method method = dummyClass.getMethod("testWithoutException");
+
+		// Invocations are neither sampled nor counted while the event is disabled
+		for (int i = 0; i < 4; i++) {
+			method.invoke(dummy);
+		}
+		ProbeStatistics statistics = ProbeSampler.getStatistics(probeId);
+		assertEquals(0, statistics.getInvocations());
+		assertEquals(0, statistics.getDroppedBySampling());
+
+		String eventName = registry.getTransformData(Type.getInternalName(TestDummy.class)).stream()
+				.map(td -> ((JFRTransformDescriptor) td).getEventClassName().replace('/', '.')).findFirst().get();
+		try (Recording recording = new Recording()) {
+			recording.enable(eventName);
+			recording.start();
+			for (int i = 0; i < 4; i++) {
+				method.invoke(dummy);
+			}
+		}
+		statistics = ProbeSampler.getStatistics(probeId);
+		assertEquals(4, statistics.getInvocations());
+		assertEquals(2, statistics.getDroppedBySampling());
+		assertEquals(1, statistics.getRetransformations());
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.agent.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+import org.openjdk.jmc.agent.TransformRegistry;
+import org.openjdk.jmc.agent.Transformer;
+import org.openjdk.jmc.agent.impl.DefaultTransformRegistry;
+import org.openjdk.jmc.agent.test.util.TestToolkit;
+
+/**
+ * Measures the time it takes to transform a class with N probes, both with all probes applied in
+ * one pass and with one pass per probe. Not run as part of the tests, run the main method with the
+ * number of probes to measure as arguments, and with the same JVM arguments as the tests, i.e.
+ * {@code --add-opens java.base/jdk.internal.misc=ALL-UNNAMED -XX:+FlightRecorder}.
+ */
+@SuppressWarnings("nls")
+public class TransformBenchmark {
+	private static final int WARMUP_ITERATIONS = 20;
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) throws Exception {
+		int[] probeCounts = args.length > 0 ? new int[args.length] : new int[] {1, 4, 16, 64};
+		for (int i = 0; i < args.length; i++) {
+			probeCounts[i] = Integer.parseInt(args[i]);
+		}
+		byte[] classfileBuffer = TestToolkit.getByteCode(InstrumentMe.class);
+		System.out.println("Probes\tOne pass (ms)\tPass per probe (ms)");
+		for (int probeCount : probeCounts) {
+			String xml = TestMultiProbeTransformation.createProbesXML("Benchmark", 0, probeCount);
+			List<String> singleProbeXmls = new ArrayList<>();
+			for (int i = 0; i < probeCount; i++) {
+				singleProbeXmls.add(TestMultiProbeTransformation.createProbesXML("Benchmark", i, i + 1));
+			}
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				transformOnePass(xml, classfileBuffer);
+				transformPassPerProbe(singleProbeXmls, classfileBuffer);
+			}
+			long onePass = 0;
+			long passPerProbe = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				onePass += transformOnePass(xml, classfileBuffer);
+				passPerProbe += transformPassPerProbe(singleProbeXmls, classfileBuffer);
+			}
+			System.out.printf("%d\t%.3f\t%.3f%n", probeCount, onePass / 1e6 / ITERATIONS,
+					passPerProbe / 1e6 / ITERATIONS);
+		}
+	}
+
+	private static long transformOnePass(String xml, byte[] classfileBuffer) throws Exception {
+		TransformRegistry registry = DefaultTransformRegistry.from(new ByteArrayInputStream(xml.getBytes()));
+		long start = System.nanoTime();
+		transform(registry, classfileBuffer);
+		return System.nanoTime() - start;
+	}
+
+	private static long transformPassPerProbe(List<String> xmls, byte[] classfileBuffer) throws Exception {
+		List<TransformRegistry> registries = new ArrayList<>();
+		for (String xml : xmls) {
+			registries.add(DefaultTransformRegistry.from(new ByteArrayInputStream(xml.getBytes())));
+		}
+		long start = System.nanoTime();
+		for (TransformRegistry registry : registries) {
+			classfileBuffer = transform(registry, classfileBuffer);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static byte[] transform(TransformRegistry registry, byte[] classfileBuffer) throws Exception {
+		// The event classes are defined in a new class loader each time, to avoid name clashes
+		ClassLoader loader = new ClassLoader(InstrumentMe.class.getClassLoader()) {
+		};
+		return new Transformer(registry).transform(loader, Type.getInternalName(InstrumentMe.class),
+				InstrumentMe.class, null, classfileBuffer);
+	}
+}
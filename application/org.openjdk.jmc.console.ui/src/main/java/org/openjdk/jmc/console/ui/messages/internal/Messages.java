@@ -54,10 +54,12 @@ public class Messages extends NLS {
 	public static String CPU_USAGE_DESCRIPTION_TEXT;
 	public static String CPU_USAGE_NAME_TEXT;
 	public static String CommunicationPage_CAPTION_DEFAULT_UPDATE_INTERVAL;
+	public static String CommunicationPage_CAPTION_DOWNSAMPLE_RETAINED_EVENT_VALUES;
 	public static String CommunicationPage_CAPTION_MAIL_SERVER;
 	public static String CommunicationPage_CAPTION_MAIL_SERVER_PASSWORD;
 	public static String CommunicationPage_CAPTION_MAIL_SERVER_PORT;
 	public static String CommunicationPage_CAPTION_MAIL_SERVER_USER;
+	public static String CommunicationPage_CAPTION_RAW_RETAINED_EVENT_VALUES;
 	public static String CommunicationPage_CAPTION_RETAINED_EVENT_VALUES;
 	public static String CommunicationPage_CAPTION_SECURE_MAIL_SERVER;
 	public static String CommunicationPage_CAPTION_SECURE_MAIL_SERVER_STARTTLS;
@@ -80,8 +82,12 @@ public class Messages extends NLS {
 	public static String HeapHistogram_CLASS_COLUMN_TEXT;
 	public static String HeapHistogram_DELTA_COLUMN_TEXT;
 	public static String HeapHistogram_FAILED_TO_REFRESH;
+	public static String HeapHistogram_GROWTH_RATE_COLUMN_DESCRIPTION;
+	public static String HeapHistogram_GROWTH_RATE_COLUMN_TEXT;
 	public static String HeapHistogram_INSTANCES_COLUMN_TEXT;
 	public static String HeapHistogram_JVM_PERFORMANCE_WILL_BE_AFFECTED;
+	public static String HeapHistogram_MONOTONICITY_COLUMN_DESCRIPTION;
+	public static String HeapHistogram_MONOTONICITY_COLUMN_TEXT;
 	public static String HeapHistogram_REFRESHING_HEAP_HISTOGRAM;
 	public static String HeapHistogram_REFRESH_ACTION_TOOLTIP;
 	public static String HeapHistogram_RESET_DELTA_ACTION_DESCRIPTION;
@@ -89,6 +95,8 @@ public class Messages extends NLS {
 	public static String HeapHistogram_RESET_DELTA_ACTION_TOOLTOP;
 	public static String HeapHistogram_SHOW_WARNING_BEFORE_UPDATING;
 	public static String HeapHistogram_SIZE_COLUMN_TEXT;
+	public static String HeapHistogram_SUSPECT_RANK_COLUMN_DESCRIPTION;
+	public static String HeapHistogram_SUSPECT_RANK_COLUMN_TEXT;
 	public static String HeapHistogram_TITLE;
 	public static String HeapHistogram_WARNING_DIALOG_TITLE;
 	public static String IS_DEADLOCKED_DESCRIPTION_TEXT;
@@ -132,6 +140,7 @@ public class Messages extends NLS {
 	public static String POOL_PEAK_USED_NAME_TEXT;
 	public static String POOL_TYPE_NAME_TEXT;
 	public static String PROCESS_ID_LABEL;
+	public static String PersistencePage_CAPTION_COMPRESSED;
 	public static String PersistencePage_CAPTION_LOG_ROTATION_LIMIT_KB;
 	public static String PersistencePage_CAPTION_PERSISTENCE_DIRECTORY;
 	public static String PersistencePage_DESCRIPTION;
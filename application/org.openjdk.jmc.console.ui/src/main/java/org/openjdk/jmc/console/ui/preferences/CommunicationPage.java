@@ -106,6 +106,16 @@ public class CommunicationPage extends FieldEditorPreferencePage implements IWor
 		retainedEventValues.getTextControl(retainedEventParent).setData(TEXT_FIELD_NAME_KEY, RETAINED_EVENT_FIELD_NAME);
 		addField(retainedEventValues);
 
+		BooleanFieldEditor downsampleEventValues = new BooleanFieldEditor(
+				PreferencesKeys.PROPERTY_DOWNSAMPLE_RETAINED_EVENT_VALUES,
+				Messages.CommunicationPage_CAPTION_DOWNSAMPLE_RETAINED_EVENT_VALUES, getFieldEditorParent());
+		addField(downsampleEventValues);
+
+		IntegerFieldEditor rawEventValues = new IntegerFieldEditor(PreferencesKeys.PROPERTY_RAW_RETAINED_EVENT_VALUES,
+				Messages.CommunicationPage_CAPTION_RAW_RETAINED_EVENT_VALUES, getFieldEditorParent());
+		rawEventValues.setValidRange(1, Integer.MAX_VALUE);
+		addField(rawEventValues);
+
 		Composite mailServerParent = getFieldEditorParent();
 		StringFieldEditor mailServer = new StringFieldEditor(PreferencesKeys.PROPERTY_MAIL_SERVER,
 				Messages.CommunicationPage_CAPTION_MAIL_SERVER, mailServerParent);
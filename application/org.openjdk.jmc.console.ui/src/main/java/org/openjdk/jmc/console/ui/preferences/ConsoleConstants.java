@@ -44,4 +44,7 @@ public class ConsoleConstants {
 	public static final int DEFAULT_THREAD_DUMP_INTERVAL = 3000;
 	public static final boolean DEFAULT_HEAPHISTOGRAM_UPDATE_WARNING = true;
 
+	// Maximum number of frames fetched for the stack traces of the selected threads
+	public static final int MAX_THREAD_STACK_DEPTH = 1024;
+
 }
@@ -35,6 +35,7 @@ package org.openjdk.jmc.console.ui.preferences;
 import java.io.File;
 
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.swt.SWT;
@@ -63,6 +64,7 @@ public class PersistencePage extends FieldEditorPreferencePage implements IWorkb
 	protected void createFieldEditors() {
 		createPersistenceDirectory();
 		createLogRotationLimit();
+		createCompressed();
 		createSpace();
 	}
 
@@ -80,6 +82,11 @@ public class PersistencePage extends FieldEditorPreferencePage implements IWorkb
 		logRotationLimit.setValidRange(1, Integer.MAX_VALUE);
 	}
 
+	private void createCompressed() {
+		addField(new BooleanFieldEditor(PreferencesKeys.PROPERTY_PERSISTENCE_COMPRESSED,
+				Messages.PersistencePage_CAPTION_COMPRESSED, getFieldEditorParent()));
+	}
+
 	private void createPersistenceDirectory() {
 		DirectoryFieldEditor persistenceDirectory = new DirectoryFieldEditor(
 				PreferencesKeys.PROPERTY_PERSISTENCE_DIRECTORY, Messages.PersistencePage_CAPTION_PERSISTENCE_DIRECTORY,
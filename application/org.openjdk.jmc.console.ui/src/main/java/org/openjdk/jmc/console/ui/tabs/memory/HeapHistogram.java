@@ -37,8 +37,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -81,10 +79,12 @@ import org.openjdk.jmc.ui.misc.MCSectionPart;
 import org.openjdk.jmc.ui.misc.MementoToolkit;
 
 public class HeapHistogram extends MCSectionPart {
-	private static final Pattern LINE_PATTERN = Pattern.compile("(\\d+)\\s+(\\d+)\\s+(.+)"); //$NON-NLS-1$
+	// The number of classes that are ranked as leak suspects
+	private static final int MAX_LEAK_SUSPECTS = 20;
 	private static final String DIAGNOSTIC_COMMAND = "GC.class_histogram -all=false"; //$NON-NLS-1$
 	private final IDiagnosticCommandService service;
 	private final Map<String, HistogramItem> model = new HashMap<>();
+	private final HeapHistogramSeries series = new HeapHistogramSeries();
 	private final ColumnManager columnManager;
 
 	private static class HistogramItem {
@@ -92,6 +92,9 @@ public class HeapHistogram extends MCSectionPart {
 		int count;
 		long memory;
 		long memoryReference;
+		double bytesPerSecond;
+		double monotonicity;
+		Integer suspectRank;
 
 		static final IMemberAccessor<String, HistogramItem> GET_CLASS = new IMemberAccessor<String, HistogramItem>() {
 
@@ -129,13 +132,44 @@ public class HeapHistogram extends MCSectionPart {
 
 		};
 
+		static final IMemberAccessor<IQuantity, HistogramItem> GET_GROWTH_RATE = new IMemberAccessor<IQuantity, HistogramItem>() {
+
+			@Override
+			public IQuantity getMember(HistogramItem i) {
+				return UnitLookup.BYTE.quantity(Math.round(i.bytesPerSecond * 60));
+			}
+
+		};
+
+		static final IMemberAccessor<IQuantity, HistogramItem> GET_MONOTONICITY = new IMemberAccessor<IQuantity, HistogramItem>() {
+
+			@Override
+			public IQuantity getMember(HistogramItem i) {
+				return UnitLookup.PERCENT_UNITY.quantity(i.monotonicity);
+			}
+
+		};
+
+		static final IMemberAccessor<Integer, HistogramItem> GET_SUSPECT_RANK = new IMemberAccessor<Integer, HistogramItem>() {
+
+			@Override
+			public Integer getMember(HistogramItem i) {
+				return i.suspectRank;
+			}
+
+		};
+
 	}
 
 	private final Action resetAction = new Action(Messages.HeapHistogram_RESET_DELTA_ACTION_TEXT) {
 		@Override
 		public void run() {
+			series.clear();
 			for (HistogramItem item : model.values()) {
 				item.memoryReference = item.memory;
+				item.bytesPerSecond = 0;
+				item.monotonicity = 0;
+				item.suspectRank = null;
 			}
 			columnManager.getViewer().refresh();
 		};
@@ -227,7 +261,17 @@ public class HeapHistogram extends MCSectionPart {
 				.style(SWT.RIGHT).build();
 		IColumn deltaColumn = new ColumnBuilder(Messages.HeapHistogram_DELTA_COLUMN_TEXT, "delta", //$NON-NLS-1$
 				HistogramItem.GET_DELTA).style(SWT.RIGHT).build();
-		List<IColumn> columns = Arrays.asList(classColumn, countColumn, bytesColumn, deltaColumn);
+		IColumn growthRateColumn = new ColumnBuilder(Messages.HeapHistogram_GROWTH_RATE_COLUMN_TEXT,
+				"growthRate", HistogramItem.GET_GROWTH_RATE) //$NON-NLS-1$
+						.description(Messages.HeapHistogram_GROWTH_RATE_COLUMN_DESCRIPTION).style(SWT.RIGHT).build();
+		IColumn monotonicityColumn = new ColumnBuilder(Messages.HeapHistogram_MONOTONICITY_COLUMN_TEXT,
+				"monotonicity", HistogramItem.GET_MONOTONICITY) //$NON-NLS-1$
+						.description(Messages.HeapHistogram_MONOTONICITY_COLUMN_DESCRIPTION).style(SWT.RIGHT).build();
+		IColumn suspectRankColumn = new ColumnBuilder(Messages.HeapHistogram_SUSPECT_RANK_COLUMN_TEXT,
+				"suspectRank", HistogramItem.GET_SUSPECT_RANK) //$NON-NLS-1$
+						.description(Messages.HeapHistogram_SUSPECT_RANK_COLUMN_DESCRIPTION).style(SWT.RIGHT).build();
+		List<IColumn> columns = Arrays.asList(classColumn, countColumn, bytesColumn, deltaColumn, growthRateColumn,
+				monotonicityColumn, suspectRankColumn);
 		columnManager = ColumnManager.build(viewer, columns, TableSettings.forState(MementoToolkit.asState(state)));
 		MCContextMenuManager mm = MCContextMenuManager.create(table);
 		ColumnMenusFactory.addDefaultMenus(columnManager, mm);
@@ -244,21 +288,20 @@ public class HeapHistogram extends MCSectionPart {
 	}
 
 	private void parseHistogram(String histogram) {
+		series.addSnapshot(System.currentTimeMillis(), histogram);
 		model.values().forEach(item -> item.count = 0);
-		Matcher m = LINE_PATTERN.matcher(histogram);
-		while (m.find()) {
-			int count = Integer.parseInt(m.group(1));
-			long memory = Long.parseLong(m.group(2));
-			String className = m.group(3).trim();
-
-			HistogramItem item = model.get(className);
+		for (HeapHistogramSeries.Trend trend : series.getTrends()) {
+			HistogramItem item = model.get(trend.getClassName());
 			if (item == null) {
 				item = new HistogramItem();
-				item.className = className;
-				model.put(className, item);
+				item.className = trend.getClassName();
+				model.put(trend.getClassName(), item);
 			}
-			item.count = count;
-			item.memory = memory;
+			item.count = (int) trend.getCount();
+			item.memory = trend.getBytes();
+			item.bytesPerSecond = trend.getBytesPerSecond();
+			item.monotonicity = trend.getMonotonicity();
+			item.suspectRank = null;
 		}
 		Iterator<HistogramItem> iterator = model.values().iterator();
 		while (iterator.hasNext()) {
@@ -266,6 +309,10 @@ public class HeapHistogram extends MCSectionPart {
 				iterator.remove();
 			}
 		}
+		int rank = 1;
+		for (HeapHistogramSeries.Trend suspect : series.getLeakSuspects(MAX_LEAK_SUSPECTS)) {
+			model.get(suspect.getClassName()).suspectRank = rank++;
+		}
 	}
 
 	public static HeapHistogram create(
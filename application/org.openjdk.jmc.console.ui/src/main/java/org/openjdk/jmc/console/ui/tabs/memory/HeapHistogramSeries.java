@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.console.ui.tabs.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A time series of heap histograms, used to find the classes whose instances keep growing.
+ * <p>
+ * The output of {@code GC.class_histogram} is parsed line by line without regular expressions. The
+ * instance count and size of each class are kept in one column per class, with one slot for each
+ * snapshot. When the maximum number of snapshots is reached, the oldest snapshot is overwritten.
+ * <p>
+ * The trend of a class is the slope of a least squares regression of its size over time, together
+ * with its monotonicity, the part of the changes between consecutive snapshots that are increases.
+ * Classes that grow steadily are ranked as leak suspects by their growth rate weighted by the
+ * monotonicity, so that classes that grow and shrink with the load rank lower.
+ * <p>
+ * This class is not thread safe.
+ */
+public class HeapHistogramSeries {
+
+	/**
+	 * The default maximum number of snapshots to keep.
+	 */
+	public static final int DEFAULT_MAX_SNAPSHOTS = 256;
+
+	// The minimum number of snapshots needed to compute a trend
+	private static final int MIN_TREND_SNAPSHOTS = 3;
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The latest values and the trend of a class.
+	 */
+	public static class Trend {
+		private final String className;
+		private final long count;
+		private final long bytes;
+		private final double bytesPerSecond;
+		private final double monotonicity;
+
+		Trend(String className, long count, long bytes, double bytesPerSecond, double monotonicity) {
+			this.className = className;
+			this.count = count;
+			this.bytes = bytes;
+			this.bytesPerSecond = bytesPerSecond;
+			this.monotonicity = monotonicity;
+		}
+
+		/**
+		 * @return the name of the class, as given in the histogram
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * @return the number of instances in the latest snapshot
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the size of the instances in bytes in the latest snapshot
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the slope of the size over time in bytes per second, or 0 if there are too few
+		 *         snapshots
+		 */
+		public double getBytesPerSecond() {
+			return bytesPerSecond;
+		}
+
+		/**
+		 * @return the part of the size changes between consecutive snapshots that are increases,
+		 *         between 0 and 1, or 0 if the size never changed
+		 */
+		public double getMonotonicity() {
+			return monotonicity;
+		}
+
+		/**
+		 * @return the growth rate weighted by the monotonicity, or 0 if the class is not growing
+		 */
+		public double getLeakScore() {
+			return bytesPerSecond > 0 ? bytesPerSecond * monotonicity : 0;
+		}
+
+		@Override
+		public String toString() {
+			return className + "=" + bytesPerSecond; //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * The values of a class, indexed by snapshot slot. The arrays are grown when written to, so
+	 * slots beyond their length are zero.
+	 */
+	private static class ClassColumns {
+		private final String className;
+		private long[] counts = new long[0];
+		private long[] bytes = new long[0];
+		// The sequence number of the latest snapshot the class was in
+		private long lastSeen;
+
+		ClassColumns(String className) {
+			this.className = className;
+		}
+
+		long getCount(int slot) {
+			return slot < counts.length ? counts[slot] : 0;
+		}
+
+		long getBytes(int slot) {
+			return slot < bytes.length ? bytes[slot] : 0;
+		}
+
+		void set(int slot, long count, long size, int capacity) {
+			if (slot >= counts.length) {
+				counts = Arrays.copyOf(counts, capacity);
+				bytes = Arrays.copyOf(bytes, capacity);
+			}
+			counts[slot] = count;
+			bytes[slot] = size;
+		}
+	}
+
+	private final int maxSnapshots;
+	private final Map<String, ClassColumns> columns = new HashMap<>();
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	// The slot of the oldest snapshot, only non-zero once the maximum number of snapshots is reached
+	private int first;
+	private int size;
+	private long sequence;
+
+	/**
+	 * Create a series that keeps up to {@link #DEFAULT_MAX_SNAPSHOTS} snapshots.
+	 */
+	public HeapHistogramSeries() {
+		this(DEFAULT_MAX_SNAPSHOTS);
+	}
+
+	/**
+	 * @param maxSnapshots
+	 *            the maximum number of snapshots to keep, at least 2
+	 */
+	public HeapHistogramSeries(int maxSnapshots) {
+		if (maxSnapshots < 2) {
+			throw new IllegalArgumentException("At least two snapshots must be kept"); //$NON-NLS-1$
+		}
+		this.maxSnapshots = maxSnapshots;
+	}
+
+	/**
+	 * Add a snapshot, replacing the oldest snapshot if the maximum number of snapshots is reached.
+	 *
+	 * @param timestamp
+	 *            the time of the snapshot in milliseconds
+	 * @param histogram
+	 *            the output of the {@code GC.class_histogram} diagnostic command
+	 */
+	public void addSnapshot(long timestamp, CharSequence histogram) {
+		int slot;
+		if (size < maxSnapshots) {
+			if (size == timestamps.length) {
+				timestamps = Arrays.copyOf(timestamps, Math.min(maxSnapshots, 2 * size));
+			}
+			slot = size++;
+		} else {
+			slot = first;
+			first = (first + 1) % size;
+		}
+		timestamps[slot] = timestamp;
+		sequence++;
+		for (ClassColumns column : columns.values()) {
+			if (slot < column.counts.length) {
+				column.counts[slot] = 0;
+				column.bytes[slot] = 0;
+			}
+		}
+		parse(histogram, slot);
+		// Drop the classes that are not in any of the kept snapshots
+		Iterator<ClassColumns> iterator = columns.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().lastSeen <= sequence - size) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove all snapshots, so that the trends are computed from the snapshots added after this.
+	 */
+	public void clear() {
+		columns.clear();
+		timestamps = new long[INITIAL_CAPACITY];
+		first = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return the number of kept snapshots
+	 */
+	public int getSnapshotCount() {
+		return size;
+	}
+
+	/**
+	 * @return the trends of the classes in the latest snapshot
+	 */
+	public List<Trend> getTrends() {
+		List<Trend> trends = new ArrayList<>();
+		for (ClassColumns column : columns.values()) {
+			if (column.lastSeen == sequence) {
+				trends.add(getTrend(column));
+			}
+		}
+		return trends;
+	}
+
+	/**
+	 * Rank the classes that are growing as leak suspects.
+	 *
+	 * @param maxSuspects
+	 *            the maximum number of suspects to return
+	 * @return the trends of the classes with a positive leak score, in descending order of the
+	 *         score
+	 */
+	public List<Trend> getLeakSuspects(int maxSuspects) {
+		List<Trend> suspects = new ArrayList<>();
+		for (Trend trend : getTrends()) {
+			if (trend.getLeakScore() > 0) {
+				suspects.add(trend);
+			}
+		}
+		Collections.sort(suspects, (t1, t2) -> Double.compare(t2.getLeakScore(), t1.getLeakScore()));
+		return suspects.size() > maxSuspects ? new ArrayList<>(suspects.subList(0, maxSuspects)) : suspects;
+	}
+
+	private Trend getTrend(ClassColumns column) {
+		int latest = slot(size - 1);
+		if (size < MIN_TREND_SNAPSHOTS) {
+			return new Trend(column.className, column.getCount(latest), column.getBytes(latest), 0, 0);
+		}
+		// Least squares regression, with the time in seconds relative to the oldest snapshot
+		long t0 = timestamps[slot(0)];
+		double sumX = 0;
+		double sumY = 0;
+		double sumXX = 0;
+		double sumXY = 0;
+		int increases = 0;
+		int decreases = 0;
+		long previous = 0;
+		for (int i = 0; i < size; i++) {
+			int slot = slot(i);
+			double x = (timestamps[slot] - t0) / 1000.0;
+			long y = column.getBytes(slot);
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumXY += x * y;
+			if (i > 0) {
+				if (y > previous) {
+					increases++;
+				} else if (y < previous) {
+					decreases++;
+				}
+			}
+			previous = y;
+		}
+		double denominator = size * sumXX - sumX * sumX;
+		double slope = denominator > 0 ? (size * sumXY - sumX * sumY) / denominator : 0;
+		double monotonicity = increases + decreases > 0 ? (double) increases / (increases + decreases) : 0;
+		return new Trend(column.className, column.getCount(latest), column.getBytes(latest), slope, monotonicity);
+	}
+
+	private int slot(int index) {
+		return (first + index) % size;
+	}
+
+	private void parse(CharSequence histogram, int slot) {
+		int length = histogram.length();
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && histogram.charAt(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			parseLine(histogram, lineStart, lineEnd, slot);
+			lineStart = lineEnd + 1;
+		}
+	}
+
+	/**
+	 * Parse a line of the form {@code "   1:        123456       7890123  java.lang.String"}. The
+	 * rank is optional. Lines of any other form, such as the header and the total, are ignored.
+	 */
+	private void parseLine(CharSequence line, int start, int end, int slot) {
+		int i = skipWhitespace(line, start, end);
+		int j = skipDigits(line, i, end);
+		if (j == i) {
+			return;
+		}
+		if (j < end && line.charAt(j) == ':') {
+			i = skipWhitespace(line, j + 1, end);
+			j = skipDigits(line, i, end);
+			if (j == i) {
+				return;
+			}
+		}
+		long count = parseLong(line, i, j);
+		i = skipWhitespace(line, j, end);
+		if (i == j) {
+			return;
+		}
+		j = skipDigits(line, i, end);
+		if (j == i) {
+			return;
+		}
+		long bytes = parseLong(line, i, j);
+		i = skipWhitespace(line, j, end);
+		if (i == j || i == end) {
+			return;
+		}
+		int nameEnd = end;
+		while (nameEnd > i && Character.isWhitespace(line.charAt(nameEnd - 1))) {
+			nameEnd--;
+		}
+		String className = line.subSequence(i, nameEnd).toString();
+		ClassColumns column = columns.get(className);
+		if (column == null) {
+			column = new ClassColumns(className);
+			columns.put(className, column);
+		}
+		column.set(slot, count, bytes, timestamps.length);
+		column.lastSeen = sequence;
+	}
+
+	private static int skipWhitespace(CharSequence s, int from, int end) {
+		while (from < end && Character.isWhitespace(s.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int skipDigits(CharSequence s, int from, int end) {
+		// Longer numbers do not fit in a long
+		int max = Math.min(end, from + 18);
+		while (from < max && s.charAt(from) >= '0' && s.charAt(from) <= '9') {
+			from++;
+		}
+		return from;
+	}
+
+	private static long parseLong(CharSequence s, int from, int end) {
+		long value = 0;
+		for (int i = from; i < end; i++) {
+			value = value * 10 + (s.charAt(i) - '0');
+		}
+		return value;
+	}
+}
@@ -42,6 +42,7 @@ import org.eclipse.jface.viewers.Viewer;
 
 import org.openjdk.jmc.console.ui.ConsolePlugin;
 import org.openjdk.jmc.console.ui.messages.internal.Messages;
+import org.openjdk.jmc.console.ui.preferences.ConsoleConstants;
 
 public class StackTraceContentProvider implements ITreeContentProvider {
 
@@ -66,7 +67,8 @@ public class StackTraceContentProvider implements ITreeContentProvider {
 		if (inputElement instanceof IStructuredSelection) {
 			long[] threadIDArray = extractThreadIDsFromSelection((IStructuredSelection) inputElement);
 			try {
-				return m_threadsModel.getThreadInfo(threadIDArray, Integer.valueOf(Integer.MAX_VALUE));
+				return m_threadsModel.getThreadInfo(threadIDArray,
+						Integer.valueOf(ConsoleConstants.MAX_THREAD_STACK_DEPTH));
 			} catch (ThreadModelException e) {
 				ConsolePlugin.getDefault().getLogger().log(Level.WARNING,
 						Messages.ThreadsModel_EXCEPTION_NO_THREAD_INFO_MESSAGE, e);
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.console.ui.tabs.threads;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Selects the threads to fetch the full thread info for on a poll. These are the threads that are
+ * not cached yet, the threads that have used CPU time since the last poll, and a number of other
+ * threads that are refreshed in turn, continuing where the previous poll stopped.
+ * <p>
+ * The thread state can only be read together with the rest of the thread info, so state changes of
+ * threads that do not use CPU time, such as a thread that blocks or wakes up, are only picked up
+ * when the thread gets its turn. To bound how stale such a state can get, the number of threads
+ * refreshed in turn grows with the number of threads, so that all threads are refreshed within a
+ * maximum number of polls.
+ * <p>
+ * This class is not thread safe.
+ */
+class ThreadRefreshSelector {
+	private final int minRefreshCount;
+	private final int maxCyclePolls;
+	private int refreshIndex;
+
+	/**
+	 * @param minRefreshCount
+	 *            the number of threads to refresh in turn on each poll, unless more are needed to
+	 *            refresh all threads within {@code maxCyclePolls} polls
+	 * @param maxCyclePolls
+	 *            the maximum number of polls it may take to refresh all threads in turn
+	 */
+	ThreadRefreshSelector(int minRefreshCount, int maxCyclePolls) {
+		this.minRefreshCount = minRefreshCount;
+		this.maxCyclePolls = maxCyclePolls;
+	}
+
+	/**
+	 * @param threadIds
+	 *            the ids of the live threads
+	 * @param cachedIds
+	 *            the ids of the threads that have cached thread infos
+	 * @param changedIds
+	 *            the ids of the threads that are known to have changed since the last poll
+	 * @return the ids of the threads to refresh, in the order new, changed and in turn
+	 */
+	Set<Long> select(long[] threadIds, Set<Long> cachedIds, Set<Long> changedIds) {
+		Set<Long> refreshIds = new LinkedHashSet<>();
+		for (long id : threadIds) {
+			if (!cachedIds.contains(id)) {
+				refreshIds.add(id);
+			}
+		}
+		refreshIds.addAll(changedIds);
+		int count = getRefreshCount(threadIds.length);
+		for (int n = 0; n < count; n++) {
+			refreshIds.add(threadIds[(refreshIndex + n) % threadIds.length]);
+		}
+		refreshIndex = threadIds.length > 0 ? (refreshIndex + count) % threadIds.length : 0;
+		return refreshIds;
+	}
+
+	/**
+	 * @return the number of threads to refresh in turn on a poll of {@code threadCount} threads
+	 */
+	int getRefreshCount(int threadCount) {
+		int cycleCount = (threadCount + maxCyclePolls - 1) / maxCyclePolls;
+		return Math.min(threadCount, Math.max(minRefreshCount, cycleCount));
+	}
+}
@@ -35,7 +35,11 @@ package org.openjdk.jmc.console.ui.tabs.threads;
 import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import javax.management.MBeanServerConnection;
@@ -48,13 +52,40 @@ import org.openjdk.jmc.rjmx.ConnectionToolkit;
 import org.openjdk.jmc.rjmx.IConnectionHandle;
 import org.openjdk.jmc.ui.polling.PollManager;
 
+/**
+ * Polls the thread MX bean of the connected JVM. To keep the cost of polling JVMs with many threads
+ * down, the thread infos are cached between polls:
+ * <ul>
+ * <li>The full thread info is only fetched for new threads, threads that have used CPU time since
+ * the last poll, and other threads that are refreshed in turn, so that all threads are refreshed
+ * within a few polls. See {@link ThreadRefreshSelector}.</li>
+ * <li>The CPU time is only fetched for the threads that used the most CPU time. The CPU time of all
+ * threads is fetched every few polls, to find the threads that use the most CPU time.</li>
+ * <li>The polling interval is kept long enough for the time spent polling to be a small part of
+ * it.</li>
+ * </ul>
+ */
 public class ThreadsModel implements IThreadsModel {
 	private static class CPUSample {
 		public long time;
 		public long value;
+		public double partOfTimeRunning = Double.NEGATIVE_INFINITY;
 	}
 
 	private final static String THREAD_GET_THREAD_INFO = "getThreadInfo"; //$NON-NLS-1$
+	private final static String THREAD_GET_THREAD_CPU_TIME = "getThreadCpuTime"; //$NON-NLS-1$
+
+	// The number of threads that have their CPU time fetched on every poll
+	private final static int CPU_CANDIDATE_COUNT = 100;
+	// The CPU time of all threads is fetched every this many polls, to re-rank the candidates
+	private final static int CPU_RERANK_INTERVAL = 10;
+	// The number of threads that have their thread info refreshed in turn on each poll, unless more
+	// are needed to refresh all threads within REFRESH_CYCLE_POLLS polls
+	private final static int REFRESH_BUDGET = 250;
+	private final static int REFRESH_CYCLE_POLLS = 5;
+	// The polling interval is kept at least this many times the time spent on a poll
+	private final static int POLL_COST_FACTOR = 10;
+	private final static int MAX_POLLING_INTERVAL = 60000;
 
 	private final PollManager m_pollManager = new PollManager(ConsoleConstants.DEFAULT_THREAD_DUMP_INTERVAL,
 			ConsoleConstants.PROPERTY_THREAD_DUMP_INTERVAL);
@@ -66,9 +97,16 @@ public class ThreadsModel implements IThreadsModel {
 	private volatile ThreadInfoCompositeSupport[] m_threads = new ThreadInfoCompositeSupport[0];
 
 	private int m_numberOfCPUs = -1;
-	private final Map<Long, CPUSample> m_cpuSampleTimes = new HashMap<>();
+	private final Map<Long, CPUSample> m_cpuSampleTimes = new ConcurrentHashMap<>();
 	private boolean m_allocationEnabled;
 
+	// Only accessed from the polling thread
+	private final Map<Long, CompositeData> m_threadInfoCache = new HashMap<>();
+	private long[] m_cpuCandidates = new long[0];
+	private final ThreadRefreshSelector m_refreshSelector = new ThreadRefreshSelector(REFRESH_BUDGET,
+			REFRESH_CYCLE_POLLS);
+	private int m_pollCount;
+
 	public ThreadsModel(IConnectionHandle connectionHandle) {
 		ConsolePlugin.getDefault().getPreferenceStore().addPropertyChangeListener(m_pollManager);
 		m_connectionHandle = connectionHandle;
@@ -126,35 +164,71 @@ public class ThreadsModel implements IThreadsModel {
 	}
 
 	/**
-	 * Get the thread list with CPU consumption and the ThreadInfo for each thread sorted by the CPU
-	 * time.
+	 * Fetches the CPU time of the CPU candidates, or of all threads when the candidates are
+	 * re-ranked, and updates the CPU samples.
 	 *
-	 * @throws ThreadModelException
+	 * @return the ids of the cached threads that have used CPU time since their last sample
 	 */
-	private void addCPUInformation(ThreadInfoCompositeSupport[] tips) throws ThreadModelException {
+	private Set<Long> updateCPUTimes(long[] threadIds) {
+		Set<Long> changed = new HashSet<>();
+		if (!isCPUTimeEnabled()) {
+			return changed;
+		}
+		boolean rerank = m_pollCount++ % CPU_RERANK_INTERVAL == 0 || threadIds.length <= CPU_CANDIDATE_COUNT;
+		long[] ids = rerank ? threadIds : m_cpuCandidates;
+		try {
+			long[] cpuTimes = (long[]) invoke(THREAD_GET_THREAD_CPU_TIME, ids);
+			if (cpuTimes != null) {
+				for (int n = 0; n < ids.length; n++) {
+					CPUSample last = m_cpuSampleTimes.get(ids[n]);
+					if (last != null && last.value != cpuTimes[n] && m_threadInfoCache.containsKey(ids[n])) {
+						changed.add(ids[n]);
+					}
+					calculateCPUTime(ids[n], cpuTimes[n]);
+				}
+				if (rerank) {
+					m_cpuCandidates = findCPUCandidates(threadIds);
+				}
+			}
+		} catch (Exception e) {
+			setCPUTimeEnabled(false);
+			// TODO: This is expected on JVMs other than Hotspot. Add user feedback.
+		}
+		return changed;
+	}
 
+	private long[] findCPUCandidates(long[] threadIds) {
+		Map<Long, Double> partsOfTimeRunning = new HashMap<>();
+		for (long id : threadIds) {
+			CPUSample sample = m_cpuSampleTimes.get(id);
+			if (sample != null) {
+				partsOfTimeRunning.put(id, sample.partOfTimeRunning);
+			}
+		}
+		List<Long> ids = new ArrayList<>(partsOfTimeRunning.keySet());
+		ids.sort((id1, id2) -> Double.compare(partsOfTimeRunning.get(id2), partsOfTimeRunning.get(id1)));
+		long[] candidates = new long[Math.min(CPU_CANDIDATE_COUNT, ids.size())];
+		for (int n = 0; n < candidates.length; n++) {
+			candidates[n] = ids.get(n);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Sets the CPU usage from the latest CPU sample of each thread.
+	 */
+	private void addCPUInformation(ThreadInfoCompositeSupport[] tips) {
 		if (isCPUTimeEnabled()) {
-			// int MAX_NUMBER_OF_THREADS =
-			// ConsolePlugin.getDefault().getPreferenceStore().getInt(ConsoleConstants.PROPERTY_MAX_THREADS_TO_ALLOW_FOR_THREAD_PROFILING);
 			int cpuCores = getNumberOfCPUs();
-			long[] threadIDs = toIDArray(tips);
-			try {
-				long[] cpuTimes = (long[]) invoke("getThreadCpuTime", threadIDs); //$NON-NLS-1$
-				if (cpuTimes != null) {
-					for (int n = 0; n < tips.length; n++) {
-						double partOfTimeRunning = calculateCPUTime(tips[n].getThreadId(), cpuTimes[n]);
-						if (cpuCores > 0) {
-							tips[n].setCPUTime(partOfTimeRunning, partOfTimeRunning / cpuCores);
-						} else {
-							tips[n].setCPUTime(partOfTimeRunning, ThreadInfoCompositeSupport.UNKNOWN_NUMBER_OF_CORES);
-						}
-					}
+			for (ThreadInfoCompositeSupport tip : tips) {
+				CPUSample sample = m_cpuSampleTimes.get(tip.getThreadId());
+				double partOfTimeRunning = sample != null ? sample.partOfTimeRunning : Double.NEGATIVE_INFINITY;
+				if (cpuCores > 0) {
+					tip.setCPUTime(partOfTimeRunning, partOfTimeRunning / cpuCores);
+				} else {
+					tip.setCPUTime(partOfTimeRunning, ThreadInfoCompositeSupport.UNKNOWN_NUMBER_OF_CORES);
 				}
-			} catch (Exception e) {
-				setCPUTimeEnabled(false);
-				// TODO: This is expected on JVMs other than Hotspot. Add user feedback.
 			}
-
 		}
 	}
 
@@ -196,7 +270,8 @@ public class ThreadsModel implements IThreadsModel {
 			long wallClockDiff = wallClockTime - last.time;
 			last.value = cpuTime;
 			last.time = wallClockTime;
-			return wallClockDiff > 0 ? cpuTimeDiff / wallClockDiff : Double.NEGATIVE_INFINITY;
+			last.partOfTimeRunning = wallClockDiff > 0 ? cpuTimeDiff / wallClockDiff : Double.NEGATIVE_INFINITY;
+			return last.partOfTimeRunning;
 		}
 		return Double.NaN;
 	}
@@ -302,28 +377,68 @@ public class ThreadsModel implements IThreadsModel {
 
 	@Override
 	public void update() throws ThreadModelException {
-		CompositeData[] objectInfos = getThreadInfos();
-		if (objectInfos != null) {
-			ArrayList<ThreadInfoCompositeSupport> tList = new ArrayList<>(objectInfos.length);
-			for (CompositeData objectInfo : objectInfos) {
-				if (objectInfo != null) {
-					tList.add(new ThreadInfoCompositeSupport(objectInfo));
+		long startTime = System.currentTimeMillis();
+		long[] threadIds = getAllThreadIds();
+		Set<Long> liveIds = new HashSet<>();
+		for (long id : threadIds) {
+			liveIds.add(id);
+		}
+		m_threadInfoCache.keySet().retainAll(liveIds);
+		m_cpuSampleTimes.keySet().retainAll(liveIds);
+		Set<Long> refreshIds = m_refreshSelector.select(threadIds, m_threadInfoCache.keySet(),
+				updateCPUTimes(threadIds));
+
+		if (!refreshIds.isEmpty()) {
+			long[] ids = new long[refreshIds.size()];
+			int i = 0;
+			for (Long id : refreshIds) {
+				ids[i++] = id;
+			}
+			CompositeData[] objectInfos = getThreadInfos(ids);
+			if (objectInfos != null) {
+				for (int n = 0; n < ids.length; n++) {
+					if (objectInfos[n] != null) {
+						m_threadInfoCache.put(ids[n], objectInfos[n]);
+					} else {
+						// The thread has terminated
+						m_threadInfoCache.remove(ids[n]);
+					}
 				}
 			}
-			ThreadInfoCompositeSupport[] tips = new ThreadInfoCompositeSupport[tList.size()];
-			tList.toArray(tips);
-			m_threads = tips;
-			addDeadlockInformation(tips);
-			addCPUInformation(tips);
-			addAllocationInformation(tips);
+		}
+
+		ArrayList<ThreadInfoCompositeSupport> tList = new ArrayList<>(threadIds.length);
+		for (long id : threadIds) {
+			CompositeData objectInfo = m_threadInfoCache.get(id);
+			if (objectInfo != null) {
+				tList.add(new ThreadInfoCompositeSupport(objectInfo));
+			}
+		}
+		ThreadInfoCompositeSupport[] tips = new ThreadInfoCompositeSupport[tList.size()];
+		tList.toArray(tips);
+		m_threads = tips;
+		addDeadlockInformation(tips);
+		addCPUInformation(tips);
+		addAllocationInformation(tips);
+		adaptPollingInterval(System.currentTimeMillis() - startTime);
+	}
+
+	private void adaptPollingInterval(long pollMillis) {
+		m_pollManager.setMinimumPollingInterval((int) Math.min(MAX_POLLING_INTERVAL, pollMillis * POLL_COST_FACTOR));
+	}
+
+	private long[] getAllThreadIds() throws ThreadModelException {
+		try {
+			return getThreadMxBean().getAllThreadIds();
+		} catch (Exception e) {
+			ConsolePlugin.getDefault().getLogger().log(Level.SEVERE,
+					"Error when getting information from ThreadMxBean.", e); //$NON-NLS-1$
+			throw new ThreadModelException(Messages.ThreadsModel_EXCEPTION_NO_THREAD_INFO_MESSAGE, e);
 		}
 	}
 
 	private CompositeData[] getThreadInfos(Object ... params) throws ThreadModelException {
 		try {
-			if (params.length == 0) {
-				params = new Object[] {getThreadMxBean().getAllThreadIds()};
-			}
 			// FIXME: We could use ThreadMXBean.getThreadInfo(long[]) instead
 			return (CompositeData[]) invoke(THREAD_GET_THREAD_INFO, params);
 		} catch (Exception e) {
@@ -37,7 +37,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -46,7 +45,10 @@ import java.util.stream.Collector.Characteristics;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.openjdk.jmc.common.item.HashAggregation;
+import org.openjdk.jmc.common.item.HashAggregation.Group;
 import org.openjdk.jmc.common.item.IAccessorFactory;
+import org.openjdk.jmc.common.item.IAggregator;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemIterable;
@@ -55,44 +57,77 @@ import org.openjdk.jmc.common.item.ItemCollectionToolkit;
 import org.openjdk.jmc.common.item.ItemIterableToolkit;
 import org.openjdk.jmc.common.item.ItemToolkit;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.LinearKindOfQuantity;
 import org.openjdk.jmc.common.unit.UnitLookup;
 
+/**
+ * Groups items into rows and calculates the cell values for each row. Aggregator columns are
+ * calculated in a single hash aggregation pass over the items, without keeping references to the
+ * items. The items of the rows are only collected when a column that needs them, such as a column
+ * with an arbitrary value function, is first accessed.
+ */
 public class AggregationGrid {
 
 	private static class AggregationModel {
 		final Object[][] cellData;
-		AggregateRow[] aggregateItems;
-		IItemCollection modelItems;
-		int itemsCount;
-
-		AggregationModel(int columnCount, int rowCount, IItemCollection modelItems) {
+		final AggregateRow[] aggregateItems;
+		final IItemCollection modelItems;
+		final IAccessorFactory<?> classifier;
+		final long itemsCount;
+		private volatile Map<Object, IItemCollection> rowItems;
+
+		AggregationModel(int columnCount, HashAggregation<?> aggregation, IAccessorFactory<?> classifier) {
+			List<? extends Group<?>> groups = aggregation.getGroups();
 			this.cellData = new Object[columnCount][];
-			this.aggregateItems = new AggregateRow[rowCount];
-			this.modelItems = modelItems;
+			this.aggregateItems = new AggregateRow[groups.size()];
+			this.modelItems = aggregation.getItems();
+			this.classifier = classifier;
+			this.itemsCount = aggregation.getItemCount();
+			for (int i = 0; i < aggregateItems.length; i++) {
+				aggregateItems[i] = new AggregateRow(this, groups.get(i), i);
+			}
 		}
 
-		void addRow(Object key, List<IItem[]> items, int rowIndex) {
-			AggregateRow ai = new AggregateRow(this, key, items, rowIndex);
-			aggregateItems[rowIndex] = ai;
-			itemsCount += ai.count.longValue();
+		/**
+		 * Collect the items of all rows in a single pass, for columns that need the items of every
+		 * row.
+		 */
+		void collectRowItems() {
+			if (rowItems == null) {
+				synchronized (this) {
+					if (rowItems == null) {
+						rowItems = mapItems(modelItems.stream(), classifier).entrySet().stream().collect(
+								HashMap::new, (m, e) -> m.put(e.getKey(), buildItemCollection(e.getValue())),
+								Map::putAll);
+					}
+				}
+			}
 		}
 	}
 
 	public static class AggregateRow {
 		final int index;
-		final IItemCollection items;
 		final Object key;
 		final IQuantity count;
 		final AggregationModel model;
+		final Group<?> group;
 
-		AggregateRow(AggregationModel model, Object key, List<IItem[]> itemsByType, int rowIndex) {
+		AggregateRow(AggregationModel model, Group<?> group, int rowIndex) {
 			this.model = model;
-			this.key = key;
-			this.items = buildItemCollection(itemsByType);
-			this.count = UnitLookup.NUMBER_UNITY.quantity(itemsByType.stream().mapToInt(ia -> ia.length).sum());
+			this.group = group;
+			this.key = group.getKey();
+			this.count = UnitLookup.NUMBER_UNITY.quantity(group.getCount());
 			this.index = rowIndex;
 		}
 
+		IItemCollection getItems() {
+			Map<Object, IItemCollection> rowItems = model.rowItems;
+			if (rowItems != null) {
+				return rowItems.get(key);
+			}
+			return group.getItems();
+		}
+
 		@Override
 		public int hashCode() {
 			return Objects.hashCode(key);
@@ -120,6 +155,7 @@ public class AggregationGrid {
 			if (inObject instanceof AggregateRow) {
 				AggregateRow ai = ((AggregateRow) inObject);
 				if (ai.model.cellData[columnIndex] == null) {
+					ai.model.collectRowItems();
 					ai.model.cellData[columnIndex] = Arrays.stream(ai.model.aggregateItems).parallel()
 							.map(this::calculateValue).toArray();
 				}
@@ -129,7 +165,7 @@ public class AggregationGrid {
 		}
 
 		private Object calculateValue(AggregateRow row) {
-			return valueFunction.apply(row.items);
+			return valueFunction.apply(row.getItems());
 		}
 	}
 
@@ -148,6 +184,7 @@ public class AggregationGrid {
 			if (inObject instanceof AggregateRow) {
 				AggregateRow ai = ((AggregateRow) inObject);
 				if (ai.model.cellData[columnIndex] == null) {
+					ai.model.collectRowItems();
 					ai.model.cellData[columnIndex] = Arrays.stream(ai.model.aggregateItems).parallel()
 							.map(this::calculateValue).toArray();
 				}
@@ -157,10 +194,66 @@ public class AggregationGrid {
 		}
 
 		private Object calculateValue(AggregateRow row) {
-			return valueFunction.apply(row.items, row.model.modelItems);
+			return valueFunction.apply(row.getItems(), row.model.modelItems);
+		}
+	}
+
+	private static class AggregatorColumn implements IMemberAccessor<Object, Object> {
+
+		private final int aggregatorIndex;
+
+		AggregatorColumn(int aggregatorIndex) {
+			this.aggregatorIndex = aggregatorIndex;
+		}
+
+		@Override
+		public Object getMember(Object inObject) {
+			if (inObject instanceof AggregateRow) {
+				return ((AggregateRow) inObject).group.getValue(aggregatorIndex);
+			}
+			return null;
+		}
+	}
+
+	private static class AggregatorPercentageColumn implements IMemberAccessor<Object, Object> {
+
+		private final IAggregator<?, ?> aggregator;
+		private final int aggregatorIndex;
+		private final int columnIndex;
+
+		AggregatorPercentageColumn(IAggregator<?, ?> aggregator, int aggregatorIndex, int columnIndex) {
+			this.aggregator = aggregator;
+			this.aggregatorIndex = aggregatorIndex;
+			this.columnIndex = columnIndex;
+		}
+
+		@Override
+		public Object getMember(Object inObject) {
+			if (inObject instanceof AggregateRow) {
+				AggregateRow ai = ((AggregateRow) inObject);
+				if (ai.model.cellData[columnIndex] == null) {
+					// The total is calculated once for all rows
+					Object total = ai.model.modelItems.getAggregate(aggregator);
+					ai.model.cellData[columnIndex] = Arrays.stream(ai.model.aggregateItems)
+							.map(row -> calculateValue(row, total)).toArray();
+				}
+				return ai.model.cellData[columnIndex][ai.index];
+			}
+			return null;
+		}
+
+		private Object calculateValue(AggregateRow row, Object total) {
+			Object rowResult = row.group.getValue(aggregatorIndex);
+			if (aggregator.getValueType() instanceof LinearKindOfQuantity) {
+				if (rowResult != null && total != null) {
+					return UnitLookup.PERCENT.quantity(((IQuantity) rowResult).ratioTo((IQuantity) total) * 100);
+				}
+			}
+			return rowResult;
 		}
 	}
 
+	private final List<IAggregator<?, ?>> aggregators = new ArrayList<>();
 	private int createdColumns;
 
 	public static Object getKey(Object row) {
@@ -172,7 +265,7 @@ public class AggregationGrid {
 	}
 
 	public static IItemCollection getItems(Object row) {
-		return ((AggregateRow) row).items;
+		return ((AggregateRow) row).getItems();
 	}
 
 	public static double getCountFraction(Object row) {
@@ -190,18 +283,30 @@ public class AggregationGrid {
 		return new AggregateColumn(valueFunction, createdColumns++);
 	}
 
+	// All rows built before the column was added will not have the extra column
+	public IMemberAccessor<?, Object> addColumn(IAggregator<?, ?> aggregator) {
+		aggregators.add(aggregator);
+		return new AggregatorColumn(aggregators.size() - 1);
+	}
+
 	// All rows built before the column was added will not have the extra column
 	public IMemberAccessor<?, Object> addPercentageColumn(
 		BiFunction<IItemCollection, IItemCollection, ?> valueFunction) {
 		return new PercentageColumn(valueFunction, createdColumns++);
 	}
 
-	private static <T> void addStream(HashMap<T, List<IItem[]>> map, KeyedStream<T, IItem> ks) {
-		map.computeIfAbsent(ks.getKey(), k -> new ArrayList<>()).add(ks.getStream().toArray(IItem[]::new));
+	// All rows built before the column was added will not have the extra column
+	public IMemberAccessor<?, Object> addPercentageColumn(IAggregator<?, ?> aggregator) {
+		aggregators.add(aggregator);
+		return new AggregatorPercentageColumn(aggregator, aggregators.size() - 1, createdColumns++);
+	}
+
+	private static <T> void addItem(Map<T, List<IItem>> map, T key, IItem item) {
+		map.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
 	}
 
-	private static <T, U extends HashMap<T, List<IItem[]>>> U merge(U map1, U map2) {
-		for (Map.Entry<T, List<IItem[]>> e : map2.entrySet()) {
+	private static <T, V> Map<T, List<V>> merge(Map<T, List<V>> map1, Map<T, List<V>> map2) {
+		for (Map.Entry<T, List<V>> e : map2.entrySet()) {
 			map1.merge(e.getKey(), e.getValue(), (l1, l2) -> {
 				l1.addAll(l2);
 				return l1;
@@ -211,18 +316,21 @@ public class AggregationGrid {
 	}
 
 	private static <T> Map<T, List<IItem[]>> mapItems(Stream<IItemIterable> items, IAccessorFactory<T> classifier) {
-		Stream<KeyedStream<T, IItem>> flatMap = items.parallel().flatMap(is -> {
+		return items.parallel().map(is -> {
 			IMemberAccessor<? extends T, IItem> accessor = classifier.getAccessor(is.getType());
 			if (accessor == null) {
 				throw new IllegalArgumentException(
 						"Cannot fetch accessor from " + classifier + " for type " + is.getType().getIdentifier()); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			// It seems Eclipse 4.5 has trouble inferring the correct type of this function ...
-			Function<IItem, T> getMemberFunc = accessor::getMember;
-			return is.parallelStream().collect(KeyedStream.collector(getMemberFunc));
-		});
-		return flatMap.collect(Collector.of(HashMap<T, List<IItem[]>>::new, AggregationGrid::addStream,
-				AggregationGrid::merge, Characteristics.UNORDERED));
+			Map<T, List<IItem>> itemsByKey = is.parallelStream()
+					.collect(Collector.<IItem, Map<T, List<IItem>>> of(HashMap::new,
+							(map, item) -> addItem(map, accessor.getMember(item), item), AggregationGrid::merge,
+							Characteristics.UNORDERED));
+			Map<T, List<IItem[]>> arraysByKey = new HashMap<>();
+			itemsByKey.forEach((key, list) -> arraysByKey.computeIfAbsent(key, k -> new ArrayList<>())
+					.add(list.toArray(new IItem[list.size()])));
+			return arraysByKey;
+		}).reduce(AggregationGrid::merge).orElseGet(HashMap::new);
 	}
 
 	public static <T, U> Stream<U> mapItems(
@@ -240,12 +348,7 @@ public class AggregationGrid {
 	}
 
 	public <T> Object[] buildRows(IItemCollection items, IAccessorFactory<T> classifier) {
-		Map<T, List<IItem[]>> itemsMap = mapItems(items.stream(), classifier);
-		AggregationModel model = new AggregationModel(createdColumns, itemsMap.size(), items);
-		int index = 0;
-		for (Entry<T, List<IItem[]>> e : itemsMap.entrySet()) {
-			model.addRow(e.getKey(), e.getValue(), index++);
-		}
-		return model.aggregateItems;
+		HashAggregation<T> aggregation = HashAggregation.aggregate(items, classifier, aggregators);
+		return new AggregationModel(createdColumns, aggregation, classifier).aggregateItems;
 	}
 }
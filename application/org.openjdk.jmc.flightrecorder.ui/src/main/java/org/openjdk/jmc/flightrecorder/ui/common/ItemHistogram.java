@@ -35,7 +35,6 @@ package org.openjdk.jmc.flightrecorder.ui.common;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -57,6 +56,7 @@ import org.eclipse.swt.widgets.Table;
 import org.openjdk.jmc.common.IDisplayable;
 import org.openjdk.jmc.common.IMCFrame;
 import org.openjdk.jmc.common.IMCMethod;
+import org.openjdk.jmc.common.item.Aggregators;
 import org.openjdk.jmc.common.item.IAccessorFactory;
 import org.openjdk.jmc.common.item.IAggregator;
 import org.openjdk.jmc.common.item.IAttribute;
@@ -64,7 +64,6 @@ import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.item.ItemCollectionToolkit;
 import org.openjdk.jmc.common.unit.ContentType;
-import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.LinearKindOfQuantity;
 import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.CompositeKey;
@@ -129,7 +128,8 @@ public class ItemHistogram {
 
 		public void addColumn(String colId, IAggregator<?, ?> a) {
 			int style = a.getValueType() instanceof LinearKindOfQuantity ? SWT.RIGHT : SWT.NONE;
-			addColumn(colId, ic -> ic.getAggregate(a), a.getName(), a.getDescription(), style);
+			columns.add(new ColumnBuilder(a.getName(), colId, grid.addColumn(a)).description(a.getDescription())
+					.style(style).build());
 		}
 
 		public void addPercentageColumn(String colId, IAggregator<?, ?> a) {
@@ -138,19 +138,7 @@ public class ItemHistogram {
 
 		public void addPercentageColumn(String colId, IAggregator<?, ?> a, String name, String description) {
 			int style = a.getValueType() instanceof LinearKindOfQuantity ? SWT.RIGHT : SWT.NONE;
-
-			BiFunction<IItemCollection, IItemCollection, ?> percentageFunction = (rowItems, allItems) -> {
-				if (a.getValueType() instanceof LinearKindOfQuantity) {
-					IQuantity rowResult = (IQuantity) rowItems.getAggregate(a);
-					IQuantity allResult = (IQuantity) allItems.getAggregate(a);
-					if (rowResult != null && allResult != null) {
-						return UnitLookup.PERCENT.quantity(rowResult.ratioTo(allResult) * 100);
-					}
-				}
-				return rowItems.getAggregate(a);
-			};
-
-			addPercentageColumn(colId, percentageFunction, name, description, style);
+			addPercentageColumn(colId, grid.addPercentageColumn(a), name, description, style);
 		}
 
 		public void addColumn(
@@ -167,7 +155,11 @@ public class ItemHistogram {
 		public void addPercentageColumn(
 			String colId, BiFunction<IItemCollection, IItemCollection, ?> valueFunction, String name,
 			String description, int style) {
-			IMemberAccessor<?, Object> column = grid.addPercentageColumn(valueFunction);
+			addPercentageColumn(colId, grid.addPercentageColumn(valueFunction), name, description, style);
+		}
+
+		private void addPercentageColumn(
+			String colId, IMemberAccessor<?, Object> column, String name, String description, int style) {
 			BackgroundFractionDrawer percentageValueDrawer = new BackgroundFractionDrawer() {
 				@Override
 				public void handleEvent(Event event) {
@@ -186,10 +178,7 @@ public class ItemHistogram {
 			// FIXME: Refactor/remove this method to avoid it being used instead of passing an IAggregator.
 			// Accessing the thread-group is quite a special case as it is a property of the key (group by attribute).
 			// The caller of this method should be responsible for passing a unique column id, as with aggregators.
-			IMemberAccessor<Object, T> anyValueAccessor = row -> AggregationGrid.getItems(row).stream()
-					.flatMap(is -> is.stream().map(a.getAccessor(is.getType())::getMember)).filter(Objects::nonNull)
-					.findAny().orElse(null);
-			columns.add(new ColumnBuilder(a.getName(), a.getIdentifier(), anyValueAccessor)
+			columns.add(new ColumnBuilder(a.getName(), a.getIdentifier(), grid.addColumn(Aggregators.firstValue(a)))
 					.description(a.getDescription()).build());
 		}
 
@@ -36,6 +36,7 @@ import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.logging.Level;
@@ -54,7 +55,7 @@ class AttributeWriter implements IMRIValueListener {
 	private DataOutputStream currentFileStream;
 	private File currentFile;
 	private File dir;
-	private final MRI mri;
+	final MRI mri;
 	private boolean isEnabled;
 	private Boolean isRunning;
 	private long maxFileSize;
@@ -74,16 +75,15 @@ class AttributeWriter implements IMRIValueListener {
 		if (!persistenceDir.equals(dir)) {
 			// Directory changed
 			dir = persistenceDir;
-			IOToolkit.closeSilently(currentFileStream);
-			currentFileStream = null;
+			closeCurrentStream();
 			currentFile = null;
 			if (dir.isDirectory()) {
 				ArrayList<PersistenceFile> existingFiles = new ArrayList<>();
-				File[] listFiles = dir.listFiles(PersistenceFile.FILTER);
+				File[] listFiles = dir.listFiles(getFileFilter());
 				if (listFiles != null) {
 					for (File f : listFiles) {
 						try {
-							PersistenceFile pfr = new PersistenceFile(f);
+							PersistenceFile pfr = openFile(f);
 							if (!pfr.isCorrupt()) {
 								existingFiles.add(pfr);
 							}
@@ -118,8 +118,21 @@ class AttributeWriter implements IMRIValueListener {
 
 	synchronized void stop() {
 		isRunning = false;
-		IOToolkit.closeSilently(currentFileStream);
-		currentFileStream = null;
+		closeCurrentStream();
+	}
+
+	/**
+	 * Write any buffered values to the current file, without closing it.
+	 */
+	synchronized void flush() {
+		if (currentFileStream != null) {
+			try {
+				currentFileSize += finishFile(currentFileStream);
+				currentFileStream.flush();
+			} catch (IOException e) {
+				RJMXPlugin.getDefault().getLogger().log(Level.WARNING, "Failed to flush file", e); //$NON-NLS-1$
+			}
+		}
 	}
 
 	@Override
@@ -176,13 +189,23 @@ class AttributeWriter implements IMRIValueListener {
 	}
 
 	private void doWrite(long timestamp, double value) throws IOException {
-		currentFileStream.writeLong(timestamp);
-		currentFileStream.writeDouble(value);
-		currentFileSize += PersistenceFile.EVENT_SIZE;
+		currentFileSize += writeValue(currentFileStream, timestamp, value);
+	}
+
+	private void closeCurrentStream() {
+		if (currentFileStream != null) {
+			try {
+				currentFileSize += finishFile(currentFileStream);
+			} catch (IOException e) {
+				RJMXPlugin.getDefault().getLogger().log(Level.WARNING, "Failed to finish file", e); //$NON-NLS-1$
+			}
+		}
+		IOToolkit.closeSilently(currentFileStream);
+		currentFileStream = null;
 	}
 
 	private void ensureWriter() throws IOException {
-		if (currentFileSize + PersistenceFile.EVENT_SIZE > maxFileSize) {
+		if (currentFileSize + getNextWriteSize() > maxFileSize) {
 			createNewWriter();
 		} else if (currentFileStream == null) {
 			if (currentFile != null) {
@@ -195,17 +218,60 @@ class AttributeWriter implements IMRIValueListener {
 	}
 
 	private void createNewWriter() throws IOException {
-		IOToolkit.closeSilently(currentFileStream);
-		currentFileStream = null;
+		closeCurrentStream();
 		File file;
 		do {
-			String fileName = "values_" + System.currentTimeMillis() + PersistenceFile.FILE_EXT; //$NON-NLS-1$
+			String fileName = "values_" + System.currentTimeMillis() + getFileExtension(); //$NON-NLS-1$
 			file = new File(dir, fileName);
 		} while (file.exists());
 		currentFileStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
-		currentFileStream.writeUTF(mri.getQualifiedName());
+		writeFileHeader(currentFileStream);
 		currentFileStream.flush();
 		currentFileSize = file.length();
 		currentFile = file;
 	}
+
+	FilenameFilter getFileFilter() {
+		return PersistenceFile.FILTER;
+	}
+
+	String getFileExtension() {
+		return PersistenceFile.FILE_EXT;
+	}
+
+	PersistenceFile openFile(File file) throws IOException {
+		return new PersistenceFile(file);
+	}
+
+	void writeFileHeader(DataOutputStream out) throws IOException {
+		out.writeUTF(mri.getQualifiedName());
+	}
+
+	/**
+	 * Write a value to the current file.
+	 *
+	 * @return the number of bytes written to the stream
+	 */
+	int writeValue(DataOutputStream out, long timestamp, double value) throws IOException {
+		out.writeLong(timestamp);
+		out.writeDouble(value);
+		return PersistenceFile.EVENT_SIZE;
+	}
+
+	/**
+	 * @return the maximum number of bytes that the next call to
+	 *         {@link #writeValue(DataOutputStream, long, double)} may add to the current file
+	 */
+	int getNextWriteSize() {
+		return PersistenceFile.EVENT_SIZE;
+	}
+
+	/**
+	 * Called before the current file is closed or flushed, to write any buffered data.
+	 *
+	 * @return the number of bytes written to the stream
+	 */
+	int finishFile(DataOutputStream out) throws IOException {
+		return 0;
+	}
 }
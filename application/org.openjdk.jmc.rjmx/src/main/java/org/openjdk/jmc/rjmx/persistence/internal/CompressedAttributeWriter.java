@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.persistence.internal;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import org.openjdk.jmc.rjmx.subscription.MRI;
+
+/**
+ * Attribute writer that stores the values in {@link CompressedPersistenceFile compressed files}.
+ * Values are buffered until a block is full, until the block spans {@link #MAX_BLOCK_AGE_MS}, or
+ * until the writer is flushed or closed. This bounds the amount of data that is lost if the
+ * application terminates abruptly.
+ */
+class CompressedAttributeWriter extends AttributeWriter {
+
+	static final int BLOCK_SIZE = 128;
+	// Maximum time in ms between the first and last sample of a block
+	static final long MAX_BLOCK_AGE_MS = 30 * 1000L;
+	// Upper bound in bytes of one encoded sample, 69 bits of timestamp and 77 bits of value
+	private static final int MAX_SAMPLE_SIZE = 20;
+
+	private final TimeSeriesBlockEncoder encoder = new TimeSeriesBlockEncoder();
+
+	CompressedAttributeWriter(MRI mri, File persistenceDir, long maxFileSize) {
+		super(mri, persistenceDir, maxFileSize);
+	}
+
+	@Override
+	FilenameFilter getFileFilter() {
+		return CompressedPersistenceFile.FILTER;
+	}
+
+	@Override
+	String getFileExtension() {
+		return CompressedPersistenceFile.FILE_EXT;
+	}
+
+	@Override
+	PersistenceFile openFile(File file) throws IOException {
+		return CompressedPersistenceFile.open(file);
+	}
+
+	@Override
+	void writeFileHeader(DataOutputStream out) throws IOException {
+		CompressedPersistenceFile.writeFileHeader(out, mri);
+	}
+
+	@Override
+	int writeValue(DataOutputStream out, long timestamp, double value) throws IOException {
+		long time = timestamp / CompressedPersistenceFile.TIMESTAMP_UNIT_NANOS;
+		encoder.add(time, value);
+		if (encoder.getCount() >= BLOCK_SIZE || time - encoder.getFirstTimestamp() >= MAX_BLOCK_AGE_MS) {
+			return flushBlock(out);
+		}
+		return 0;
+	}
+
+	@Override
+	int getNextWriteSize() {
+		return CompressedPersistenceFile.BLOCK_HEADER_SIZE + encoder.getByteLength() + MAX_SAMPLE_SIZE;
+	}
+
+	@Override
+	int finishFile(DataOutputStream out) throws IOException {
+		if (encoder.getCount() > 0) {
+			return flushBlock(out);
+		}
+		return 0;
+	}
+
+	private int flushBlock(DataOutputStream out) throws IOException {
+		try {
+			int written = CompressedPersistenceFile.writeBlock(out, encoder);
+			out.flush();
+			return written;
+		} finally {
+			encoder.reset();
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.persistence.internal;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.openjdk.jmc.rjmx.subscription.MRI;
+import org.openjdk.jmc.ui.common.xydata.DefaultTimestampedData;
+import org.openjdk.jmc.ui.common.xydata.ITimestampedData;
+
+/**
+ * A persistence file where the samples are stored in compressed blocks. The file consists of a
+ * header followed by a sequence of blocks:
+ *
+ * <pre>
+ * int     magic
+ * short   version
+ * UTF     qualified MRI name
+ * block*
+ *
+ * block:
+ * long    first timestamp [ms]
+ * long    last timestamp [ms]
+ * double  min value
+ * double  max value
+ * double  sum of values
+ * int     sample count
+ * int     payload length
+ * byte[]  payload, see {@link TimeSeriesBlockEncoder}
+ * </pre>
+ *
+ * Only the block headers are read when the file is opened. Blocks outside of a requested range are
+ * skipped without being decoded, and the block headers double as precomputed rollups with the min
+ * and max value of each block, used when browsing ranges that are too large to decode. Keeping both
+ * extremes rather than an average makes short spikes visible in the rollup.
+ */
+class CompressedPersistenceFile extends PersistenceFile {
+
+	static final String FILE_EXT = ".compressed_jmx_data"; //$NON-NLS-1$
+	static final int MAGIC = 0x4A4D4358;
+	static final short VERSION = 1;
+	static final int BLOCK_HEADER_SIZE = 8 + 8 + 8 + 8 + 8 + 4 + 4;
+	static final long TIMESTAMP_UNIT_NANOS = 1000 * 1000L;
+
+	public static final FilenameFilter FILTER = new FilenameFilter() {
+
+		@Override
+		public boolean accept(File dir, String name) {
+			return name.toLowerCase(Locale.ENGLISH).endsWith(FILE_EXT);
+		}
+	};
+
+	private static class BlockIndex {
+		int size;
+		long[] offsets = new long[16];
+		long[] firstTimestamps = new long[16];
+		long[] lastTimestamps = new long[16];
+		double[] mins = new double[16];
+		double[] maxs = new double[16];
+		int[] counts = new int[16];
+		int[] lengths = new int[16];
+
+		void add(long offset, long first, long last, double min, double max, int count, int length) {
+			if (size == offsets.length) {
+				int newLength = size * 2;
+				offsets = Arrays.copyOf(offsets, newLength);
+				firstTimestamps = Arrays.copyOf(firstTimestamps, newLength);
+				lastTimestamps = Arrays.copyOf(lastTimestamps, newLength);
+				mins = Arrays.copyOf(mins, newLength);
+				maxs = Arrays.copyOf(maxs, newLength);
+				counts = Arrays.copyOf(counts, newLength);
+				lengths = Arrays.copyOf(lengths, newLength);
+			}
+			offsets[size] = offset;
+			firstTimestamps[size] = first;
+			lastTimestamps[size] = last;
+			mins[size] = min;
+			maxs[size] = max;
+			counts[size] = count;
+			lengths[size] = length;
+			size++;
+		}
+	}
+
+	private final BlockIndex index;
+	private final long validLength;
+
+	private CompressedPersistenceFile(File file, MRI mri, long fileLen, long eventsStart, int eventCount,
+			BlockIndex index, long validLength) {
+		super(file, mri, fileLen, eventsStart, eventCount,
+				index.size > 0 ? index.firstTimestamps[0] * TIMESTAMP_UNIT_NANOS : Long.MAX_VALUE,
+				index.size > 0 ? index.lastTimestamps[index.size - 1] * TIMESTAMP_UNIT_NANOS : Long.MAX_VALUE);
+		this.index = index;
+		this.validLength = validLength;
+	}
+
+	static CompressedPersistenceFile open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+			if (raf.readInt() != MAGIC) {
+				throw new IOException("Not a compressed persistence file: " + file.getPath()); //$NON-NLS-1$
+			}
+			short version = raf.readShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported compressed persistence file version " + version); //$NON-NLS-1$
+			}
+			MRI mri = MRI.createFromQualifiedName(raf.readUTF());
+			long fileLen = raf.length();
+			long eventsStart = raf.getFilePointer();
+			BlockIndex index = new BlockIndex();
+			byte[] header = new byte[BLOCK_HEADER_SIZE];
+			ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+			long position = eventsStart;
+			int eventCount = 0;
+			while (position + BLOCK_HEADER_SIZE <= fileLen) {
+				raf.seek(position);
+				raf.readFully(header);
+				headerBuffer.clear();
+				long first = headerBuffer.getLong();
+				long last = headerBuffer.getLong();
+				double min = headerBuffer.getDouble();
+				double max = headerBuffer.getDouble();
+				headerBuffer.getDouble(); // sum
+				int count = headerBuffer.getInt();
+				int length = headerBuffer.getInt();
+				long payloadOffset = position + BLOCK_HEADER_SIZE;
+				if (count <= 0 || length < 0 || payloadOffset + length > fileLen) {
+					// Truncated or broken block, ignore the rest of the file
+					break;
+				}
+				index.add(payloadOffset, first, last, min, max, count, length);
+				eventCount += count;
+				position = payloadOffset + length;
+			}
+			return new CompressedPersistenceFile(file, mri, fileLen, eventsStart, eventCount, index, position);
+		}
+	}
+
+	static void writeFileHeader(DataOutputStream out, MRI mri) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeUTF(mri.getQualifiedName());
+	}
+
+	/**
+	 * Write a block with the samples from an encoder.
+	 *
+	 * @return the number of bytes written
+	 */
+	static int writeBlock(DataOutputStream out, TimeSeriesBlockEncoder encoder) throws IOException {
+		out.writeLong(encoder.getFirstTimestamp());
+		out.writeLong(encoder.getLastTimestamp());
+		out.writeDouble(encoder.getMin());
+		out.writeDouble(encoder.getMax());
+		out.writeDouble(encoder.getSum());
+		out.writeInt(encoder.getCount());
+		out.writeInt(encoder.getByteLength());
+		encoder.writeTo(out);
+		return BLOCK_HEADER_SIZE + encoder.getByteLength();
+	}
+
+	@Override
+	boolean isCorrupt() {
+		return validLength != fileLen;
+	}
+
+	@Override
+	synchronized ITimestampedData[] getEvents(long min, long max) throws IOException {
+		int from = findFirstBlock(min);
+		int to = findLastBlock(max);
+		if (from > to) {
+			return new ITimestampedData[0];
+		}
+		ITimestampedData[] result = new ITimestampedData[countEvents(from, to)];
+		long regionStart = index.offsets[from];
+		long regionEnd = index.offsets[to] + index.lengths[to];
+		byte[] region = new byte[(int) (regionEnd - regionStart)];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+			raf.seek(regionStart);
+			raf.readFully(region);
+		}
+		int resultIndex = 0;
+		for (int block = from; block <= to; block++) {
+			int payloadStart = (int) (index.offsets[block] - regionStart);
+			byte[] payload = Arrays.copyOfRange(region, payloadStart, payloadStart + index.lengths[block]);
+			TimeSeriesBlockDecoder decoder = new TimeSeriesBlockDecoder(payload, index.counts[block]);
+			while (decoder.hasNext()) {
+				decoder.next();
+				result[resultIndex++] = new DefaultTimestampedData(decoder.getTimestamp() * TIMESTAMP_UNIT_NANOS,
+						decoder.getValue());
+			}
+		}
+		return result;
+	}
+
+	@Override
+	int getEventCount(long min, long max) {
+		int from = findFirstBlock(min);
+		int to = findLastBlock(max);
+		return from > to ? 0 : countEvents(from, to);
+	}
+
+	/**
+	 * Get the rollup of the blocks in a range. Each block is represented by its min and max values,
+	 * placed at the first and last timestamp of the block. The order of the two values is chosen so
+	 * that the first one is closest to the previous value, since the order of the extremes within a
+	 * block is not known. Blocks with a single distinct value are represented by one data point and
+	 * blocks with only NaN values by a NaN data point.
+	 */
+	@Override
+	ITimestampedData[] getRollupEvents(long min, long max) {
+		int from = findFirstBlock(min);
+		int to = findLastBlock(max);
+		if (from > to) {
+			return new ITimestampedData[0];
+		}
+		List<ITimestampedData> result = new ArrayList<>(2 * (to - from + 1));
+		double previous = Double.NaN;
+		for (int block = from; block <= to; block++) {
+			long first = index.firstTimestamps[block] * TIMESTAMP_UNIT_NANOS;
+			long last = index.lastTimestamps[block] * TIMESTAMP_UNIT_NANOS;
+			double blockMin = index.mins[block];
+			double blockMax = index.maxs[block];
+			if (blockMin > blockMax) {
+				result.add(new DefaultTimestampedData(first + (last - first) / 2, Double.NaN));
+			} else if (blockMin == blockMax || first >= last) {
+				result.add(new DefaultTimestampedData(first + (last - first) / 2, blockMax));
+				previous = blockMax;
+			} else if (Math.abs(previous - blockMax) < Math.abs(previous - blockMin)) {
+				result.add(new DefaultTimestampedData(first, blockMax));
+				result.add(new DefaultTimestampedData(last, blockMin));
+				previous = blockMin;
+			} else {
+				result.add(new DefaultTimestampedData(first, blockMin));
+				result.add(new DefaultTimestampedData(last, blockMax));
+				previous = blockMax;
+			}
+		}
+		return result.toArray(new ITimestampedData[result.size()]);
+	}
+
+	private int countEvents(int from, int to) {
+		int count = 0;
+		for (int block = from; block <= to; block++) {
+			count += index.counts[block];
+		}
+		return count;
+	}
+
+	/**
+	 * @return the index of the block before the first block that ends at or after {@code min}, so
+	 *         that a data point to the left of the range is included
+	 */
+	private int findFirstBlock(long min) {
+		int low = 0;
+		int high = index.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (index.lastTimestamps[middle] * TIMESTAMP_UNIT_NANOS < min) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return Math.max(low - 1, 0);
+	}
+
+	/**
+	 * @return the index of the block after the last block that starts at or before {@code max}, so
+	 *         that a data point to the right of the range is included
+	 */
+	private int findLastBlock(long max) {
+		int low = 0;
+		int high = index.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (index.firstTimestamps[middle] * TIMESTAMP_UNIT_NANOS <= max) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return Math.min(low, index.size - 1);
+	}
+}
@@ -74,6 +74,16 @@ class PersistenceFile {
 	final MRI mri;
 	final long fileLen;
 
+	PersistenceFile(File file, MRI mri, long fileLen, long eventsStart, int eventCount, long start, long end) {
+		this.file = file;
+		this.mri = mri;
+		this.fileLen = fileLen;
+		this.eventsStart = eventsStart;
+		this.eventCount = eventCount;
+		this.start = start;
+		this.end = end;
+	}
+
 	PersistenceFile(File file) throws IOException {
 		this.file = file;
 		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
@@ -107,6 +117,22 @@ class PersistenceFile {
 		return events;
 	}
 
+	/**
+	 * Get the number of events that would be returned by {@link #getEvents(long, long)} for the
+	 * specified range.
+	 */
+	int getEventCount(long min, long max) {
+		return eventCount;
+	}
+
+	/**
+	 * Get a downsampled view of the events in the specified range. Files without precomputed
+	 * rollups return all events.
+	 */
+	ITimestampedData[] getRollupEvents(long min, long max) throws IOException {
+		return getEvents(min, max);
+	}
+
 	MRI getMRI() {
 		return mri;
 	}
@@ -62,18 +62,31 @@ import org.openjdk.jmc.ui.common.xydata.ITimestampedData;
 
 public class PersistenceReader implements IMRIService, IAttributeStorageService {
 
+	/**
+	 * If a requested range contains more events than this, precomputed rollups are used for the
+	 * files that have them.
+	 */
+	private static final int MAX_DETAILED_EVENTS = 50000;
+
 	private static class FileIterator implements Iterator<ITimestampedData> {
 		int nextIndex;
 		ITimestampedData[] currentFileData;
 		Iterator<PersistenceFile> files;
 		long min;
 		long max;
+		long rangeHintMin;
+		long rangeHintMax;
+		boolean useRollups;
 		ITimestampedData next;
 
-		FileIterator(Iterator<PersistenceFile> data, long min, long max) {
+		FileIterator(Iterator<PersistenceFile> data, long min, long max, long rangeHintMin, long rangeHintMax,
+				boolean useRollups) {
 			files = data;
 			this.min = min;
 			this.max = max;
+			this.rangeHintMin = rangeHintMin;
+			this.rangeHintMax = rangeHintMax;
+			this.useRollups = useRollups;
 			if (max > min) {
 				binarySearchFirst();
 			}
@@ -132,7 +145,8 @@ public class PersistenceReader implements IMRIService, IAttributeStorageService
 						return false;
 					}
 					try {
-						currentFileData = file.getEvents(min, max);
+						currentFileData = useRollups ? file.getRollupEvents(rangeHintMin, rangeHintMax)
+								: file.getEvents(rangeHintMin, rangeHintMax);
 						if (currentFileData.length > 0) {
 							nextIndex = 0;
 							return true;
@@ -167,7 +181,16 @@ public class PersistenceReader implements IMRIService, IAttributeStorageService
 		@Override
 		public Iterator<ITimestampedData> createIterator(long min, long max) {
 			if (this.min <= max && this.max >= min) {
-				return new FileIterator(files.iterator(), this.min, this.max);
+				long rangeHintMin = Math.max(this.min, min);
+				long rangeHintMax = Math.min(this.max, max);
+				long eventCount = 0;
+				for (PersistenceFile file : files) {
+					if (file.end >= rangeHintMin && file.start <= rangeHintMax) {
+						eventCount += file.getEventCount(rangeHintMin, rangeHintMax);
+					}
+				}
+				return new FileIterator(files.iterator(), this.min, this.max, rangeHintMin, rangeHintMax,
+						eventCount > MAX_DETAILED_EVENTS);
 			} else {
 				return Collections.<ITimestampedData> emptyList().iterator();
 			}
@@ -262,20 +285,8 @@ public class PersistenceReader implements IMRIService, IAttributeStorageService
 			return;
 		}
 		ArrayList<PersistenceFile> files = new ArrayList<>();
-		File[] listFiles = attributeDir.listFiles(PersistenceFile.FILTER);
-		if (listFiles != null) {
-			for (File f : listFiles) {
-				try {
-					PersistenceFile pf = new PersistenceFile(f);
-					if (pf.eventCount > 0) {
-						files.add(pf);
-					}
-				} catch (Exception e) {
-					// Log warning and ignore file
-					RJMXPlugin.getDefault().getLogger().log(Level.WARNING, "Could not add file " + f.getPath(), e); //$NON-NLS-1$
-				}
-			}
-		}
+		addFiles(attributeDir.listFiles(PersistenceFile.FILTER), false, files);
+		addFiles(attributeDir.listFiles(CompressedPersistenceFile.FILTER), true, files);
 		files.sort(PersistenceFile.PERSISTENCE_FILE_START_COMPARATOR);
 		List<Long> seriesStart = new ArrayList<>();
 		DataInputStream seriesFileStream = null;
@@ -305,6 +316,22 @@ public class PersistenceReader implements IMRIService, IAttributeStorageService
 		storages.put(mri, storage);
 	}
 
+	private static void addFiles(File[] listFiles, boolean compressed, List<PersistenceFile> files) {
+		if (listFiles != null) {
+			for (File f : listFiles) {
+				try {
+					PersistenceFile pf = compressed ? CompressedPersistenceFile.open(f) : new PersistenceFile(f);
+					if (pf.eventCount > 0) {
+						files.add(pf);
+					}
+				} catch (Exception e) {
+					// Log warning and ignore file
+					RJMXPlugin.getDefault().getLogger().log(Level.WARNING, "Could not add file " + f.getPath(), e); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
 	private static File getPersistenceDirectoryPreference() {
 		File persistenceDirectory = new File(RJMXPlugin.getDefault().getRJMXPreferences()
 				.get(PreferencesKeys.PROPERTY_PERSISTENCE_DIRECTORY, PreferencesKeys.DEFAULT_PERSISTENCE_DIRECTORY));
@@ -56,12 +56,15 @@ public class PersistenceWriter implements IPersistenceService, IDisposableServic
 	private final String uid;
 	private boolean running;
 	private final ISubscriptionService service;
+	// Writes buffered values if the JVM exits without the service being disposed
+	private final Thread shutdownHook = new Thread(this::flush, "Persistence Writer Shutdown"); //$NON-NLS-1$
 
 	public PersistenceWriter(String uid, ISubscriptionService service) {
 		this.service = service;
 		this.uid = uid;
 		RJMXPlugin.getDefault().getRJMXPreferences().addPreferenceChangeListener(this);
 		loadState();
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
 	}
 
 	@Override
@@ -82,6 +85,23 @@ public class PersistenceWriter implements IPersistenceService, IDisposableServic
 			} catch (NumberFormatException e) {
 				// Ignore invalid value
 			}
+		} else if (event.getKey().equals(PreferencesKeys.PROPERTY_PERSISTENCE_COMPRESSED)) {
+			recreateWriters();
+		}
+	}
+
+	private synchronized void recreateWriters() {
+		for (Entry<MRI, AttributeWriter> e : attributes.entrySet()) {
+			AttributeWriter oldWriter = e.getValue();
+			service.removeMRIValueListener(oldWriter);
+			oldWriter.stop();
+			AttributeWriter newWriter = createWriter(e.getKey());
+			newWriter.setEnabled(oldWriter.isEnabled());
+			e.setValue(newWriter);
+			if (isRunning() && newWriter.isEnabled()) {
+				newWriter.start();
+				service.addMRIValueListener(e.getKey(), newWriter);
+			}
 		}
 	}
 
@@ -105,6 +125,12 @@ public class PersistenceWriter implements IPersistenceService, IDisposableServic
 		}
 	}
 
+	private synchronized void flush() {
+		for (AttributeWriter writer : attributes.values()) {
+			writer.flush();
+		}
+	}
+
 	@Override
 	public synchronized void add(MRI mri) {
 		AttributeWriter writer = getWriter(mri);
@@ -142,17 +168,26 @@ public class PersistenceWriter implements IPersistenceService, IDisposableServic
 	private AttributeWriter getWriter(MRI mri) {
 		AttributeWriter writer = attributes.get(mri);
 		if (writer == null) {
-			File persistenceDirectory = calculatePersistenceDirectory(RJMXPlugin.getDefault().getRJMXPreferences().get(
-					PreferencesKeys.PROPERTY_PERSISTENCE_DIRECTORY, PreferencesKeys.DEFAULT_PERSISTENCE_DIRECTORY));
-			long maxFileSize = calculateMaxFileSize(RJMXPlugin.getDefault().getRJMXPreferences().getLong(
-					PreferencesKeys.PROPERTY_PERSISTENCE_LOG_ROTATION_LIMIT_KB,
-					PreferencesKeys.DEFAULT_PERSISTENCE_LOG_ROTATION_LIMIT_KB));
-			writer = new AttributeWriter(mri, persistenceDirectory, maxFileSize);
+			writer = createWriter(mri);
 			attributes.put(mri, writer);
 		}
 		return writer;
 	}
 
+	private AttributeWriter createWriter(MRI mri) {
+		File persistenceDirectory = calculatePersistenceDirectory(RJMXPlugin.getDefault().getRJMXPreferences()
+				.get(PreferencesKeys.PROPERTY_PERSISTENCE_DIRECTORY, PreferencesKeys.DEFAULT_PERSISTENCE_DIRECTORY));
+		long maxFileSize = calculateMaxFileSize(RJMXPlugin.getDefault().getRJMXPreferences().getLong(
+				PreferencesKeys.PROPERTY_PERSISTENCE_LOG_ROTATION_LIMIT_KB,
+				PreferencesKeys.DEFAULT_PERSISTENCE_LOG_ROTATION_LIMIT_KB));
+		boolean compressed = RJMXPlugin.getDefault().getRJMXPreferences().getBoolean(
+				PreferencesKeys.PROPERTY_PERSISTENCE_COMPRESSED, PreferencesKeys.DEFAULT_PERSISTENCE_COMPRESSED);
+		if (compressed) {
+			return new CompressedAttributeWriter(mri, persistenceDirectory, maxFileSize);
+		}
+		return new AttributeWriter(mri, persistenceDirectory, maxFileSize);
+	}
+
 	private void storeState() {
 		StringBuilder allAttributes = new StringBuilder();
 		for (Entry<MRI, AttributeWriter> e : attributes.entrySet()) {
@@ -194,6 +229,11 @@ public class PersistenceWriter implements IPersistenceService, IDisposableServic
 		RJMXPlugin.getDefault().getRJMXPreferences().removePreferenceChangeListener(this);
 		stop();
 		storeState();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Already shutting down
+		}
 	}
 
 	private long calculateMaxFileSize(long preferenceValue) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.persistence.internal;
+
+/**
+ * Decodes a block of samples written by {@link TimeSeriesBlockEncoder}. Call {@link #next()} once
+ * per sample and then read the sample using {@link #getTimestamp()} and {@link #getValue()}.
+ */
+public final class TimeSeriesBlockDecoder {
+
+	private final byte[] data;
+	private final int count;
+	private long bitPosition;
+	private int index;
+	private long timestamp;
+	private long delta;
+	private long valueBits;
+	private int leadingZeros;
+	private int trailingZeros;
+
+	public TimeSeriesBlockDecoder(byte[] data, int count) {
+		this.data = data;
+		this.count = count;
+	}
+
+	public boolean hasNext() {
+		return index < count;
+	}
+
+	public void next() {
+		if (index == 0) {
+			timestamp = readBits(64);
+			valueBits = readBits(64);
+		} else {
+			delta += readDeltaOfDelta();
+			timestamp += delta;
+			valueBits ^= readValueXor();
+		}
+		index++;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public double getValue() {
+		return Double.longBitsToDouble(valueBits);
+	}
+
+	private long readDeltaOfDelta() {
+		int bits;
+		if (readBit() == 0) {
+			return 0;
+		} else if (readBit() == 0) {
+			bits = 7;
+		} else if (readBit() == 0) {
+			bits = 9;
+		} else if (readBit() == 0) {
+			bits = 12;
+		} else if (readBit() == 0) {
+			bits = 32;
+		} else {
+			bits = 64;
+		}
+		long zigZag = readBits(bits);
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+
+	private long readValueXor() {
+		if (readBit() == 0) {
+			return 0;
+		}
+		if (readBit() != 0) {
+			leadingZeros = (int) readBits(5);
+			int significantBits = (int) readBits(6) + 1;
+			trailingZeros = 64 - leadingZeros - significantBits;
+		}
+		return readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+	}
+
+	private int readBit() {
+		int bit = (data[(int) (bitPosition >>> 3)] >>> (7 - (bitPosition & 7))) & 1;
+		bitPosition++;
+		return bit;
+	}
+
+	private long readBits(int bits) {
+		long value = 0;
+		for (int i = 0; i < bits; i++) {
+			value = (value << 1) | readBit();
+		}
+		return value;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.persistence.internal;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes a block of (timestamp, value) samples into a compact bit stream. Timestamps are stored
+ * using delta-of-delta encoding and values are stored XOR:ed with the previous value, as described
+ * in the Gorilla paper by Pelkonen et al. Regularly sampled attributes with slowly changing values
+ * typically need only a few bits per sample.
+ * <p>
+ * The encoder also keeps track of the min, max and sum of the values so that a block header can be
+ * written without decoding the samples. NaN values are encoded like any other value, but are not
+ * included in the min, max and sum. Timestamps do not have to be increasing. Use
+ * {@link TimeSeriesBlockDecoder} to read the samples back.
+ */
+public final class TimeSeriesBlockEncoder {
+
+	private byte[] buffer = new byte[64];
+	private long bitPosition;
+	private int count;
+	private long firstTimestamp;
+	private long lastTimestamp;
+	private long lastDelta;
+	private long lastValueBits;
+	private int lastLeadingZeros;
+	private int lastTrailingZeros;
+	private double min;
+	private double max;
+	private double sum;
+
+	public TimeSeriesBlockEncoder() {
+		reset();
+	}
+
+	public void reset() {
+		Arrays.fill(buffer, (byte) 0);
+		bitPosition = 0;
+		count = 0;
+		lastDelta = 0;
+		lastLeadingZeros = -1;
+		lastTrailingZeros = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		sum = 0;
+	}
+
+	public void add(long timestamp, double value) {
+		long valueBits = Double.doubleToRawLongBits(value);
+		if (count == 0) {
+			writeBits(timestamp, 64);
+			writeBits(valueBits, 64);
+			firstTimestamp = timestamp;
+		} else {
+			long delta = timestamp - lastTimestamp;
+			writeDeltaOfDelta(delta - lastDelta);
+			lastDelta = delta;
+			writeValue(valueBits ^ lastValueBits);
+		}
+		lastTimestamp = timestamp;
+		lastValueBits = valueBits;
+		if (!Double.isNaN(value)) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sum += value;
+		}
+		count++;
+	}
+
+	private void writeDeltaOfDelta(long deltaOfDelta) {
+		long zigZag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+		if (zigZag == 0) {
+			writeBits(0b0, 1);
+		} else if ((zigZag >>> 7) == 0) {
+			writeBits(0b10, 2);
+			writeBits(zigZag, 7);
+		} else if ((zigZag >>> 9) == 0) {
+			writeBits(0b110, 3);
+			writeBits(zigZag, 9);
+		} else if ((zigZag >>> 12) == 0) {
+			writeBits(0b1110, 4);
+			writeBits(zigZag, 12);
+		} else if ((zigZag >>> 32) == 0) {
+			writeBits(0b11110, 5);
+			writeBits(zigZag, 32);
+		} else {
+			writeBits(0b11111, 5);
+			writeBits(zigZag, 64);
+		}
+	}
+
+	private void writeValue(long xor) {
+		if (xor == 0) {
+			writeBits(0b0, 1);
+			return;
+		}
+		int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+		int trailingZeros = Long.numberOfTrailingZeros(xor);
+		if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+			// Meaningful bits fit in the previous window
+			writeBits(0b10, 2);
+			writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+		} else {
+			int significantBits = 64 - leadingZeros - trailingZeros;
+			writeBits(0b11, 2);
+			writeBits(leadingZeros, 5);
+			writeBits(significantBits - 1, 6);
+			writeBits(xor >>> trailingZeros, significantBits);
+			lastLeadingZeros = leadingZeros;
+			lastTrailingZeros = trailingZeros;
+		}
+	}
+
+	private void writeBits(long value, int bits) {
+		ensureCapacity(bitPosition + bits);
+		for (int i = bits - 1; i >= 0; i--) {
+			if (((value >>> i) & 1) != 0) {
+				buffer[(int) (bitPosition >>> 3)] |= (byte) (0x80 >>> (bitPosition & 7));
+			}
+			bitPosition++;
+		}
+	}
+
+	private void ensureCapacity(long bits) {
+		int bytes = (int) ((bits + 7) >>> 3);
+		if (bytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getByteLength() {
+		return (int) ((bitPosition + 7) >>> 3);
+	}
+
+	public long getFirstTimestamp() {
+		return firstTimestamp;
+	}
+
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.write(buffer, 0, getByteLength());
+	}
+}
@@ -49,6 +49,10 @@ public class Initializer extends AbstractPreferenceInitializer {
 		preferences.putInt(PreferencesKeys.PROPERTY_UPDATE_INTERVAL, PreferencesKeys.DEFAULT_UPDATE_INTERVAL);
 		preferences.putInt(PreferencesKeys.PROPERTY_RETAINED_EVENT_VALUES,
 				PreferencesKeys.DEFAULT_RETAINED_EVENT_VALUES);
+		preferences.putBoolean(PreferencesKeys.PROPERTY_DOWNSAMPLE_RETAINED_EVENT_VALUES,
+				PreferencesKeys.DEFAULT_DOWNSAMPLE_RETAINED_EVENT_VALUES);
+		preferences.putInt(PreferencesKeys.PROPERTY_RAW_RETAINED_EVENT_VALUES,
+				PreferencesKeys.DEFAULT_RAW_RETAINED_EVENT_VALUES);
 
 		preferences.put(PreferencesKeys.PROPERTY_MAIL_SERVER, PreferencesKeys.DEFAULT_MAIL_SERVER);
 		preferences.putInt(PreferencesKeys.PROPERTY_MAIL_SERVER_PORT, PreferencesKeys.DEFAULT_MAIL_SERVER_PORT);
@@ -60,6 +64,8 @@ public class Initializer extends AbstractPreferenceInitializer {
 
 		preferences.putLong(PreferencesKeys.PROPERTY_PERSISTENCE_LOG_ROTATION_LIMIT_KB,
 				PreferencesKeys.DEFAULT_PERSISTENCE_LOG_ROTATION_LIMIT_KB);
+		preferences.putBoolean(PreferencesKeys.PROPERTY_PERSISTENCE_COMPRESSED,
+				PreferencesKeys.DEFAULT_PERSISTENCE_COMPRESSED);
 		preferences.put(PreferencesKeys.PROPERTY_PERSISTENCE_DIRECTORY,
 				new File(PreferencesKeys.DEFAULT_PERSISTENCE_DIRECTORY).getPath());
 		preferences.putInt(PreferencesKeys.PROPERTY_LIST_AGGREGATE_SIZE, PreferencesKeys.DEFAULT_LIST_AGGREGATE_SIZE);
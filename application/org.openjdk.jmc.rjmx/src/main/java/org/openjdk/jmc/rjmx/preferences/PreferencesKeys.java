@@ -48,6 +48,14 @@ public class PreferencesKeys {
 	public static final String PROPERTY_RETAINED_EVENT_VALUES = "rjmx.events.retained"; //$NON-NLS-1$
 	public static final int DEFAULT_RETAINED_EVENT_VALUES = 7 * 24 * 3600;
 
+	/** Keep retained event values in ring buffers, downsampling the older values */
+	public static final String PROPERTY_DOWNSAMPLE_RETAINED_EVENT_VALUES = "rjmx.events.retained.downsample"; //$NON-NLS-1$
+	public static final boolean DEFAULT_DOWNSAMPLE_RETAINED_EVENT_VALUES = false;
+
+	/** Number of event values kept at full resolution when downsampling */
+	public static final String PROPERTY_RAW_RETAINED_EVENT_VALUES = "rjmx.events.retained.raw"; //$NON-NLS-1$
+	public static final int DEFAULT_RAW_RETAINED_EVENT_VALUES = 3600;
+
 	public static final String PROPERTY_MAIL_SERVER = "rjmx.smtp.server"; //$NON-NLS-1$
 	public static final String PROPERTY_MAIL_SERVER_PORT = "rjmx.smtp.server.port"; //$NON-NLS-1$
 	public static final String PROPERTY_MAIL_SERVER_SECURE = "rjmx.smtp.server.secure"; //$NON-NLS-1$
@@ -64,6 +72,8 @@ public class PreferencesKeys {
 	// Persistence
 	public static final String PROPERTY_PERSISTENCE_LOG_ROTATION_LIMIT_KB = "rjmx.services.persistence.log.rotation.limit"; //$NON-NLS-1$
 	public static final long DEFAULT_PERSISTENCE_LOG_ROTATION_LIMIT_KB = 100;
+	public static final String PROPERTY_PERSISTENCE_COMPRESSED = "rjmx.services.persistence.compressed"; //$NON-NLS-1$
+	public static final boolean DEFAULT_PERSISTENCE_COMPRESSED = false;
 	public static final String PROPERTY_PERSISTENCE_DIRECTORY = "rjmx.services.persistence.directory"; //$NON-NLS-1$
 	public static final String DEFAULT_PERSISTENCE_DIRECTORY = CorePlugin.getDefault().getWorkspaceDirectory().getPath()
 			+ File.separator + "persisted_jmx_data" + File.separator; //$NON-NLS-1$
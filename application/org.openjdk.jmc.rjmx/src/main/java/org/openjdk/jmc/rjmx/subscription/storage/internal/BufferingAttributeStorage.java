@@ -38,6 +38,8 @@ import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+
 import org.openjdk.jmc.common.collection.BoundedList;
 import org.openjdk.jmc.rjmx.RJMXPlugin;
 import org.openjdk.jmc.rjmx.preferences.PreferencesKeys;
@@ -53,6 +55,10 @@ import org.openjdk.jmc.ui.common.xydata.ITimestampedData;
 /**
  * Simple attribute storage that contains attribute events.
  * <p>
+ * If {@link PreferencesKeys#PROPERTY_DOWNSAMPLE_RETAINED_EVENT_VALUES} is set when the storage is
+ * created, then the values are kept in a {@link DownsamplingTimeSeries} instead of as a list of
+ * event objects.
+ * <p>
  * NOTE: You must synchronize on the storage if you use the dataseries iterator!
  */
 public class BufferingAttributeStorage extends Observable implements IAttributeStorage {
@@ -68,14 +74,21 @@ public class BufferingAttributeStorage extends Observable implements IAttributeS
 		return currentRetainedEventValues;
 	}
 
-	private final BoundedList<ITimestampedData> cache = new BoundedList<>(lookupRetainedEventValues());
+	private final BoundedList<ITimestampedData> cache;
+	private final DownsamplingTimeSeries downsampledCache;
 	private final MRI mri;
 	private final ISubscriptionService subscriptionService;
 	private final IMRIValueListener valueListener = new IMRIValueListener() {
 		@Override
 		public void valueChanged(MRIValueEvent event) {
 			Object value = event.getValue();
-			if (value instanceof Number) {
+			if (value instanceof Number && downsampledCache != null) {
+				long timestamp = event.getTimestamp() * 1000 * 1000L;
+				double doubleValue = ((Number) value).doubleValue();
+				downsampledCache.add(timestamp, doubleValue);
+				setChanged();
+				notifyObservers(new DefaultTimestampedData(timestamp, doubleValue));
+			} else if (value instanceof Number) {
 				if (lookupRetainedEventValues() != cache.getMaxSize()) {
 					cache.setMaxSize(Math.max(lookupRetainedEventValues(), Math.max(cache.getSize() - 1000, 1)));
 				}
@@ -92,10 +105,25 @@ public class BufferingAttributeStorage extends Observable implements IAttributeS
 	public BufferingAttributeStorage(MRI attribute, ISubscriptionService subscriptionService) {
 		mri = attribute;
 		this.subscriptionService = subscriptionService;
+		IEclipsePreferences preferences = RJMXPlugin.getDefault().getRJMXPreferences();
+		if (preferences.getBoolean(PreferencesKeys.PROPERTY_DOWNSAMPLE_RETAINED_EVENT_VALUES,
+				PreferencesKeys.DEFAULT_DOWNSAMPLE_RETAINED_EVENT_VALUES)) {
+			cache = null;
+			downsampledCache = new DownsamplingTimeSeries(
+					preferences.getInt(PreferencesKeys.PROPERTY_RAW_RETAINED_EVENT_VALUES,
+							PreferencesKeys.DEFAULT_RAW_RETAINED_EVENT_VALUES),
+					lookupRetainedEventValues());
+		} else {
+			cache = new BoundedList<>(lookupRetainedEventValues());
+			downsampledCache = null;
+		}
 		dataSeries.add(new MRIDataSeries() {
 
 			@Override
 			public Iterator<ITimestampedData> createIterator(long min, long max) {
+				if (downsampledCache != null) {
+					return downsampledCache.getData(min, max).iterator();
+				}
 				return cache.iterator();
 			}
 
@@ -109,12 +137,18 @@ public class BufferingAttributeStorage extends Observable implements IAttributeS
 
 	@Override
 	public long getDataStart() {
+		if (downsampledCache != null) {
+			return downsampledCache.getFirstTimestamp();
+		}
 		ITimestampedData first = cache.getFirst();
 		return first != null ? first.getX() : Long.MAX_VALUE;
 	}
 
 	@Override
 	public long getDataEnd() {
+		if (downsampledCache != null) {
+			return downsampledCache.getLastTimestamp();
+		}
 		ITimestampedData last = cache.getLast();
 		return last != null ? last.getX() : Long.MIN_VALUE;
 	}
@@ -145,6 +179,9 @@ public class BufferingAttributeStorage extends Observable implements IAttributeS
 	}
 
 	public int getRetainedLength() {
+		if (downsampledCache != null) {
+			return downsampledCache.getRetainedLength();
+		}
 		return cache.getSize();
 	}
 }
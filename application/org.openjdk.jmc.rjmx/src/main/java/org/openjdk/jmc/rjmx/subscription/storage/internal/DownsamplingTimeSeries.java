@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.subscription.storage.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmc.ui.common.xydata.DefaultTimestampedData;
+import org.openjdk.jmc.ui.common.xydata.ITimestampedData;
+
+/**
+ * A bounded time series stored in primitive ring buffers. The most recent values are kept at full
+ * resolution. Older values are downsampled into a number of levels, where each bucket on a level
+ * holds the min and max values of {@link #FACTOR} buckets on the level below, together with the
+ * timestamps of those values. All levels have the same capacity, so the memory usage is fixed while
+ * the time span covered grows by {@link #FACTOR} for each level.
+ * <p>
+ * When data is requested, the finest level that covers the requested range without returning an
+ * excessive number of points is selected. The most recent data that has not yet been aggregated to
+ * the selected level is taken from the finer levels.
+ */
+public final class DownsamplingTimeSeries {
+
+	public static final int FACTOR = 10;
+	private static final int MAX_LEVELS = 8;
+	private static final int MAX_POINTS = 10000;
+
+	/**
+	 * A ring buffer of buckets. Level 0 holds raw values, which are represented as buckets with the
+	 * same min and max.
+	 */
+	private static class Level {
+		final long[] minTimes;
+		final double[] mins;
+		final long[] maxTimes;
+		final double[] maxs;
+		int start;
+		int size;
+
+		// The bucket currently being aggregated from the level below
+		int pendingCount;
+		long pendingMinTime;
+		double pendingMin;
+		long pendingMaxTime;
+		double pendingMax;
+
+		Level(int capacity, boolean raw) {
+			minTimes = new long[capacity];
+			mins = new double[capacity];
+			maxTimes = raw ? minTimes : new long[capacity];
+			maxs = raw ? mins : new double[capacity];
+		}
+
+		void add(long minTime, double min, long maxTime, double max) {
+			int index = (start + size) % minTimes.length;
+			if (size == minTimes.length) {
+				start = (start + 1) % minTimes.length;
+			} else {
+				size++;
+			}
+			minTimes[index] = minTime;
+			mins[index] = min;
+			maxTimes[index] = maxTime;
+			maxs[index] = max;
+		}
+
+		/**
+		 * Merge a bucket into the pending bucket.
+		 *
+		 * @return {@code true} if the pending bucket is complete
+		 */
+		boolean aggregate(long minTime, double min, long maxTime, double max) {
+			if (pendingCount == 0 || min < pendingMin) {
+				pendingMin = min;
+				pendingMinTime = minTime;
+			}
+			if (pendingCount == 0 || max > pendingMax) {
+				pendingMax = max;
+				pendingMaxTime = maxTime;
+			}
+			return ++pendingCount == FACTOR;
+		}
+
+		int physical(int logicalIndex) {
+			return (start + logicalIndex) % minTimes.length;
+		}
+
+		long firstTime(int logicalIndex) {
+			int i = physical(logicalIndex);
+			return Math.min(minTimes[i], maxTimes[i]);
+		}
+
+		long lastTime(int logicalIndex) {
+			int i = physical(logicalIndex);
+			return Math.max(minTimes[i], maxTimes[i]);
+		}
+
+		/**
+		 * @return the logical index of the first bucket with data at or after {@code time}
+		 */
+		int search(long time) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (lastTime(middle) < time) {
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return low;
+		}
+	}
+
+	private final Level[] levels;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * @param rawCapacity
+	 *            the number of values to keep at full resolution
+	 * @param retainedValues
+	 *            the approximate number of values that the downsampled levels should cover
+	 */
+	public DownsamplingTimeSeries(int rawCapacity, int retainedValues) {
+		rawCapacity = Math.max(rawCapacity, FACTOR);
+		List<Level> levelList = new ArrayList<>();
+		levelList.add(new Level(rawCapacity, true));
+		long covered = rawCapacity;
+		while (covered < retainedValues && levelList.size() < MAX_LEVELS) {
+			levelList.add(new Level(rawCapacity, false));
+			covered *= FACTOR;
+		}
+		levels = levelList.toArray(new Level[levelList.size()]);
+	}
+
+	public synchronized void add(long timestamp, double value) {
+		lastTimestamp = timestamp;
+		levels[0].add(timestamp, value, timestamp, value);
+		long minTime = timestamp;
+		double min = value;
+		long maxTime = timestamp;
+		double max = value;
+		for (int i = 1; i < levels.length; i++) {
+			Level level = levels[i];
+			if (!level.aggregate(minTime, min, maxTime, max)) {
+				break;
+			}
+			minTime = level.pendingMinTime;
+			min = level.pendingMin;
+			maxTime = level.pendingMaxTime;
+			max = level.pendingMax;
+			level.pendingCount = 0;
+			level.add(minTime, min, maxTime, max);
+		}
+	}
+
+	public synchronized long getFirstTimestamp() {
+		for (int i = levels.length - 1; i >= 0; i--) {
+			if (levels[i].size > 0) {
+				return levels[i].firstTime(0);
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public synchronized long getLastTimestamp() {
+		return levels[0].size > 0 ? lastTimestamp : Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the total number of values and buckets retained
+	 */
+	public synchronized int getRetainedLength() {
+		int length = 0;
+		for (Level level : levels) {
+			length += level.size;
+		}
+		return length;
+	}
+
+	/**
+	 * Get a snapshot of the data in a range. The returned data includes one point outside of the
+	 * range on each side, if available.
+	 */
+	public synchronized List<ITimestampedData> getData(long min, long max) {
+		int selected = selectLevel(min, max);
+		List<ITimestampedData> result = new ArrayList<>();
+		long emittedUntil = Long.MIN_VALUE;
+		for (int i = selected; i >= 0; i--) {
+			emittedUntil = addData(levels[i], Math.max(min, emittedUntil + 1), max, emittedUntil, result);
+		}
+		return result;
+	}
+
+	private int selectLevel(long min, long max) {
+		int selected = 0;
+		while (selected + 1 < levels.length && levels[selected + 1].size > 0) {
+			Level level = levels[selected];
+			boolean coversRange = level.size > 0 && level.firstTime(0) <= min;
+			boolean tooManyPoints = level.search(max) - level.search(min) > MAX_POINTS;
+			if (coversRange && !tooManyPoints) {
+				break;
+			}
+			selected++;
+		}
+		return selected;
+	}
+
+	private static long addData(Level level, long min, long max, long emittedUntil, List<ITimestampedData> result) {
+		if (level.size == 0 || min > max) {
+			return emittedUntil;
+		}
+		int from = Math.max(level.search(min) - 1, 0);
+		for (int i = from; i < level.size; i++) {
+			if (level.firstTime(i) <= emittedUntil) {
+				continue;
+			}
+			int p = level.physical(i);
+			if (level.minTimes[p] == level.maxTimes[p]) {
+				result.add(new DefaultTimestampedData(level.minTimes[p], level.mins[p]));
+			} else if (level.minTimes[p] < level.maxTimes[p]) {
+				result.add(new DefaultTimestampedData(level.minTimes[p], level.mins[p]));
+				result.add(new DefaultTimestampedData(level.maxTimes[p], level.maxs[p]));
+			} else {
+				result.add(new DefaultTimestampedData(level.maxTimes[p], level.maxs[p]));
+				result.add(new DefaultTimestampedData(level.minTimes[p], level.mins[p]));
+			}
+			emittedUntil = level.lastTime(i);
+			if (emittedUntil > max) {
+				break;
+			}
+		}
+		return emittedUntil;
+	}
+}
@@ -53,6 +53,7 @@ public class PollManager implements Runnable, IPropertyChangeListener {
 
 	private final Vector<Pollable> m_pollableObjects = new Vector<>();
 	volatile private int m_pollingInterval = 0;
+	volatile private int m_minimumPollingInterval = 0;
 	volatile private boolean m_keepAlive = false;
 	private final String m_propertyName;
 
@@ -68,6 +69,17 @@ public class PollManager implements Runnable, IPropertyChangeListener {
 		}
 	}
 
+	/**
+	 * Sets a lower bound for the polling interval, used by pollable objects to back off when
+	 * polling is expensive. The configured polling interval is used if it is longer.
+	 *
+	 * @param minimumPollingInterval
+	 *            the minimum polling interval in milliseconds, or 0 for no lower bound
+	 */
+	public void setMinimumPollingInterval(int minimumPollingInterval) {
+		m_minimumPollingInterval = minimumPollingInterval;
+	}
+
 	/**
 	 * Adds a pollable object to the PollManager. This object will be polled constantly with the
 	 * interval specicified in the constructor
@@ -147,7 +159,7 @@ public class PollManager implements Runnable, IPropertyChangeListener {
 			try {
 				pollAllPollees();
 				synchronized (this) {
-					this.wait(m_pollingInterval);
+					this.wait(Math.max(m_pollingInterval, m_minimumPollingInterval));
 				}
 			} catch (InterruptedException e) {
 				// ignore
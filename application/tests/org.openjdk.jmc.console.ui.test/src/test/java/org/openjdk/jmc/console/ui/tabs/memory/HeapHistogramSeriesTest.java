@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.console.ui.tabs.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.openjdk.jmc.console.ui.tabs.memory.HeapHistogramSeries.Trend;
+
+@SuppressWarnings("nls")
+public class HeapHistogramSeriesTest {
+	private static final String HEADER = " num     #instances         #bytes  class name (module)\n"
+			+ "-------------------------------------------------------\n";
+
+	@Test
+	public void testParse() {
+		HeapHistogramSeries series = new HeapHistogramSeries();
+		series.addSnapshot(0, HEADER + "   1:         12345         678901  [B (java.base@11.0.21)\n"
+				+ "   2:            10            240  java.lang.String (java.base@11.0.21)  \r\n"
+				+ "            7           112  com.example.NoRank\n" + "   3:  garbage\n"
+				+ "Total         12362         679253\n");
+		List<Trend> trends = series.getTrends();
+		assertEquals(3, trends.size());
+		Trend bytes = find(trends, "[B (java.base@11.0.21)");
+		assertEquals(12345, bytes.getCount());
+		assertEquals(678901, bytes.getBytes());
+		Trend string = find(trends, "java.lang.String (java.base@11.0.21)");
+		assertEquals(10, string.getCount());
+		assertEquals(240, string.getBytes());
+		assertEquals(112, find(trends, "com.example.NoRank").getBytes());
+		// Too few snapshots for a trend
+		assertEquals(0, string.getBytesPerSecond(), 0);
+		assertTrue(series.getLeakSuspects(10).isEmpty());
+	}
+
+	@Test
+	public void testTrend() {
+		HeapHistogramSeries series = new HeapHistogramSeries();
+		for (int i = 0; i < 10; i++) {
+			// Grows by 1000 bytes per second, snapshots every 2 seconds
+			series.addSnapshot(i * 2000L, histogram("Growing", 10 + i, 2000 * i + 500, "Constant", 5, 100));
+		}
+		List<Trend> trends = series.getTrends();
+		Trend growing = find(trends, "Growing");
+		assertEquals(19, growing.getCount());
+		assertEquals(18500, growing.getBytes());
+		assertEquals(1000, growing.getBytesPerSecond(), 1e-6);
+		assertEquals(1, growing.getMonotonicity(), 0);
+		assertEquals(1000, growing.getLeakScore(), 1e-6);
+		Trend constant = find(trends, "Constant");
+		assertEquals(0, constant.getBytesPerSecond(), 1e-6);
+		assertEquals(0, constant.getMonotonicity(), 0);
+		assertEquals(0, constant.getLeakScore(), 0);
+	}
+
+	@Test
+	public void testLeakSuspects() {
+		HeapHistogramSeries series = new HeapHistogramSeries();
+		for (int i = 0; i < 8; i++) {
+			long oscillating = 1000 * i + (i % 2 == 0 ? 0 : 3000);
+			series.addSnapshot(i * 1000L, histogram("Steady", 1, 500 * i, "Oscillating", 1, oscillating, "Shrinking",
+					1, 10000 - 100 * i, "Fast", 1, 2000 * i));
+		}
+		List<Trend> suspects = series.getLeakSuspects(10);
+		assertEquals(3, suspects.size());
+		assertEquals("Fast", suspects.get(0).getClassName());
+		// Oscillating grows faster than Steady, but only half of its changes are increases
+		assertTrue(find(suspects, "Oscillating").getBytesPerSecond() > find(suspects, "Steady").getBytesPerSecond());
+		assertTrue(find(suspects, "Oscillating").getMonotonicity() < 1);
+		assertEquals(1, series.getLeakSuspects(1).size());
+		assertEquals("Fast", series.getLeakSuspects(1).get(0).getClassName());
+	}
+
+	@Test
+	public void testMaxSnapshots() {
+		HeapHistogramSeries series = new HeapHistogramSeries(3);
+		// Shrinks at first, then grows by 100 bytes per second in the last three snapshots
+		long[] sizes = {5000, 4000, 3000, 3100, 3200};
+		for (int i = 0; i < sizes.length; i++) {
+			series.addSnapshot(i * 1000L, histogram("Class", 1, sizes[i]));
+		}
+		assertEquals(3, series.getSnapshotCount());
+		Trend trend = find(series.getTrends(), "Class");
+		assertEquals(100, trend.getBytesPerSecond(), 1e-6);
+		assertEquals(1, trend.getMonotonicity(), 0);
+	}
+
+	@Test
+	public void testRemovedClasses() {
+		HeapHistogramSeries series = new HeapHistogramSeries(3);
+		series.addSnapshot(0, histogram("Gone", 1, 100, "Kept", 1, 100));
+		series.addSnapshot(1000, histogram("Kept", 1, 200));
+		// Classes that are not in the latest snapshot have no trend
+		assertNull(findOrNull(series.getTrends(), "Gone"));
+		series.addSnapshot(2000, histogram("Kept", 1, 300, "Gone", 1, 50));
+		// Missing values count as zero
+		Trend gone = find(series.getTrends(), "Gone");
+		assertEquals(-25, gone.getBytesPerSecond(), 1e-6);
+		assertEquals(0.5, gone.getMonotonicity(), 0);
+	}
+
+	@Test
+	public void testClear() {
+		HeapHistogramSeries series = new HeapHistogramSeries();
+		for (int i = 0; i < 5; i++) {
+			series.addSnapshot(i * 1000L, histogram("Class", 1, 1000 * i));
+		}
+		assertEquals(1, series.getLeakSuspects(10).size());
+		series.clear();
+		assertEquals(0, series.getSnapshotCount());
+		assertTrue(series.getTrends().isEmpty());
+		// The trend is computed only from the snapshots added after clearing
+		for (int i = 0; i < 3; i++) {
+			series.addSnapshot(10000 + i * 1000L, histogram("Class", 1, 5000));
+		}
+		Trend trend = find(series.getTrends(), "Class");
+		assertEquals(0, trend.getBytesPerSecond(), 1e-6);
+		assertTrue(series.getLeakSuspects(10).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooFewSnapshots() {
+		new HeapHistogramSeries(1);
+	}
+
+	private static String histogram(Object ... classCountBytes) {
+		StringBuilder histogram = new StringBuilder(HEADER);
+		for (int i = 0; i < classCountBytes.length; i += 3) {
+			histogram.append(String.format("%4d: %13d %14d  %s%n", i / 3 + 1, classCountBytes[i + 1],
+					classCountBytes[i + 2], classCountBytes[i]));
+		}
+		return histogram.append("Total 0 0\n").toString();
+	}
+
+	private static Trend find(List<Trend> trends, String className) {
+		Trend trend = findOrNull(trends, className);
+		assertNotNull("No trend for " + className, trend);
+		return trend;
+	}
+
+	private static Trend findOrNull(List<Trend> trends, String className) {
+		for (Trend trend : trends) {
+			if (trend.getClassName().equals(className)) {
+				return trend;
+			}
+		}
+		return null;
+	}
+}
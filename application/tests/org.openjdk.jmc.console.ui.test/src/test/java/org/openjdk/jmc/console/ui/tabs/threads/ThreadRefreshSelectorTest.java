@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.console.ui.tabs.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ThreadRefreshSelectorTest {
+
+	@Test
+	public void testFewThreadsRefreshedOnEveryPoll() {
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(250, 5);
+		long[] ids = ids(100);
+		Set<Long> cached = toSet(ids);
+		for (int poll = 0; poll < 3; poll++) {
+			assertEquals(toSet(ids), selector.select(ids, cached, Collections.emptySet()));
+		}
+	}
+
+	@Test
+	public void testNewAndChangedThreadsFirst() {
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(2, 100);
+		long[] ids = ids(10);
+		Set<Long> cached = toSet(ids);
+		cached.remove(7L);
+		List<Long> selected = new ArrayList<>(selector.select(ids, cached, Collections.singleton(5L)));
+		assertEquals(Arrays.asList(7L, 5L, 0L, 1L), selected);
+		selected = new ArrayList<>(selector.select(ids, toSet(ids), Collections.emptySet()));
+		assertEquals(Arrays.asList(2L, 3L), selected);
+	}
+
+	@Test
+	public void testRefreshInTurnWrapsAround() {
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(4, 100);
+		long[] ids = ids(10);
+		Set<Long> cached = toSet(ids);
+		selector.select(ids, cached, Collections.emptySet());
+		selector.select(ids, cached, Collections.emptySet());
+		assertEquals(toSet(8, 9, 0, 1), selector.select(ids, cached, Collections.emptySet()));
+		assertEquals(toSet(2, 3, 4, 5), selector.select(ids, cached, Collections.emptySet()));
+	}
+
+	@Test
+	public void testAllThreadsRefreshedWithinCycle() {
+		int cyclePolls = 5;
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(250, cyclePolls);
+		long[] ids = ids(10000);
+		Set<Long> cached = toSet(ids);
+		assertEquals(2000, selector.getRefreshCount(ids.length));
+		// Every thread is refreshed within the cycle, wherever the previous cycle stopped
+		selector.select(ids(10001), toSet(ids(10001)), Collections.emptySet());
+		for (int cycle = 0; cycle < 3; cycle++) {
+			Set<Long> refreshed = new HashSet<>();
+			for (int poll = 0; poll < cyclePolls; poll++) {
+				Set<Long> selected = selector.select(ids, cached, Collections.emptySet());
+				assertEquals(2000, selected.size());
+				refreshed.addAll(selected);
+			}
+			assertEquals(cached, refreshed);
+		}
+	}
+
+	@Test
+	public void testRefreshCount() {
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(250, 5);
+		assertEquals(0, selector.getRefreshCount(0));
+		assertEquals(10, selector.getRefreshCount(10));
+		assertEquals(250, selector.getRefreshCount(1250));
+		assertEquals(251, selector.getRefreshCount(1251));
+		assertTrue(selector.getRefreshCount(100000) * 5 >= 100000);
+	}
+
+	@Test
+	public void testNoThreads() {
+		ThreadRefreshSelector selector = new ThreadRefreshSelector(250, 5);
+		assertTrue(selector.select(new long[0], Collections.emptySet(), Collections.emptySet()).isEmpty());
+		assertEquals(toSet(0, 1), selector.select(ids(2), Collections.emptySet(), Collections.emptySet()));
+	}
+
+	private static long[] ids(int count) {
+		long[] ids = new long[count];
+		for (int n = 0; n < count; n++) {
+			ids[n] = n;
+		}
+		return ids;
+	}
+
+	private static Set<Long> toSet(long ... ids) {
+		Set<Long> set = new HashSet<>();
+		for (long id : ids) {
+			set.add(id);
+		}
+		return set;
+	}
+}
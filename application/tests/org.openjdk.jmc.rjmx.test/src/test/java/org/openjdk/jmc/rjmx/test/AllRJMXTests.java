@@ -37,9 +37,11 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import org.openjdk.jmc.rjmx.test.internal.InternalTestSuite;
+import org.openjdk.jmc.rjmx.test.persistence.internal.TimeSeriesBlockTest;
 import org.openjdk.jmc.rjmx.test.services.ServicesTestSuite;
 import org.openjdk.jmc.rjmx.test.subscription.SubscriptionTestSuite;
 import org.openjdk.jmc.rjmx.test.subscription.internal.SubscriptionInternalTestSuite;
+import org.openjdk.jmc.rjmx.test.subscription.storage.internal.DownsamplingTimeSeriesTest;
 import org.openjdk.jmc.rjmx.test.synthetic.SyntheticTestSuite;
 import org.openjdk.jmc.rjmx.test.triggers.NotificationTestSuite;
 
@@ -50,7 +52,7 @@ import org.openjdk.jmc.rjmx.test.triggers.NotificationTestSuite;
 @RunWith(Suite.class)
 @SuiteClasses({RJMXTestSuite.class, InternalTestSuite.class, ServicesTestSuite.class, SubscriptionTestSuite.class,
 		SubscriptionInternalTestSuite.class, SyntheticTestSuite.class, NotificationTestSuite.class,
-		JVMSupportToolkitTest.class})
+		JVMSupportToolkitTest.class, TimeSeriesBlockTest.class, DownsamplingTimeSeriesTest.class})
 public class AllRJMXTests {
 
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.test.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openjdk.jmc.rjmx.persistence.internal.TimeSeriesBlockDecoder;
+import org.openjdk.jmc.rjmx.persistence.internal.TimeSeriesBlockEncoder;
+
+/**
+ * Tests that samples encoded by {@link TimeSeriesBlockEncoder} are decoded unchanged by
+ * {@link TimeSeriesBlockDecoder}.
+ */
+public class TimeSeriesBlockTest {
+
+	@Test
+	public void testRegularSamples() throws IOException {
+		long[] timestamps = new long[128];
+		double[] values = new double[timestamps.length];
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = 1600000000000L + i * 1000;
+			values[i] = 42.5 + (i % 3);
+		}
+		TimeSeriesBlockEncoder encoder = assertRoundTrip(timestamps, values);
+		assertEquals(42.5, encoder.getMin(), 0);
+		assertEquals(44.5, encoder.getMax(), 0);
+		// Constant deltas and repeating values should need far less than 16 bytes per sample
+		assertTrue(encoder.getByteLength() < timestamps.length * 4);
+	}
+
+	@Test
+	public void testSingleSample() throws IOException {
+		TimeSeriesBlockEncoder encoder = assertRoundTrip(new long[] {Long.MAX_VALUE}, new double[] {-0.0});
+		assertEquals(Long.MAX_VALUE, encoder.getFirstTimestamp());
+		assertEquals(Long.MAX_VALUE, encoder.getLastTimestamp());
+	}
+
+	@Test
+	public void testNaN() throws IOException {
+		double[] values = {1, Double.NaN, 3, Double.NaN, Double.NaN, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE, 2};
+		long[] timestamps = new long[values.length];
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = i * 10;
+		}
+		TimeSeriesBlockEncoder encoder = assertRoundTrip(timestamps, values);
+		assertEquals(Double.NEGATIVE_INFINITY, encoder.getMin(), 0);
+		assertEquals(Double.POSITIVE_INFINITY, encoder.getMax(), 0);
+	}
+
+	@Test
+	public void testOnlyNaN() throws IOException {
+		TimeSeriesBlockEncoder encoder = assertRoundTrip(new long[] {1, 2, 3},
+				new double[] {Double.NaN, Double.NaN, Double.NaN});
+		assertTrue(encoder.getMin() > encoder.getMax());
+		assertEquals(0, encoder.getSum(), 0);
+	}
+
+	@Test
+	public void testNonMonotonicTimestamps() throws IOException {
+		long[] timestamps = {1000, 2000, 1500, 1500, 3000, 0, -5000, Long.MAX_VALUE, Long.MIN_VALUE, 2999, 3000};
+		double[] values = new double[timestamps.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		TimeSeriesBlockEncoder encoder = assertRoundTrip(timestamps, values);
+		assertEquals(1000, encoder.getFirstTimestamp());
+		assertEquals(3000, encoder.getLastTimestamp());
+	}
+
+	@Test
+	public void testRandomSamples() throws IOException {
+		Random random = new Random(4711);
+		long[] timestamps = new long[1000];
+		double[] values = new double[timestamps.length];
+		long timestamp = random.nextLong();
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamp += random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(2000) - 500;
+			timestamps[i] = timestamp;
+			values[i] = random.nextBoolean() ? random.nextDouble() : Double.longBitsToDouble(random.nextLong());
+		}
+		assertRoundTrip(timestamps, values);
+	}
+
+	@Test
+	public void testReset() throws IOException {
+		TimeSeriesBlockEncoder encoder = new TimeSeriesBlockEncoder();
+		encoder.add(17, 17);
+		encoder.add(4711, -4711);
+		encoder.reset();
+		assertEquals(0, encoder.getCount());
+		assertEquals(0, encoder.getByteLength());
+		encoder.add(100, 1);
+		encoder.add(200, 2);
+		assertDecoded(encoder, new long[] {100, 200}, new double[] {1, 2});
+		assertEquals(1, encoder.getMin(), 0);
+		assertEquals(2, encoder.getMax(), 0);
+		assertEquals(3, encoder.getSum(), 0);
+	}
+
+	private static TimeSeriesBlockEncoder assertRoundTrip(long[] timestamps, double[] values) throws IOException {
+		TimeSeriesBlockEncoder encoder = new TimeSeriesBlockEncoder();
+		for (int i = 0; i < timestamps.length; i++) {
+			encoder.add(timestamps[i], values[i]);
+		}
+		assertEquals(timestamps.length, encoder.getCount());
+		assertDecoded(encoder, timestamps, values);
+		return encoder;
+	}
+
+	private static void assertDecoded(TimeSeriesBlockEncoder encoder, long[] timestamps, double[] values)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		encoder.writeTo(new DataOutputStream(bytes));
+		assertEquals(encoder.getByteLength(), bytes.size());
+		TimeSeriesBlockDecoder decoder = new TimeSeriesBlockDecoder(bytes.toByteArray(), encoder.getCount());
+		for (int i = 0; i < timestamps.length; i++) {
+			assertTrue(decoder.hasNext());
+			decoder.next();
+			assertEquals(timestamps[i], decoder.getTimestamp());
+			// Compare the bits, to distinguish between NaN values and between 0.0 and -0.0
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.getValue()));
+		}
+		assertFalse(decoder.hasNext());
+	}
+}
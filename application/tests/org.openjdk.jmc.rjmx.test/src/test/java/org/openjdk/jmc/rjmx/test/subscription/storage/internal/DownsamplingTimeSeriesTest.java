@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.rjmx.test.subscription.storage.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.openjdk.jmc.rjmx.subscription.storage.internal.DownsamplingTimeSeries;
+import org.openjdk.jmc.ui.common.xydata.ITimestampedData;
+
+/**
+ * Tests that {@link DownsamplingTimeSeries} promotes values to coarser levels, keeps the extreme
+ * values when downsampling and returns continuous data for ranges that span several levels.
+ */
+@SuppressWarnings("nls")
+public class DownsamplingTimeSeriesTest {
+	private static final int FACTOR = DownsamplingTimeSeries.FACTOR;
+	// Three levels, covering 10, 100 and 1000 values
+	private static final int RAW_CAPACITY = FACTOR;
+	private static final int RETAINED_VALUES = FACTOR * FACTOR * FACTOR;
+
+	@Test
+	public void testEmpty() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		assertEquals(0, series.getRetainedLength());
+		assertEquals(Long.MAX_VALUE, series.getFirstTimestamp());
+		assertEquals(Long.MIN_VALUE, series.getLastTimestamp());
+		assertTrue(series.getData(0, Long.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	public void testLevelPromotion() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		add(series, 0, FACTOR - 1);
+		// Only raw values, the first bucket on level 1 is not complete yet
+		assertEquals(FACTOR - 1, series.getRetainedLength());
+		add(series, FACTOR - 1, 25);
+		// 10 raw values and 2 buckets on level 1
+		assertEquals(FACTOR + 2, series.getRetainedLength());
+		assertEquals(0, series.getFirstTimestamp());
+		assertEquals(24, series.getLastTimestamp());
+		add(series, 25, 100);
+		// Level 1 is full and the first bucket on level 2 is complete
+		assertEquals(FACTOR + FACTOR + 1, series.getRetainedLength());
+		add(series, 100, 2000);
+		// All levels are full and the oldest buckets have been dropped
+		assertEquals(3 * FACTOR, series.getRetainedLength());
+		assertEquals(1000, series.getFirstTimestamp());
+		assertEquals(1999, series.getLastTimestamp());
+	}
+
+	@Test
+	public void testMinMaxRetained() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		for (int i = 0; i < RETAINED_VALUES; i++) {
+			double value = i == 123 ? 1000 : i == 456 ? -1000 : i % 7;
+			series.add(i, value);
+		}
+		// The raw values with the spikes are long gone, but the downsampled buckets keep them
+		List<ITimestampedData> data = series.getData(0, RETAINED_VALUES - 1);
+		assertTrue(data.size() < RETAINED_VALUES / 2);
+		assertContains(data, 123, 1000);
+		assertContains(data, 456, -1000);
+	}
+
+	@Test
+	public void testRawRange() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		add(series, 0, RETAINED_VALUES);
+		List<ITimestampedData> data = series.getData(995, 998);
+		// Raw values, including one value on each side of the range
+		assertEquals(6, data.size());
+		for (int i = 0; i < data.size(); i++) {
+			assertEquals(994 + i, data.get(i).getX().longValue());
+			assertEquals(994 + i, data.get(i).getY().doubleValue(), 0);
+		}
+	}
+
+	@Test
+	public void testRangeAcrossLevels() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		// The last five values are only available on level 0, and the five before that only on level 1
+		add(series, 0, RETAINED_VALUES + 5);
+		List<ITimestampedData> data = series.getData(0, RETAINED_VALUES + 4);
+		assertIncreasing(data);
+		assertEquals(0, data.get(0).getX().longValue());
+		assertEquals(RETAINED_VALUES + 4, data.get(data.size() - 1).getX().longValue());
+		for (int i = RETAINED_VALUES; i < RETAINED_VALUES + 5; i++) {
+			assertContains(data, i, i);
+		}
+
+		// A range that starts on level 1 and ends on level 0
+		data = series.getData(950, RETAINED_VALUES + 4);
+		assertIncreasing(data);
+		assertTrue(data.get(0).getX().longValue() <= 950);
+		assertEquals(RETAINED_VALUES + 4, data.get(data.size() - 1).getX().longValue());
+		assertContains(data, RETAINED_VALUES + 2, RETAINED_VALUES + 2);
+	}
+
+	@Test
+	public void testRangeOutsideData() {
+		DownsamplingTimeSeries series = new DownsamplingTimeSeries(RAW_CAPACITY, RETAINED_VALUES);
+		add(series, 100, 200);
+		// The closest data on each side of the range is included, so the series can be drawn to the edges
+		List<ITimestampedData> before = series.getData(0, 50);
+		assertTrue(!before.isEmpty() && before.size() <= 2);
+		assertEquals(100, before.get(0).getX().longValue());
+		List<ITimestampedData> after = series.getData(500, 600);
+		assertTrue(!after.isEmpty() && after.size() <= 2);
+		assertEquals(199, after.get(after.size() - 1).getX().longValue());
+	}
+
+	private static void add(DownsamplingTimeSeries series, int from, int to) {
+		for (int i = from; i < to; i++) {
+			series.add(i, i);
+		}
+	}
+
+	private static void assertIncreasing(List<ITimestampedData> data) {
+		for (int i = 1; i < data.size(); i++) {
+			assertTrue("Timestamps are not increasing at index " + i,
+					data.get(i - 1).getX() < data.get(i).getX());
+		}
+	}
+
+	private static void assertContains(List<ITimestampedData> data, long x, double y) {
+		for (ITimestampedData d : data) {
+			if (d.getX() == x && d.getY().doubleValue() == y) {
+				return;
+			}
+		}
+		throw new AssertionError("Missing value " + y + " at " + x);
+	}
+}
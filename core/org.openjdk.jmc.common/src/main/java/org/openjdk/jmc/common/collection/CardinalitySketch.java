@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.collection;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Estimates the number of distinct values in a stream of values, using a fixed amount of memory.
+ * <p>
+ * Up to a limit, the distinct values are kept in a set and the count is exact. When the limit is
+ * exceeded, the sketch switches to a HyperLogLog estimate with 2<sup>14</sup> registers, which has
+ * a standard error of about 0.8%. Sketches can be merged, so that values can be added to separate
+ * sketches in parallel and the sketches combined afterwards.
+ * <p>
+ * The values are hashed using {@link Object#hashCode()}, so values with colliding hash codes are
+ * counted as one value once the sketch no longer is exact.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <T>
+ *            type of the values to count
+ */
+public class CardinalitySketch<T> {
+
+	/**
+	 * The default number of distinct values that are counted exactly.
+	 */
+	public static final int DEFAULT_EXACT_LIMIT = 1024;
+
+	private static final int PRECISION = 14;
+	private static final int REGISTER_COUNT = 1 << PRECISION;
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+	private final int exactLimit;
+	private Set<T> exactValues = new HashSet<>();
+	private byte[] registers;
+
+	/**
+	 * Create a sketch that counts up to {@link #DEFAULT_EXACT_LIMIT} distinct values exactly.
+	 */
+	public CardinalitySketch() {
+		this(DEFAULT_EXACT_LIMIT);
+	}
+
+	/**
+	 * @param exactLimit
+	 *            the number of distinct values to count exactly before switching to an estimate
+	 */
+	public CardinalitySketch(int exactLimit) {
+		this.exactLimit = exactLimit;
+	}
+
+	/**
+	 * Add a value to the sketch.
+	 *
+	 * @param value
+	 *            the value to add, must not be {@code null}
+	 */
+	public void add(T value) {
+		if (exactValues != null) {
+			exactValues.add(value);
+			if (exactValues.size() > exactLimit) {
+				switchToRegisters();
+			}
+		} else {
+			addHash(hash(value));
+		}
+	}
+
+	/**
+	 * Merge another sketch into this sketch. The other sketch must not be used after the merge.
+	 *
+	 * @param other
+	 *            the sketch to merge
+	 * @return this sketch, now also counting the values of the other sketch
+	 */
+	public CardinalitySketch<T> merge(CardinalitySketch<T> other) {
+		if (other.exactValues != null) {
+			for (T value : other.exactValues) {
+				add(value);
+			}
+		} else {
+			if (exactValues != null) {
+				switchToRegisters();
+			}
+			for (int i = 0; i < REGISTER_COUNT; i++) {
+				if (other.registers[i] > registers[i]) {
+					registers[i] = other.registers[i];
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return {@code true} if {@link #getCount()} is the exact number of distinct values
+	 */
+	public boolean isExact() {
+		return exactValues != null;
+	}
+
+	/**
+	 * @return the number of distinct values that have been added, or an estimate of it if the sketch
+	 *         is not exact
+	 */
+	public long getCount() {
+		if (exactValues != null) {
+			return exactValues.size();
+		}
+		double sum = 0;
+		int zeroRegisters = 0;
+		for (byte register : registers) {
+			sum += Double.longBitsToDouble((1023L - register) << 52);
+			if (register == 0) {
+				zeroRegisters++;
+			}
+		}
+		double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+		if (estimate <= 2.5 * REGISTER_COUNT && zeroRegisters > 0) {
+			// Linear counting is more accurate for small cardinalities
+			estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroRegisters);
+		}
+		return Math.round(estimate);
+	}
+
+	private void switchToRegisters() {
+		registers = new byte[REGISTER_COUNT];
+		for (T value : exactValues) {
+			addHash(hash(value));
+		}
+		exactValues = null;
+	}
+
+	private void addHash(long hash) {
+		int index = (int) (hash >>> (64 - PRECISION));
+		// Position of the first set bit among the remaining bits, capped to fit the register
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+		if (rank > registers[index]) {
+			registers[index] = rank;
+		}
+	}
+
+	private static long hash(Object value) {
+		// Spread the 32 bit hash code over 64 bits using the finalizer of MurmurHash3
+		long h = value.hashCode() * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
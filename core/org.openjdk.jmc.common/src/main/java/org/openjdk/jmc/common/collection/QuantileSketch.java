@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.collection;
+
+/**
+ * Estimates quantiles of a stream of values with a bounded relative error, using a bounded amount
+ * of memory.
+ * <p>
+ * The sketch is based on DDSketch. Values are counted in logarithmically sized buckets, so that any
+ * value in a bucket is within the relative accuracy of the value that represents the bucket. Each
+ * estimated quantile is therefore within the relative accuracy of an actual value at that rank.
+ * Positive and negative values are kept in separate sets of buckets. To bound the memory use, the
+ * buckets for the values closest to zero are collapsed if the values span too many buckets, which
+ * with the default accuracy only happens for values that span more than 17 orders of magnitude.
+ * <p>
+ * Sketches with the same relative accuracy can be merged, so that values can be added to separate
+ * sketches in parallel and the sketches combined afterwards.
+ * <p>
+ * This class is not thread safe.
+ */
+public class QuantileSketch {
+
+	/**
+	 * The default relative accuracy of the estimated quantiles.
+	 */
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+	private static final int MAX_BUCKETS = 2048;
+	private static final int INITIAL_BUCKETS = 64;
+	// Bucket index limits that keep index differences from overflowing, even for infinite values
+	private static final int MAX_INDEX = 1 << 20;
+	private static final int MIN_INDEX = -MAX_INDEX;
+
+	/**
+	 * A contiguous range of bucket counts, indexed by bucket index.
+	 */
+	private static class Buckets {
+		private long[] counts;
+		// The bucket index of counts[0]
+		private int offset;
+		private int minIndex;
+		private int maxIndex;
+
+		boolean isEmpty() {
+			return counts == null;
+		}
+
+		long get(int index) {
+			return counts[index - offset];
+		}
+
+		void add(int index, long count) {
+			if (counts == null) {
+				minIndex = index;
+				maxIndex = index;
+				resize(index, index);
+			} else {
+				int newMin = Math.min(minIndex, index);
+				int newMax = Math.max(maxIndex, index);
+				if (newMax - newMin >= MAX_BUCKETS) {
+					// Collapse the buckets closest to zero
+					newMin = newMax - MAX_BUCKETS + 1;
+					index = Math.max(index, newMin);
+				}
+				if (newMin > minIndex || newMin < offset || newMax >= offset + counts.length) {
+					resize(newMin, newMax);
+				}
+				minIndex = newMin;
+				maxIndex = newMax;
+			}
+			counts[index - offset] += count;
+		}
+
+		void addAll(Buckets other) {
+			if (!other.isEmpty()) {
+				for (int i = other.minIndex; i <= other.maxIndex; i++) {
+					long count = other.get(i);
+					if (count != 0) {
+						add(i, count);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Move the counts to a new array covering the range from {@code newMin} to {@code newMax}.
+		 * Counts for buckets below {@code newMin} are added to the {@code newMin} bucket.
+		 */
+		private void resize(int newMin, int newMax) {
+			int width = newMax - newMin + 1;
+			int length = Math.max(width, Math.min(Math.max(2 * width, INITIAL_BUCKETS), MAX_BUCKETS));
+			int newOffset = newMin - (length - width) / 2;
+			long[] newCounts = new long[length];
+			if (counts != null) {
+				for (int i = minIndex; i <= maxIndex; i++) {
+					newCounts[Math.max(i, newMin) - newOffset] += counts[i - offset];
+				}
+			}
+			counts = newCounts;
+			offset = newOffset;
+		}
+	}
+
+	private final double relativeAccuracy;
+	private final double gamma;
+	private final double logGamma;
+	private final Buckets positive = new Buckets();
+	private final Buckets negative = new Buckets();
+	private long zeroCount;
+	private long count;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Create a sketch with the {@link #DEFAULT_RELATIVE_ACCURACY default relative accuracy}.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * @param relativeAccuracy
+	 *            the relative accuracy of the estimated quantiles, between 0 and 1 exclusive
+	 */
+	public QuantileSketch(double relativeAccuracy) {
+		if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+			throw new IllegalArgumentException("Relative accuracy must be between 0 and 1"); //$NON-NLS-1$
+		}
+		this.relativeAccuracy = relativeAccuracy;
+		gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		logGamma = Math.log(gamma);
+	}
+
+	/**
+	 * Add a value to the sketch. NaN values are ignored.
+	 *
+	 * @param value
+	 *            the value to add
+	 */
+	public void add(double value) {
+		if (value > 0) {
+			positive.add(index(value), 1);
+		} else if (value < 0) {
+			negative.add(index(-value), 1);
+		} else if (value == 0) {
+			zeroCount++;
+		} else {
+			return;
+		}
+		count++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Merge another sketch into this sketch. The other sketch is not modified.
+	 *
+	 * @param other
+	 *            the sketch to merge, must have the same relative accuracy as this sketch
+	 * @return this sketch, now also containing the values of the other sketch
+	 */
+	public QuantileSketch merge(QuantileSketch other) {
+		if (other.relativeAccuracy != relativeAccuracy) {
+			throw new IllegalArgumentException("Can only merge sketches with the same relative accuracy"); //$NON-NLS-1$
+		}
+		positive.addAll(other.positive);
+		negative.addAll(other.negative);
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		return this;
+	}
+
+	/**
+	 * @return the number of values that have been added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest value that has been added, or {@code NaN} if the sketch is empty
+	 */
+	public double getMin() {
+		return count > 0 ? min : Double.NaN;
+	}
+
+	/**
+	 * @return the largest value that has been added, or {@code NaN} if the sketch is empty
+	 */
+	public double getMax() {
+		return count > 0 ? max : Double.NaN;
+	}
+
+	/**
+	 * Estimate a quantile of the added values.
+	 *
+	 * @param quantile
+	 *            the quantile to estimate, between 0 and 1 inclusive
+	 * @return the estimated value at the quantile, the exact minimum and maximum for 0 and 1, or
+	 *         {@code NaN} if the sketch is empty
+	 */
+	public double getQuantile(double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1"); //$NON-NLS-1$
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (quantile == 0) {
+			return min;
+		} else if (quantile == 1) {
+			return max;
+		}
+		double rank = quantile * (count - 1);
+		long seen = 0;
+		if (!negative.isEmpty()) {
+			// The most negative values have the highest indexes
+			for (int i = negative.maxIndex; i >= negative.minIndex; i--) {
+				seen += negative.get(i);
+				if (seen > rank) {
+					return clamp(-value(i));
+				}
+			}
+		}
+		seen += zeroCount;
+		if (seen > rank) {
+			return 0;
+		}
+		if (!positive.isEmpty()) {
+			for (int i = positive.minIndex; i <= positive.maxIndex; i++) {
+				seen += positive.get(i);
+				if (seen > rank) {
+					return clamp(value(i));
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the relative accuracy of the estimated quantiles
+	 */
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	private int index(double value) {
+		double index = Math.ceil(Math.log(value) / logGamma);
+		return (int) Math.max(MIN_INDEX, Math.min(MAX_INDEX, index));
+	}
+
+	private double value(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	private double clamp(double value) {
+		return Math.max(min, Math.min(max, value));
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.collection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent values in a stream of values, using a fixed amount of memory.
+ * <p>
+ * The sketch uses the Space-Saving algorithm, keeping a counter for at most a fixed number of
+ * values. When a value that does not have a counter is added and all counters are in use, the
+ * counter with the lowest count is reassigned to the new value. The count of a value is then
+ * overestimated by at most the count of the evicted counter, which is recorded as the error of the
+ * entry. As long as the number of distinct values does not exceed the capacity, all counts are
+ * exact. Sketches can be merged, so that values can be added to separate sketches in parallel and
+ * the sketches combined afterwards.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <T>
+ *            type of the values to count
+ */
+public class TopKSketch<T> {
+
+	/**
+	 * The estimated count of a value.
+	 *
+	 * @param <T>
+	 *            type of the value
+	 */
+	public static class Entry<T> {
+		private final T value;
+		private final long count;
+		private final long error;
+
+		Entry(T value, long count, long error) {
+			this.value = value;
+			this.count = count;
+			this.error = error;
+		}
+
+		/**
+		 * @return the value
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the estimated count of the value, which is never lower than the actual count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the maximum amount by which the count of the value may be overestimated
+		 */
+		public long getError() {
+			return error;
+		}
+
+		@Override
+		public String toString() {
+			return value + "=" + count; //$NON-NLS-1$
+		}
+	}
+
+	private static final Comparator<Entry<?>> BY_COUNT_DESCENDING = (e1, e2) -> Long.compare(e2.count, e1.count);
+
+	private final int capacity;
+	private final Map<T, Integer> positions;
+	// Counters in a min-heap ordered by count
+	private final Object[] values;
+	private final long[] counts;
+	private final long[] errors;
+	private int size;
+	private long totalCount;
+	private long untrackedBound;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of values to keep counters for
+	 */
+	public TopKSketch(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive"); //$NON-NLS-1$
+		}
+		this.capacity = capacity;
+		positions = new HashMap<>();
+		values = new Object[capacity];
+		counts = new long[capacity];
+		errors = new long[capacity];
+	}
+
+	/**
+	 * Add one occurrence of a value.
+	 *
+	 * @param value
+	 *            the value to add, must not be {@code null}
+	 */
+	public void add(T value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Add a number of occurrences of a value.
+	 *
+	 * @param value
+	 *            the value to add, must not be {@code null}
+	 * @param count
+	 *            the number of occurrences, must not be negative
+	 */
+	public void add(T value, long count) {
+		totalCount += count;
+		Integer position = positions.get(value);
+		if (position != null) {
+			counts[position] += count;
+			siftDown(position);
+		} else if (size < capacity) {
+			set(size, value, count, 0);
+			siftUp(size++);
+		} else {
+			// Reuse the counter with the lowest count, the new value may have been counted by it
+			long evictedCount = counts[0];
+			untrackedBound = Math.max(untrackedBound, evictedCount);
+			positions.remove(values[0]);
+			set(0, value, evictedCount + count, evictedCount);
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Merge another sketch into this sketch. The other sketch is not modified.
+	 *
+	 * @param other
+	 *            the sketch to merge
+	 * @return this sketch, now also counting the values of the other sketch
+	 */
+	@SuppressWarnings("unchecked")
+	public TopKSketch<T> merge(TopKSketch<T> other) {
+		// Values that are missing from a sketch may have been counted up to its untracked bound
+		List<Entry<T>> merged = new ArrayList<>(size + other.size);
+		for (int i = 0; i < size; i++) {
+			T value = (T) values[i];
+			Integer otherPosition = other.positions.get(value);
+			if (otherPosition != null) {
+				merged.add(new Entry<>(value, counts[i] + other.counts[otherPosition],
+						errors[i] + other.errors[otherPosition]));
+			} else {
+				merged.add(new Entry<>(value, counts[i] + other.untrackedBound, errors[i] + other.untrackedBound));
+			}
+		}
+		for (int i = 0; i < other.size; i++) {
+			T value = (T) other.values[i];
+			if (!positions.containsKey(value)) {
+				merged.add(new Entry<>(value, other.counts[i] + untrackedBound, other.errors[i] + untrackedBound));
+			}
+		}
+		Collections.sort(merged, BY_COUNT_DESCENDING);
+		long bound = untrackedBound + other.untrackedBound;
+		if (merged.size() > capacity) {
+			bound = Math.max(bound, merged.get(capacity).count);
+		}
+		positions.clear();
+		size = 0;
+		for (int i = 0; i < merged.size() && i < capacity; i++) {
+			Entry<T> entry = merged.get(i);
+			set(size, entry.value, entry.count, entry.error);
+			siftUp(size++);
+		}
+		totalCount += other.totalCount;
+		untrackedBound = bound;
+		return this;
+	}
+
+	/**
+	 * Get the values with the highest estimated counts.
+	 *
+	 * @param k
+	 *            the maximum number of values to return
+	 * @return the entries with the highest estimated counts, in descending order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Entry<T>> getTop(int k) {
+		List<Entry<T>> entries = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			entries.add(new Entry<>((T) values[i], counts[i], errors[i]));
+		}
+		Collections.sort(entries, BY_COUNT_DESCENDING);
+		return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+	}
+
+	/**
+	 * @return the total number of occurrences that have been added
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return the maximum number of occurrences of a value that does not have a counter
+	 */
+	public long getUntrackedBound() {
+		return untrackedBound;
+	}
+
+	/**
+	 * @return {@code true} if all values have counters and all counts are exact
+	 */
+	public boolean isExact() {
+		return untrackedBound == 0;
+	}
+
+	private void set(int position, T value, long count, long error) {
+		values[position] = value;
+		counts[position] = count;
+		errors[position] = error;
+		positions.put(value, position);
+	}
+
+	private void siftUp(int position) {
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (counts[parent] <= counts[position]) {
+				break;
+			}
+			swap(position, parent);
+			position = parent;
+		}
+	}
+
+	private void siftDown(int position) {
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && counts[child + 1] < counts[child]) {
+				child++;
+			}
+			if (counts[position] <= counts[child]) {
+				break;
+			}
+			swap(position, child);
+			position = child;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void swap(int i, int j) {
+		Object value = values[i];
+		long count = counts[i];
+		long error = errors[i];
+		values[i] = values[j];
+		counts[i] = counts[j];
+		errors[i] = errors[j];
+		values[j] = value;
+		counts[j] = count;
+		errors[j] = error;
+		positions.put((T) values[i], i);
+		positions.put((T) value, j);
+	}
+}
@@ -35,21 +35,30 @@ package org.openjdk.jmc.common.item;
 import java.text.MessageFormat;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
 
+import org.openjdk.jmc.common.collection.CardinalitySketch;
+import org.openjdk.jmc.common.collection.QuantileSketch;
+import org.openjdk.jmc.common.collection.TopKSketch;
 import org.openjdk.jmc.common.messages.internal.Messages;
 import org.openjdk.jmc.common.unit.ContentType;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.KindOfQuantity;
 import org.openjdk.jmc.common.unit.LinearKindOfQuantity;
+import org.openjdk.jmc.common.unit.LinearUnit;
 import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.PredicateToolkit;
 import org.openjdk.jmc.common.util.StringToolkit;
 
 public class Aggregators {
 
+	// Number of counters per requested value in the top-K aggregators, to limit the count errors
+	private static final int TOP_K_CAPACITY_FACTOR = 10;
+	private static final int TOP_K_MIN_CAPACITY = 100;
+
 	public static abstract class AggregatorBase<V, C extends IItemConsumer<C>> implements IAggregator<V, C> {
 		private final String name;
 		private final String description;
@@ -362,6 +371,68 @@ public class Aggregators {
 		}
 	}
 
+	public static class QuantileConsumer extends QuantityConsumer<QuantileConsumer> {
+		private final LinearUnit unit;
+		private final QuantileSketch sketch = new QuantileSketch();
+
+		public QuantileConsumer(IMemberAccessor<? extends IQuantity, IItem> accessor, LinearUnit unit) {
+			super(accessor);
+			this.unit = unit;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			IQuantity value = accessor.getMember(item);
+			if (value != null) {
+				sketch.add(value.doubleValueIn(unit));
+			}
+		}
+
+		@Override
+		public QuantileConsumer merge(QuantileConsumer other) {
+			sketch.merge(other.sketch);
+			return this;
+		}
+
+		/**
+		 * @param quantile
+		 *            the quantile to estimate, between 0 and 1 inclusive
+		 * @return the estimated value at the quantile, or {@code null} if no values have been
+		 *         consumed
+		 */
+		public IQuantity getQuantile(double quantile) {
+			return sketch.getCount() > 0 ? unit.quantity(sketch.getQuantile(quantile)) : null;
+		}
+
+		public QuantileSketch getSketch() {
+			return sketch;
+		}
+	}
+
+	public static abstract class Quantile extends FieldAggregatorBase<IQuantity, QuantileConsumer> {
+		private final LinearUnit unit;
+		private final double quantile;
+
+		public Quantile(String name, String description, LinearKindOfQuantity ct, double quantile) {
+			super(name, description, ct);
+			if (!(quantile >= 0 && quantile <= 1)) {
+				throw new IllegalArgumentException("Quantile must be between 0 and 1"); //$NON-NLS-1$
+			}
+			this.unit = ct.getDefaultUnit();
+			this.quantile = quantile;
+		}
+
+		@Override
+		public QuantileConsumer newItemConsumer(IType<IItem> type) {
+			return new QuantileConsumer(getAccessor(type), unit);
+		}
+
+		@Override
+		public IQuantity getValue(QuantileConsumer consumer) {
+			return consumer.getQuantile(quantile);
+		}
+	}
+
 	public static class MinMaxConsumer<V extends Comparable<V>> implements IItemConsumer<MinMaxConsumer<V>> {
 
 		private final IMemberAccessor<? extends V, IItem> accessor;
@@ -434,6 +505,19 @@ public class Aggregators {
 
 	}
 
+	/**
+	 * A filter compiled for an item type.
+	 */
+	private static class CompiledPredicate {
+		final IType<IItem> type;
+		final Predicate<IItem> predicate;
+
+		CompiledPredicate(IType<IItem> type, Predicate<IItem> predicate) {
+			this.type = type;
+			this.predicate = predicate;
+		}
+	}
+
 	private static class FilterConsumer<C extends IItemConsumer<C>> implements IItemConsumer<FilterConsumer<C>> {
 
 		private final Predicate<IItem> p;
@@ -566,14 +650,27 @@ public class Aggregators {
 		String name, String description, final IAggregator<V, C> aggregator, final IItemFilter filter) {
 		return new AggregatorBase<V, FilterConsumer<C>>(name, description, aggregator.getValueType()) {
 
+			// Only the latest type is cached, since acceptType and newItemConsumer are called for one
+			// type at a time, and newItemConsumer may be called once per range of a type
+			private volatile CompiledPredicate latest;
+
 			@Override
 			public boolean acceptType(IType<IItem> type) {
-				return aggregator.acceptType(type) && !PredicateToolkit.isFalseGuaranteed(filter.getPredicate(type));
+				return aggregator.acceptType(type) && !PredicateToolkit.isFalseGuaranteed(compile(type));
 			}
 
 			@Override
 			public FilterConsumer<C> newItemConsumer(IType<IItem> type) {
-				return new FilterConsumer<>(filter.getPredicate(type), aggregator.newItemConsumer(type));
+				return new FilterConsumer<>(compile(type), aggregator.newItemConsumer(type));
+			}
+
+			private Predicate<IItem> compile(IType<IItem> type) {
+				CompiledPredicate compiled = latest;
+				if (compiled == null || compiled.type != type) {
+					compiled = new CompiledPredicate(type, ItemFilterCompiler.compile(filter, type));
+					latest = compiled;
+				}
+				return compiled.predicate;
 			}
 
 			@Override
@@ -615,6 +712,41 @@ public class Aggregators {
 		throw new IllegalArgumentException("Can only use LinearKindOfQuantity"); //$NON-NLS-1$
 	}
 
+	/**
+	 * Estimates a quantile for a linear quantity attribute, using a {@link QuantileSketch} with a
+	 * relative accuracy of 1%. The consumers are mergeable, so the aggregator can be evaluated in
+	 * parallel and per group.
+	 *
+	 * @param attribute
+	 *            the attribute to estimate the quantile for
+	 * @param quantile
+	 *            the quantile to estimate, for example 0.99 for the 99th percentile
+	 * @return the estimated quantile for the attribute
+	 */
+	public static IAggregator<IQuantity, ?> quantile(final IAttribute<IQuantity> attribute, double quantile) {
+		ContentType<?> contentType = attribute.getContentType();
+		if (contentType instanceof LinearKindOfQuantity) {
+			String name = MessageFormat.format(Messages.getString(Messages.ItemAggregate_PERCENTILE), quantile * 100,
+					attribute.getName());
+			return quantile(name, attribute.getDescription(), (LinearKindOfQuantity) contentType, attribute,
+					quantile);
+		}
+		throw new IllegalArgumentException("Can only use LinearKindOfQuantity"); //$NON-NLS-1$
+	}
+
+	public static IAggregator<IQuantity, ?> quantile(
+		String name, String description, LinearKindOfQuantity ct, final IAccessorFactory<IQuantity> af,
+		double quantile) {
+		return new Quantile(name, description, ct, quantile) {
+
+			@Override
+			protected IMemberAccessor<? extends IQuantity, IItem> doGetAccessor(IType<IItem> type) {
+				return af.getAccessor(type);
+			}
+
+		};
+	}
+
 	/**
 	 * Calculates the sample variance for a linear quantity attribute.
 	 *
@@ -1086,6 +1218,198 @@ public class Aggregators {
 		};
 	}
 
+	private static class FirstValueConsumer<V> implements IItemConsumer<FirstValueConsumer<V>> {
+		private final IMemberAccessor<? extends V, IItem> accessor;
+		V value;
+
+		FirstValueConsumer(IMemberAccessor<? extends V, IItem> accessor) {
+			this.accessor = accessor;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			if (value == null) {
+				value = accessor.getMember(item);
+			}
+		}
+
+		@Override
+		public FirstValueConsumer<V> merge(FirstValueConsumer<V> other) {
+			if (value == null) {
+				value = other.value;
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Create an aggregator that returns the first non-null value of an attribute that it finds. If
+	 * the items are aggregated in parallel, it is not defined which of the values is found first,
+	 * so this is mostly useful for attributes that have the same value for all items that are
+	 * aggregated, such as a property of the key that the items are grouped by.
+	 *
+	 * @param attribute
+	 *            the attribute to get the value of
+	 * @return an aggregator for the first non-null value of the attribute
+	 */
+	public static <V> IAggregator<V, ?> firstValue(final IAttribute<V> attribute) {
+		return new FieldAggregatorBase<V, FirstValueConsumer<V>>(attribute.getName(), attribute.getDescription(),
+				attribute.getContentType()) {
+
+			@Override
+			public FirstValueConsumer<V> newItemConsumer(IType<IItem> type) {
+				return new FirstValueConsumer<>(getAccessor(type));
+			}
+
+			@Override
+			public V getValue(FirstValueConsumer<V> consumer) {
+				return consumer.value;
+			}
+
+			@Override
+			protected IMemberAccessor<? extends V, IItem> doGetAccessor(IType<IItem> type) {
+				return attribute.getAccessor(type);
+			}
+
+		};
+	}
+
+	public static class CardinalityConsumer<T> implements IItemConsumer<CardinalityConsumer<T>> {
+		private final CardinalitySketch<T> sketch = new CardinalitySketch<>();
+		private final IMemberAccessor<? extends T, IItem> accessor;
+
+		public CardinalityConsumer(IMemberAccessor<? extends T, IItem> accessor) {
+			this.accessor = accessor;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			T member = accessor.getMember(item);
+			if (member != null) {
+				sketch.add(member);
+			}
+		}
+
+		@Override
+		public CardinalityConsumer<T> merge(CardinalityConsumer<T> other) {
+			sketch.merge(other.sketch);
+			return this;
+		}
+
+		public CardinalitySketch<T> getSketch() {
+			return sketch;
+		}
+	}
+
+	public static class TopKConsumer<T> implements IItemConsumer<TopKConsumer<T>> {
+		private final TopKSketch<T> sketch;
+		private final IMemberAccessor<? extends T, IItem> accessor;
+
+		public TopKConsumer(IMemberAccessor<? extends T, IItem> accessor, int capacity) {
+			this.accessor = accessor;
+			sketch = new TopKSketch<>(capacity);
+		}
+
+		@Override
+		public void consume(IItem item) {
+			T member = accessor.getMember(item);
+			if (member != null) {
+				sketch.add(member);
+			}
+		}
+
+		@Override
+		public TopKConsumer<T> merge(TopKConsumer<T> other) {
+			sketch.merge(other.sketch);
+			return this;
+		}
+
+		public TopKSketch<T> getSketch() {
+			return sketch;
+		}
+	}
+
+	/**
+	 * Create an aggregator that estimates the number of distinct values of an attribute, using a
+	 * fixed amount of memory. The count is exact for up to
+	 * {@link CardinalitySketch#DEFAULT_EXACT_LIMIT} distinct values. Unlike
+	 * {@link #countDistinct(String, String, IAccessorFactory)}, the values are not kept in a set, so
+	 * this aggregator is suitable for attributes with very many distinct values.
+	 *
+	 * @param name
+	 *            the name of the aggregator
+	 * @param description
+	 *            the description of the aggregator
+	 * @param attribute
+	 *            the attribute to count the distinct values of
+	 * @return an aggregator with an estimate of the number of distinct values
+	 */
+	public static <T> IAggregator<IQuantity, ?> approximateCountDistinct(
+		String name, String description, final IAccessorFactory<T> attribute) {
+		return new MergingAggregator<IQuantity, CardinalityConsumer<T>>(name, description, UnitLookup.NUMBER) {
+
+			@Override
+			public boolean acceptType(IType<IItem> type) {
+				return attribute.getAccessor(type) != null;
+			}
+
+			@Override
+			public CardinalityConsumer<T> newItemConsumer(IType<IItem> type) {
+				return new CardinalityConsumer<>(attribute.getAccessor(type));
+			}
+
+			@Override
+			public IQuantity getValue(CardinalityConsumer<T> consumer) {
+				return UnitLookup.NUMBER_UNITY.quantity(consumer.getSketch().getCount());
+			}
+		};
+	}
+
+	public static <T> IAggregator<List<TopKSketch.Entry<T>>, ?> topK(IAttribute<T> attribute, int k) {
+		return topK(MessageFormat.format(Messages.getString(Messages.ItemAggregate_MOST_COMMON), attribute.getName()),
+				null, attribute, k);
+	}
+
+	/**
+	 * Create an aggregator that finds the most common values of an attribute, using a fixed amount
+	 * of memory. Counters are kept for a multiple of {@code k} values, so the counts are exact as
+	 * long as there are not too many distinct values. Otherwise the counts of the returned entries
+	 * may be overestimated by at most the error of each entry, which is low for values that are much
+	 * more common than the average value.
+	 *
+	 * @param name
+	 *            the name of the aggregator
+	 * @param description
+	 *            the description of the aggregator
+	 * @param attribute
+	 *            the attribute to find the most common values of
+	 * @param k
+	 *            the number of values to return
+	 * @return an aggregator with the entries for the most common values, in descending order
+	 */
+	public static <T> IAggregator<List<TopKSketch.Entry<T>>, ?> topK(
+		String name, String description, final IAccessorFactory<T> attribute, final int k) {
+		final int capacity = Math.max(k * TOP_K_CAPACITY_FACTOR, TOP_K_MIN_CAPACITY);
+		return new MergingAggregator<List<TopKSketch.Entry<T>>, TopKConsumer<T>>(name, description,
+				UnitLookup.UNKNOWN) {
+
+			@Override
+			public boolean acceptType(IType<IItem> type) {
+				return attribute.getAccessor(type) != null;
+			}
+
+			@Override
+			public TopKConsumer<T> newItemConsumer(IType<IItem> type) {
+				return new TopKConsumer<>(attribute.getAccessor(type), capacity);
+			}
+
+			@Override
+			public List<TopKSketch.Entry<T>> getValue(TopKConsumer<T> consumer) {
+				return consumer.getSketch().getTop(k);
+			}
+		};
+	}
+
 	public static <C extends IItemConsumer<C>> IAggregator<C, C> forConsumer(IItemConsumerFactory<C> consumerFactory) {
 		return forConsumer(consumerFactory, PredicateToolkit.<IType<IItem>> truePredicate());
 	}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+
+/**
+ * Groups items by a key and calculates a number of aggregates for each group, using hash
+ * aggregation. Each item is folded directly into {@link IItemConsumer item consumers} kept per
+ * group, so by default the items themselves are not retained by the aggregation. The aggregation
+ * runs in parallel, where each thread aggregates into a partial map of groups and the partial maps
+ * are then merged.
+ * <p>
+ * The items of a group can be retrieved with {@link Group#getItems()}. If the items were retained
+ * during the aggregation, they are returned directly. Otherwise the source items are scanned again
+ * and filtered on the key of the group.
+ *
+ * @param <K>
+ *            the key type
+ */
+public final class HashAggregation<K> {
+
+	/**
+	 * The consumers for the items of a group that are of one type, one consumer for each
+	 * aggregator. Aggregators that do not accept the type have no consumer.
+	 */
+	private static final class TypeConsumers {
+		final IType<IItem> type;
+		final IItemConsumer<?>[] consumers;
+		final List<IItem> items;
+
+		TypeConsumers(IType<IItem> type, List<? extends IAggregator<?, ?>> aggregators, boolean retainItems) {
+			this.type = type;
+			items = retainItems ? new ArrayList<>() : null;
+			consumers = new IItemConsumer<?>[aggregators.size()];
+			for (int i = 0; i < consumers.length; i++) {
+				IAggregator<?, ?> aggregator = aggregators.get(i);
+				if (aggregator.acceptType(type)) {
+					consumers[i] = aggregator.newItemConsumer(type);
+				}
+			}
+		}
+
+		void consume(IItem item) {
+			for (IItemConsumer<?> consumer : consumers) {
+				if (consumer != null) {
+					consumer.consume(item);
+				}
+			}
+			if (items != null) {
+				items.add(item);
+			}
+		}
+
+		void merge(TypeConsumers other) {
+			for (int i = 0; i < consumers.length; i++) {
+				consumers[i] = mergeConsumers(consumers[i], other.consumers[i]);
+			}
+			if (items != null) {
+				items.addAll(other.items);
+			}
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static IItemConsumer<?> mergeConsumers(IItemConsumer<?> c1, IItemConsumer<?> c2) {
+			if (c1 == null) {
+				return c2;
+			} else if (c2 == null) {
+				return c1;
+			}
+			return (IItemConsumer<?>) ((IItemConsumer) c1).merge(c2);
+		}
+	}
+
+	/**
+	 * The aggregated values for the items with the same key.
+	 *
+	 * @param <K>
+	 *            the key type
+	 */
+	public static final class Group<K> {
+		private final HashAggregation<K> aggregation;
+		private final K key;
+		private long count;
+		// Usually only a few types per group, so a list is faster than a map
+		private final List<TypeConsumers> typeConsumers = new ArrayList<>(2);
+		private Object[] values;
+
+		private Group(HashAggregation<K> aggregation, K key) {
+			this.aggregation = aggregation;
+			this.key = key;
+		}
+
+		/**
+		 * @return the key of the group
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the number of items in the group
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Get an aggregated value for the group.
+		 *
+		 * @param aggregatorIndex
+		 *            the index of the aggregator in the list of aggregators that the aggregation
+		 *            was created with
+		 * @return the aggregated value, may be {@code null}
+		 */
+		public Object getValue(int aggregatorIndex) {
+			if (values == null) {
+				values = calculateValues();
+			}
+			return values[aggregatorIndex];
+		}
+
+		/**
+		 * Get an aggregated value for the group.
+		 *
+		 * @param aggregator
+		 *            one of the aggregators that the aggregation was created with
+		 * @return the aggregated value, may be {@code null}
+		 * @throws IllegalArgumentException
+		 *             if the aggregator is not part of the aggregation
+		 */
+		@SuppressWarnings("unchecked")
+		public <V> V getValue(IAggregator<V, ?> aggregator) {
+			int index = aggregation.aggregators.indexOf(aggregator);
+			if (index < 0) {
+				throw new IllegalArgumentException(
+						"Aggregator is not part of the aggregation: " + aggregator.getName()); //$NON-NLS-1$
+			}
+			return (V) getValue(index);
+		}
+
+		/**
+		 * Get the items of the group. If the items were not retained by the aggregation, the
+		 * returned collection is evaluated lazily by filtering the source items on the key of the
+		 * group each time it is used.
+		 *
+		 * @return the items of the group
+		 */
+		public IItemCollection getItems() {
+			if (aggregation.retainItems) {
+				List<IItemIterable> iterables = new ArrayList<>(typeConsumers.size());
+				for (TypeConsumers tc : typeConsumers) {
+					List<IItem> typeItems = tc.items;
+					iterables.add(ItemIterableToolkit.build(typeItems::stream, tc.type));
+				}
+				return ItemCollectionToolkit.build(iterables::stream);
+			}
+			IAccessorFactory<K> classifier = aggregation.classifier;
+			IItemCollection source = aggregation.items;
+			return ItemCollectionToolkit.build(() -> source.stream().map(is -> {
+				IMemberAccessor<? extends K, IItem> accessor = classifier.getAccessor(is.getType());
+				return ItemIterableToolkit.build(
+						() -> is.stream().filter(item -> Objects.equals(key, accessor.getMember(item))),
+						is.getType());
+			}));
+		}
+
+		private void consume(IType<IItem> type, IItem item) {
+			count++;
+			getConsumers(type).consume(item);
+		}
+
+		private TypeConsumers getConsumers(IType<IItem> type) {
+			for (TypeConsumers tc : typeConsumers) {
+				if (tc.type == type) {
+					return tc;
+				}
+			}
+			TypeConsumers tc = new TypeConsumers(type, aggregation.aggregators, aggregation.retainItems);
+			typeConsumers.add(tc);
+			return tc;
+		}
+
+		private void merge(Group<K> other) {
+			count += other.count;
+			for (TypeConsumers otherConsumers : other.typeConsumers) {
+				TypeConsumers tc = findConsumers(otherConsumers.type);
+				if (tc == null) {
+					typeConsumers.add(otherConsumers);
+				} else {
+					tc.merge(otherConsumers);
+				}
+			}
+		}
+
+		private TypeConsumers findConsumers(IType<IItem> type) {
+			for (TypeConsumers tc : typeConsumers) {
+				if (tc.type == type) {
+					return tc;
+				}
+			}
+			return null;
+		}
+
+		private Object[] calculateValues() {
+			List<? extends IAggregator<?, ?>> aggregators = aggregation.aggregators;
+			Object[] result = new Object[aggregators.size()];
+			for (int i = 0; i < result.length; i++) {
+				List<IItemConsumer<?>> consumers = new ArrayList<>(typeConsumers.size());
+				for (TypeConsumers tc : typeConsumers) {
+					if (tc.consumers[i] != null) {
+						consumers.add(tc.consumers[i]);
+					}
+				}
+				result[i] = getAggregatorValue(aggregators.get(i), consumers.iterator());
+			}
+			return result;
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static Object getAggregatorValue(IAggregator<?, ?> aggregator, Iterator<IItemConsumer<?>> consumers) {
+			return ((IAggregator) aggregator).getValue(consumers);
+		}
+	}
+
+	/**
+	 * The groups found by one thread.
+	 */
+	private static final class PartialGroups<K> {
+		final HashAggregation<K> aggregation;
+		final Map<K, Group<K>> groups = new HashMap<>();
+		final IType<IItem> type;
+		final IMemberAccessor<? extends K, IItem> accessor;
+
+		PartialGroups(HashAggregation<K> aggregation, IType<IItem> type, IMemberAccessor<? extends K, IItem> accessor) {
+			this.aggregation = aggregation;
+			this.type = type;
+			this.accessor = accessor;
+		}
+
+		void add(IItem item) {
+			K key = accessor.getMember(item);
+			Group<K> group = groups.get(key);
+			if (group == null) {
+				group = new Group<>(aggregation, key);
+				groups.put(key, group);
+			}
+			group.consume(type, item);
+		}
+
+		PartialGroups<K> merge(PartialGroups<K> other) {
+			PartialGroups<K> larger = groups.size() >= other.groups.size() ? this : other;
+			PartialGroups<K> smaller = larger == this ? other : this;
+			for (Group<K> group : smaller.groups.values()) {
+				Group<K> existing = larger.groups.putIfAbsent(group.key, group);
+				if (existing != null) {
+					existing.merge(group);
+				}
+			}
+			return larger;
+		}
+	}
+
+	private final IItemCollection items;
+	private final IAccessorFactory<K> classifier;
+	private final List<? extends IAggregator<?, ?>> aggregators;
+	private final boolean retainItems;
+	private final List<Group<K>> groups;
+	private final long itemCount;
+
+	private HashAggregation(
+		IItemCollection items, IAccessorFactory<K> classifier, List<? extends IAggregator<?, ?>> aggregators,
+		boolean retainItems) {
+		this.items = items;
+		this.classifier = classifier;
+		this.aggregators = new ArrayList<>(aggregators);
+		this.retainItems = retainItems;
+		Map<K, Group<K>> groupMap = items.parallelStream().map(this::aggregate).reduce(PartialGroups::merge)
+				.map(partial -> partial.groups).orElse(Collections.emptyMap());
+		this.groups = Collections.unmodifiableList(new ArrayList<>(groupMap.values()));
+		long count = 0;
+		for (Group<K> group : groups) {
+			count += group.count;
+		}
+		this.itemCount = count;
+	}
+
+	private PartialGroups<K> aggregate(IItemIterable is) {
+		IType<IItem> type = is.getType();
+		IMemberAccessor<? extends K, IItem> accessor = classifier.getAccessor(type);
+		if (accessor == null) {
+			throw new IllegalArgumentException(
+					"Cannot fetch accessor from " + classifier + " for type " + type.getIdentifier()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return is.parallelStream().collect(Collector.of(() -> new PartialGroups<>(this, type, accessor),
+				PartialGroups::add, PartialGroups::merge, Characteristics.UNORDERED));
+	}
+
+	/**
+	 * Group items and calculate aggregates for each group.
+	 *
+	 * @param items
+	 *            the items to group
+	 * @param classifier
+	 *            the accessor factory for the group key, must provide accessors for all item types
+	 *            in the collection
+	 * @param aggregators
+	 *            the aggregators to calculate for each group
+	 * @return the aggregation result
+	 * @throws IllegalArgumentException
+	 *             if the classifier has no accessor for one of the item types
+	 */
+	public static <K> HashAggregation<K> aggregate(
+		IItemCollection items, IAccessorFactory<K> classifier, List<? extends IAggregator<?, ?>> aggregators) {
+		return new HashAggregation<>(items, classifier, aggregators, false);
+	}
+
+	/**
+	 * Group items and calculate aggregates for each group.
+	 *
+	 * @param items
+	 *            the items to group
+	 * @param classifier
+	 *            the accessor factory for the group key, must provide accessors for all item types
+	 *            in the collection
+	 * @param aggregators
+	 *            the aggregators to calculate for each group
+	 * @param retainItems
+	 *            {@code true} to keep references to the items of each group, so that
+	 *            {@link Group#getItems()} does not have to scan the source items again
+	 * @return the aggregation result
+	 * @throws IllegalArgumentException
+	 *             if the classifier has no accessor for one of the item types
+	 */
+	public static <K> HashAggregation<K> aggregate(
+		IItemCollection items, IAccessorFactory<K> classifier, List<? extends IAggregator<?, ?>> aggregators,
+		boolean retainItems) {
+		return new HashAggregation<>(items, classifier, aggregators, retainItems);
+	}
+
+	/**
+	 * @return the groups, in no particular order
+	 */
+	public List<Group<K>> getGroups() {
+		return groups;
+	}
+
+	/**
+	 * @return the total number of items in all groups
+	 */
+	public long getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * @return the items that were grouped
+	 */
+	public IItemCollection getItems() {
+		return items;
+	}
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.item.PersistableItemFilter.Kind;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IScalarAffineTransform;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.util.PredicateToolkit;
+
+/**
+ * Compiles item filters into predicates that are specialized for a single item type.
+ * <p>
+ * The predicate returned by {@link IItemFilter#getPredicate(IType)} mirrors the structure of the
+ * filter. A compiled predicate accepts exactly the same items, but:
+ * <ul>
+ * <li>nested conjunctions and disjunctions are flattened and double negations are removed,</li>
+ * <li>operands that are constant for the item type are folded away, so a filter that can never
+ * match the type compiles to {@link PredicateToolkit#falsePredicate()},</li>
+ * <li>the operands of conjunctions and disjunctions are ordered so that cheap operands that are
+ * likely to decide the result are evaluated first,</li>
+ * <li>comparisons of quantity attributes against a quantity limit convert the limit unit once per
+ * value unit and then compare primitive values, instead of doing a full quantity comparison for
+ * each item.</li>
+ * </ul>
+ * The cost and selectivity of the operands are estimated from the kind of the filters, as no
+ * statistics on the attribute values are available.
+ */
+public final class ItemFilterCompiler {
+
+	// Relative evaluation costs of the different kinds of leaf filters
+	private static final double COST_CONSTANT = 0;
+	private static final double COST_NULL_CHECK = 1;
+	private static final double COST_COMPARE = 2;
+	private static final double COST_RANGE = 3;
+	private static final double COST_CONTAINS = 5;
+	private static final double COST_MATCHES = 10;
+	private static final double COST_UNKNOWN = 5;
+
+	private static final double SELECTIVITY_UNKNOWN = 0.5;
+
+	/**
+	 * A compiled predicate together with its estimated cost and selectivity. The selectivity is the
+	 * estimated fraction of items for which the predicate is {@code true}.
+	 */
+	private static class Node {
+		final Predicate<IItem> predicate;
+		final double cost;
+		final double selectivity;
+
+		Node(Predicate<IItem> predicate, double cost, double selectivity) {
+			this.predicate = predicate;
+			this.cost = cost;
+			this.selectivity = selectivity;
+		}
+
+		boolean isTrue() {
+			return PredicateToolkit.isTrueGuaranteed(predicate);
+		}
+
+		boolean isFalse() {
+			return PredicateToolkit.isFalseGuaranteed(predicate);
+		}
+	}
+
+	private static final Node TRUE = new Node(PredicateToolkit.<IItem> truePredicate(), COST_CONSTANT, 1);
+	private static final Node FALSE = new Node(PredicateToolkit.<IItem> falsePredicate(), COST_CONSTANT, 0);
+
+	private ItemFilterCompiler() {
+	}
+
+	/**
+	 * Compile a filter into a predicate for a specific item type.
+	 *
+	 * @param filter
+	 *            the filter to compile
+	 * @param type
+	 *            the type of the items that the predicate will be used on
+	 * @return a predicate that accepts the same items of the type as the filter does
+	 */
+	public static Predicate<IItem> compile(IItemFilter filter, IType<IItem> type) {
+		return compileNode(filter, type).predicate;
+	}
+
+	private static Node compileNode(IItemFilter filter, IType<IItem> type) {
+		if (filter instanceof ItemFilters.BooleanFilter) {
+			return ((ItemFilters.BooleanFilter) filter).value ? TRUE : FALSE;
+		} else if (filter.getClass() == ItemFilters.Composite.class) {
+			boolean union = ((ItemFilters.Composite) filter).isUnion();
+			List<IItemFilter> operands = new ArrayList<>();
+			flatten((ItemFilters.Composite) filter, union, operands);
+			return union ? compileOr(operands, type) : compileAnd(operands, type);
+		} else if (filter instanceof ItemFilters.Not) {
+			IItemFilter operand = ((ItemFilters.Not) filter).getFilter();
+			if (operand instanceof ItemFilters.Not) {
+				return compileNode(((ItemFilters.Not) operand).getFilter(), type);
+			}
+			Node node = compileNode(operand, type);
+			if (node.isTrue()) {
+				return FALSE;
+			} else if (node.isFalse()) {
+				return TRUE;
+			}
+			return new Node(PredicateToolkit.not(node.predicate), node.cost, 1 - node.selectivity);
+		}
+		return compileLeaf(filter, type);
+	}
+
+	private static void flatten(ItemFilters.Composite composite, boolean union, List<IItemFilter> operands) {
+		for (IItemFilter operand : composite.getFilters()) {
+			if (operand.getClass() == ItemFilters.Composite.class
+					&& ((ItemFilters.Composite) operand).isUnion() == union) {
+				flatten((ItemFilters.Composite) operand, union, operands);
+			} else {
+				operands.add(operand);
+			}
+		}
+	}
+
+	private static Node compileAnd(List<IItemFilter> operands, IType<IItem> type) {
+		List<Node> nodes = new ArrayList<>(operands.size());
+		for (IItemFilter operand : operands) {
+			Node node = compileNode(operand, type);
+			if (node.isFalse()) {
+				return FALSE;
+			} else if (!node.isTrue()) {
+				nodes.add(node);
+			}
+		}
+		if (nodes.isEmpty()) {
+			return TRUE;
+		} else if (nodes.size() == 1) {
+			return nodes.get(0);
+		}
+		// Evaluate the operands that are cheap and likely to be false first
+		nodes.sort(Comparator.comparingDouble(n -> rank(n.cost, 1 - n.selectivity)));
+		double cost = 0;
+		double selectivity = 1;
+		@SuppressWarnings("unchecked")
+		Predicate<IItem>[] predicates = new Predicate[nodes.size()];
+		for (int i = 0; i < predicates.length; i++) {
+			Node node = nodes.get(i);
+			cost += selectivity * node.cost;
+			selectivity *= node.selectivity;
+			predicates[i] = node.predicate;
+		}
+		return new Node(new AndPredicate(predicates), cost, selectivity);
+	}
+
+	private static Node compileOr(List<IItemFilter> operands, IType<IItem> type) {
+		List<Node> nodes = new ArrayList<>(operands.size());
+		for (IItemFilter operand : operands) {
+			Node node = compileNode(operand, type);
+			if (node.isTrue()) {
+				return TRUE;
+			} else if (!node.isFalse()) {
+				nodes.add(node);
+			}
+		}
+		if (nodes.isEmpty()) {
+			return FALSE;
+		} else if (nodes.size() == 1) {
+			return nodes.get(0);
+		}
+		// Evaluate the operands that are cheap and likely to be true first
+		nodes.sort(Comparator.comparingDouble(n -> rank(n.cost, n.selectivity)));
+		double cost = 0;
+		double rejected = 1;
+		@SuppressWarnings("unchecked")
+		Predicate<IItem>[] predicates = new Predicate[nodes.size()];
+		for (int i = 0; i < predicates.length; i++) {
+			Node node = nodes.get(i);
+			cost += rejected * node.cost;
+			rejected *= 1 - node.selectivity;
+			predicates[i] = node.predicate;
+		}
+		return new Node(new OrPredicate(predicates), cost, 1 - rejected);
+	}
+
+	/**
+	 * @return the expected cost per decided item when evaluating an operand
+	 */
+	private static double rank(double cost, double decidingProbability) {
+		return decidingProbability > 0 ? cost / decidingProbability : Double.MAX_VALUE;
+	}
+
+	private static Node compileLeaf(IItemFilter filter, IType<IItem> type) {
+		if (filter instanceof ItemFilters.AttributeValue) {
+			ItemFilters.AttributeValue<?> attributeValue = (ItemFilters.AttributeValue<?>) filter;
+			Kind kind = attributeValue.getKind();
+			if (isComparison(kind) && attributeValue.getValue() instanceof IQuantity) {
+				IMemberAccessor<?, IItem> accessor = attributeValue.getAttribute().getAccessor(type);
+				if (accessor == null) {
+					return FALSE;
+				}
+				return new Node(new QuantityComparePredicate(accessor, (IQuantity) attributeValue.getValue(), kind),
+						COST_COMPARE, SELECTIVITY_UNKNOWN);
+			}
+		}
+		Predicate<IItem> predicate = filter.getPredicate(type);
+		if (PredicateToolkit.isTrueGuaranteed(predicate)) {
+			return TRUE;
+		} else if (PredicateToolkit.isFalseGuaranteed(predicate)) {
+			return FALSE;
+		}
+		if (filter instanceof ItemFilters.AttributeFilter) {
+			Kind kind = ((ItemFilters.AttributeFilter<?>) filter).getKind();
+			return new Node(predicate, estimateCost(kind), estimateSelectivity(kind));
+		}
+		return new Node(predicate, COST_UNKNOWN, SELECTIVITY_UNKNOWN);
+	}
+
+	private static boolean isComparison(Kind kind) {
+		return kind == Kind.LESS || kind == Kind.LESS_OR_EQUAL || kind == Kind.MORE || kind == Kind.MORE_OR_EQUAL;
+	}
+
+	private static double estimateCost(Kind kind) {
+		switch (kind) {
+		case IS_NULL:
+		case IS_NOT_NULL:
+		case EXISTS:
+		case NOT_EXISTS:
+			return COST_NULL_CHECK;
+		case EQUALS:
+		case NOT_EQUALS:
+		case LESS:
+		case LESS_OR_EQUAL:
+		case MORE:
+		case MORE_OR_EQUAL:
+			return COST_COMPARE;
+		case RANGE_INTERSECTS:
+		case RANGE_NOT_INTERSECTS:
+		case RANGE_CONTAINED:
+		case RANGE_NOT_CONTAINED:
+		case CENTER_CONTAINED:
+		case CENTER_NOT_CONTAINED:
+			return COST_RANGE;
+		case CONTAINS:
+		case NOT_CONTAINS:
+			return COST_CONTAINS;
+		case MATCHES:
+		case NOT_MATCHES:
+			return COST_MATCHES;
+		default:
+			return COST_UNKNOWN;
+		}
+	}
+
+	private static double estimateSelectivity(Kind kind) {
+		switch (kind) {
+		case EQUALS:
+		case IS_NULL:
+			return 0.1;
+		case NOT_EQUALS:
+		case IS_NOT_NULL:
+			return 0.9;
+		case MATCHES:
+		case CONTAINS:
+		case RANGE_CONTAINED:
+		case CENTER_CONTAINED:
+			return 0.2;
+		case NOT_MATCHES:
+		case NOT_CONTAINS:
+		case RANGE_NOT_CONTAINED:
+		case CENTER_NOT_CONTAINED:
+			return 0.8;
+		default:
+			return SELECTIVITY_UNKNOWN;
+		}
+	}
+
+	private static class AndPredicate implements Predicate<IItem> {
+		private final Predicate<IItem>[] predicates;
+
+		AndPredicate(Predicate<IItem>[] predicates) {
+			this.predicates = predicates;
+		}
+
+		@Override
+		public boolean test(IItem item) {
+			for (Predicate<IItem> predicate : predicates) {
+				if (!predicate.test(item)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class OrPredicate implements Predicate<IItem> {
+		private final Predicate<IItem>[] predicates;
+
+		OrPredicate(Predicate<IItem>[] predicates) {
+			this.predicates = predicates;
+		}
+
+		@Override
+		public boolean test(IItem item) {
+			for (Predicate<IItem> predicate : predicates) {
+				if (predicate.test(item)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The transform from a value unit to the unit of the limit. The transform is {@code null} if
+	 * values in the unit can not be converted to the limit unit.
+	 */
+	private static class UnitTransform {
+		final IUnit unit;
+		final IScalarAffineTransform transform;
+
+		UnitTransform(IUnit unit, IUnit limitUnit) {
+			this.unit = unit;
+			IScalarAffineTransform t;
+			try {
+				t = unit.valueTransformTo(limitUnit);
+			} catch (IllegalArgumentException e) {
+				t = null;
+			}
+			transform = t;
+		}
+	}
+
+	/**
+	 * Compares quantity values to a limit with the same result as {@link IQuantity#compareTo}, but
+	 * using primitive values. The transform to the limit unit is cached for the last seen value
+	 * unit, as the values of an attribute normally all have the same unit. When the primitive values
+	 * are equal, the full comparison is used to get the exact result for long values that can not be
+	 * represented exactly as doubles.
+	 */
+	private static class QuantityComparePredicate implements Predicate<IItem> {
+		private final IMemberAccessor<?, IItem> accessor;
+		private final IQuantity limit;
+		private final IUnit limitUnit;
+		private final double limitValue;
+		private final boolean acceptLess;
+		private final boolean acceptEqual;
+		private final boolean acceptMore;
+		// Racy cache, UnitTransform is immutable
+		private UnitTransform lastTransform;
+
+		QuantityComparePredicate(IMemberAccessor<?, IItem> accessor, IQuantity limit, Kind kind) {
+			this.accessor = accessor;
+			this.limit = limit;
+			limitUnit = limit.getUnit();
+			limitValue = limit.doubleValue();
+			acceptLess = kind == Kind.LESS || kind == Kind.LESS_OR_EQUAL;
+			acceptEqual = kind == Kind.LESS_OR_EQUAL || kind == Kind.MORE_OR_EQUAL;
+			acceptMore = kind == Kind.MORE || kind == Kind.MORE_OR_EQUAL;
+		}
+
+		@Override
+		public boolean test(IItem item) {
+			IQuantity value = (IQuantity) accessor.getMember(item);
+			if (value == null) {
+				return false;
+			}
+			int limitComparison = compareLimitTo(value);
+			if (limitComparison > 0) {
+				return acceptLess;
+			} else if (limitComparison < 0) {
+				return acceptMore;
+			}
+			return acceptEqual;
+		}
+
+		private int compareLimitTo(IQuantity value) {
+			IUnit unit = value.getUnit();
+			UnitTransform transform = lastTransform;
+			if (transform == null || transform.unit != unit) {
+				transform = new UnitTransform(unit, limitUnit);
+				lastTransform = transform;
+			}
+			if (transform.transform != null) {
+				int comparison = Double.compare(limitValue, transform.transform.targetValue(value.doubleValue()));
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return limit.compareTo(value);
+		}
+	}
+}
@@ -99,7 +99,7 @@ public class ItemIterableToolkit {
 
 	public static Stream<IItemIterable> filter(Stream<? extends IItemIterable> items, IItemFilter on) {
 		Function<IItemIterable, IItemIterable> streamMapper = itemStream -> {
-			Predicate<IItem> predicate = on.getPredicate(itemStream.getType());
+			Predicate<IItem> predicate = ItemFilterCompiler.compile(on, itemStream.getType());
 			if (PredicateToolkit.isTrueGuaranteed(predicate)) {
 				return itemStream;
 			} else if (PredicateToolkit.isFalseGuaranteed(predicate)) {
@@ -49,6 +49,8 @@ public class Messages {
 	public static final String ItemAggregate_LONGEST = "ItemAggregate_LONGEST"; //$NON-NLS-1$
 	public static final String ItemAggregate_MAXIMUM = "ItemAggregate_MAXIMUM"; //$NON-NLS-1$
 	public static final String ItemAggregate_MINIMUM = "ItemAggregate_MINIMUM"; //$NON-NLS-1$
+	public static final String ItemAggregate_MOST_COMMON = "ItemAggregate_MOST_COMMON"; //$NON-NLS-1$
+	public static final String ItemAggregate_PERCENTILE = "ItemAggregate_PERCENTILE"; //$NON-NLS-1$
 	public static final String ItemAggregate_SHORTEST = "ItemAggregate_SHORTEST"; //$NON-NLS-1$
 	public static final String ItemAggregate_STDDEV = "ItemAggregate_STDDEV"; //$NON-NLS-1$
 	public static final String ItemAggregate_STDDEVP = "ItemAggregate_STDDEVP"; //$NON-NLS-1$
@@ -40,6 +40,10 @@ public class Messages {
 
 	private static final ResourceBundle RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
 
+	public static final String EvaluationBudget_BUDGET_EXHAUSTED = "EvaluationBudget_BUDGET_EXHAUSTED"; //$NON-NLS-1$
+	public static final String EvaluationBudget_PARTIAL_RESULT_DESCRIPTION = "EvaluationBudget_PARTIAL_RESULT_DESCRIPTION"; //$NON-NLS-1$
+	public static final String EvaluationBudget_PARTIAL_RESULT_NAME = "EvaluationBudget_PARTIAL_RESULT_NAME"; //$NON-NLS-1$
+	public static final String EvaluationBudget_PARTIAL_RESULT_SUMMARY = "EvaluationBudget_PARTIAL_RESULT_SUMMARY"; //$NON-NLS-1$
 	public static final String ItemTreeToolkit_BREAKDOWN_HEADER_LAYERS = "ItemTreeToolkit_BREAKDOWN_HEADER_LAYERS"; //$NON-NLS-1$
 	public static final String ItemTreeToolkit_BREAKDOWN_HEADER_MAX_DURATION_EVENT_CHAIN = "ItemTreeToolkit_BREAKDOWN_HEADER_MAX_DURATION_EVENT_CHAIN"; //$NON-NLS-1$
 	public static final String ItemTreeToolkit_BREAKDOWN_LAYER_CAPTION = "ItemTreeToolkit_BREAKDOWN_LAYER_CAPTION"; //$NON-NLS-1$
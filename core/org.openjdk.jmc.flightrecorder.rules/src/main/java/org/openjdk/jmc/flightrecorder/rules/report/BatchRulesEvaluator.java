@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.util.EvaluationBudget;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+
+/**
+ * Evaluates the rules for a batch of recordings. Recordings are loaded by a pool of loader threads
+ * while the rules for previously loaded recordings are evaluated, so that loading and parsing
+ * overlaps with rule evaluation. The rules for one recording at a time are evaluated using
+ * {@link RulesToolkit#evaluateParallel evaluateParallel}.
+ * <p>
+ * To avoid running out of memory, a recording is only admitted for loading when its estimated
+ * memory usage fits within a memory limit, together with the recordings that are currently being
+ * loaded or evaluated. A recording that alone exceeds the limit is processed when no other
+ * recordings are in progress.
+ * <p>
+ * Reports are passed to an {@link IReportWriter} as soon as the evaluation of each recording has
+ * completed. The writer is always called from the same thread.
+ */
+public class BatchRulesEvaluator {
+
+	/**
+	 * Receives the reports for the recordings in a batch.
+	 */
+	public interface IReportWriter {
+
+		/**
+		 * Write the report for a recording.
+		 *
+		 * @param recording
+		 *            the recording file
+		 * @param events
+		 *            the events of the recording
+		 * @param results
+		 *            the result futures for all rules, all of which are done
+		 */
+		void writeReport(File recording, IItemCollection events, Map<IRule, Future<IResult>> results)
+				throws Exception;
+
+		/**
+		 * Write a report for a recording that could not be loaded or evaluated.
+		 *
+		 * @param recording
+		 *            the recording file
+		 * @param error
+		 *            the cause of the failure
+		 */
+		void writeError(File recording, Throwable error) throws Exception;
+	}
+
+	/**
+	 * Aggregated results for a batch of recordings.
+	 */
+	public static class Summary {
+		private final Map<Severity, Integer> resultCounts = new EnumMap<>(Severity.class);
+		private final Map<Severity, Integer> recordingCounts = new EnumMap<>(Severity.class);
+		private int recordingCount;
+		private int failedRecordingCount;
+		private int ruleErrorCount;
+		private long elapsedMillis;
+
+		/**
+		 * @return the number of recordings in the batch
+		 */
+		public int getRecordingCount() {
+			return recordingCount;
+		}
+
+		/**
+		 * @return the number of recordings that could not be loaded or evaluated
+		 */
+		public int getFailedRecordingCount() {
+			return failedRecordingCount;
+		}
+
+		/**
+		 * @return the number of rule evaluations that failed
+		 */
+		public int getRuleErrorCount() {
+			return ruleErrorCount;
+		}
+
+		/**
+		 * @param severity
+		 *            a severity
+		 * @return the total number of rule results with the severity, for all recordings
+		 */
+		public int getResultCount(Severity severity) {
+			return resultCounts.getOrDefault(severity, 0);
+		}
+
+		/**
+		 * @param severity
+		 *            a severity
+		 * @return the number of recordings where the highest result severity is the specified
+		 *         severity
+		 */
+		public int getRecordingCount(Severity severity) {
+			return recordingCounts.getOrDefault(severity, 0);
+		}
+
+		/**
+		 * @return the time used to process the batch, in milliseconds
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * Print the summary in human readable form.
+		 *
+		 * @param out
+		 *            the stream to print to
+		 */
+		public void print(PrintStream out) {
+			out.println("Recordings: " + recordingCount + " (" + failedRecordingCount + " failed)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			out.println("Elapsed time: " + elapsedMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+			out.println("Rule errors: " + ruleErrorCount); //$NON-NLS-1$
+			for (Severity severity : Severity.values()) {
+				out.println(severity.getLocalizedName() + ": " + getResultCount(severity) + " results, " //$NON-NLS-1$ //$NON-NLS-2$
+						+ getRecordingCount(severity) + " recordings"); //$NON-NLS-1$
+			}
+		}
+
+		private static void increment(Map<Severity, Integer> counts, Severity severity) {
+			counts.merge(severity, 1, Integer::sum);
+		}
+	}
+
+	private static final int DEFAULT_LOADER_THREADS = 2;
+	// Rough ratio between the heap used by a loaded recording and the size of the recording file
+	private static final int MEMORY_PER_FILE_BYTE = 4;
+	private static final long PERMIT_SIZE = 1024 * 1024;
+
+	private final int loaderThreads;
+	private final int memoryPermits;
+	private final IPreferenceValueProvider preferences;
+	private final IQuantity timeLimit;
+
+	/**
+	 * Create an evaluator with the default number of loader threads, a memory limit of half of the
+	 * maximum heap size and the default rule preferences.
+	 */
+	public BatchRulesEvaluator() {
+		this(DEFAULT_LOADER_THREADS, Runtime.getRuntime().maxMemory() / 2);
+	}
+
+	/**
+	 * Create an evaluator with the default number of loader threads, a memory limit of half of the
+	 * maximum heap size and the default rule preferences, that evaluates the rules for each
+	 * recording within a time limit.
+	 *
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules for each recording may take, see
+	 *            {@link EvaluationBudget}, or {@code null} for no limit
+	 */
+	public BatchRulesEvaluator(IQuantity timeLimit) {
+		this(DEFAULT_LOADER_THREADS, Runtime.getRuntime().maxMemory() / 2, IPreferenceValueProvider.DEFAULT_VALUES,
+				timeLimit);
+	}
+
+	/**
+	 * Create an evaluator that uses the default rule preferences.
+	 *
+	 * @param loaderThreads
+	 *            the number of recordings that may be loaded in parallel
+	 * @param memoryLimit
+	 *            the approximate number of bytes that the recordings in progress may use
+	 */
+	public BatchRulesEvaluator(int loaderThreads, long memoryLimit) {
+		this(loaderThreads, memoryLimit, IPreferenceValueProvider.DEFAULT_VALUES);
+	}
+
+	/**
+	 * @param loaderThreads
+	 *            the number of recordings that may be loaded in parallel
+	 * @param memoryLimit
+	 *            the approximate number of bytes that the recordings in progress may use
+	 * @param preferences
+	 *            the preferences to evaluate the rules with
+	 */
+	public BatchRulesEvaluator(int loaderThreads, long memoryLimit, IPreferenceValueProvider preferences) {
+		this(loaderThreads, memoryLimit, preferences, null);
+	}
+
+	/**
+	 * @param loaderThreads
+	 *            the number of recordings that may be loaded in parallel
+	 * @param memoryLimit
+	 *            the approximate number of bytes that the recordings in progress may use
+	 * @param preferences
+	 *            the preferences to evaluate the rules with
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules for each recording may take, see
+	 *            {@link EvaluationBudget}, or {@code null} for no limit
+	 */
+	public BatchRulesEvaluator(
+		int loaderThreads, long memoryLimit, IPreferenceValueProvider preferences, IQuantity timeLimit) {
+		this.loaderThreads = Math.max(loaderThreads, 1);
+		this.memoryPermits = (int) Math.min(Math.max(memoryLimit / PERMIT_SIZE, 1), Integer.MAX_VALUE);
+		this.preferences = preferences;
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Get unique names for the report files of a batch of recordings. A report is named after its
+	 * recording file with the extension added. If several recordings in the batch have the same file
+	 * name, for instance because they are in different directories, the position of the recording in
+	 * the batch is added to the name, e.g. {@code recording-2.jfr.html}.
+	 *
+	 * @param recordings
+	 *            the recording files of the batch
+	 * @param extension
+	 *            the extension of the report files, without the dot
+	 * @return the report file names, keyed by the recording file instances
+	 */
+	public static Map<File, String> getReportNames(Collection<File> recordings, String extension) {
+		Map<String, Integer> nameCounts = new HashMap<>();
+		for (File recording : recordings) {
+			nameCounts.merge(recording.getName(), 1, Integer::sum);
+		}
+		Set<String> usedNames = new HashSet<>();
+		for (File recording : recordings) {
+			if (nameCounts.get(recording.getName()) == 1) {
+				usedNames.add(recording.getName() + "." + extension); //$NON-NLS-1$
+			}
+		}
+		Map<File, String> reportNames = new IdentityHashMap<>();
+		int position = 0;
+		for (File recording : recordings) {
+			position++;
+			String name = recording.getName();
+			String reportName = name + "." + extension; //$NON-NLS-1$
+			if (nameCounts.get(name) > 1) {
+				int dot = name.lastIndexOf('.');
+				String prefix = dot > 0 ? name.substring(0, dot) : name;
+				String suffix = dot > 0 ? name.substring(dot) : ""; //$NON-NLS-1$
+				// Skip positions that would clash with the name of another recording in the batch
+				int index = position;
+				do {
+					reportName = prefix + "-" + index++ + suffix + "." + extension; //$NON-NLS-1$ //$NON-NLS-2$
+				} while (!usedNames.add(reportName));
+			}
+			reportNames.put(recording, reportName);
+		}
+		return reportNames;
+	}
+
+	/**
+	 * Evaluate the rules for a number of recordings.
+	 *
+	 * @param recordings
+	 *            the recording files to evaluate
+	 * @param writer
+	 *            the writer that receives the report of each recording as it completes
+	 * @return a summary of the results for all recordings
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for recordings to complete
+	 */
+	public Summary evaluate(Collection<File> recordings, IReportWriter writer) throws InterruptedException {
+		long startTime = System.currentTimeMillis();
+		Summary summary = new Summary();
+		Semaphore memory = new Semaphore(memoryPermits);
+		ExecutorService loaderPool = Executors.newFixedThreadPool(loaderThreads);
+		ExecutorService evaluationThread = Executors.newSingleThreadExecutor();
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		try {
+			for (File recording : recordings) {
+				int permits = getPermits(recording);
+				memory.acquire(permits);
+				pending.add(CompletableFuture.supplyAsync(() -> load(recording), loaderPool)
+						.handleAsync((events, error) -> {
+							try {
+								process(recording, events, error, writer, summary);
+							} finally {
+								memory.release(permits);
+							}
+							return null;
+						}, evaluationThread));
+			}
+			for (CompletableFuture<Void> future : pending) {
+				future.join();
+			}
+		} finally {
+			loaderPool.shutdownNow();
+			evaluationThread.shutdownNow();
+		}
+		summary.elapsedMillis = System.currentTimeMillis() - startTime;
+		return summary;
+	}
+
+	private int getPermits(File recording) {
+		long estimatedSize = recording.length() * MEMORY_PER_FILE_BYTE;
+		return (int) Math.min(Math.max(estimatedSize / PERMIT_SIZE, 1), memoryPermits);
+	}
+
+	private static IItemCollection load(File recording) {
+		try {
+			return JfrLoaderToolkit.loadEvents(recording);
+		} catch (IOException | CouldNotLoadRecordingException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private void process(
+		File recording, IItemCollection events, Throwable loadError, IReportWriter writer, Summary summary) {
+		summary.recordingCount++;
+		if (loadError != null) {
+			summary.failedRecordingCount++;
+			try {
+				writer.writeError(recording,
+						loadError instanceof CompletionException ? loadError.getCause() : loadError);
+			} catch (Exception e) {
+				Logger.getLogger(BatchRulesEvaluator.class.getName()).log(Level.WARNING,
+						"Could not write report for " + recording, e); //$NON-NLS-1$
+			}
+			return;
+		}
+		try {
+			EvaluationBudget budget = timeLimit != null ? new EvaluationBudget(timeLimit) : null;
+			Map<IRule, Future<IResult>> results = RulesToolkit.evaluateParallel(RuleRegistry.getRules(), events,
+					preferences, 0, budget);
+			Severity maxSeverity = Severity.NA;
+			for (Future<IResult> future : results.values()) {
+				try {
+					IResult result = future.get();
+					if (result != null) {
+						Summary.increment(summary.resultCounts, result.getSeverity());
+						if (result.getSeverity().compareTo(maxSeverity) > 0) {
+							maxSeverity = result.getSeverity();
+						}
+					}
+				} catch (ExecutionException e) {
+					summary.ruleErrorCount++;
+				}
+			}
+			Summary.increment(summary.recordingCounts, maxSeverity);
+			writer.writeReport(recording, events, results);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			summary.failedRecordingCount++;
+			Logger.getLogger(BatchRulesEvaluator.class.getName()).log(Level.WARNING,
+					"Could not write report for " + recording, e); //$NON-NLS-1$
+		}
+	}
+}
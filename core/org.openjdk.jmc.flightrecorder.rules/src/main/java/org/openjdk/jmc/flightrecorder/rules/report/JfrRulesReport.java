@@ -50,6 +50,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -67,6 +68,7 @@ import org.openjdk.jmc.common.item.IItemQuery;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.item.IType;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.ExceptionToolkit;
 import org.openjdk.jmc.common.util.LabeledIdentifier;
 import org.openjdk.jmc.common.util.XmlToolkit;
@@ -78,6 +80,7 @@ import org.openjdk.jmc.flightrecorder.rules.ResultToolkit;
 import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
 import org.openjdk.jmc.flightrecorder.rules.Severity;
 import org.openjdk.jmc.flightrecorder.rules.TypedResult;
+import org.openjdk.jmc.flightrecorder.rules.util.EvaluationBudget;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -127,10 +130,20 @@ public class JfrRulesReport {
 			System.out.println(" -override"); //$NON-NLS-1$
 			System.out.println(
 					"    Allows overriding the default templates by looking for resources in the context loader."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -batch <directory>"); //$NON-NLS-1$
+			System.out.println("    Writes one report per recording to the directory as soon as it is done,"); //$NON-NLS-1$
+			System.out.println("    loading the next recordings while evaluating the rules, and prints a summary."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -timelimit <seconds>"); //$NON-NLS-1$
+			System.out.println("    The time that the evaluation of the rules for each recording may take."); //$NON-NLS-1$
+			System.out.println("    Rules that do not complete in time give partial or not applicable results."); //$NON-NLS-1$
 			return;
 		}
 		boolean verbose = false;
 		boolean override = false;
+		File outputDirectory = null;
+		IQuantity timeLimit = null;
 		String formatName = "xml"; //$NON-NLS-1$
 		Severity minSeverity = Severity.OK;
 		List<String> fileNames = new ArrayList<>();
@@ -162,11 +175,58 @@ public class JfrRulesReport {
 				verbose = true;
 			} else if (args[i].equalsIgnoreCase("-override")) { //$NON-NLS-1$
 				override = true;
+			} else if (args[i].equalsIgnoreCase("-batch")) { //$NON-NLS-1$
+				if (i >= args.length - 1) {
+					System.out.println("-batch requires an output directory argument"); //$NON-NLS-1$
+					return;
+				}
+				outputDirectory = new File(args[++i]);
+			} else if (args[i].equalsIgnoreCase("-timelimit")) { //$NON-NLS-1$
+				if (i >= args.length - 1) {
+					System.out.println("-timelimit requires a number of seconds, e.g. 60"); //$NON-NLS-1$
+					return;
+				}
+				try {
+					timeLimit = UnitLookup.SECOND.quantity(Long.parseLong(args[++i]));
+				} catch (NumberFormatException e) {
+					System.out.println("Unrecognized value of -timelimit"); //$NON-NLS-1$
+					return;
+				}
 			} else {
 				fileNames.add(args[i]);
 			}
 		}
-		printReport(formatName, minSeverity, verbose, override, fileNames.toArray(new String[fileNames.size()]));
+		if (outputDirectory != null) {
+			try {
+				BatchRulesEvaluator.Summary summary = writeReports(formatName, minSeverity, verbose, override,
+						timeLimit, outputDirectory, fileNames.toArray(new String[fileNames.size()]));
+				if (summary != null) {
+					summary.print(System.out);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			printReport(formatName, minSeverity, verbose, override, timeLimit,
+					fileNames.toArray(new String[fileNames.size()]));
+		}
+	}
+
+	private static InputStream openTransform(String formatName, boolean override) {
+		String xsltResourceName = TRANSFORMS.get(formatName);
+		if (xsltResourceName == null) {
+			return null;
+		} else if (override) {
+			// Must prevent unauthorized injection of potentially dangerous XSLTs.
+			checkOverrideAccess();
+			return Thread.currentThread().getContextClassLoader().getResourceAsStream(xsltResourceName);
+		} else {
+			return JfrRulesReport.class.getClassLoader().getResourceAsStream(xsltResourceName);
+		}
+	}
+
+	private static boolean isXml(String formatName) {
+		return formatName == null || formatName.equals("xml"); //$NON-NLS-1$
 	}
 
 	/**
@@ -191,21 +251,39 @@ public class JfrRulesReport {
 	public static void printReport(
 		String formatName, Severity minSeverity, boolean verbose, boolean override, String ... fileNames)
 			throws ParserConfigurationException, TransformerException {
+		printReport(formatName, minSeverity, verbose, override, null, fileNames);
+	}
+
+	/**
+	 * Prints an automated analysis report for the JFR files with the specified fileNames, evaluating
+	 * the rules for each recording within a time limit.
+	 *
+	 * @param formatName
+	 *            the format of the report, e.g. xml, html or text.
+	 * @param minSeverity
+	 *            the minimum severity to report.
+	 * @param verbose
+	 *            true for a more verbose report.
+	 * @param override
+	 *            true to allow overriding the xslt for the transform via the context classloader
+	 *            (text = org/openjdk/jmc/flightrecorder/rules/report/text.xslt, html =
+	 *            org/openjdk/jmc/flightrecorder/rules/report/html.xslt).
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules for each recording may take, see
+	 *            {@link EvaluationBudget}, or {@code null} for no limit.
+	 * @param fileNames
+	 *            the file names of the recordings to analyze.
+	 * @throws SecurityException
+	 *             if a security manager exists, the caller does not have
+	 *             JfrReportPermission("override"), and override was enabled.
+	 */
+	public static void printReport(
+		String formatName, Severity minSeverity, boolean verbose, boolean override, IQuantity timeLimit,
+		String ... fileNames) throws ParserConfigurationException, TransformerException {
 		InputStream xsltResourceStream = null;
 		try {
-			if (formatName != null && !formatName.equals("xml")) { //$NON-NLS-1$
-				String xsltResourceName = TRANSFORMS.get(formatName);
-				if (xsltResourceName != null) {
-					if (override) {
-						// Must prevent unauthorized injection of potentially dangerous XSLTs.
-						checkOverrideAccess();
-						xsltResourceStream = Thread.currentThread().getContextClassLoader()
-								.getResourceAsStream(xsltResourceName);
-					} else {
-						xsltResourceStream = JfrRulesReport.class.getClassLoader()
-								.getResourceAsStream(xsltResourceName);
-					}
-				}
+			if (!isXml(formatName)) {
+				xsltResourceStream = openTransform(formatName, override);
 				if (xsltResourceStream == null) {
 					System.out.println("Format not available: " + formatName); //$NON-NLS-1$
 					return;
@@ -219,7 +297,7 @@ public class JfrRulesReport {
 			doc.appendChild(rootElement);
 
 			for (String fileName : fileNames) {
-				addReport(fileName, minSeverity, verbose, rootElement);
+				addReport(fileName, minSeverity, verbose, rootElement, timeLimit);
 			}
 
 			TransformerFactory transformerFactory = XmlToolkit.createTransformerFactory();
@@ -239,13 +317,150 @@ public class JfrRulesReport {
 		}
 	}
 
+	/**
+	 * Writes automated analysis reports for the JFR files with the specified fileNames to a
+	 * directory. The recordings are processed using a {@link BatchRulesEvaluator}, so that the next
+	 * recordings are loaded while the rules for the previous ones are evaluated, and each report is
+	 * written as soon as it is done.
+	 *
+	 * @param formatName
+	 *            the format of the reports, e.g. xml, html or text.
+	 * @param minSeverity
+	 *            the minimum severity to report.
+	 * @param verbose
+	 *            true for more verbose reports.
+	 * @param override
+	 *            true to allow overriding the xslt for the transform via the context classloader.
+	 * @param outputDirectory
+	 *            the directory to write the reports to, one file per recording.
+	 * @param fileNames
+	 *            the file names of the recordings to analyze.
+	 * @return a summary of the results for all recordings, or {@code null} if the format is not
+	 *         available
+	 * @throws SecurityException
+	 *             if a security manager exists, the caller does not have
+	 *             JfrReportPermission("override"), and override was enabled.
+	 */
+	public static BatchRulesEvaluator.Summary writeReports(
+		String formatName, Severity minSeverity, boolean verbose, boolean override, File outputDirectory,
+		String ... fileNames) throws ParserConfigurationException, TransformerException, InterruptedException {
+		return writeReports(formatName, minSeverity, verbose, override, null, outputDirectory, fileNames);
+	}
+
+	/**
+	 * Writes automated analysis reports for the JFR files with the specified fileNames to a
+	 * directory, evaluating the rules for each recording within a time limit. The recordings are
+	 * processed using a {@link BatchRulesEvaluator}, see
+	 * {@link #writeReports(String, Severity, boolean, boolean, File, String...)}.
+	 *
+	 * @param formatName
+	 *            the format of the reports, e.g. xml, html or text.
+	 * @param minSeverity
+	 *            the minimum severity to report.
+	 * @param verbose
+	 *            true for more verbose reports.
+	 * @param override
+	 *            true to allow overriding the xslt for the transform via the context classloader.
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules for each recording may take, see
+	 *            {@link EvaluationBudget}, or {@code null} for no limit.
+	 * @param outputDirectory
+	 *            the directory to write the reports to, one file per recording.
+	 * @param fileNames
+	 *            the file names of the recordings to analyze.
+	 * @return a summary of the results for all recordings, or {@code null} if the format is not
+	 *         available
+	 * @throws SecurityException
+	 *             if a security manager exists, the caller does not have
+	 *             JfrReportPermission("override"), and override was enabled.
+	 */
+	public static BatchRulesEvaluator.Summary writeReports(
+		String formatName, Severity minSeverity, boolean verbose, boolean override, IQuantity timeLimit,
+		File outputDirectory, String ... fileNames)
+			throws ParserConfigurationException, TransformerException, InterruptedException {
+		TransformerFactory transformerFactory = XmlToolkit.createTransformerFactory();
+		Templates templates = null;
+		if (!isXml(formatName)) {
+			InputStream xsltResourceStream = openTransform(formatName, override);
+			if (xsltResourceStream == null) {
+				System.out.println("Format not available: " + formatName); //$NON-NLS-1$
+				return null;
+			}
+			try {
+				templates = transformerFactory.newTemplates(new StreamSource(xsltResourceStream));
+			} finally {
+				IOToolkit.closeSilently(xsltResourceStream);
+			}
+		}
+		outputDirectory.mkdirs();
+		String extension = isXml(formatName) ? "xml" : formatName.equals("text") ? "txt" : formatName; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		Templates reportTemplates = templates;
+		List<File> files = new ArrayList<>(fileNames.length);
+		for (String fileName : fileNames) {
+			files.add(new File(fileName));
+		}
+		Map<File, String> reportNames = BatchRulesEvaluator.getReportNames(files, extension);
+		return new BatchRulesEvaluator(timeLimit).evaluate(files, new BatchRulesEvaluator.IReportWriter() {
+
+			@Override
+			public void writeReport(File recording, IItemCollection events, Map<IRule, Future<IResult>> results)
+					throws TransformerException {
+				Element rootElement = createReportCollection();
+				Element reportNode = createReportNode(recording.getPath(), rootElement);
+				addResults(events, results, minSeverity, verbose, rootElement, reportNode);
+				transform(recording, rootElement);
+			}
+
+			@Override
+			public void writeError(File recording, Throwable error) throws TransformerException {
+				Element rootElement = createReportCollection();
+				addError(rootElement, createReportNode(recording.getPath(), rootElement), error);
+				transform(recording, rootElement);
+			}
+
+			private Element createReportCollection() {
+				Document doc = docBuilder.newDocument();
+				Element rootElement = doc.createElement("reportcollection"); //$NON-NLS-1$
+				doc.appendChild(rootElement);
+				return rootElement;
+			}
+
+			private void transform(File recording, Element rootElement) throws TransformerException {
+				Transformer transformer = reportTemplates != null ? reportTemplates.newTransformer()
+						: transformerFactory.newTransformer();
+				transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
+				File outputFile = new File(outputDirectory, reportNames.get(recording));
+				transformer.transform(new DOMSource(rootElement.getOwnerDocument()), new StreamResult(outputFile));
+			}
+		});
+	}
+
 	public static void addReport(String fileName, Severity minSeverity, boolean verbose, Element parent) {
+		addReport(fileName, minSeverity, verbose, parent, null);
+	}
+
+	/**
+	 * Adds an automated analysis report for a JFR file to an XML element, evaluating the rules within
+	 * a time limit.
+	 *
+	 * @param fileName
+	 *            the file name of the recording to analyze
+	 * @param minSeverity
+	 *            the minimum severity to report
+	 * @param verbose
+	 *            true for a more verbose report
+	 * @param parent
+	 *            the element to add the report to
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules may take, starting when the recording
+	 *            has been loaded, or {@code null} for no limit
+	 */
+	public static void addReport(
+		String fileName, Severity minSeverity, boolean verbose, Element parent, IQuantity timeLimit) {
 		try {
 			File file = new File(fileName);
-			Element reportNode = parent.getOwnerDocument().createElement("report"); //$NON-NLS-1$
-			parent.appendChild(reportNode);
-
-			reportNode.appendChild(createValueNode(parent.getOwnerDocument(), "file", fileName)); //$NON-NLS-1$
+			Element reportNode = createReportNode(fileName, parent);
 
 			IItemCollection events = null;
 			try {
@@ -256,88 +471,102 @@ public class JfrRulesReport {
 			}
 
 			// TODO: Provide configuration
+			EvaluationBudget budget = timeLimit != null ? new EvaluationBudget(timeLimit) : null;
 			Map<IRule, Future<IResult>> resultFutures = RulesToolkit.evaluateParallel(RuleRegistry.getRules(), events,
-					null, 0);
-			List<Map.Entry<IRule, Future<IResult>>> resultFutureList = new ArrayList<>(resultFutures.entrySet());
-			resultFutureList.sort(new Comparator<Map.Entry<IRule, ?>>() {
-				@Override
-				public int compare(Entry<IRule, ?> o1, Entry<IRule, ?> o2) {
-					return o1.getKey().getId().compareTo(o2.getKey().getId());
+					null, 0, budget);
+			addResults(events, resultFutures, minSeverity, verbose, parent, reportNode);
+		} catch (Throwable t) {
+			System.err.println("Got exception when creating report for " + fileName); //$NON-NLS-1$
+			throw t;
+		}
+	}
+
+	private static Element createReportNode(String fileName, Element parent) {
+		Element reportNode = parent.getOwnerDocument().createElement("report"); //$NON-NLS-1$
+		parent.appendChild(reportNode);
+		reportNode.appendChild(createValueNode(parent.getOwnerDocument(), "file", fileName)); //$NON-NLS-1$
+		return reportNode;
+	}
+
+	private static void addResults(
+		IItemCollection events, Map<IRule, Future<IResult>> resultFutures, Severity minSeverity, boolean verbose,
+		Element parent, Element reportNode) {
+		List<Map.Entry<IRule, Future<IResult>>> resultFutureList = new ArrayList<>(resultFutures.entrySet());
+		resultFutureList.sort(new Comparator<Map.Entry<IRule, ?>>() {
+			@Override
+			public int compare(Entry<IRule, ?> o1, Entry<IRule, ?> o2) {
+				return o1.getKey().getId().compareTo(o2.getKey().getId());
+			}
+		});
+		for (Map.Entry<IRule, Future<IResult>> resultEntry : resultFutureList) {
+			IResult result = null;
+			try {
+				result = resultEntry.getValue().get();
+			} catch (Throwable t) {
+				Element ruleNode = createRuleNode(parent, reportNode, resultEntry.getKey());
+				addError(parent, ruleNode, t);
+				continue;
+			}
+
+			if (result != null && result.getSeverity().compareTo(minSeverity) >= 0) {
+				Element ruleNode = createRuleNode(parent, reportNode, result.getRule());
+
+				ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "severity", //$NON-NLS-1$
+						result.getSeverity().getLocalizedName()));
+				IQuantity score = result.getResult(TypedResult.SCORE);
+				if (score != null) {
+					ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "score", //$NON-NLS-1$
+							score.displayUsing(IDisplayable.AUTO)));
 				}
-			});
-			for (Map.Entry<IRule, Future<IResult>> resultEntry : resultFutureList) {
-				IResult result = null;
-				try {
-					result = resultEntry.getValue().get();
-				} catch (Throwable t) {
-					Element ruleNode = createRuleNode(parent, reportNode, resultEntry.getKey());
-					addError(parent, ruleNode, t);
-					continue;
+				ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "summary", //$NON-NLS-1$
+						ResultToolkit.populateMessage(result, result.getSummary(), false)));
+				if (verbose) {
+					ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "explanation", //$NON-NLS-1$
+							ResultToolkit.populateMessage(result, result.getExplanation(), false)));
+					ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "solution", //$NON-NLS-1$
+							ResultToolkit.populateMessage(result, result.getSolution(), false)));
 				}
 
-				if (result != null && result.getSeverity().compareTo(minSeverity) >= 0) {
-					Element ruleNode = createRuleNode(parent, reportNode, result.getRule());
+				IItemQuery itemQuery = result.getResult(TypedResult.ITEM_QUERY);
+				if (verbose && itemQuery != null && !itemQuery.getAttributes().isEmpty()) {
+					Element itemSetNode = parent.getOwnerDocument().createElement("itemset"); //$NON-NLS-1$
+					ruleNode.appendChild(itemSetNode);
 
-					ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "severity", //$NON-NLS-1$
-							result.getSeverity().getLocalizedName()));
-					IQuantity score = result.getResult(TypedResult.SCORE);
-					if (score != null) {
-						ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "score", //$NON-NLS-1$
-								score.displayUsing(IDisplayable.AUTO)));
-					}
-					ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "summary", //$NON-NLS-1$
-							ResultToolkit.populateMessage(result, result.getSummary(), false)));
-					if (verbose) {
-						ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "explanation", //$NON-NLS-1$
-								ResultToolkit.populateMessage(result, result.getExplanation(), false)));
-						ruleNode.appendChild(createValueNode(parent.getOwnerDocument(), "solution", //$NON-NLS-1$
-								ResultToolkit.populateMessage(result, result.getSolution(), false)));
+					IItemCollection resultEvents = events.apply(itemQuery.getFilter());
+
+					Collection<? extends IAttribute<?>> attributes = itemQuery.getAttributes();
+					Element fieldsNode = parent.getOwnerDocument().createElement("fields"); //$NON-NLS-1$
+					itemSetNode.appendChild(fieldsNode);
+					for (IAttribute<?> attribute : attributes) {
+						Element fieldNode = parent.getOwnerDocument().createElement("field"); //$NON-NLS-1$
+						fieldsNode.appendChild(fieldNode);
+						fieldNode.appendChild(
+								createValueNode(parent.getOwnerDocument(), "name", attribute.getName())); //$NON-NLS-1$
 					}
 
-					IItemQuery itemQuery = result.getResult(TypedResult.ITEM_QUERY);
-					if (verbose && itemQuery != null && !itemQuery.getAttributes().isEmpty()) {
-						Element itemSetNode = parent.getOwnerDocument().createElement("itemset"); //$NON-NLS-1$
-						ruleNode.appendChild(itemSetNode);
-
-						IItemCollection resultEvents = events.apply(itemQuery.getFilter());
-
-						Collection<? extends IAttribute<?>> attributes = itemQuery.getAttributes();
-						Element fieldsNode = parent.getOwnerDocument().createElement("fields"); //$NON-NLS-1$
-						itemSetNode.appendChild(fieldsNode);
-						for (IAttribute<?> attribute : attributes) {
-							Element fieldNode = parent.getOwnerDocument().createElement("field"); //$NON-NLS-1$
-							fieldsNode.appendChild(fieldNode);
-							fieldNode.appendChild(
-									createValueNode(parent.getOwnerDocument(), "name", attribute.getName())); //$NON-NLS-1$
+					Element itemsNode = parent.getOwnerDocument().createElement("items"); //$NON-NLS-1$
+					itemSetNode.appendChild(itemsNode);
+					Iterator<? extends IItemIterable> iterables = resultEvents.iterator();
+					while (iterables.hasNext()) {
+						IItemIterable ii = iterables.next();
+						IType<IItem> type = ii.getType();
+						List<IMemberAccessor<?, IItem>> accessors = new ArrayList<>(attributes.size());
+						for (IAttribute<?> a : attributes) {
+							accessors.add(a.getAccessor(type));
 						}
-
-						Element itemsNode = parent.getOwnerDocument().createElement("items"); //$NON-NLS-1$
-						itemSetNode.appendChild(itemsNode);
-						Iterator<? extends IItemIterable> iterables = resultEvents.iterator();
-						while (iterables.hasNext()) {
-							IItemIterable ii = iterables.next();
-							IType<IItem> type = ii.getType();
-							List<IMemberAccessor<?, IItem>> accessors = new ArrayList<>(attributes.size());
-							for (IAttribute<?> a : attributes) {
-								accessors.add(a.getAccessor(type));
-							}
-							Iterator<? extends IItem> items = ii.iterator();
-							while (items.hasNext()) {
-								IItem item = items.next();
-								Element itemNode = parent.getOwnerDocument().createElement("item"); //$NON-NLS-1$
-								itemsNode.appendChild(itemNode);
-								for (IMemberAccessor<?, IItem> a : accessors) {
-									itemNode.appendChild(createValueNode(parent.getOwnerDocument(), "value", //$NON-NLS-1$
-											toString(a.getMember(item))));
-								}
+						Iterator<? extends IItem> items = ii.iterator();
+						while (items.hasNext()) {
+							IItem item = items.next();
+							Element itemNode = parent.getOwnerDocument().createElement("item"); //$NON-NLS-1$
+							itemsNode.appendChild(itemNode);
+							for (IMemberAccessor<?, IItem> a : accessors) {
+								itemNode.appendChild(createValueNode(parent.getOwnerDocument(), "value", //$NON-NLS-1$
+										toString(a.getMember(item))));
 							}
 						}
 					}
 				}
 			}
-		} catch (Throwable t) {
-			System.err.println("Got exception when creating report for " + fileName); //$NON-NLS-1$
-			throw t;
 		}
 	}
 
@@ -50,15 +50,18 @@ import java.util.logging.Logger;
 
 import org.openjdk.jmc.common.io.IOToolkit;
 import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.util.XmlToolkit;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
 import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
 import org.openjdk.jmc.flightrecorder.rules.IResult;
 import org.openjdk.jmc.flightrecorder.rules.IRule;
 import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmc.flightrecorder.rules.report.BatchRulesEvaluator;
 import org.openjdk.jmc.flightrecorder.rules.report.html.internal.HtmlResultGroup;
 import org.openjdk.jmc.flightrecorder.rules.report.html.internal.HtmlResultProvider;
 import org.openjdk.jmc.flightrecorder.rules.report.html.internal.RulesHtmlToolkit;
+import org.openjdk.jmc.flightrecorder.rules.util.EvaluationBudget;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -73,9 +76,29 @@ public class JfrHtmlRulesReport {
 			System.err.println("The first argument must be a JFR file."); //$NON-NLS-1$
 			System.err.println("The second optional argument is the output file."); //$NON-NLS-1$
 			System.err.println("If an output file is not specified, then the output will be written to stdout."); //$NON-NLS-1$
+			System.err.println();
+			System.err.println("To create reports for many JFR files, use -batch <directory> <JFR file>..."); //$NON-NLS-1$
+			System.err.println("One report per JFR file is written to the directory, and a summary to stdout."); //$NON-NLS-1$
 			System.exit(1);
 		}
 
+		if (args[0].equalsIgnoreCase("-batch")) { //$NON-NLS-1$
+			if (args.length < 3) {
+				System.err.println("-batch requires an output directory and one or more JFR files"); //$NON-NLS-1$
+				System.exit(1);
+			}
+			List<File> files = new ArrayList<>();
+			for (int i = 2; i < args.length; i++) {
+				files.add(new File(args[i]));
+			}
+			try {
+				createReports(new File(args[1]), files).print(System.out);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
 		try {
 			String report = createReport(new File(args[0]));
 			if (args.length > 1) {
@@ -133,6 +156,67 @@ public class JfrHtmlRulesReport {
 		return createReport(JfrLoaderToolkit.loadEvents(stream));
 	}
 
+	/**
+	 * Create HTML reports for a number of JFR files. The files are processed using a
+	 * {@link BatchRulesEvaluator}, so that the next files are loaded while the rules for the
+	 * previous ones are evaluated. Each report is written to a file named after the JFR file as soon
+	 * as it is done, see {@link BatchRulesEvaluator#getReportNames(Collection, String)}.
+	 *
+	 * @param outputDirectory
+	 *            the directory to write the reports to
+	 * @param jfrFiles
+	 *            the JFR files to read
+	 * @return a summary of the results for all JFR files
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the reports to complete
+	 */
+	public static BatchRulesEvaluator.Summary createReports(File outputDirectory, Collection<File> jfrFiles)
+			throws InterruptedException {
+		return createReports(outputDirectory, jfrFiles, null);
+	}
+
+	/**
+	 * Create HTML reports for a number of JFR files, evaluating the rules for each JFR file within a
+	 * time limit. See {@link #createReports(File, Collection)}.
+	 *
+	 * @param outputDirectory
+	 *            the directory to write the reports to
+	 * @param jfrFiles
+	 *            the JFR files to read
+	 * @param timeLimit
+	 *            the time that the evaluation of the rules for each JFR file may take, see
+	 *            {@link EvaluationBudget}, or {@code null} for no limit
+	 * @return a summary of the results for all JFR files
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the reports to complete
+	 */
+	public static BatchRulesEvaluator.Summary createReports(
+		File outputDirectory, Collection<File> jfrFiles, IQuantity timeLimit) throws InterruptedException {
+		outputDirectory.mkdirs();
+		Map<File, String> reportNames = BatchRulesEvaluator.getReportNames(jfrFiles, "html"); //$NON-NLS-1$
+		return new BatchRulesEvaluator(timeLimit).evaluate(jfrFiles, new BatchRulesEvaluator.IReportWriter() {
+
+			@Override
+			public void writeReport(File recording, IItemCollection events, Map<IRule, Future<IResult>> results)
+					throws IOException {
+				write(recording, createReport(results));
+			}
+
+			@Override
+			public void writeError(File recording, Throwable error) {
+				getLogger().log(Level.SEVERE, "Could not load recording file " + recording + ": " //$NON-NLS-1$ //$NON-NLS-2$
+						+ error.getMessage());
+			}
+
+			private void write(File recording, String report) throws IOException {
+				try (PrintStream out = new PrintStream(new File(outputDirectory, reportNames.get(recording)),
+						"UTF-8")) { //$NON-NLS-1$
+					out.print(report);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Create an HTML report from the provided IItemCollection
 	 *
@@ -141,9 +225,28 @@ public class JfrHtmlRulesReport {
 	 * @return a string with HTML
 	 */
 	public static String createReport(IItemCollection events) {
+		return createReport(events, null);
+	}
+
+	/**
+	 * Create an HTML report from the provided IItemCollection, evaluating the rules within a budget.
+	 * The budget can be used to follow the progress of the evaluation and to stop it early.
+	 *
+	 * @param events
+	 *            the {@link IItemCollection} for which to produce an HTML report
+	 * @param budget
+	 *            the budget to evaluate the rules within, or {@code null} to evaluate all rules
+	 *            completely
+	 * @return a string with HTML
+	 */
+	public static String createReport(IItemCollection events, EvaluationBudget budget) {
 		// TODO: Provide configuration
 		Map<IRule, Future<IResult>> resultFutures = RulesToolkit.evaluateParallel(RuleRegistry.getRules(), events, null,
-				0);
+				0, budget);
+		return createReport(resultFutures);
+	}
+
+	private static String createReport(Map<IRule, Future<IResult>> resultFutures) {
 		Collection<IResult> results = new HashSet<>();
 		for (Map.Entry<IRule, Future<IResult>> resultEntry : resultFutures.entrySet()) {
 			try {
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.common.util.TypedPreference;
+import org.openjdk.jmc.flightrecorder.rules.IRecordingSetting;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.TypedCollectionResult;
+import org.openjdk.jmc.flightrecorder.rules.TypedResult;
+import org.openjdk.jmc.flightrecorder.rules.messages.internal.Messages;
+
+/**
+ * A time budget for evaluating rules with
+ * {@link RulesToolkit#evaluateParallel(Collection, org.openjdk.jmc.common.item.IItemCollection, IPreferenceValueProvider, int, EvaluationBudget)
+ * evaluateParallel}.
+ * <p>
+ * The budget consists of a wall clock time limit for the evaluation of all rules, and optionally a
+ * CPU time limit for the evaluation of each rule. Rules that have not been started when the wall
+ * clock time limit has passed are not evaluated. Rules that are running when a limit is exceeded
+ * stop iterating over the items of the evaluated item collection and over windows in the
+ * {@link SlidingWindowToolkit}, and return results based on the items visited so far. Such results
+ * are marked as {@link #PARTIAL_RESULT partial}. Rules can also check {@link #isExhausted()} to stop
+ * other long running calculations.
+ * <p>
+ * The budget also works as a progress token for the evaluation. The caller can follow the progress
+ * with the rule counts, and stop the evaluation early with {@link #stop()}.
+ */
+public class EvaluationBudget {
+
+	/**
+	 * Result that is {@code true} if the evaluation of a rule was stopped early because the budget
+	 * was exhausted, and the result therefore is based on only part of the recording.
+	 */
+	public static final TypedResult<Boolean> PARTIAL_RESULT = new TypedResult<>("partialResult", //$NON-NLS-1$
+			Messages.getString(Messages.EvaluationBudget_PARTIAL_RESULT_NAME),
+			Messages.getString(Messages.EvaluationBudget_PARTIAL_RESULT_DESCRIPTION), UnitLookup.FLAG,
+			Boolean.class);
+
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+	// Checking the CPU time for every item would cost more than reading most items
+	private static final int ITEM_CHECK_INTERVAL = 1024;
+	private static final ThreadLocal<Evaluation> CURRENT_EVALUATION = new ThreadLocal<>();
+
+	/**
+	 * The evaluation of a rule on a thread.
+	 */
+	private static class Evaluation {
+		private final EvaluationBudget budget;
+		private final long cpuTimeStart;
+		private boolean partial;
+
+		Evaluation(EvaluationBudget budget) {
+			this.budget = budget;
+			cpuTimeStart = budget.cpuTimeLimit > 0 ? THREAD_BEAN.getCurrentThreadCpuTime() : 0;
+		}
+
+		boolean isExhausted() {
+			if (!partial) {
+				partial = budget.isOver() || (budget.cpuTimeLimit > 0
+						&& THREAD_BEAN.getCurrentThreadCpuTime() - cpuTimeStart > budget.cpuTimeLimit);
+			}
+			return partial;
+		}
+	}
+
+	/**
+	 * A rule evaluation that is run within the budget.
+	 */
+	private static class BudgetedEvaluation extends FutureTask<IResult> {
+		private final RunnableFuture<IResult> evaluation;
+
+		BudgetedEvaluation(EvaluationBudget budget, IRule rule, IPreferenceValueProvider preferences,
+				RunnableFuture<IResult> evaluation) {
+			super(() -> budget.evaluate(rule, preferences, evaluation));
+			this.evaluation = evaluation;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			evaluation.cancel(mayInterruptIfRunning);
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+
+	/**
+	 * An item collection that stops iterating when the budget of the rule evaluation running in the
+	 * current thread is exhausted. Aggregates are calculated on all items.
+	 */
+	private static class BudgetedItemCollection implements IItemCollection {
+		private final IItemCollection items;
+
+		BudgetedItemCollection(IItemCollection items) {
+			this.items = items;
+		}
+
+		@Override
+		public Iterator<IItemIterable> iterator() {
+			Iterator<IItemIterable> iterator = items.iterator();
+			return new Iterator<IItemIterable>() {
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext() && !isExhausted();
+				}
+
+				@Override
+				public IItemIterable next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return new BudgetedItemIterable(iterator.next());
+				}
+			};
+		}
+
+		@Override
+		public IItemCollection apply(IItemFilter filter) {
+			return new BudgetedItemCollection(items.apply(filter));
+		}
+
+		@Override
+		public <V, C extends IItemConsumer<C>> V getAggregate(IAggregator<V, C> aggregator) {
+			return items.getAggregate(aggregator);
+		}
+
+		@Override
+		public boolean hasItems() {
+			return items.hasItems();
+		}
+
+		@SuppressWarnings("deprecation")
+		@Override
+		public Set<IRange<IQuantity>> getUnfilteredTimeRanges() {
+			return items.getUnfilteredTimeRanges();
+		}
+	}
+
+	private static class BudgetedItemIterable implements IItemIterable {
+		private final IItemIterable items;
+
+		BudgetedItemIterable(IItemIterable items) {
+			this.items = items;
+		}
+
+		@Override
+		public Iterator<IItem> iterator() {
+			Iterator<IItem> iterator = items.iterator();
+			return new Iterator<IItem>() {
+				private int count;
+				private boolean exhausted;
+
+				@Override
+				public boolean hasNext() {
+					if (!exhausted && ++count % ITEM_CHECK_INTERVAL == 0) {
+						exhausted = isExhausted();
+					}
+					return !exhausted && iterator.hasNext();
+				}
+
+				@Override
+				public IItem next() {
+					return iterator.next();
+				}
+			};
+		}
+
+		@Override
+		public IType<IItem> getType() {
+			return items.getType();
+		}
+
+		@Override
+		public boolean hasItems() {
+			return items.hasItems();
+		}
+
+		@Override
+		public long getItemCount() {
+			return items.getItemCount();
+		}
+
+		@Override
+		public IItemIterable apply(Predicate<IItem> predicate) {
+			return new BudgetedItemIterable(items.apply(predicate));
+		}
+	}
+
+	/**
+	 * A result that is based on only part of the recording.
+	 */
+	private static class PartialResult implements IResult {
+		private final IResult result;
+
+		PartialResult(IResult result) {
+			this.result = result;
+		}
+
+		@Override
+		public Severity getSeverity() {
+			return result.getSeverity();
+		}
+
+		@Override
+		public IRule getRule() {
+			return result.getRule();
+		}
+
+		@Override
+		public String getSummary() {
+			return MessageFormat.format(Messages.getString(Messages.EvaluationBudget_PARTIAL_RESULT_SUMMARY),
+					result.getSummary());
+		}
+
+		@Override
+		public String getExplanation() {
+			return result.getExplanation();
+		}
+
+		@Override
+		public String getSolution() {
+			return result.getSolution();
+		}
+
+		@Override
+		public Collection<IRecordingSetting> suggestRecordingSettings() {
+			return result.suggestRecordingSettings();
+		}
+
+		@Override
+		public <T> Collection<T> getResult(TypedCollectionResult<T> typedResult) {
+			return result.getResult(typedResult);
+		}
+
+		@Override
+		public <T> T getPreference(TypedPreference<T> preference) {
+			return result.getPreference(preference);
+		}
+
+		@Override
+		public <T> T getResult(TypedResult<T> typedResult) {
+			if (PARTIAL_RESULT.equals(typedResult)) {
+				return typedResult.getResultClass().cast(Boolean.TRUE);
+			}
+			return result.getResult(typedResult);
+		}
+	}
+
+	private final long deadline;
+	private final long cpuTimeLimit;
+	private final AtomicInteger startedCount = new AtomicInteger();
+	private final AtomicInteger completedCount = new AtomicInteger();
+	private final AtomicInteger partialCount = new AtomicInteger();
+	private final AtomicInteger skippedCount = new AtomicInteger();
+	private volatile boolean stopped;
+
+	/**
+	 * Create a budget with a wall clock time limit, starting now.
+	 *
+	 * @param timeLimit
+	 *            the time that the evaluation of all rules may take
+	 */
+	public EvaluationBudget(IQuantity timeLimit) {
+		this(timeLimit, null);
+	}
+
+	/**
+	 * Create a budget with a wall clock time limit, starting now, and a CPU time limit for each
+	 * rule.
+	 *
+	 * @param timeLimit
+	 *            the time that the evaluation of all rules may take
+	 * @param cpuTimeLimit
+	 *            the CPU time that the evaluation of a single rule may use, or {@code null} for no
+	 *            limit
+	 */
+	public EvaluationBudget(IQuantity timeLimit, IQuantity cpuTimeLimit) {
+		deadline = System.nanoTime() + timeLimit.clampedLongValueIn(UnitLookup.NANOSECOND);
+		this.cpuTimeLimit = cpuTimeLimit != null && THREAD_BEAN.isCurrentThreadCpuTimeSupported()
+				? Math.max(1, cpuTimeLimit.clampedLongValueIn(UnitLookup.NANOSECOND)) : 0;
+	}
+
+	/**
+	 * @return {@code true} if the wall clock time limit has passed
+	 */
+	public boolean isTimeExceeded() {
+		return System.nanoTime() - deadline > 0;
+	}
+
+	/**
+	 * Stop the evaluation as if the time limit had passed. Rules that have not been started are not
+	 * evaluated, and running rules return partial results.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * @return the number of rules that have been started within this budget
+	 */
+	public int getStartedRuleCount() {
+		return startedCount.get();
+	}
+
+	/**
+	 * @return the number of started rules that have completed, including partial results
+	 */
+	public int getCompletedRuleCount() {
+		return completedCount.get();
+	}
+
+	/**
+	 * @return the number of completed rules whose results are partial
+	 */
+	public int getPartialRuleCount() {
+		return partialCount.get();
+	}
+
+	/**
+	 * @return the number of rules that were not evaluated because the budget was exhausted before
+	 *         they were started
+	 */
+	public int getSkippedRuleCount() {
+		return skippedCount.get();
+	}
+
+	private boolean isOver() {
+		return stopped || isTimeExceeded();
+	}
+
+	/**
+	 * Check if the budget for the rule evaluation running in the current thread is exhausted. If
+	 * it is, then the result of the rule will be marked as partial. Returns {@code false} if the
+	 * current thread is not evaluating a rule with a budget.
+	 *
+	 * @return {@code true} if the rule evaluation should be stopped as soon as possible
+	 */
+	public static boolean isExhausted() {
+		Evaluation evaluation = CURRENT_EVALUATION.get();
+		return evaluation != null && evaluation.isExhausted();
+	}
+
+	/**
+	 * Wrap the items to evaluate a rule on, so that iterating over them stops when the budget of the
+	 * rule is exhausted.
+	 *
+	 * @param items
+	 *            the items to evaluate the rule on
+	 * @return the items, limited by the budget of the current rule evaluation
+	 */
+	IItemCollection limit(IItemCollection items) {
+		return new BudgetedItemCollection(items);
+	}
+
+	/**
+	 * Wrap a rule evaluation so that it is run within this budget.
+	 *
+	 * @param rule
+	 *            the rule that is evaluated
+	 * @param preferences
+	 *            the preferences used for evaluating the rule
+	 * @param evaluation
+	 *            the evaluation created by the rule
+	 * @return an evaluation that gives a not applicable result if the time limit has passed before
+	 *         it is started, and a partial result if the budget was exhausted while it was running
+	 */
+	RunnableFuture<IResult> wrap(IRule rule, IPreferenceValueProvider preferences, RunnableFuture<IResult> evaluation) {
+		return new BudgetedEvaluation(this, rule, preferences, evaluation);
+	}
+
+	private IResult evaluate(IRule rule, IPreferenceValueProvider preferences, RunnableFuture<IResult> evaluation)
+			throws Exception {
+		if (isOver()) {
+			skippedCount.incrementAndGet();
+			evaluation.cancel(false);
+			return RulesToolkit.getNotApplicableResult(rule, preferences,
+					Messages.getString(Messages.EvaluationBudget_BUDGET_EXHAUSTED));
+		}
+		Evaluation previous = CURRENT_EVALUATION.get();
+		Evaluation current = new Evaluation(this);
+		CURRENT_EVALUATION.set(current);
+		startedCount.incrementAndGet();
+		try {
+			evaluation.run();
+		} finally {
+			CURRENT_EVALUATION.set(previous);
+			completedCount.incrementAndGet();
+			if (current.partial) {
+				partialCount.incrementAndGet();
+			}
+		}
+		IResult result;
+		try {
+			result = evaluation.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+		return current.partial && result != null ? new PartialResult(result) : result;
+	}
+}
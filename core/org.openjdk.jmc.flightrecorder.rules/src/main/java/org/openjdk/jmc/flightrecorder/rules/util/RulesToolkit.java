@@ -1208,6 +1208,38 @@ public class RulesToolkit {
 	 */
 	public static Map<IRule, Future<IResult>> evaluateParallel(
 		Collection<IRule> rules, IItemCollection items, IPreferenceValueProvider preferences, int nThreads) {
+		return evaluateParallel(rules, items, preferences, nThreads, null);
+	}
+
+	/**
+	 * Evaluates a collection of rules in parallel threads within a time budget. The method returns
+	 * a map of rules and {@link Future future} results that are scheduled to run using the
+	 * specified number of threads.
+	 * <p>
+	 * Rules that have not been started when the time limit of the budget has passed get a not
+	 * applicable result. Rules that exhaust the budget while running stop iterating over the items,
+	 * and return results based on part of the recording, which are marked with
+	 * {@link EvaluationBudget#PARTIAL_RESULT}.
+	 *
+	 * @param rules
+	 *            rules to run
+	 * @param items
+	 *            items to evaluate
+	 * @param preferences
+	 *            See
+	 *            {@link IRule#createEvaluation(IItemCollection, IPreferenceValueProvider, IResultValueProvider)}.
+	 *            If {@code null}, then default values will be used.
+	 * @param nThreads
+	 *            The number or parallel threads to use when evaluating. If 0, then the number of
+	 *            available processors will be used.
+	 * @param budget
+	 *            the budget to evaluate the rules within, or {@code null} to evaluate all rules
+	 *            completely
+	 * @return a map from rules to result futures
+	 */
+	public static Map<IRule, Future<IResult>> evaluateParallel(
+		Collection<IRule> rules, IItemCollection items, IPreferenceValueProvider preferences, int nThreads,
+		EvaluationBudget budget) {
 		if (preferences == null) {
 			preferences = IPreferenceValueProvider.DEFAULT_VALUES;
 		}
@@ -1227,7 +1259,8 @@ public class RulesToolkit {
 							.findFirst().orElse(null);
 					rulesWithDependencies.put(rule.getId(), new Pair<>(rule, depRule));
 				} else {
-					RunnableFuture<IResult> resultFuture = rule.createEvaluation(items, preferences, resultProvider);
+					RunnableFuture<IResult> resultFuture = createEvaluation(rule, items, preferences, resultProvider,
+							budget);
 					resultFutures.put(rule, resultFuture);
 					futureQueue.add(resultFuture);
 				}
@@ -1259,7 +1292,8 @@ public class RulesToolkit {
 					depResult = computedResults.get(depRule);
 				}
 				if (depResult != null && shouldEvaluate(rule, depResult)) {
-					RunnableFuture<IResult> resultFuture = rule.createEvaluation(items, preferences, resultProvider);
+					RunnableFuture<IResult> resultFuture = createEvaluation(rule, items, preferences, resultProvider,
+							budget);
 					resultFutures.put(rule, resultFuture);
 					futureQueue.add(resultFuture);
 				} else {
@@ -1276,6 +1310,15 @@ public class RulesToolkit {
 		return resultFutures;
 	}
 
+	private static RunnableFuture<IResult> createEvaluation(
+		IRule rule, IItemCollection items, IPreferenceValueProvider preferences, IResultValueProvider resultProvider,
+		EvaluationBudget budget) {
+		if (budget == null) {
+			return rule.createEvaluation(items, preferences, resultProvider);
+		}
+		return budget.wrap(rule, preferences, rule.createEvaluation(budget.limit(items), preferences, resultProvider));
+	}
+
 	private static boolean hasDependency(IRule rule) {
 		DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
 		return dependency != null;
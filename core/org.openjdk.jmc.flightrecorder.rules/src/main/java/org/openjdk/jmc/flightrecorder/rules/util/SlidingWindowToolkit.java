@@ -53,6 +53,9 @@ import org.openjdk.jmc.flightrecorder.rules.IResult;
 
 /**
  * Utility functions and interfaces for doing sliding window calculations.
+ * <p>
+ * The sliding windows stop early if the {@link EvaluationBudget} of the rule evaluation running in
+ * the current thread is exhausted, in which case only the windows visited so far are used.
  */
 public class SlidingWindowToolkit {
 
@@ -92,7 +95,8 @@ public class SlidingWindowToolkit {
 
 		List<IItem> windowItems = new ArrayList<>();
 
-		for (Iterator<IItem> iterator = items; iterator.hasNext() && callback.shouldContinue();) {
+		for (Iterator<IItem> iterator = items; iterator.hasNext() && callback.shouldContinue()
+				&& !EvaluationBudget.isExhausted();) {
 			IItem item = iterator.next();
 			if (windowItems.isEmpty()) {
 				windowStart = posAccessor.getMember(item);
@@ -201,7 +205,7 @@ public class SlidingWindowToolkit {
 			windowStart = windowStart.add(slideSize);
 			windowEnd = windowEnd.add(slideSize);
 
-		} while (windowStart.compareTo(last) < 0 && callback.shouldContinue());
+		} while (windowStart.compareTo(last) < 0 && callback.shouldContinue() && !EvaluationBudget.isExhausted());
 	}
 
 	/**
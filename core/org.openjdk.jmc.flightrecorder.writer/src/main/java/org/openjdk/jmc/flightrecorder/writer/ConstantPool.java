@@ -37,19 +37,43 @@ import org.openjdk.jmc.flightrecorder.writer.api.Type;
 import org.openjdk.jmc.flightrecorder.writer.api.TypedField;
 import org.openjdk.jmc.flightrecorder.writer.api.TypedValue;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-/** An in-memory map of distinct values of a certain {@linkplain Type} */
+/**
+ * An in-memory map of distinct values of a certain {@linkplain Type}.
+ * <p>
+ * The pool is safe for concurrent use and only holds the values added in the current epoch. When a
+ * new epoch is started the values of the previous epoch are handed over to be written out and the
+ * pool starts over empty. Constant indices keep increasing across epochs, so values created in an
+ * earlier epoch can still be referenced after the pool has moved on.
+ */
 final class ConstantPool {
 	private final TypeImpl type;
-	private final Map<Object, TypedValueImpl> constantMap = new HashMap<>();
-	private final Map<Long, TypedValueImpl> reverseMap = new HashMap<>();
+	private final AtomicLong indexCounter = new AtomicLong(); // index 0 is reserved for NULL encoding
+	/*
+	 * Adding values holds the shared read lock, so that many threads can add values to the striped
+	 * concurrent maps in parallel. Only swapping the maps at the end of an epoch takes the write
+	 * lock, which guarantees that no value is added to the maps once they have been handed over.
+	 */
+	private final ReadWriteLock epochLock = new ReentrantReadWriteLock();
+	private volatile Map<Object, TypedValueImpl> constantMap = new ConcurrentHashMap<>();
+	private volatile Map<Long, TypedValueImpl> reverseMap = new ConcurrentHashMap<>();
 
 	ConstantPool(TypeImpl type) {
 		this.type = type;
 	}
 
+	private ConstantPool(TypeImpl type, Map<Object, TypedValueImpl> constantMap,
+			Map<Long, TypedValueImpl> reverseMap) {
+		this.type = type;
+		this.constantMap = constantMap;
+		this.reverseMap = reverseMap;
+	}
+
 	/**
 	 * Tries to add a new value
 	 *
@@ -61,17 +85,53 @@ final class ConstantPool {
 		if (value == null) {
 			return type.nullValue();
 		}
-		return constantMap.computeIfAbsent(value, v -> {
-			long index = constantMap.size() + 1; // index 0 is reserved for NULL encoding
-			TypedValueImpl tValue;
-			if (v instanceof TypedValue) {
-				tValue = new TypedValueImpl((TypedValueImpl) v, index);
-			} else {
-				tValue = new TypedValueImpl(type, v, index);
-			}
-			reverseMap.put(index, tValue);
-			return tValue;
-		});
+		// a value that is already in the pool can be returned without any locking
+		TypedValueImpl existing = constantMap.get(value);
+		if (existing != null) {
+			return existing;
+		}
+		epochLock.readLock().lock();
+		try {
+			Map<Long, TypedValueImpl> reverse = reverseMap;
+			return constantMap.computeIfAbsent(value, v -> {
+				long index = indexCounter.incrementAndGet();
+				TypedValueImpl tValue;
+				if (v instanceof TypedValue) {
+					tValue = new TypedValueImpl((TypedValueImpl) v, index);
+				} else {
+					tValue = new TypedValueImpl(type, v, index);
+				}
+				reverse.put(index, tValue);
+				return tValue;
+			});
+		} finally {
+			epochLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Start a new epoch. The values added so far are removed from this pool and returned as a
+	 * separate, immutable pool which can be written out.
+	 *
+	 * @return a pool with the values added during the previous epoch
+	 */
+	ConstantPool newEpoch() {
+		epochLock.writeLock().lock();
+		try {
+			ConstantPool previous = new ConstantPool(type, constantMap, reverseMap);
+			constantMap = new ConcurrentHashMap<>();
+			reverseMap = new ConcurrentHashMap<>();
+			return previous;
+		} finally {
+			epochLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of values added in the current epoch
+	 */
+	int size() {
+		return reverseMap.size();
 	}
 
 	/**
@@ -86,9 +146,10 @@ final class ConstantPool {
 	}
 
 	void writeTo(LEB128Writer writer) {
+		Map<Long, TypedValueImpl> values = reverseMap;
 		writer.writeLong(type.getId()); // CP type ID
-		writer.writeInt(constantMap.size()); // number of constants
-		reverseMap.forEach((k, v) -> {
+		writer.writeInt(values.size()); // number of constants
+		values.forEach((k, v) -> {
 			writer.writeLong(k); // constant index
 			writeValueType(writer, v, false);
 		});
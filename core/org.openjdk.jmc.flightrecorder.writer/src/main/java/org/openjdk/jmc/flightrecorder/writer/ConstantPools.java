@@ -68,6 +68,18 @@ public final class ConstantPools implements Iterable<ConstantPool> {
 		return constantPoolMap.size();
 	}
 
+	/**
+	 * Start a new constant pool epoch for all types. The values added during the previous epoch are
+	 * removed from the pools, so that the memory used by the pools does not grow without bounds
+	 * over a long running recording.
+	 *
+	 * @return the non-empty pools of the previous epoch, in the order they need to be written
+	 */
+	List<ConstantPool> newEpoch() {
+		return getOrderedPoolsStream().map(ConstantPool::newEpoch).filter(cp -> cp.size() > 0)
+				.collect(Collectors.toList());
+	}
+
 	@Override
 	public Iterator<ConstantPool> iterator() {
 		return getOrderedPools().iterator();
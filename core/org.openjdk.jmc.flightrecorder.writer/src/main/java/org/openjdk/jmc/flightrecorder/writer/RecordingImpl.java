@@ -36,6 +36,13 @@ package org.openjdk.jmc.flightrecorder.writer;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -58,6 +65,12 @@ import org.openjdk.jmc.flightrecorder.writer.api.Types;
 /**
  * The main entry point to JFR recording functionality. Allows to define custom types and initiate
  * {@link Chunk chunks} for writing user events.
+ * <p>
+ * The data of each ended constant pool epoch is written to a file, so that it is not kept in
+ * memory, and the header is updated in place when the recording is closed. When recording to a
+ * file, the data is written to the file directly. When recording to a stream, the data is spooled
+ * to a temporary file that is copied to the stream when the recording is closed, unless no epoch
+ * has ended before then.
  */
 public final class RecordingImpl extends Recording {
 	private static final byte[] MAGIC = new byte[] {'F', 'L', 'R', '\0'};
@@ -89,20 +102,52 @@ public final class RecordingImpl extends Recording {
 	private final long startNanos;
 
 	private final OutputStream outputStream;
+	// The file that the data of the ended epochs is written to, created when the first epoch ends
+	private FileChannel spoolChannel;
+	// The number of bytes that have been written to the spool file
+	private long spooledBytes;
+	private volatile IOException spoolError;
 
 	private final AtomicBoolean closed = new AtomicBoolean();
 
-	private final BlockingDeque<LEB128Writer> chunkDataQueue = new LinkedBlockingDeque<>();
+	/*
+	 * Pending writes to the global writer - chunk data and constant pool checkpoints. All of them are
+	 * performed by the single chunk data merging thread.
+	 */
+	private final BlockingDeque<Consumer<LEB128Writer>> chunkDataQueue = new LinkedBlockingDeque<>();
 	private final ExecutorService chunkDataMergingService = Executors.newSingleThreadExecutor();
 
 	private final ConstantPools constantPools = new ConstantPools();
 	private final MetadataImpl metadata = new MetadataImpl(constantPools);
 	private final TypesImpl types;
 
+	// offset of the most recently written checkpoint event
+	private long lastCheckpointOffset = 0L;
+
 	public RecordingImpl(OutputStream output, RecordingSettings settings) {
+		this(output, null, settings);
+	}
+
+	/**
+	 * Create a recording that is written to a file.
+	 *
+	 * @param path
+	 *            the path to the recording file, any existing file is overwritten
+	 * @param settings
+	 *            the recording settings
+	 * @throws IOException
+	 *             if the file can not be opened for writing
+	 */
+	public RecordingImpl(Path path, RecordingSettings settings) throws IOException {
+		this(null, FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING), settings);
+	}
+
+	private RecordingImpl(OutputStream output, FileChannel spoolChannel, RecordingSettings settings) {
 		this.startTicks = settings.getStartTimestamp();
 		this.startNanos = settings.getStartTimestamp();
 		this.outputStream = output;
+		this.spoolChannel = spoolChannel;
 		this.types = new TypesImpl(metadata, settings.shouldInitializeJDKTypes());
 		writeFileHeader();
 
@@ -120,32 +165,88 @@ public final class RecordingImpl extends Recording {
 	}
 
 	private void processChunkDataQueue(long pollTimeout, TimeUnit timeUnit) throws InterruptedException {
-		LEB128Writer writer = chunkDataQueue.poll(pollTimeout, timeUnit);
-		if (writer != null) {
-			List<LEB128Writer> writers = new ArrayList<>();
-			writers.add(writer);
-			chunkDataQueue.drainTo(writers);
-
-			for (LEB128Writer w : writers) {
-				globalWriter.writeBytes(w.export());
+		Consumer<LEB128Writer> task = chunkDataQueue.poll(pollTimeout, timeUnit);
+		if (task != null) {
+			List<Consumer<LEB128Writer>> tasks = new ArrayList<>();
+			tasks.add(task);
+			chunkDataQueue.drainTo(tasks);
+
+			for (Consumer<LEB128Writer> t : tasks) {
+				t.accept(globalWriter);
 			}
 		}
 	}
 
+	private void enqueue(Consumer<LEB128Writer> task) {
+		try {
+			chunkDataQueue.put(task);
+		} catch (InterruptedException ignored) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void enqueueChunkData(LEB128Writer chunkWriter) {
+		enqueue(w -> w.writeBytes(chunkWriter.export()));
+	}
+
+	/**
+	 * Finish the chunk of the calling thread. Rotating a chunk also ends the current constant pool
+	 * epoch. The constants added since the previous rotation are written out in a checkpoint event
+	 * and dropped from the in-memory pools.
+	 */
 	@Override
 	public RecordingImpl rotateChunk() {
 		Chunk chunk = getChunk();
 		activeChunks.remove(chunk);
 		threadChunk.remove();
 
-		chunk.finish(writer -> {
-			try {
-				chunkDataQueue.put(writer);
-			} catch (InterruptedException ignored) {
-				Thread.currentThread().interrupt();
+		chunk.finish(this::enqueueChunkData);
+
+		List<ConstantPool> pools = constantPools.newEpoch();
+		if (!pools.isEmpty()) {
+			enqueue(w -> {
+				writeCheckpointEvent(pools);
+				spoolEndedEpoch();
+			});
+		}
+		return this;
+	}
+
+	private void spoolEndedEpoch() {
+		try {
+			spool();
+		} catch (IOException e) {
+			if (spoolError == null) {
+				spoolError = e;
 			}
+		}
+	}
+
+	/**
+	 * Write the data in the global writer to the spool file and reset the global writer.
+	 */
+	private void spool() throws IOException {
+		if (spoolChannel == null) {
+			Path spoolFile = Files.createTempFile("jfr-writer-", ".jfr");
+			spoolChannel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+		}
+		ByteBuffer[] data = new ByteBuffer[1];
+		globalWriter.export(buffer -> {
+			data[0] = buffer.duplicate();
+			data[0].flip();
 		});
-		return this;
+		while (data[0].hasRemaining()) {
+			spooledBytes += spoolChannel.write(data[0]);
+		}
+		globalWriter.reset();
+	}
+
+	/**
+	 * @return the position in the recording that the global writer is at
+	 */
+	private long getPosition() {
+		return spooledBytes + globalWriter.position();
 	}
 
 	@Override
@@ -157,13 +258,7 @@ public final class RecordingImpl extends Recording {
 				 * away with slightly racy code ....
 				 */
 				for (Chunk chunk : activeChunks) {
-					chunk.finish(writer -> {
-						try {
-							chunkDataQueue.put(writer);
-						} catch (InterruptedException ignored) {
-							Thread.currentThread().interrupt();
-						}
-					});
+					chunk.finish(this::enqueueChunkData);
 				}
 				activeChunks.clear();
 
@@ -177,11 +272,20 @@ public final class RecordingImpl extends Recording {
 				if (!flushed) {
 					throw new RuntimeException("Unable to flush dangling JFR chunks");
 				}
+				if (spoolError != null) {
+					throw spoolError;
+				}
 				finalizeRecording();
-
-				outputStream.write(globalWriter.export());
 			} finally {
-				outputStream.close();
+				try {
+					if (outputStream != null) {
+						outputStream.close();
+					}
+				} finally {
+					if (spoolChannel != null) {
+						spoolChannel.close();
+					}
+				}
 			}
 		}
 	}
@@ -278,37 +382,73 @@ public final class RecordingImpl extends Recording {
 				.writeIntRaw(1); // use compressed integers
 	}
 
-	private void finalizeRecording() {
+	private void finalizeRecording() throws IOException {
 		long duration = System.nanoTime() - startTicks;
-		types.resolveAll();
 
-		long checkpointOffset = globalWriter.position();
-		writeCheckpointEvent();
-		long metadataOffset = globalWriter.position();
+		long checkpointOffset = getPosition();
+		writeCheckpointEvent(constantPools.newEpoch());
+		long metadataOffset = getPosition();
 		writeMetadataEvent(duration);
+		long size = getPosition();
+
+		if (spoolChannel == null) {
+			globalWriter.writeLongRaw(DURATION_NANOS_OFFSET, duration);
+			globalWriter.writeLongRaw(SIZE_OFFSET, size);
+			globalWriter.writeLongRaw(CONSTANT_OFFSET_OFFSET, checkpointOffset);
+			globalWriter.writeLongRaw(METADATA_OFFSET_OFFSET, metadataOffset);
+			outputStream.write(globalWriter.export());
+			return;
+		}
+		spool();
+		writeHeaderField(DURATION_NANOS_OFFSET, duration);
+		writeHeaderField(SIZE_OFFSET, size);
+		writeHeaderField(CONSTANT_OFFSET_OFFSET, checkpointOffset);
+		writeHeaderField(METADATA_OFFSET_OFFSET, metadataOffset);
+		if (outputStream != null) {
+			WritableByteChannel out = Channels.newChannel(outputStream);
+			long position = 0;
+			while (position < size) {
+				position += spoolChannel.transferTo(position, size - position, out);
+			}
+		}
+	}
 
-		globalWriter.writeLongRaw(DURATION_NANOS_OFFSET, duration);
-		globalWriter.writeLongRaw(SIZE_OFFSET, globalWriter.position());
-		globalWriter.writeLongRaw(CONSTANT_OFFSET_OFFSET, checkpointOffset);
-		globalWriter.writeLongRaw(METADATA_OFFSET_OFFSET, metadataOffset);
+	private void writeHeaderField(long offset, long value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		buffer.putLong(value).flip();
+		while (buffer.hasRemaining()) {
+			spoolChannel.write(buffer, offset + buffer.position());
+		}
 	}
 
-	private void writeCheckpointEvent() {
+	/**
+	 * Write a checkpoint event with the given constant pools. The checkpoint events form a chain
+	 * where each event links to the previously written one, and the chunk header points to the last
+	 * one.
+	 */
+	private void writeCheckpointEvent(List<ConstantPool> pools) {
+		// Types referenced before they were registered must be resolved before their values are written
+		types.resolveAll();
+
+		long checkpointOffset = getPosition();
 		LEB128Writer cpWriter = LEB128Writer.getInstance();
 
+		long delta = lastCheckpointOffset != 0 ? lastCheckpointOffset - checkpointOffset : 0L;
+
 		cpWriter.writeLong(1L) // checkpoint event ID
 				.writeLong(startNanos) // start timestamp
 				.writeLong(System.nanoTime() - startTicks) // duration till now
-				.writeLong(0L) // fake delta-to-next
+				.writeLong(delta) // delta to the previous checkpoint, 0 for the first one
 				.writeInt(1) // all checkpoints are flush for now
-				.writeInt(metadata.getConstantPools().size()); // start writing constant pools array
+				.writeInt(pools.size()); // start writing constant pools array
 
-		for (ConstantPool cp : metadata.getConstantPools()) {
+		for (ConstantPool cp : pools) {
 			cp.writeTo(cpWriter);
 		}
 
 		globalWriter.writeInt(cpWriter.length()); // write event size
 		globalWriter.writeBytes(cpWriter.export());
+		lastCheckpointOffset = checkpointOffset;
 	}
 
 	private void writeMetadataEvent(long duration) {
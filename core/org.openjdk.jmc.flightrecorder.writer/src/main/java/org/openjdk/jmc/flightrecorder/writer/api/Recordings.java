@@ -38,7 +38,6 @@ import org.openjdk.jmc.flightrecorder.writer.RecordingSettingsBuilderImpl;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
@@ -118,7 +117,7 @@ public final class Recordings {
 	 * @throws IOException
 	 */
 	public static Recording newRecording(File path) throws IOException {
-		return newRecording(new FileOutputStream(path));
+		return newRecording(path, RecordingSettingsBuilder::withJdkTypeInitialization);
 	}
 
 	/**
@@ -133,7 +132,7 @@ public final class Recordings {
 	 */
 	public static Recording newRecording(File path, Consumer<RecordingSettingsBuilder> settingsCallback)
 			throws IOException {
-		return newRecording(new FileOutputStream(path), settingsCallback);
+		return new RecordingImpl(path.toPath(), buildSettings(settingsCallback));
 	}
 
 	/**
@@ -160,10 +159,14 @@ public final class Recordings {
 	 */
 	public static Recording newRecording(
 		OutputStream recordingStream, Consumer<RecordingSettingsBuilder> settingsCallback) {
+		return new RecordingImpl(new BufferedOutputStream(recordingStream), buildSettings(settingsCallback));
+	}
+
+	private static RecordingSettings buildSettings(Consumer<RecordingSettingsBuilder> settingsCallback) {
 		RecordingSettingsBuilderImpl builder = new RecordingSettingsBuilderImpl();
 		if (settingsCallback != null) {
 			settingsCallback.accept(builder);
 		}
-		return new RecordingImpl(new BufferedOutputStream(recordingStream), builder.build());
+		return builder.build();
 	}
 }
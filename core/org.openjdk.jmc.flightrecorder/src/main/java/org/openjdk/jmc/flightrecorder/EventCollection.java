@@ -39,6 +39,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -50,6 +52,7 @@ import org.openjdk.jmc.common.item.IItemConsumer;
 import org.openjdk.jmc.common.item.IItemFilter;
 import org.openjdk.jmc.common.item.IItemIterable;
 import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilterCompiler;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
 import org.openjdk.jmc.common.util.PredicateToolkit;
@@ -115,12 +118,17 @@ class EventCollection implements IItemCollection, IParserStats {
 
 	}
 
+	private static final String SINGLE_THREADED_AGGREGATION_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.aggregation.singlethreaded"; //$NON-NLS-1$
+	// Event types with fewer events than this are aggregated in the calling thread
+	private static final int PARALLEL_AGGREGATION_THRESHOLD = 1 << 16;
+	private static final int PARALLEL_AGGREGATION_SPLIT_SIZE = 1 << 14;
+
 	private final Set<IType<IItem>> types = new HashSet<>();
 	private final ArrayList<EventTypeEntry> items;
 	private final Set<IRange<IQuantity>> chunkRanges;
 	private final ParserStats parserStats;
 
-	static IItemCollection build(EventArrays events) {
+	static EventCollection build(EventArrays events) {
 		ArrayList<EventTypeEntry> items = new ArrayList<>(events.getArrays().length);
 		for (EventArray ea : events.getArrays()) {
 			EventTypeEntry entry = new EventTypeEntry(ea);
@@ -129,6 +137,25 @@ class EventCollection implements IItemCollection, IParserStats {
 		return new EventCollection(items, events.getChunkTimeranges(), events.getParserStats());
 	}
 
+	/**
+	 * Create a collection with the events in this collection and some additional events. This
+	 * collection is not modified.
+	 *
+	 * @param events
+	 *            the events to add
+	 * @return a new collection containing the events of both this collection and {@code events}
+	 */
+	EventCollection append(EventArrays events) {
+		ArrayList<EventTypeEntry> newItems = new ArrayList<>(items.size() + events.getArrays().length);
+		newItems.addAll(items);
+		for (EventArray ea : events.getArrays()) {
+			newItems.add(new EventTypeEntry(ea));
+		}
+		Set<IRange<IQuantity>> newChunkRanges = new HashSet<>(chunkRanges);
+		newChunkRanges.addAll(events.getChunkTimeranges());
+		return new EventCollection(newItems, newChunkRanges, parserStats);
+	}
+
 	private EventCollection(ArrayList<EventTypeEntry> items, Set<IRange<IQuantity>> chunkRanges,
 			ParserStats parserStats) {
 		this.items = items;
@@ -143,7 +170,7 @@ class EventCollection implements IItemCollection, IParserStats {
 	public EventCollection apply(IItemFilter filter) {
 		ArrayList<EventTypeEntry> newEntries = new ArrayList<>();
 		for (EventTypeEntry e : items) {
-			EventTypeEntry newEntry = e.apply(filter.getPredicate(e.events.getType()));
+			EventTypeEntry newEntry = e.apply(ItemFilterCompiler.compile(filter, e.events.getType()));
 			if (PredicateToolkit.isTrueGuaranteed(newEntry.predicate)) {
 				newEntries.add(e);
 			} else if (!PredicateToolkit.isFalseGuaranteed(newEntry.predicate)) {
@@ -187,10 +214,10 @@ class EventCollection implements IItemCollection, IParserStats {
 	}
 
 	private static <V, C extends IItemConsumer<C>> V aggregate(
-		final IAggregator<V, C> aggregator, final Iterator<? extends IItemIterable> items) {
+		final IAggregator<V, C> aggregator, final Iterator<EventTypeEntry> items) {
 		return aggregator.getValue(new Iterator<C>() {
 
-			IItemIterable next = findNext();
+			EventTypeEntry next = findNext();
 
 			@Override
 			public boolean hasNext() {
@@ -199,18 +226,14 @@ class EventCollection implements IItemCollection, IParserStats {
 
 			@Override
 			public C next() {
-				C calc = aggregator.newItemConsumer(next.getType());
-				Iterator<? extends IItem> iterator = next.iterator();
-				while (iterator.hasNext()) {
-					calc.consume(iterator.next());
-				}
+				C calc = consume(aggregator, next);
 				next = findNext();
 				return calc;
 			}
 
-			IItemIterable findNext() {
+			EventTypeEntry findNext() {
 				while (items.hasNext()) {
-					IItemIterable ii = items.next();
+					EventTypeEntry ii = items.next();
 					if (aggregator.acceptType(ii.getType())) {
 						return ii;
 					}
@@ -225,6 +248,74 @@ class EventCollection implements IItemCollection, IParserStats {
 		});
 	}
 
+	private static <C extends IItemConsumer<C>> C consume(IAggregator<?, C> aggregator, EventTypeEntry entry) {
+		IItem[] events = entry.events.getEvents();
+		Predicate<IItem> predicate = isFiltered(entry.predicate) ? entry.predicate : null;
+		if (events.length < PARALLEL_AGGREGATION_THRESHOLD
+				|| Boolean.getBoolean(SINGLE_THREADED_AGGREGATION_PROPERTY_KEY)) {
+			return consumeRange(aggregator, entry.getType(), events, predicate, 0, events.length);
+		}
+		return ForkJoinPool.commonPool()
+				.invoke(new AggregationTask<>(aggregator, entry.getType(), events, predicate, 0, events.length));
+	}
+
+	private static <C extends IItemConsumer<C>> C consumeRange(
+		IAggregator<?, C> aggregator, IType<IItem> type, IItem[] events, Predicate<IItem> predicate, int from,
+		int to) {
+		C calc = aggregator.newItemConsumer(type);
+		if (predicate == null) {
+			for (int i = from; i < to; i++) {
+				calc.consume(events[i]);
+			}
+		} else {
+			for (int i = from; i < to; i++) {
+				if (predicate.test(events[i])) {
+					calc.consume(events[i]);
+				}
+			}
+		}
+		return calc;
+	}
+
+	/**
+	 * Consumes a range of events by splitting it into smaller ranges that are consumed in parallel
+	 * by separate consumers. The consumers are merged in the order of the ranges, so consumers that
+	 * depend on the order of the events give the same result as when consuming sequentially.
+	 */
+	private static class AggregationTask<C extends IItemConsumer<C>> extends RecursiveTask<C> {
+		private static final long serialVersionUID = 1L;
+
+		private final IAggregator<?, C> aggregator;
+		private final IType<IItem> type;
+		private final IItem[] events;
+		private final Predicate<IItem> predicate;
+		private final int from;
+		private final int to;
+
+		AggregationTask(IAggregator<?, C> aggregator, IType<IItem> type, IItem[] events, Predicate<IItem> predicate,
+				int from, int to) {
+			this.aggregator = aggregator;
+			this.type = type;
+			this.events = events;
+			this.predicate = predicate;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected C compute() {
+			if (to - from <= PARALLEL_AGGREGATION_SPLIT_SIZE) {
+				return consumeRange(aggregator, type, events, predicate, from, to);
+			}
+			int middle = (from + to) >>> 1;
+			AggregationTask<C> first = new AggregationTask<>(aggregator, type, events, predicate, from, middle);
+			AggregationTask<C> second = new AggregationTask<>(aggregator, type, events, predicate, middle, to);
+			first.fork();
+			C secondResult = second.compute();
+			return first.join().merge(secondResult);
+		}
+	}
+
 	@Override
 	public Set<IRange<IQuantity>> getUnfilteredTimeRanges() {
 		return chunkRanges;
@@ -255,6 +346,21 @@ class EventCollection implements IItemCollection, IParserStats {
 		return parserStats.getSkippedEventCount();
 	}
 
+	@Override
+	public long getStringLookupCount() {
+		return parserStats.getStringLookupCount();
+	}
+
+	@Override
+	public long getDeduplicatedStringCount() {
+		return parserStats.getDeduplicatedStringCount();
+	}
+
+	@Override
+	public long getDeduplicatedStringBytes() {
+		return parserStats.getDeduplicatedStringBytes();
+	}
+
 	@Override
 	public long getEventCountByType(String eventTypeName) {
 		return parserStats.getCount(eventTypeName);
@@ -60,6 +60,18 @@ public interface IParserStats {
 
 	long getSkippedEventCount();
 
+	default long getStringLookupCount() {
+		return 0;
+	}
+
+	default long getDeduplicatedStringCount() {
+		return 0;
+	}
+
+	default long getDeduplicatedStringBytes() {
+		return 0;
+	}
+
 	long getEventCountByType(String eventTypeName);
 
 	long getEventTotalSizeByType(String eventTypeName);
@@ -168,6 +168,8 @@ public final class RecordingPrinter {
 	private void printSummary(IParserStats parserStats) {
 		out.printf("Version: %d.%d\n", parserStats.getMajorVersion(), parserStats.getMinorVersion());
 		out.printf("Chunks: %d\n", parserStats.getChunkCount());
+		out.printf("Deduplicated strings: %d of %d (%d bytes saved)\n", parserStats.getDeduplicatedStringCount(),
+				parserStats.getStringLookupCount(), parserStats.getDeduplicatedStringBytes());
 		// Order descending by event count
 		Set<IEventStats> eventStatsSet = new TreeSet<>((o1, o2) -> Long.compare(o2.getCount(), o1.getCount()));
 		parserStats.forEachEventType((eventStats) -> {
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.flightrecorder.internal.EventArray;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
+import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
+
+/**
+ * A flight recording that is loaded incrementally, for example by repeatedly fetching the latest
+ * data of a running recording. Each time JFR data is appended, only the chunks that have not been
+ * loaded before are parsed, and the events in them are added to the events that already have been
+ * loaded. The cost of appending data is therefore proportional to the amount of new data.
+ * <p>
+ * Chunks are identified by their start time. Chunks that already have been loaded are skipped, so
+ * a stream containing all chunks of a recording so far may be appended. A truncated last chunk is
+ * ignored, so that it can be loaded when it has been completed.
+ * <p>
+ * The item collections returned by this class are snapshots, they are not changed when more data
+ * is appended.
+ */
+public class StreamingRecording {
+
+	private final LoaderContext context;
+	private final Set<Long> loadedChunkTimestamps = new HashSet<>();
+	private final List<Consumer<IItemCollection>> listeners = new CopyOnWriteArrayList<>();
+	private volatile EventCollection events;
+
+	/**
+	 * Create an empty recording that uses the parser extensions loaded from the java service
+	 * loader.
+	 */
+	public StreamingRecording() {
+		this(ParserExtensionRegistry.getParserExtensions());
+	}
+
+	/**
+	 * Create an empty recording.
+	 *
+	 * @param extensions
+	 *            the extensions to use when parsing the appended data
+	 */
+	public StreamingRecording(List<? extends IParserExtension> extensions) {
+		context = new LoaderContext(extensions, false);
+		events = EventCollection.build(new EventArrays(new EventArray[0],
+				Collections.<IRange<IQuantity>> emptySet(), context.getParserStats()));
+	}
+
+	/**
+	 * Parse the chunks in a potentially zipped or gzipped input stream, and add the events in the
+	 * chunks that have not been loaded before to the recording. Listeners are notified with the
+	 * added events.
+	 *
+	 * @param stream
+	 *            the input stream to read the JFR data from
+	 * @return the events that were added
+	 */
+	public synchronized IItemCollection append(InputStream stream) throws IOException, CouldNotLoadRecordingException {
+		try (InputStream in = IOToolkit.openUncompressedStream(stream)) {
+			FlightRecordingLoader.readChunks(null, context, FlightRecordingLoader.createChunkSupplier(in),
+					loadedChunkTimestamps, true);
+		}
+		EventArrays newEvents = context.buildNewEventArrays();
+		EventCollection appended = EventCollection.build(newEvents);
+		events = events.append(newEvents);
+		for (Consumer<IItemCollection> listener : listeners) {
+			listener.accept(appended);
+		}
+		return appended;
+	}
+
+	/**
+	 * @return all events that have been loaded so far
+	 */
+	public IItemCollection getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return the number of chunks that have been loaded so far
+	 */
+	public synchronized int getChunkCount() {
+		return loadedChunkTimestamps.size();
+	}
+
+	/**
+	 * Add a listener that is called with the added events each time data has been appended.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addListener(Consumer<IItemCollection> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeListener(Consumer<IItemCollection> listener) {
+		listeners.remove(listener);
+	}
+}
@@ -196,6 +196,35 @@ public final class FlightRecordingLoader {
 		Runnable monitor, List<? extends IParserExtension> extensions, IChunkSupplier chunkSupplier,
 		boolean hideExperimentals, boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
 		LoaderContext context = new LoaderContext(extensions, hideExperimentals);
+		int chunkCount = readChunks(monitor, context, chunkSupplier, new HashSet<Long>(), ignoreTruncatedChunk);
+		if (chunkCount == 0 && context.getSkippedChunkCount() == 0) {
+			// Recordings without any chunks are not allowed
+			throw new InvalidJfrFileException("No readable chunks in recording"); //$NON-NLS-1$
+		}
+		return context.buildEventArrays();
+	}
+
+	/**
+	 * Read chunks into a loader context. The context can be used to read more chunks later, and
+	 * build event arrays for only the events in the new chunks with
+	 * {@link LoaderContext#buildNewEventArrays()}.
+	 *
+	 * @param monitor
+	 *            a runnable that is called each time a chunk has been loaded, or {@code null}
+	 * @param context
+	 *            the loader context to send the event data to
+	 * @param chunkSupplier
+	 *            chunk data source
+	 * @param loadedChunkTimestamps
+	 *            the start timestamps of chunks that already have been loaded, these chunks are
+	 *            skipped. The timestamps of the chunks that are loaded are added to the set.
+	 * @param ignoreTruncatedChunk
+	 *            if {@code true}, then a truncated last chunk is ignored
+	 * @return the number of chunks that were loaded
+	 */
+	public static int readChunks(
+		Runnable monitor, LoaderContext context, IChunkSupplier chunkSupplier, Set<Long> loadedChunkTimestamps,
+		boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
 		Runtime rt = Runtime.getRuntime();
 		long availableMemory = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
 		long maxBuffersCount = Math.min(Math.max(availableMemory / MIN_MEMORY_PER_THREAD, 1),
@@ -213,7 +242,6 @@ public final class FlightRecordingLoader {
 			ExecutorCompletionService<byte[]> service = new ExecutorCompletionService<>(threadPool);
 			byte[] buffer = new byte[0];
 			int outstanding = 0;
-			Set<Long> loadedChunkTimestamps = new HashSet<>();
 			IChunkLoader chunkLoader;
 			while ((chunkLoader = createChunkLoader(chunkSupplier, context, buffer, ignoreTruncatedChunk)) != null) {
 				Long ts = chunkLoader.getTimestamp();
@@ -243,10 +271,6 @@ public final class FlightRecordingLoader {
 				sendProgress(monitor);
 				outstanding--;
 			}
-			if (chunkCount == 0) {
-				// Recordings without any chunks are not allowed
-				throw new InvalidJfrFileException("No readable chunks in recording"); //$NON-NLS-1$
-			}
 		} catch (InterruptedException e) {
 			throw new CouldNotLoadRecordingException(e);
 		} catch (ExecutionException e) {
@@ -266,7 +290,7 @@ public final class FlightRecordingLoader {
 			threadPool.shutdownNow();
 		}
 		LOGGER.fine("Loaded JFR with " + chunkCount + " chunks"); //$NON-NLS-1$ //$NON-NLS-2$
-		return context.buildEventArrays();
+		return chunkCount;
 	}
 
 	private static void sendProgress(Runnable listener) {
@@ -286,24 +310,33 @@ public final class FlightRecordingLoader {
 	 * @param ignoreTruncatedChunk
 	 *            if true, then any exceptions caused by getting and reading the next chunk will be
 	 *            ignored and instead make the method return null
-	 * @return a new chunk loader or null if no more data is available from the chunk supplier
+	 * @return a new chunk loader or null if no more data is available from the chunk supplier.
+	 *         Chunks outside of the time range to load are skipped.
 	 */
 	private static IChunkLoader createChunkLoader(
 		IChunkSupplier chunkSupplier, LoaderContext context, byte[] buffer, boolean ignoreTruncatedChunk)
 			throws CouldNotLoadRecordingException, IOException {
 		try {
-			Chunk chunk = chunkSupplier.getNextChunk(buffer);
-			if (chunk != null) {
+			Chunk chunk;
+			while ((chunk = chunkSupplier.getNextChunk(buffer)) != null) {
 				context.setVersion(chunk.getMajorVersion(), chunk.getMinorVersion());
+				IChunkLoader chunkLoader;
 				switch (chunk.getMajorVersion()) {
 				case VERSION_0:
-					return ChunkLoaderV0.create(chunk, context);
+					chunkLoader = ChunkLoaderV0.create(chunk, context);
+					break;
 				case VERSION_1:
 				case VERSION_2:
-					return ChunkLoaderV1.create(chunk, context);
+					chunkLoader = ChunkLoaderV1.create(chunk, context);
+					break;
 				default:
 					throw new VersionNotSupportedException();
 				}
+				if (chunkLoader != null) {
+					return chunkLoader;
+				}
+				context.incSkippedChunkCount();
+				buffer = chunk.getReusableBuffer();
 			}
 		} catch (IOException e) {
 			if (ignoreTruncatedChunk) {
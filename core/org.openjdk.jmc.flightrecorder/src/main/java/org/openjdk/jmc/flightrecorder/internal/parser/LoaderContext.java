@@ -47,15 +47,18 @@ import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
 import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.internal.EventArray;
 import org.openjdk.jmc.flightrecorder.internal.EventArrays;
 import org.openjdk.jmc.flightrecorder.internal.parser.RepositoryBuilder.EventTypeEntry;
 import org.openjdk.jmc.flightrecorder.internal.util.CanonicalConstantMap;
+import org.openjdk.jmc.flightrecorder.internal.util.StringCanonicalizer;
 import org.openjdk.jmc.flightrecorder.parser.IConstantPoolExtension;
 import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.filter.FilterExtension;
 
 /**
  * The heart of the loading process. Manages a pool of reusable byte buffers to load chunks in.
@@ -70,6 +73,14 @@ public class LoaderContext {
 	private final List<IConstantPoolExtension> constPoolExtensions = new CopyOnWriteArrayList<>();
 	private final Set<IRange<IQuantity>> chunkRanges;
 	private final ParserStats parserStats = new ParserStats();
+	private final StringCanonicalizer stringCanonicalizer = new StringCanonicalizer();
+	// Time range to load events for, in epoch nanoseconds
+	private final long timeRangeStart;
+	private final long timeRangeEnd;
+	private int skippedChunkCount;
+	// Event types that have been built into event arrays incrementally
+	private final Set<EventTypeEntry> builtEventTypes = new HashSet<>();
+	private final Set<IRange<IQuantity>> builtChunkRanges = new HashSet<>();
 
 	public LoaderContext(List<? extends IParserExtension> extensions, boolean hideExperimentals) {
 		this.extensions = extensions;
@@ -85,6 +96,20 @@ public class LoaderContext {
 				constPoolExtensions.add(constantPoolExtension);
 			}
 		}
+		long timeRangeStart = Long.MIN_VALUE;
+		long timeRangeEnd = Long.MAX_VALUE;
+		for (IParserExtension extension : extensions) {
+			if (extension instanceof FilterExtension) {
+				IRange<IQuantity> timeRange = ((FilterExtension) extension).getTimeRange();
+				if (timeRange != null) {
+					timeRangeStart = Math.max(timeRangeStart,
+							timeRange.getStart().clampedLongValueIn(UnitLookup.EPOCH_NS));
+					timeRangeEnd = Math.min(timeRangeEnd, timeRange.getEnd().clampedLongValueIn(UnitLookup.EPOCH_NS));
+				}
+			}
+		}
+		this.timeRangeStart = timeRangeStart;
+		this.timeRangeEnd = timeRangeEnd;
 		this.sinkFactory = sinkFactory;
 		this.chunkRanges = new HashSet<>();
 	}
@@ -95,6 +120,47 @@ public class LoaderContext {
 		return existing == null ? newMap : existing;
 	}
 
+	/**
+	 * @return a string cache that is shared by all chunk loaders for this recording
+	 */
+	public StringCanonicalizer getStringCanonicalizer() {
+		return stringCanonicalizer;
+	}
+
+	/**
+	 * @return {@code true} if only events within a time range should be loaded
+	 */
+	public boolean hasTimeRange() {
+		return timeRangeStart != Long.MIN_VALUE || timeRangeEnd != Long.MAX_VALUE;
+	}
+
+	/**
+	 * Check if an event or chunk should be loaded with regard to the time range to load events
+	 * for.
+	 *
+	 * @param startNanos
+	 *            start time in epoch nanoseconds
+	 * @param endNanos
+	 *            end time in epoch nanoseconds
+	 * @return {@code true} if the interval overlaps the time range to load events for
+	 */
+	public boolean isInTimeRange(long startNanos, long endNanos) {
+		return endNanos >= timeRangeStart && startNanos <= timeRangeEnd;
+	}
+
+	public boolean isInTimeRange(IRange<IQuantity> range) {
+		return isInTimeRange(range.getStart().clampedLongValueIn(UnitLookup.EPOCH_NS),
+				range.getEnd().clampedLongValueIn(UnitLookup.EPOCH_NS));
+	}
+
+	public void incSkippedChunkCount() {
+		skippedChunkCount++;
+	}
+
+	public int getSkippedChunkCount() {
+		return skippedChunkCount;
+	}
+
 	public boolean hideExperimentals() {
 		return hideExperimentals;
 	}
@@ -147,28 +213,50 @@ public class LoaderContext {
 		this.chunkRanges.add(chunkRange);
 	}
 
-	@SuppressWarnings("deprecation")
 	public EventArrays buildEventArrays() throws CouldNotLoadRecordingException {
+		return buildEventArrays(false);
+	}
+
+	/**
+	 * Build event arrays for the events that have been loaded since the last time event arrays
+	 * were built. This can be used to build event arrays for each batch of chunks when loading a
+	 * recording incrementally. Must not be called while chunks are being loaded.
+	 * <p>
+	 * The events are released from this context once they have been built into arrays, so that
+	 * they are only kept by the returned arrays. {@link #buildEventArrays()} can therefore not be
+	 * used after this method has been called.
+	 *
+	 * @return event arrays for the new events, including empty arrays for new event types, and the
+	 *         time ranges of the new chunks
+	 */
+	public EventArrays buildNewEventArrays() throws CouldNotLoadRecordingException {
+		return buildEventArrays(true);
+	}
+
+	private synchronized EventArrays buildEventArrays(boolean onlyNewEvents) throws CouldNotLoadRecordingException {
+		if (!onlyNewEvents && !builtEventTypes.isEmpty()) {
+			throw new IllegalStateException("Events have already been released by building new event arrays"); //$NON-NLS-1$
+		}
 		sinkFactory.flush();
+		parserStats.setStringDeduplicationStats(stringCanonicalizer.getLookupCount(),
+				stringCanonicalizer.getHitCount(), stringCanonicalizer.getSavedBytes());
 		Iterator<EventTypeEntry> eventTypes = repositoryBuilder.getEventTypes();
 		ArrayList<EventArray> eventArrays = new ArrayList<>();
 		while (eventTypes.hasNext()) {
 			EventTypeEntry ete = eventTypes.next();
-			ete.eventType.addExtraAttribute(0, JfrAttributes.EVENT_TYPE);
-			List<IAttribute<?>> attributes = ete.eventType.getAttributes();
-			if (attributes.contains(JfrAttributes.START_TIME)) {
-				int endTimeIndex = attributes.indexOf(JfrAttributes.END_TIME);
-				int durationIndex = attributes.indexOf(JfrAttributes.DURATION);
-				if (endTimeIndex >= 0 && durationIndex < 0) {
-					ete.eventType.addExtraAttribute(endTimeIndex, JfrAttributes.DURATION); // for pre-JDK9 recordings
-				} else if (durationIndex >= 0 && endTimeIndex < 0) {
-					ete.eventType.addExtraAttribute(durationIndex + 1, JfrAttributes.END_TIME); // for JDK9 recordings
+			boolean newEventType = !builtEventTypes.contains(ete);
+			if (newEventType) {
+				addExtraAttributes(ete);
+				if (onlyNewEvents) {
+					builtEventTypes.add(ete);
 				}
 			}
-			Collection<IItem[]> sortedArrays = ete.buildSortedArrays();
+			Collection<IItem[]> sortedArrays = ete.buildSortedArrays(onlyNewEvents);
 			if (sortedArrays.isEmpty()) {
-				// include all event types, even if there are no events
-				eventArrays.add(new EventArray(new IItem[] {}, ete.eventType, ete.category));
+				if (newEventType || !onlyNewEvents) {
+					// include all event types, even if there are no events
+					eventArrays.add(new EventArray(new IItem[] {}, ete.eventType, ete.category));
+				}
 			} else {
 				for (IItem[] ea : sortedArrays) {
 					eventArrays.add(new EventArray(ea, ete.eventType, ete.category));
@@ -176,7 +264,28 @@ public class LoaderContext {
 			}
 
 		}
-		return new EventArrays(eventArrays.toArray(new EventArray[eventArrays.size()]), chunkRanges, parserStats);
+		Set<IRange<IQuantity>> ranges = chunkRanges;
+		if (onlyNewEvents) {
+			ranges = new HashSet<>(chunkRanges);
+			ranges.removeAll(builtChunkRanges);
+			builtChunkRanges.addAll(ranges);
+		}
+		return new EventArrays(eventArrays.toArray(new EventArray[eventArrays.size()]), ranges, parserStats);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void addExtraAttributes(EventTypeEntry ete) {
+		ete.eventType.addExtraAttribute(0, JfrAttributes.EVENT_TYPE);
+		List<IAttribute<?>> attributes = ete.eventType.getAttributes();
+		if (attributes.contains(JfrAttributes.START_TIME)) {
+			int endTimeIndex = attributes.indexOf(JfrAttributes.END_TIME);
+			int durationIndex = attributes.indexOf(JfrAttributes.DURATION);
+			if (endTimeIndex >= 0 && durationIndex < 0) {
+				ete.eventType.addExtraAttribute(endTimeIndex, JfrAttributes.DURATION); // for pre-JDK9 recordings
+			} else if (durationIndex >= 0 && endTimeIndex < 0) {
+				ete.eventType.addExtraAttribute(durationIndex + 1, JfrAttributes.END_TIME); // for JDK9 recordings
+			}
+		}
 	}
 
 	public void incChunkCount() {
@@ -71,6 +71,9 @@ public class ParserStats {
 	private short minorVersion;
 	private final AtomicInteger chunkCount = new AtomicInteger();
 	private final AtomicLong skippedEventCount = new AtomicLong();
+	private long stringLookupCount;
+	private long deduplicatedStringCount;
+	private long deduplicatedStringBytes;
 	private final ConcurrentHashMap<String, EventTypeStats> statsByType = new ConcurrentHashMap<>();
 	private final ConcurrentLinkedDeque<ConstantPoolInfo> constantPoolInfoList = new ConcurrentLinkedDeque<>();
 	private final ConcurrentHashMap<String, Long> entryPoolSizeByType = new ConcurrentHashMap<>();
@@ -91,6 +94,12 @@ public class ParserStats {
 		this.skippedEventCount.addAndGet(skippedEventCount);
 	}
 
+	public void setStringDeduplicationStats(long lookupCount, long deduplicatedCount, long deduplicatedBytes) {
+		this.stringLookupCount = lookupCount;
+		this.deduplicatedStringCount = deduplicatedCount;
+		this.deduplicatedStringBytes = deduplicatedBytes;
+	}
+
 	public void updateEventStats(String eventTypeName, long size) {
 		statsByType.compute(eventTypeName, (key, stats) -> {
 			if (stats == null) {
@@ -140,6 +149,18 @@ public class ParserStats {
 		return skippedEventCount.get();
 	}
 
+	public long getStringLookupCount() {
+		return stringLookupCount;
+	}
+
+	public long getDeduplicatedStringCount() {
+		return deduplicatedStringCount;
+	}
+
+	public long getDeduplicatedStringBytes() {
+		return deduplicatedStringBytes;
+	}
+
 	public long getCount(String eventTypeName) {
 		EventTypeStats stats = statsByType.get(eventTypeName);
 		if (stats == null) {
@@ -167,7 +167,17 @@ class RepositoryBuilder implements IEventSinkFactory {
 			return false;
 		}
 
-		abstract Collection<IItem[]> buildSortedArrays();
+		/**
+		 * Build sorted arrays of the events in the lanes that have been created since the lanes were
+		 * last released.
+		 *
+		 * @param releaseLanes
+		 *            {@code true} to release the lanes once the arrays have been built, so that the
+		 *            events are only referenced from the arrays and the next call only includes
+		 *            events added after this call
+		 * @return sorted arrays of events
+		 */
+		abstract Collection<IItem[]> buildSortedArrays(boolean releaseLanes);
 
 		abstract IEventSink createSink();
 	}
@@ -187,8 +197,12 @@ class RepositoryBuilder implements IEventSinkFactory {
 		}
 
 		@Override
-		synchronized Collection<IItem[]> buildSortedArrays() {
-			return DisjointBuilder.toArrays(eventsLanes, ARRAY_FACTORY);
+		synchronized Collection<IItem[]> buildSortedArrays(boolean releaseLanes) {
+			Collection<IItem[]> arrays = DisjointBuilder.toArrays(eventsLanes, ARRAY_FACTORY);
+			if (releaseLanes) {
+				eventsLanes.clear();
+			}
+			return arrays;
 		}
 
 		private synchronized DisjointBuilder<IItem> createLane() {
@@ -224,7 +238,7 @@ class RepositoryBuilder implements IEventSinkFactory {
 		}
 
 		@Override
-		synchronized Collection<IItem[]> buildSortedArrays() {
+		synchronized Collection<IItem[]> buildSortedArrays(boolean releaseLanes) {
 			int eventCount = 0;
 			for (SimpleArray<IItem> a : eventsLanes) {
 				eventCount += a.size();
@@ -238,6 +252,9 @@ class RepositoryBuilder implements IEventSinkFactory {
 				a.copyTo(events, offset);
 				offset += a.size();
 			}
+			if (releaseLanes) {
+				eventsLanes.clear();
+			}
 			if (order != null) {
 				Arrays.sort(events, new Comparator<IItem>() {
 
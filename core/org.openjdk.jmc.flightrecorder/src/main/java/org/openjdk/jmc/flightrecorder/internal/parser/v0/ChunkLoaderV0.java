@@ -47,13 +47,11 @@ public class ChunkLoaderV0 implements IChunkLoader {
 	private final LoaderContext context;
 	private final ChunkMetadata metadata;
 
-	private ChunkLoaderV0(ChunkStructure structure, byte[] data, LoaderContext context)
-			throws CouldNotLoadRecordingException {
+	private ChunkLoaderV0(ChunkStructure structure, byte[] data, LoaderContext context, ChunkMetadata metadata) {
 		this.structure = structure;
 		this.data = data;
 		this.context = context;
-		// Read metadata
-		metadata = new ChunkMetadata(data, structure.getMetadataOffset());
+		this.metadata = metadata;
 		context.addChunkRange(QuantityRange.createWithEnd(metadata.getStartTime(), metadata.getEndTime()));
 	}
 
@@ -81,11 +79,20 @@ public class ChunkLoaderV0 implements IChunkLoader {
 		return data;
 	}
 
+	/**
+	 * @return a chunk loader, or {@code null} if the chunk is outside of the time range to load
+	 */
 	public static IChunkLoader create(Chunk input, LoaderContext context)
 			throws IOException, CouldNotLoadRecordingException {
 		ChunkStructure structure = new ChunkStructure(input);
 		byte[] buffer = input.fill(structure.getChunkSize());
-		return new ChunkLoaderV0(structure, buffer, context);
+		// Read metadata
+		ChunkMetadata metadata = new ChunkMetadata(buffer, structure.getMetadataOffset());
+		// The chunk time range is only available in the metadata at the end of the chunk
+		if (!context.isInTimeRange(QuantityRange.createWithEnd(metadata.getStartTime(), metadata.getEndTime()))) {
+			return null;
+		}
+		return new ChunkLoaderV0(structure, buffer, context, metadata);
 	}
 
 	public static ChunkInfo getInfo(Chunk input, long position) throws IOException, CouldNotLoadRecordingException {
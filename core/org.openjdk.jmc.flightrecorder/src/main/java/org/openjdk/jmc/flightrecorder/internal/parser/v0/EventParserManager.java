@@ -111,9 +111,13 @@ class EventParserManager {
 		}
 		long size = offset.getEnd() - offset.get();
 		long endTime = readerFactory.readTicksTimestamp(data, offset);
+		long startTime = ep.hasStartTime ? readerFactory.readTicksTimestamp(data, offset) : endTime;
+		if (!context.isInTimeRange(startTime, endTime)) {
+			return;
+		}
 		int valueIndex = 0;
 		if (ep.hasStartTime) {
-			ep.values[valueIndex++] = UnitLookup.EPOCH_NS.quantity(readerFactory.readTicksTimestamp(data, offset));
+			ep.values[valueIndex++] = UnitLookup.EPOCH_NS.quantity(startTime);
 		}
 		ep.values[valueIndex++] = UnitLookup.EPOCH_NS.quantity(endTime);
 		for (int n = 0; n < ep.parsers.length; n++) {
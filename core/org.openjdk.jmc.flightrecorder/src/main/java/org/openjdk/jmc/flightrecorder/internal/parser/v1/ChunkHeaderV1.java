@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.parser.v1;
+
+/**
+ * The header of a version 1 chunk, for tools that copy chunks between files without parsing them.
+ */
+public final class ChunkHeaderV1 {
+	// The magic bytes and the major and minor version precede the header fields
+	private static final int HEADER_POSITION = 8;
+
+	/**
+	 * The number of bytes from the start of a chunk that hold the header.
+	 */
+	public static final int SIZE = HEADER_POSITION + ChunkStructure.SIZE;
+
+	private final ChunkStructure structure;
+
+	/**
+	 * @param header
+	 *            a buffer holding at least {@link #SIZE} bytes, starting at the start of the chunk
+	 */
+	public ChunkHeaderV1(byte[] header) {
+		structure = new ChunkStructure(HEADER_POSITION, header);
+	}
+
+	/**
+	 * @return the size of the chunk in bytes
+	 */
+	public long getChunkSize() {
+		return structure.getChunkSize();
+	}
+
+	/**
+	 * @return the start time of the chunk in nanoseconds since the epoch
+	 */
+	public long getStartTimeNanos() {
+		return structure.getStartTimeNanos();
+	}
+
+	/**
+	 * @return the duration of the chunk in nanoseconds
+	 */
+	public long getDurationNanos() {
+		return structure.getDurationNanos();
+	}
+}
@@ -46,7 +46,7 @@ import org.openjdk.jmc.flightrecorder.internal.util.ParserToolkit;
 
 public class ChunkLoaderV1 implements IChunkLoader {
 
-	private final static long CONSTANT_POOL_EVENT_TYPE = 1;
+	final static long CONSTANT_POOL_EVENT_TYPE = 1;
 
 	private final ChunkStructure header;
 	private final byte[] data;
@@ -115,9 +115,17 @@ public class ChunkLoaderV1 implements IChunkLoader {
 		return delta;
 	}
 
+	/**
+	 * @return a chunk loader, or {@code null} if the chunk is outside of the time range to load and
+	 *         has been skipped
+	 */
 	public static IChunkLoader create(Chunk input, LoaderContext context)
 			throws IOException, CouldNotLoadRecordingException {
 		ChunkStructure header = new ChunkStructure(input);
+		if (!context.isInTimeRange(header.getChunkRange())) {
+			input.skip(header.getChunkSize());
+			return null;
+		}
 		byte[] data = input.fill(header.getChunkSize());
 		return new ChunkLoaderV1(header, data, context);
 	}
@@ -0,0 +1,726 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.parser.v1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.ClassElement;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.FieldElement;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.StringReader;
+import org.openjdk.jmc.flightrecorder.internal.util.ParserToolkit;
+import org.openjdk.jmc.flightrecorder.parser.synthetic.OracleJdkTypeIDsPre11;
+
+/**
+ * Rewrites a version 1 or 2 chunk without some of its event types, without decoding the events.
+ * <p>
+ * The events are walked using only their size and type headers, and the bytes of the events that
+ * are kept are copied verbatim. Metadata events are copied as is. Constant pool events are copied
+ * with their pools intact, but with the offset to the previous constant pool event updated, and
+ * the offsets in the chunk header are updated to match the new chunk.
+ * <p>
+ * Unless constants are pruned, the chunk is not read into memory. Only the metadata and the
+ * headers of the events are read, and the bytes of the kept events are transferred from the input
+ * channel to the output channel. A chunk without any events of the removed types is transferred as
+ * a whole.
+ * <p>
+ * Optionally, the constants that are no longer referenced by any kept event are removed. This
+ * requires walking the fields of the kept events and the referenced constants, using the layout
+ * of the types in the chunk metadata, but still without creating any values. The chunk is then
+ * read into memory.
+ */
+public final class ChunkRewriterV1 {
+	// The position of the chunk header fields, after the magic bytes and the version
+	private static final int HEADER_POSITION = 8;
+	private static final int CHUNK_SIZE_OFFSET = 8;
+	private static final int CONSTANT_POOL_OFFSET_OFFSET = 16;
+	private static final int METADATA_OFFSET_OFFSET = 24;
+	// The size of the buffer used to read the event headers when streaming a chunk
+	private static final int WINDOW_SIZE = 64 * 1024;
+	// The maximum size of the size, type, start, duration, delta and flags of a constant pool event
+	private static final int MAX_EVENT_HEADER_SIZE = 5 * 9 + 1;
+
+	private final byte[] data;
+	private final ChunkStructure header;
+	private final SeekableInputStream input;
+	private final Map<Long, ClassElement> classes = new HashMap<>();
+	private final Set<Long> removedEventTypes = new HashSet<>();
+	private long stringClassId = -1;
+
+	// Constants referenced by the kept events, by class id
+	private Map<Long, Set<Long>> referencedConstants;
+	// Positions of the constant values, by class id and constant index
+	private Map<Long, Map<Long, List<Integer>>> constantPositions;
+	private final Deque<long[]> pendingConstants = new ArrayDeque<>();
+	private boolean marking;
+
+	private final OutputBuffer out;
+	private final OutputBuffer event;
+	private final OutputBuffer pools;
+	private final OutputBuffer entries;
+
+	private ChunkRewriterV1(byte[] data, Predicate<String> includeEventType)
+			throws IOException, CouldNotLoadRecordingException {
+		this.data = data;
+		header = new ChunkStructure(HEADER_POSITION, data);
+		if (header.getChunkSize() > data.length) {
+			throw new InvalidJfrFileException("Chunk size " + header.getChunkSize() + " exceeds the available data"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		input = SeekableInputStream.build(data, header.isIntegersCompressed());
+		input.seek(header.getMetadataOffset());
+		for (ClassElement ce : ChunkMetadata.readMetadata(input).metadata.classes) {
+			classes.put(ce.classId, ce);
+			if (isRemovedEventType(ce, includeEventType)) {
+				removedEventTypes.add(ce.classId);
+			} else if (StringReader.STRING.equals(ce.typeIdentifier)) {
+				stringClassId = ce.classId;
+			}
+		}
+		boolean compressedInts = header.isIntegersCompressed();
+		out = new OutputBuffer(data.length, compressedInts);
+		event = new OutputBuffer(1024, compressedInts);
+		pools = new OutputBuffer(1024, compressedInts);
+		entries = new OutputBuffer(1024, compressedInts);
+	}
+
+	/**
+	 * Rewrite a chunk without the events of some event types.
+	 *
+	 * @param in
+	 *            the channel to read the chunk from
+	 * @param offset
+	 *            the position of the chunk in {@code in}
+	 * @param size
+	 *            the size of the chunk, at most {@link Integer#MAX_VALUE} if pruning constants
+	 * @param out
+	 *            the channel to write the rewritten chunk to, at its current position
+	 * @param includeEventType
+	 *            predicate for the identifiers of the event types to keep, using the JDK 11
+	 *            identifiers also for recordings from JDK 9 and 10
+	 * @param pruneConstants
+	 *            {@code true} to also remove the constants that are not referenced by the kept
+	 *            events, {@code false} to keep all constant pools as they are
+	 */
+	public static void rewrite(
+		FileChannel in, long offset, long size, WritableByteChannel out, Predicate<String> includeEventType,
+		boolean pruneConstants) throws IOException, CouldNotLoadRecordingException {
+		if (pruneConstants) {
+			byte[] chunk = new byte[(int) size];
+			read(in, offset, chunk, chunk.length);
+			write(out, new ChunkRewriterV1(chunk, includeEventType).rewriteAndPrune());
+		} else {
+			new StreamingRewriter(in, offset, size).rewrite(out, includeEventType);
+		}
+	}
+
+	private static boolean isRemovedEventType(ClassElement ce, Predicate<String> includeEventType) {
+		return ce.isEventType() && !includeEventType.test(OracleJdkTypeIDsPre11.translate(ce.typeIdentifier));
+	}
+
+	private static void read(FileChannel in, long position, byte[] dst, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(dst, 0, length);
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at position " + (position + buffer.position())); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static void write(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private ByteBuffer rewriteAndPrune() throws IOException, CouldNotLoadRecordingException {
+		markReferencedConstants();
+		out.write(data, 0, header.getBodyStartOffset());
+		// New positions of the constant pool events, by old position
+		Map<Long, Long> constantPoolPositions = new HashMap<>();
+		long constantPoolOffset = 0;
+		long metadataOffset = 0;
+		long index = header.getBodyStartOffset();
+		while (index < header.getChunkSize()) {
+			input.seek(index);
+			int size = input.readInt();
+			long type = input.readLong();
+			if (size <= 0) {
+				throw new InvalidJfrFileException("Found event with invalid size (" + size + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			if (type == ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE) {
+				constantPoolPositions.put(index, (long) out.size());
+				if (index == header.getConstantPoolOffset()) {
+					constantPoolOffset = out.size();
+				}
+				writeConstantPoolEvent(index, constantPoolPositions);
+			} else if (type == ChunkMetadata.METADATA_EVENT_TYPE) {
+				if (index == header.getMetadataOffset()) {
+					metadataOffset = out.size();
+				}
+				out.write(data, index, size);
+			} else if (!removedEventTypes.contains(type)) {
+				out.write(data, index, size);
+			}
+			index += size;
+		}
+		out.setLong(CHUNK_SIZE_OFFSET, out.size());
+		out.setLong(CONSTANT_POOL_OFFSET_OFFSET, constantPoolOffset);
+		out.setLong(METADATA_OFFSET_OFFSET, metadataOffset);
+		return out.toByteBuffer();
+	}
+
+	private void writeConstantPoolEvent(long index, Map<Long, Long> constantPoolPositions)
+			throws IOException, InvalidJfrFileException {
+		input.seek(index);
+		input.readInt(); // size
+		input.readLong(); // type
+		long start = input.readLong();
+		long duration = input.readLong();
+		long delta = input.readLong();
+		// A flush flag in version 1 chunks, a bit mask of checkpoint types in version 2 chunks
+		byte flags = input.readByte();
+		int poolCount = input.readInt();
+		long newDelta = 0;
+		if (delta != 0) {
+			Long previous = constantPoolPositions.get(index + delta);
+			if (previous == null) {
+				throw new InvalidJfrFileException("No constant pool event at offset " + (index + delta)); //$NON-NLS-1$
+			}
+			newDelta = previous - out.size();
+		}
+		event.reset();
+		event.writeLong(ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE);
+		event.writeLong(start);
+		event.writeLong(duration);
+		event.writeLong(newDelta);
+		event.writeByte(flags);
+		pools.reset();
+		int keptPools = 0;
+		for (int i = 0; i < poolCount; i++) {
+			long classId = input.readLong();
+			int constantCount = input.readInt();
+			ClassElement ce = getClass(classId);
+			Set<Long> referenced = referencedConstants.get(classId);
+			entries.reset();
+			int keptConstants = 0;
+			for (int j = 0; j < constantCount; j++) {
+				long entryStart = input.getPosition();
+				long constantIndex = input.readLong();
+				readValue(ce);
+				if (referenced != null && referenced.contains(constantIndex)) {
+					entries.write(data, entryStart, input.getPosition() - entryStart);
+					keptConstants++;
+				}
+			}
+			if (keptConstants > 0) {
+				pools.writeLong(classId);
+				pools.writeInt(keptConstants);
+				pools.write(entries);
+				keptPools++;
+			}
+		}
+		event.writeInt(keptPools);
+		event.write(pools);
+		out.writeInt(event.size() + out.getIntLength(event.size()));
+		out.write(event);
+	}
+
+	private void markReferencedConstants() throws IOException, CouldNotLoadRecordingException {
+		referencedConstants = new HashMap<>();
+		constantPositions = new HashMap<>();
+		long constantPoolOffset = 0;
+		long delta = header.getConstantPoolOffset();
+		while (delta != 0) {
+			constantPoolOffset += delta;
+			input.seek(constantPoolOffset);
+			input.readInt(); // size
+			ParserToolkit.assertValue(input.readLong(), ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE); // type
+			input.readLong(); // start
+			input.readLong(); // duration
+			delta = input.readLong();
+			input.readByte(); // flags
+			int poolCount = input.readInt();
+			for (int i = 0; i < poolCount; i++) {
+				long classId = input.readLong();
+				int constantCount = input.readInt();
+				ClassElement ce = getClass(classId);
+				Map<Long, List<Integer>> positions = constantPositions.computeIfAbsent(classId, k -> new HashMap<>());
+				for (int j = 0; j < constantCount; j++) {
+					long constantIndex = input.readLong();
+					positions.computeIfAbsent(constantIndex, k -> new ArrayList<>(1)).add((int) input.getPosition());
+					readValue(ce);
+				}
+			}
+		}
+
+		marking = true;
+		long index = header.getBodyStartOffset();
+		while (index < header.getChunkSize()) {
+			input.seek(index);
+			int size = input.readInt();
+			long type = input.readLong();
+			if (size <= 0) {
+				throw new InvalidJfrFileException("Found event with invalid size (" + size + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			// Events of types that are not declared are kept, but skipped like the chunk loader does
+			ClassElement ce = classes.get(type);
+			if (ce != null && type != ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE
+					&& type != ChunkMetadata.METADATA_EVENT_TYPE && !removedEventTypes.contains(type)) {
+				readValue(ce);
+			}
+			index += size;
+		}
+		// Constants may in turn reference other constants, e.g. stack frames reference methods
+		while (!pendingConstants.isEmpty()) {
+			long[] constant = pendingConstants.pop();
+			Map<Long, List<Integer>> positions = constantPositions.get(constant[0]);
+			List<Integer> valuePositions = positions == null ? null : positions.get(constant[1]);
+			if (valuePositions != null) {
+				ClassElement ce = getClass(constant[0]);
+				for (int position : valuePositions) {
+					input.seek(position);
+					readValue(ce);
+				}
+			}
+		}
+		marking = false;
+	}
+
+	private void reference(long classId, long constantIndex) {
+		if (referencedConstants.computeIfAbsent(classId, k -> new HashSet<>()).add(constantIndex)) {
+			pendingConstants.push(new long[] {classId, constantIndex});
+		}
+	}
+
+	/**
+	 * Skip a value, and record the constants it references if marking.
+	 */
+	private void readValue(ClassElement ce) throws IOException, InvalidJfrFileException {
+		if (ce.getFieldCount() == 0) {
+			readPrimitive(ce.typeIdentifier);
+			return;
+		}
+		for (FieldElement fe : ce.fields) {
+			int count = fe.isArray() ? input.readInt() : 1;
+			for (int i = 0; i < count; i++) {
+				if (fe.isStoredInPool()) {
+					long constantIndex = input.readLong();
+					if (marking) {
+						reference(fe.classId, constantIndex);
+					}
+				} else {
+					readValue(getClass(fe.classId));
+				}
+			}
+		}
+	}
+
+	private void readPrimitive(String typeIdentifier) throws IOException, InvalidJfrFileException {
+		switch (typeIdentifier) {
+		case "boolean": //$NON-NLS-1$
+		case "byte": //$NON-NLS-1$
+			input.readByte();
+			return;
+		case "short": //$NON-NLS-1$
+			input.readShort();
+			return;
+		case "char": //$NON-NLS-1$
+			input.readChar();
+			return;
+		case "int": //$NON-NLS-1$
+			input.readInt();
+			return;
+		case "long": //$NON-NLS-1$
+			input.readLong();
+			return;
+		case "float": //$NON-NLS-1$
+			input.readFloat();
+			return;
+		case "double": //$NON-NLS-1$
+			input.readDouble();
+			return;
+		case StringReader.STRING:
+			if (marking && data[(int) input.getPosition()] == SeekableInputStream.STRING_ENCODING_CONSTANT_POOL) {
+				input.readByte();
+				reference(stringClassId, input.readLong());
+			} else {
+				input.skipString();
+			}
+			return;
+		default:
+			throw new InvalidJfrFileException("Unknown primitive type: " + typeIdentifier); //$NON-NLS-1$
+		}
+	}
+
+	private ClassElement getClass(long classId) throws InvalidJfrFileException {
+		ClassElement ce = classes.get(classId);
+		if (ce == null) {
+			throw new InvalidJfrFileException("Class id " + classId + " is not defined in the metadata"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return ce;
+	}
+
+	/**
+	 * Rewrites a chunk without the events of some event types, without pruning constants and
+	 * without reading the chunk into memory.
+	 */
+	private static class StreamingRewriter {
+		private final FileChannel in;
+		private final long offset;
+		private final byte[] headerData = new byte[HEADER_POSITION + ChunkStructure.SIZE];
+		private final ChunkStructure header;
+		private final byte[] window = new byte[WINDOW_SIZE];
+		private final SeekableInputStream windowInput;
+		private long windowStart;
+		private int windowLength;
+
+		StreamingRewriter(FileChannel in, long offset, long size) throws IOException, InvalidJfrFileException {
+			this.in = in;
+			this.offset = offset;
+			read(in, offset, headerData, headerData.length);
+			header = new ChunkStructure(HEADER_POSITION, headerData);
+			if (header.getChunkSize() > size) {
+				throw new InvalidJfrFileException("Chunk size " + header.getChunkSize() + " exceeds the available data"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			windowInput = SeekableInputStream.build(window, header.isIntegersCompressed());
+		}
+
+		void rewrite(WritableByteChannel out, Predicate<String> includeEventType)
+				throws IOException, CouldNotLoadRecordingException {
+			Set<Long> removedEventTypes = readRemovedEventTypes(includeEventType);
+			List<Segment> segments = removedEventTypes.isEmpty() ? null : findKeptSegments(removedEventTypes);
+			if (segments == null) {
+				transfer(0, header.getChunkSize(), out);
+				return;
+			}
+			// Lay out the kept segments, updating the offsets between the constant pool events
+			Map<Long, Long> constantPoolPositions = new HashMap<>();
+			long constantPoolOffset = 0;
+			long metadataOffset = 0;
+			long position = header.getBodyStartOffset();
+			for (Segment segment : segments) {
+				if (segment.isConstantPool()) {
+					constantPoolPositions.put(segment.position, position);
+					if (segment.position == header.getConstantPoolOffset()) {
+						constantPoolOffset = position;
+					}
+					long newDelta = 0;
+					if (segment.delta != 0) {
+						Long previous = constantPoolPositions.get(segment.position + segment.delta);
+						if (previous == null) {
+							throw new InvalidJfrFileException(
+									"No constant pool event at offset " + (segment.position + segment.delta)); //$NON-NLS-1$
+						}
+						newDelta = previous - position;
+					}
+					segment.writeConstantPoolHeader(newDelta, header.isIntegersCompressed());
+					position += segment.eventHeader.size() + segment.getBodySize();
+				} else {
+					long metadataPosition = header.getMetadataOffset() - segment.position;
+					if (metadataPosition >= 0 && metadataPosition < segment.size) {
+						metadataOffset = position + metadataPosition;
+					}
+					position += segment.size;
+				}
+			}
+			OutputBuffer chunkHeader = new OutputBuffer(headerData.length, header.isIntegersCompressed());
+			chunkHeader.write(headerData, 0, headerData.length);
+			chunkHeader.setLong(CHUNK_SIZE_OFFSET, position);
+			chunkHeader.setLong(CONSTANT_POOL_OFFSET_OFFSET, constantPoolOffset);
+			chunkHeader.setLong(METADATA_OFFSET_OFFSET, metadataOffset);
+			write(out, chunkHeader.toByteBuffer());
+			for (Segment segment : segments) {
+				if (segment.isConstantPool()) {
+					write(out, segment.eventHeader.toByteBuffer());
+					transfer(segment.bodyPosition, segment.getBodySize(), out);
+				} else {
+					transfer(segment.position, segment.size, out);
+				}
+			}
+		}
+
+		private Set<Long> readRemovedEventTypes(Predicate<String> includeEventType)
+				throws IOException, CouldNotLoadRecordingException {
+			int metadataSize = seek(header.getMetadataOffset()).readInt();
+			byte[] metadata = new byte[metadataSize];
+			read(in, offset + header.getMetadataOffset(), metadata, metadataSize);
+			Set<Long> removedEventTypes = new HashSet<>();
+			for (ClassElement ce : ChunkMetadata.readMetadata(
+					SeekableInputStream.build(metadata, header.isIntegersCompressed())).metadata.classes) {
+				if (isRemovedEventType(ce, includeEventType)) {
+					removedEventTypes.add(ce.classId);
+				}
+			}
+			return removedEventTypes;
+		}
+
+		/**
+		 * Walk the event headers and find the runs of kept events and the constant pool events.
+		 *
+		 * @return the kept segments of the chunk body, or {@code null} if no events are removed
+		 */
+		private List<Segment> findKeptSegments(Set<Long> removedEventTypes)
+				throws IOException, InvalidJfrFileException {
+			List<Segment> segments = new ArrayList<>();
+			Segment last = null;
+			boolean removedAny = false;
+			long index = header.getBodyStartOffset();
+			while (index < header.getChunkSize()) {
+				SeekableInputStream input = seek(index);
+				int size = input.readInt();
+				long type = input.readLong();
+				if (size <= 0) {
+					throw new InvalidJfrFileException("Found event with invalid size (" + size + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				if (type == ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE) {
+					last = new Segment(index, size);
+					last.start = input.readLong();
+					last.duration = input.readLong();
+					last.delta = input.readLong();
+					last.flags = input.readByte();
+					last.bodyPosition = windowStart + input.getPosition();
+					segments.add(last);
+				} else if (removedEventTypes.contains(type)) {
+					removedAny = true;
+					last = null;
+				} else if (last != null && !last.isConstantPool()) {
+					last.size += size;
+				} else {
+					last = new Segment(index, size);
+					segments.add(last);
+				}
+				index += size;
+			}
+			return removedAny ? segments : null;
+		}
+
+		/**
+		 * @return an input positioned at a position in the chunk, from which at least the header of
+		 *         an event can be read
+		 */
+		private SeekableInputStream seek(long position) throws IOException {
+			long needed = Math.min(MAX_EVENT_HEADER_SIZE, header.getChunkSize() - position);
+			if (position < windowStart || position + needed > windowStart + windowLength) {
+				windowStart = position;
+				windowLength = (int) Math.min(WINDOW_SIZE, header.getChunkSize() - position);
+				read(in, offset + position, window, windowLength);
+			}
+			windowInput.seek(position - windowStart);
+			return windowInput;
+		}
+
+		private void transfer(long position, long count, WritableByteChannel out) throws IOException {
+			while (count > 0) {
+				long transferred = in.transferTo(offset + position, count, out);
+				if (transferred <= 0) {
+					throw new IOException("Unexpected end of file at position " + (offset + position)); //$NON-NLS-1$
+				}
+				position += transferred;
+				count -= transferred;
+			}
+		}
+	}
+
+	/**
+	 * A constant pool event, or a run of other kept events, in the body of a streamed chunk.
+	 */
+	private static class Segment {
+		final long position;
+		long size;
+		// The fields of a constant pool event, with the position of the pools after them
+		long start;
+		long duration;
+		long delta;
+		byte flags;
+		long bodyPosition = -1;
+		OutputBuffer eventHeader;
+
+		Segment(long position, long size) {
+			this.position = position;
+			this.size = size;
+		}
+
+		boolean isConstantPool() {
+			return bodyPosition >= 0;
+		}
+
+		long getBodySize() {
+			return position + size - bodyPosition;
+		}
+
+		void writeConstantPoolHeader(long newDelta, boolean compressedInts) {
+			OutputBuffer fields = new OutputBuffer(MAX_EVENT_HEADER_SIZE, compressedInts);
+			fields.writeLong(ChunkLoaderV1.CONSTANT_POOL_EVENT_TYPE);
+			fields.writeLong(start);
+			fields.writeLong(duration);
+			fields.writeLong(newDelta);
+			fields.writeByte(flags);
+			int remainder = (int) (fields.size() + getBodySize());
+			eventHeader = new OutputBuffer(MAX_EVENT_HEADER_SIZE, compressedInts);
+			eventHeader.writeInt(remainder + eventHeader.getIntLength(remainder));
+			eventHeader.write(fields);
+		}
+	}
+
+	/**
+	 * A growable buffer that writes integers in the encoding used by the chunk.
+	 */
+	private static class OutputBuffer {
+		private final boolean compressedInts;
+		private byte[] buffer;
+		private int size;
+
+		OutputBuffer(int initialCapacity, boolean compressedInts) {
+			this.compressedInts = compressedInts;
+			buffer = new byte[Math.max(initialCapacity, 16)];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void reset() {
+			size = 0;
+		}
+
+		void write(byte[] src, long offset, long length) {
+			ensureCapacity((int) length);
+			System.arraycopy(src, (int) offset, buffer, size, (int) length);
+			size += (int) length;
+		}
+
+		void write(OutputBuffer other) {
+			write(other.buffer, 0, other.size);
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			buffer[size++] = (byte) b;
+		}
+
+		void writeInt(int value) {
+			if (compressedInts) {
+				writeCompressedLong(value);
+			} else {
+				writeFixed(value, 4);
+			}
+		}
+
+		void writeLong(long value) {
+			if (compressedInts) {
+				writeCompressedLong(value);
+			} else {
+				writeFixed(value, 8);
+			}
+		}
+
+		/**
+		 * @return the number of bytes that {@link #writeInt(int)} writes for a non-negative value
+		 *         that is the sum of {@code remainder} and the returned length
+		 */
+		int getIntLength(int remainder) {
+			if (!compressedInts) {
+				return 4;
+			}
+			int length = 1;
+			while (getCompressedLength(remainder + length) != length) {
+				length++;
+			}
+			return length;
+		}
+
+		void setLong(int position, long value) {
+			for (int i = 7; i >= 0; i--) {
+				buffer[position + i] = (byte) value;
+				value >>>= 8;
+			}
+		}
+
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buffer, 0, size);
+		}
+
+		private void writeFixed(long value, int length) {
+			ensureCapacity(length);
+			for (int i = length - 1; i >= 0; i--) {
+				buffer[size + i] = (byte) value;
+				value >>>= 8;
+			}
+			size += length;
+		}
+
+		// The inverse of SeekableInputStream.CompressedIntsDataInput.readCompressedLong
+		private void writeCompressedLong(long value) {
+			ensureCapacity(9);
+			for (int i = 0; i < 8; i++) {
+				if ((value & ~0x7FL) == 0) {
+					buffer[size++] = (byte) value;
+					return;
+				}
+				buffer[size++] = (byte) (value | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte) value;
+		}
+
+		private static int getCompressedLength(long value) {
+			for (int i = 1; i < 9; i++) {
+				if ((value & ~0x7FL) == 0) {
+					return i;
+				}
+				value >>>= 7;
+			}
+			return 9;
+		}
+
+		private void ensureCapacity(int length) {
+			if (size + length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+			}
+		}
+	}
+}
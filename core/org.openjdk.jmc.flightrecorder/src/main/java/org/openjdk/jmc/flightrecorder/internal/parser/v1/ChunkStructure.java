@@ -46,7 +46,7 @@ import org.openjdk.jmc.flightrecorder.internal.util.DataInputToolkit;
 
 class ChunkStructure {
 
-	private final static int SIZE = 7 * DataInputToolkit.LONG_SIZE + DataInputToolkit.INTEGER_SIZE;
+	final static int SIZE = 7 * DataInputToolkit.LONG_SIZE + DataInputToolkit.INTEGER_SIZE;
 	private final static int COMPRESSED_INTS = 1;
 	private final long chunkSize;
 	private final long constantPoolOffset;
@@ -60,8 +60,16 @@ class ChunkStructure {
 	private final LinearUnit ticksUnit;
 
 	ChunkStructure(Chunk chunkInput) throws IOException, InvalidJfrFileException {
-		int position = chunkInput.getPosition();
-		byte[] buffer = chunkInput.fill(position + SIZE);
+		this(chunkInput.getPosition(), chunkInput.fill(chunkInput.getPosition() + SIZE));
+	}
+
+	/**
+	 * @param position
+	 *            the position of the header fields in the buffer, right after the chunk version
+	 * @param buffer
+	 *            a buffer holding the header, starting at the start of the chunk
+	 */
+	ChunkStructure(int position, byte[] buffer) {
 		chunkSize = DataInputToolkit.readLong(buffer, position);
 		position += DataInputToolkit.LONG_SIZE;
 		constantPoolOffset = DataInputToolkit.readLong(buffer, position);
@@ -119,4 +127,8 @@ class ChunkStructure {
 		return startTimeNanos;
 	}
 
+	long getDurationNanos() {
+		return durationNanos;
+	}
+
 }
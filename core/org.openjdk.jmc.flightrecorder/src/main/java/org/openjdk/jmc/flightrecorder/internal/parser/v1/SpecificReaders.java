@@ -42,15 +42,15 @@ import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
 public class SpecificReaders {
 	private static Logger LOG = Logger.getLogger(SpecificReaders.class.getName());
 
-	static class StackFrame2Reader extends ValueReaders.ReflectiveReader {
+	static class StackFrame2Reader extends StructReaders.FrameReader {
 		boolean fallback;
 		int methodIdx;
 		int lineNumberIdx;
 		int bytecodeIndexIdx;
 		int typeIdx;
 
-		<T> StackFrame2Reader(Class<T> klass, int fieldCount, ContentType<? super T> ct) {
-			super(klass, fieldCount, ct);
+		StackFrame2Reader(int fieldCount, ContentType<? super StructTypes.JfrFrame> ct) {
+			super(fieldCount, ct);
 		}
 
 		@Override
@@ -72,7 +72,7 @@ public class SpecificReaders {
 				typeIdx = currentIdx;
 				break;
 			default:
-				fallback = true; // invalid expected format, falling back to ReflectiveReader
+				fallback = true; // invalid expected format, falling back to FrameReader
 				LOG.warning("unexpected fields for StackFrame2Reader: " + identifier);
 			}
 		}
@@ -0,0 +1,800 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.parser.v1;
+
+import org.openjdk.jmc.common.unit.ContentType;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.TypedStructReader;
+
+/**
+ * Readers for the struct types in {@link StructTypes}. Each reader sets and gets the fields of its
+ * struct type directly, so that reading one struct type does not go through accessors shared with
+ * the other struct types.
+ */
+class StructReaders {
+
+	static final class ThreadReader extends TypedStructReader<StructTypes.JfrThread> {
+		ThreadReader(int fieldCount, ContentType<? super StructTypes.JfrThread> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrThread create() {
+			return new StructTypes.JfrThread();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "osName": //$NON-NLS-1$
+				return 0;
+			case "osThreadId": //$NON-NLS-1$
+				return 1;
+			case "javaThreadId": //$NON-NLS-1$
+				return 2;
+			case "javaName": //$NON-NLS-1$
+				return 3;
+			case "group": //$NON-NLS-1$
+				return 4;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrThread struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.osName;
+			case 1:
+				return struct.osThreadId;
+			case 2:
+				return struct.javaThreadId;
+			case 3:
+				return struct.javaName;
+			case 4:
+				return struct.group;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrThread struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.osName = value;
+				break;
+			case 1:
+				struct.osThreadId = value;
+				break;
+			case 2:
+				struct.javaThreadId = value;
+				break;
+			case 3:
+				struct.javaName = value;
+				break;
+			case 4:
+				struct.group = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class ThreadGroupReader extends TypedStructReader<StructTypes.JfrThreadGroup> {
+		ThreadGroupReader(int fieldCount, ContentType<? super StructTypes.JfrThreadGroup> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrThreadGroup create() {
+			return new StructTypes.JfrThreadGroup();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "name": //$NON-NLS-1$
+				return 0;
+			case "parent": //$NON-NLS-1$
+				return 1;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrThreadGroup struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.name;
+			case 1:
+				return struct.parent;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrThreadGroup struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.name = value;
+				break;
+			case 1:
+				struct.parent = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class JavaPackageReader extends TypedStructReader<StructTypes.JfrJavaPackage> {
+		JavaPackageReader(int fieldCount, ContentType<? super StructTypes.JfrJavaPackage> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrJavaPackage create() {
+			return new StructTypes.JfrJavaPackage();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "name": //$NON-NLS-1$
+				return 0;
+			case "module": //$NON-NLS-1$
+				return 1;
+			case "exported": //$NON-NLS-1$
+				return 2;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrJavaPackage struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.name;
+			case 1:
+				return struct.module;
+			case 2:
+				return struct.exported;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrJavaPackage struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.name = value;
+				break;
+			case 1:
+				struct.module = value;
+				break;
+			case 2:
+				struct.exported = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class JavaModuleReader extends TypedStructReader<StructTypes.JfrJavaModule> {
+		JavaModuleReader(int fieldCount, ContentType<? super StructTypes.JfrJavaModule> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrJavaModule create() {
+			return new StructTypes.JfrJavaModule();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "name": //$NON-NLS-1$
+				return 0;
+			case "version": //$NON-NLS-1$
+				return 1;
+			case "location": //$NON-NLS-1$
+				return 2;
+			case "classLoader": //$NON-NLS-1$
+				return 3;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrJavaModule struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.name;
+			case 1:
+				return struct.version;
+			case 2:
+				return struct.location;
+			case 3:
+				return struct.classLoader;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrJavaModule struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.name = value;
+				break;
+			case 1:
+				struct.version = value;
+				break;
+			case 2:
+				struct.location = value;
+				break;
+			case 3:
+				struct.classLoader = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class JavaClassLoaderReader extends TypedStructReader<StructTypes.JfrJavaClassLoader> {
+		JavaClassLoaderReader(int fieldCount, ContentType<? super StructTypes.JfrJavaClassLoader> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrJavaClassLoader create() {
+			return new StructTypes.JfrJavaClassLoader();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "type": //$NON-NLS-1$
+				return 0;
+			case "name": //$NON-NLS-1$
+				return 1;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrJavaClassLoader struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.type;
+			case 1:
+				return struct.name;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrJavaClassLoader struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.type = value;
+				break;
+			case 1:
+				struct.name = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class JavaClassReader extends TypedStructReader<StructTypes.JfrJavaClass> {
+		JavaClassReader(int fieldCount, ContentType<? super StructTypes.JfrJavaClass> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrJavaClass create() {
+			return new StructTypes.JfrJavaClass();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "classLoader": //$NON-NLS-1$
+				return 0;
+			case "modifiers": //$NON-NLS-1$
+				return 1;
+			case "package": //$NON-NLS-1$
+				return 2;
+			case "hidden": //$NON-NLS-1$
+				return 3;
+			case "name": //$NON-NLS-1$
+				return 4;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrJavaClass struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.classLoader;
+			case 1:
+				return struct.modifiers;
+			case 2:
+				return struct._package;
+			case 3:
+				return struct.hidden;
+			case 4:
+				return struct.name;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrJavaClass struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.classLoader = value;
+				break;
+			case 1:
+				struct.modifiers = value;
+				break;
+			case 2:
+				struct._package = value;
+				break;
+			case 3:
+				struct.hidden = value;
+				break;
+			case 4:
+				struct.name = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class OldObjectGcRootReader extends TypedStructReader<StructTypes.JfrOldObjectGcRoot> {
+		OldObjectGcRootReader(int fieldCount, ContentType<? super StructTypes.JfrOldObjectGcRoot> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrOldObjectGcRoot create() {
+			return new StructTypes.JfrOldObjectGcRoot();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "system": //$NON-NLS-1$
+				return 0;
+			case "type": //$NON-NLS-1$
+				return 1;
+			case "description": //$NON-NLS-1$
+				return 2;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrOldObjectGcRoot struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.system;
+			case 1:
+				return struct.type;
+			case 2:
+				return struct.description;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrOldObjectGcRoot struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.system = value;
+				break;
+			case 1:
+				struct.type = value;
+				break;
+			case 2:
+				struct.description = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class OldObjectReader extends TypedStructReader<StructTypes.JfrOldObject> {
+		OldObjectReader(int fieldCount, ContentType<? super StructTypes.JfrOldObject> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrOldObject create() {
+			return new StructTypes.JfrOldObject();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "address": //$NON-NLS-1$
+				return 0;
+			case "type": //$NON-NLS-1$
+				return 1;
+			case "description": //$NON-NLS-1$
+				return 2;
+			case "referrer": //$NON-NLS-1$
+				return 3;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrOldObject struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.address;
+			case 1:
+				return struct.type;
+			case 2:
+				return struct.description;
+			case 3:
+				return struct.referrer;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrOldObject struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.address = value;
+				break;
+			case 1:
+				struct.type = value;
+				break;
+			case 2:
+				struct.description = value;
+				break;
+			case 3:
+				struct.referrer = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class OldObjectArrayReader extends TypedStructReader<StructTypes.JfrOldObjectArray> {
+		OldObjectArrayReader(int fieldCount, ContentType<? super StructTypes.JfrOldObjectArray> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrOldObjectArray create() {
+			return new StructTypes.JfrOldObjectArray();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "size": //$NON-NLS-1$
+				return 0;
+			case "index": //$NON-NLS-1$
+				return 1;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrOldObjectArray struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.size;
+			case 1:
+				return struct.index;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrOldObjectArray struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.size = value;
+				break;
+			case 1:
+				struct.index = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class OldObjectFieldReader extends TypedStructReader<StructTypes.JfrOldObjectField> {
+		OldObjectFieldReader(int fieldCount, ContentType<? super StructTypes.JfrOldObjectField> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrOldObjectField create() {
+			return new StructTypes.JfrOldObjectField();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "name": //$NON-NLS-1$
+				return 0;
+			case "modifiers": //$NON-NLS-1$
+				return 1;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrOldObjectField struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.name;
+			case 1:
+				return struct.modifiers;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrOldObjectField struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.name = value;
+				break;
+			case 1:
+				struct.modifiers = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class MethodReader extends TypedStructReader<StructTypes.JfrMethod> {
+		MethodReader(int fieldCount, ContentType<? super StructTypes.JfrMethod> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrMethod create() {
+			return new StructTypes.JfrMethod();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "type": //$NON-NLS-1$
+				return 0;
+			case "name": //$NON-NLS-1$
+				return 1;
+			case "descriptor": //$NON-NLS-1$
+				return 2;
+			case "modifiers": //$NON-NLS-1$
+				return 3;
+			case "hidden": //$NON-NLS-1$
+				return 4;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrMethod struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.type;
+			case 1:
+				return struct.name;
+			case 2:
+				return struct.descriptor;
+			case 3:
+				return struct.modifiers;
+			case 4:
+				return struct.hidden;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrMethod struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.type = value;
+				break;
+			case 1:
+				struct.name = value;
+				break;
+			case 2:
+				struct.descriptor = value;
+				break;
+			case 3:
+				struct.modifiers = value;
+				break;
+			case 4:
+				struct.hidden = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static class FrameReader extends TypedStructReader<StructTypes.JfrFrame> {
+		FrameReader(int fieldCount, ContentType<? super StructTypes.JfrFrame> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrFrame create() {
+			return new StructTypes.JfrFrame();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "method": //$NON-NLS-1$
+				return 0;
+			case "lineNumber": //$NON-NLS-1$
+				return 1;
+			case "bytecodeIndex": //$NON-NLS-1$
+				return 2;
+			case "type": //$NON-NLS-1$
+				return 3;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrFrame struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.method;
+			case 1:
+				return struct.lineNumber;
+			case 2:
+				return struct.bytecodeIndex;
+			case 3:
+				return struct.type;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrFrame struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.method = value;
+				break;
+			case 1:
+				struct.lineNumber = value;
+				break;
+			case 2:
+				struct.bytecodeIndex = value;
+				break;
+			case 3:
+				struct.type = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+
+	static final class StackTraceReader extends TypedStructReader<StructTypes.JfrStackTrace> {
+		StackTraceReader(int fieldCount, ContentType<? super StructTypes.JfrStackTrace> ct) {
+			super(fieldCount, ct);
+		}
+
+		@Override
+		StructTypes.JfrStackTrace create() {
+			return new StructTypes.JfrStackTrace();
+		}
+
+		@Override
+		int getFieldIndex(String identifier) {
+			switch (identifier) {
+			case "frames": //$NON-NLS-1$
+				return 0;
+			case "truncated": //$NON-NLS-1$
+				return 1;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		Object get(StructTypes.JfrStackTrace struct, int field) {
+			switch (field) {
+			case 0:
+				return struct.frames;
+			case 1:
+				return struct.truncated;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+
+		@Override
+		void set(StructTypes.JfrStackTrace struct, int field, Object value) {
+			switch (field) {
+			case 0:
+				struct.frames = value;
+				break;
+			case 1:
+				struct.truncated = value;
+				break;
+			default:
+				throw new IllegalArgumentException(Integer.toString(field));
+			}
+		}
+	}
+}
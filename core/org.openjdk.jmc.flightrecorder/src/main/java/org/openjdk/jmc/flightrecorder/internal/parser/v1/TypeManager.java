@@ -43,36 +43,25 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.openjdk.jmc.common.collection.FastAccessNumberMap;
 import org.openjdk.jmc.common.unit.ContentType;
+import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.unit.KindOfQuantity;
 import org.openjdk.jmc.common.unit.StructContentType;
 import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.LabeledIdentifier;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
 import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.AnnotatedElement;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.AnnotationElement;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.ClassElement;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.FieldElement;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrFrame;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrJavaClass;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrJavaClassLoader;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrJavaModule;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrJavaPackage;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrMethod;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrOldObject;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrOldObjectArray;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrOldObjectField;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrOldObjectGcRoot;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrStackTrace;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrThread;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.StructTypes.JfrThreadGroup;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.AbstractStructReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.ArrayReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.IValueReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.PoolReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.PrimitiveReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.QuantityReader;
-import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.ReflectiveReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.StringReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.StructReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.TicksTimestampReader;
@@ -173,7 +162,7 @@ class TypeManager {
 					}
 				} else if (fieldCount == 0 && element.superType == null) {
 					if (StringReader.STRING.equals(element.typeIdentifier)) {
-						reader = new StringReader(constants);
+						reader = new StringReader(constants, context.getStringCanonicalizer());
 					} else {
 						reader = new PrimitiveReader(element.typeIdentifier);
 					}
@@ -200,27 +189,27 @@ class TypeManager {
 			String identifier, String name, String description, int fieldCount) {
 			switch (identifier) {
 			case STRUCT_TYPE_THREAD_GROUP_2:
-				return new ReflectiveReader(JfrThreadGroup.class, fieldCount, UnitLookup.THREAD_GROUP);
+				return new StructReaders.ThreadGroupReader(fieldCount, UnitLookup.THREAD_GROUP);
 			case STRUCT_TYPE_CLASS_LOADER_2:
-				return new ReflectiveReader(JfrJavaClassLoader.class, fieldCount, UnitLookup.CLASS_LOADER);
+				return new StructReaders.JavaClassLoaderReader(fieldCount, UnitLookup.CLASS_LOADER);
 			case STRUCT_TYPE_OLD_OBJECT_GC_ROOT_2:
-				return new ReflectiveReader(JfrOldObjectGcRoot.class, fieldCount, UnitLookup.OLD_OBJECT_GC_ROOT);
+				return new StructReaders.OldObjectGcRootReader(fieldCount, UnitLookup.OLD_OBJECT_GC_ROOT);
 			case STRUCT_TYPE_OLD_OBJECT_2:
-				return new ReflectiveReader(JfrOldObject.class, fieldCount, UnitLookup.OLD_OBJECT);
+				return new StructReaders.OldObjectReader(fieldCount, UnitLookup.OLD_OBJECT);
 			case STRUCT_TYPE_OLD_OBJECT_ARRAY_2:
-				return new ReflectiveReader(JfrOldObjectArray.class, fieldCount, UnitLookup.OLD_OBJECT_ARRAY);
+				return new StructReaders.OldObjectArrayReader(fieldCount, UnitLookup.OLD_OBJECT_ARRAY);
 			case STRUCT_TYPE_OLD_OBJECT_FIELD_2:
-				return new ReflectiveReader(JfrOldObjectField.class, fieldCount, UnitLookup.OLD_OBJECT_FIELD);
+				return new StructReaders.OldObjectFieldReader(fieldCount, UnitLookup.OLD_OBJECT_FIELD);
 			case STRUCT_TYPE_METHOD_2:
-				return new ReflectiveReader(JfrMethod.class, fieldCount, UnitLookup.METHOD);
+				return new StructReaders.MethodReader(fieldCount, UnitLookup.METHOD);
 			case STRUCT_TYPE_STACK_FRAME_2:
-				return new SpecificReaders.StackFrame2Reader(JfrFrame.class, fieldCount, UnitLookup.STACKTRACE_FRAME);
+				return new SpecificReaders.StackFrame2Reader(fieldCount, UnitLookup.STACKTRACE_FRAME);
 			case STRUCT_TYPE_STACK_TRACE_2:
-				return new ReflectiveReader(JfrStackTrace.class, fieldCount, UnitLookup.STACKTRACE);
+				return new StructReaders.StackTraceReader(fieldCount, UnitLookup.STACKTRACE);
 			case STRUCT_TYPE_MODULE_2:
-				return new ReflectiveReader(JfrJavaModule.class, fieldCount, UnitLookup.MODULE);
+				return new StructReaders.JavaModuleReader(fieldCount, UnitLookup.MODULE);
 			case STRUCT_TYPE_PACKAGE_2:
-				return new ReflectiveReader(JfrJavaPackage.class, fieldCount, UnitLookup.PACKAGE);
+				return new StructReaders.JavaPackageReader(fieldCount, UnitLookup.PACKAGE);
 			default:
 				return createDefaultStructReader(fieldCount);
 			}
@@ -244,31 +233,31 @@ class TypeManager {
 			String identifier, String name, String description, int fieldCount) {
 			switch (identifier) {
 			case STRUCT_TYPE_THREAD:
-				return new ReflectiveReader(JfrThread.class, fieldCount, UnitLookup.THREAD);
+				return new StructReaders.ThreadReader(fieldCount, UnitLookup.THREAD);
 			case STRUCT_TYPE_THREAD_GROUP:
-				return new ReflectiveReader(JfrThreadGroup.class, fieldCount, UnitLookup.THREAD_GROUP);
+				return new StructReaders.ThreadGroupReader(fieldCount, UnitLookup.THREAD_GROUP);
 			case STRUCT_TYPE_CLASS:
-				return new ReflectiveReader(JfrJavaClass.class, fieldCount, UnitLookup.CLASS);
+				return new StructReaders.JavaClassReader(fieldCount, UnitLookup.CLASS);
 			case STRUCT_TYPE_CLASS_LOADER:
-				return new ReflectiveReader(JfrJavaClassLoader.class, fieldCount, UnitLookup.CLASS_LOADER);
+				return new StructReaders.JavaClassLoaderReader(fieldCount, UnitLookup.CLASS_LOADER);
 			case STRUCT_TYPE_OLD_OBJECT_GC_ROOT:
-				return new ReflectiveReader(JfrOldObjectGcRoot.class, fieldCount, UnitLookup.OLD_OBJECT_GC_ROOT);
+				return new StructReaders.OldObjectGcRootReader(fieldCount, UnitLookup.OLD_OBJECT_GC_ROOT);
 			case STRUCT_TYPE_OLD_OBJECT:
-				return new ReflectiveReader(JfrOldObject.class, fieldCount, UnitLookup.OLD_OBJECT);
+				return new StructReaders.OldObjectReader(fieldCount, UnitLookup.OLD_OBJECT);
 			case STRUCT_TYPE_OLD_OBJECT_ARRAY:
-				return new ReflectiveReader(JfrOldObjectArray.class, fieldCount, UnitLookup.OLD_OBJECT_ARRAY);
+				return new StructReaders.OldObjectArrayReader(fieldCount, UnitLookup.OLD_OBJECT_ARRAY);
 			case STRUCT_TYPE_OLD_OBJECT_FIELD:
-				return new ReflectiveReader(JfrOldObjectField.class, fieldCount, UnitLookup.OLD_OBJECT_FIELD);
+				return new StructReaders.OldObjectFieldReader(fieldCount, UnitLookup.OLD_OBJECT_FIELD);
 			case STRUCT_TYPE_METHOD:
-				return new ReflectiveReader(JfrMethod.class, fieldCount, UnitLookup.METHOD);
+				return new StructReaders.MethodReader(fieldCount, UnitLookup.METHOD);
 			case STRUCT_TYPE_STACK_FRAME:
-				return new ReflectiveReader(JfrFrame.class, fieldCount, UnitLookup.STACKTRACE_FRAME);
+				return new StructReaders.FrameReader(fieldCount, UnitLookup.STACKTRACE_FRAME);
 			case STRUCT_TYPE_STACK_TRACE:
-				return new ReflectiveReader(JfrStackTrace.class, fieldCount, UnitLookup.STACKTRACE);
+				return new StructReaders.StackTraceReader(fieldCount, UnitLookup.STACKTRACE);
 			case STRUCT_TYPE_MODULE:
-				return new ReflectiveReader(JfrJavaModule.class, fieldCount, UnitLookup.MODULE);
+				return new StructReaders.JavaModuleReader(fieldCount, UnitLookup.MODULE);
 			case STRUCT_TYPE_PACKAGE:
-				return new ReflectiveReader(JfrJavaPackage.class, fieldCount, UnitLookup.PACKAGE);
+				return new StructReaders.JavaPackageReader(fieldCount, UnitLookup.PACKAGE);
 			default:
 				return createDefaultStructReader(fieldCount);
 			}
@@ -309,17 +298,38 @@ class TypeManager {
 		private IEventSink eventSink;
 		private LabeledIdentifier eventType;
 		private LoaderContext context;
+		// Number of leading time fields to read before checking the time range, 0 if not filtering on time
+		private int timeFieldCount;
 
 		EventTypeEntry(ClassElement element) {
 			this.element = element;
 			valueReaders = new ArrayList<>(element.getFieldCount());
 		}
 
-		void readEvent(IDataInput input) throws InvalidJfrFileException, IOException {
-			for (int i = 0; i < valueReaders.size(); i++) {
+		/**
+		 * @return {@code true} if the event was read, {@code false} if it was skipped since it is
+		 *         outside of the time range to load
+		 */
+		boolean readEvent(IDataInput input) throws InvalidJfrFileException, IOException {
+			for (int i = 0; i < timeFieldCount; i++) {
+				reusableStruct[i] = valueReaders.get(i).read(input, false);
+			}
+			if (timeFieldCount > 0 && !isInTimeRange()) {
+				// The chunk loader will skip the remaining fields
+				return false;
+			}
+			for (int i = timeFieldCount; i < valueReaders.size(); i++) {
 				reusableStruct[i] = valueReaders.get(i).read(input, false);
 			}
 			eventSink.addEvent(reusableStruct);
+			return true;
+		}
+
+		private boolean isInTimeRange() {
+			long start = ((IQuantity) reusableStruct[0]).clampedLongValueIn(UnitLookup.EPOCH_NS);
+			long end = timeFieldCount > 1
+					? start + ((IQuantity) reusableStruct[1]).clampedLongValueIn(UnitLookup.NANOSECOND) : start;
+			return context.isInTimeRange(start, end);
 		}
 
 		LabeledIdentifier getValueType() {
@@ -374,7 +384,21 @@ class TypeManager {
 				if (skipFields.size() > 0) {
 					eventSink = new SkipFieldsEventSink(eventSink, skipFields, reusableStruct.length);
 				}
+				if (context.hasTimeRange()
+						&& isTimeField(0, JfrAttributes.START_TIME.getIdentifier(), UnitLookup.TIMESTAMP)) {
+					boolean hasDuration = isTimeField(1, JfrAttributes.DURATION.getIdentifier(), UnitLookup.TIMESPAN);
+					timeFieldCount = hasDuration ? 2 : 1;
+				}
+			}
+		}
+
+		private boolean isTimeField(int index, String identifier, KindOfQuantity<?> ticksUnitKind)
+				throws InvalidJfrFileException {
+			if (element.getFieldCount() <= index) {
+				return false;
 			}
+			FieldElement fe = element.fields.get(index);
+			return identifier.equals(fe.fieldIdentifier) && fe.ticksUnitKind == ticksUnitKind && !fe.isArray();
 		}
 
 		void updateEventStats(long size) {
@@ -420,8 +444,7 @@ class TypeManager {
 			Logger.getLogger(getClass().getName()).log(Level.WARNING,
 					"Event type with id " + typeId + " was not declared"); //$NON-NLS-1$ //$NON-NLS-2$
 			skippedEventCount++;
-		} else {
-			entry.readEvent(input);
+		} else if (entry.readEvent(input)) {
 			entry.updateEventStats(size);
 		}
 	}
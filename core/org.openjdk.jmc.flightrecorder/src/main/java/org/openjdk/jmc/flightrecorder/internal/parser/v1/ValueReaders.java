@@ -33,8 +33,8 @@
 package org.openjdk.jmc.flightrecorder.internal.parser.v1;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,6 +49,7 @@ import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.MemberAccessorToolkit;
 import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
 import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
+import org.openjdk.jmc.flightrecorder.internal.util.StringCanonicalizer;
 
 class ValueReaders {
 	interface IValueReader {
@@ -270,9 +271,11 @@ class ValueReaders {
 		static final String STRING = "java.lang.String"; //$NON-NLS-1$
 
 		private final FastAccessNumberMap<Object> constantPool;
+		private final StringCanonicalizer canonicalizer;
 
-		StringReader(FastAccessNumberMap<Object> constantPool) {
+		StringReader(FastAccessNumberMap<Object> constantPool, StringCanonicalizer canonicalizer) {
 			this.constantPool = constantPool;
+			this.canonicalizer = canonicalizer;
 		}
 
 		@Override
@@ -285,7 +288,7 @@ class ValueReaders {
 				return (allowUnresolvedReference && (constant == null)) ? new ConstantReference(constantIndex)
 						: constant;
 			}
-			return in.readRawString(encoding);
+			return canonicalizer.canonicalize(in.readRawString(encoding));
 		}
 
 		@Override
@@ -504,54 +507,59 @@ class ValueReaders {
 		}
 	}
 
-	static class ReflectiveReader extends AbstractStructReader {
+	/**
+	 * Base class for readers of the struct types in {@link StructTypes}. The subclasses in
+	 * {@link StructReaders} create the structs and access their fields.
+	 */
+	static abstract class TypedStructReader<T> extends AbstractStructReader {
 		// FIXME: Change the reflective setting of fields to avoid the conversion workarounds that some classes have to make. See JMC-5966
 
-		// String to prefix reserved java keywords with when looking for a class field
-		private static final String RESERVED_IDENTIFIER_PREFIX = "_"; //$NON-NLS-1$
-		private final List<Field> fields;
-		private final Class<?> klass;
 		private final ContentType<?> ct;
+		private int[] fields;
 
-		<T> ReflectiveReader(Class<T> klass, int fieldCount, ContentType<? super T> ct) {
+		TypedStructReader(int fieldCount, ContentType<? super T> ct) {
 			super(fieldCount);
-			this.klass = klass;
 			this.ct = ct;
-			fields = new ArrayList<>(fieldCount);
+			fields = new int[fieldCount];
 		}
 
+		abstract T create();
+
+		/**
+		 * @return the index of the struct field with the specified identifier, or -1 if there is no
+		 *         such field
+		 */
+		abstract int getFieldIndex(String identifier);
+
+		abstract Object get(T struct, int field);
+
+		abstract void set(T struct, int field, Object value);
+
 		@Override
 		public Object read(IDataInput in, boolean allowUnresolvedReference)
 				throws IOException, InvalidJfrFileException {
-			try {
-				Object thread = klass.newInstance();
-				for (int i = 0; i < valueReaders.size(); i++) {
-					Object val = valueReaders.get(i).read(in, allowUnresolvedReference);
-					Field f = fields.get(i);
-					if (f != null) {
-						f.set(thread, val);
-					}
+			T struct = create();
+			for (int i = 0; i < valueReaders.size(); i++) {
+				Object val = valueReaders.get(i).read(in, allowUnresolvedReference);
+				int field = fields[i];
+				if (field >= 0) {
+					set(struct, field, val);
 				}
-				return thread;
-			} catch (InstantiationException | IllegalAccessException e) {
-				throw new RuntimeException(e);
 			}
+			return struct;
 		}
 
 		@Override
 		public Object resolve(Object value) throws InvalidJfrFileException {
-			try {
-				for (int i = 0; i < valueReaders.size(); i++) {
-					Field f = fields.get(i);
-					if (f != null) {
-						Object val = valueReaders.get(i).resolve(f.get(value));
-						f.set(value, val);
-					}
+			@SuppressWarnings("unchecked")
+			T struct = (T) value;
+			for (int i = 0; i < valueReaders.size(); i++) {
+				int field = fields[i];
+				if (field >= 0) {
+					set(struct, field, valueReaders.get(i).resolve(get(struct, field)));
 				}
-				return value;
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
 			}
+			return value;
 		}
 
 		@Override
@@ -562,19 +570,18 @@ class ValueReaders {
 		@Override
 		void addField(String identifier, String name, String description, IValueReader reader)
 				throws InvalidJfrFileException {
+			int index = valueReaders.size();
 			valueReaders.add(reader);
-			try {
-				try {
-					fields.add(klass.getField(identifier));
-				} catch (NoSuchFieldException e) {
-					fields.add(klass.getField(RESERVED_IDENTIFIER_PREFIX + identifier));
-				}
-			} catch (NoSuchFieldException e) {
-				Logger.getLogger(ReflectiveReader.class.getName()).log(Level.WARNING,
+			int field = getFieldIndex(identifier);
+			if (field < 0) {
+				Logger.getLogger(TypedStructReader.class.getName()).log(Level.WARNING,
 						"Could not find field with name '" + identifier + "' in reader for '" + ct.getIdentifier() //$NON-NLS-1$ //$NON-NLS-2$
 								+ "'"); //$NON-NLS-1$
-				fields.add(null);
 			}
+			if (index == fields.length) {
+				fields = Arrays.copyOf(fields, index + 1);
+			}
+			fields[index] = field;
 		}
 	}
 }
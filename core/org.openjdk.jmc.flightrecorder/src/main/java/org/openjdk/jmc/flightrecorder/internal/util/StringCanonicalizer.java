@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lossy and thread safe cache of strings, used to avoid keeping many equal copies of
+ * strings that are read inline from a recording. Unlike {@link CanonicalConstantMap}, the cache
+ * does not guarantee that only one instance of equal strings is kept. Each string hashes to a
+ * single slot, and a colliding string simply replaces the previous one. This keeps the memory used
+ * by the cache fixed and avoids locking, so it can be shared by the parallel chunk loaders.
+ */
+public class StringCanonicalizer {
+
+	private static final int DEFAULT_SIZE = 1 << 14;
+	private static final int MAX_STRING_LENGTH = 1024;
+	// Approximate shallow size of a String and the header of its backing array on a 64 bit JVM
+	private static final int STRING_HEADER_BYTES = 24;
+	private static final int ARRAY_HEADER_BYTES = 16;
+	// From JDK 9, strings with only Latin-1 characters are stored with one byte per character
+	private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8") //$NON-NLS-1$ //$NON-NLS-2$
+			.startsWith("1."); //$NON-NLS-1$
+
+	private final AtomicReferenceArray<String> slots;
+	private final int mask;
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder savedBytes = new LongAdder();
+
+	public StringCanonicalizer() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param size
+	 *            the number of slots in the cache, will be rounded up to a power of two
+	 */
+	public StringCanonicalizer(int size) {
+		int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+		slots = new AtomicReferenceArray<>(capacity);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Get a canonical instance of a string.
+	 *
+	 * @param string
+	 *            the string to canonicalize, may be {@code null}
+	 * @return a string equal to {@code string}, possibly a previously cached instance
+	 */
+	public String canonicalize(String string) {
+		if (string == null || string.length() > MAX_STRING_LENGTH) {
+			return string;
+		}
+		lookups.increment();
+		int hash = string.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		String existing = slots.get(index);
+		if (existing != null && existing.equals(string)) {
+			hits.increment();
+			savedBytes.add(estimateSize(string));
+			return existing;
+		}
+		slots.lazySet(index, string);
+		return string;
+	}
+
+	/**
+	 * Estimate the heap size of a string. Strings are assumed to use one byte per character if
+	 * compact strings are available and all characters are Latin-1, and two bytes per character
+	 * otherwise. Object sizes are rounded up to 8 bytes.
+	 */
+	private static long estimateSize(String string) {
+		int length = string.length();
+		long arrayBytes = ARRAY_HEADER_BYTES + (COMPACT_STRINGS && isLatin1(string) ? length : 2L * length);
+		return STRING_HEADER_BYTES + ((arrayBytes + 7) & ~7L);
+	}
+
+	private static boolean isLatin1(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of strings that have been looked up
+	 */
+	public long getLookupCount() {
+		return lookups.sum();
+	}
+
+	/**
+	 * @return the number of lookups that returned a previously cached instance
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return an estimate of the number of heap bytes saved by returning cached instances, assuming
+	 *         a 64 bit JVM with compressed references and, from JDK 9, compact strings enabled
+	 */
+	public long getSavedBytes() {
+		return savedBytes.sum();
+	}
+}
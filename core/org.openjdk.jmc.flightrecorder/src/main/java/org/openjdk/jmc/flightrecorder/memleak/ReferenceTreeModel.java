@@ -33,9 +33,12 @@
 package org.openjdk.jmc.flightrecorder.memleak;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -63,10 +66,83 @@ import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
  */
 public class ReferenceTreeModel {
 
+	/**
+	 * Objects sorted by timestamp, so that the objects in a time range can be found with binary
+	 * searches. Objects without a timestamp are not included.
+	 */
+	private static class TimestampIndex {
+		private static final Comparator<ReferenceTreeObject> BY_TIMESTAMP = (o1, o2) -> o1.getTimestamp()
+				.compareTo(o2.getTimestamp());
+
+		private final ReferenceTreeObject[] objects;
+		private final IQuantity[] timestamps;
+
+		TimestampIndex(Collection<ReferenceTreeObject> objects) {
+			List<ReferenceTreeObject> sorted = new ArrayList<>(objects.size());
+			for (ReferenceTreeObject object : objects) {
+				if (object.getTimestamp() != null) {
+					sorted.add(object);
+				}
+			}
+			sorted.sort(BY_TIMESTAMP);
+			this.objects = sorted.toArray(new ReferenceTreeObject[sorted.size()]);
+			timestamps = new IQuantity[this.objects.length];
+			for (int i = 0; i < timestamps.length; i++) {
+				timestamps[i] = this.objects[i].getTimestamp();
+			}
+		}
+
+		/**
+		 * @return the index of the first object with a timestamp in the range
+		 */
+		int fromIndex(IRange<IQuantity> timerange) {
+			return search(timestamps, timerange.getStart(), false);
+		}
+
+		/**
+		 * @return the index after the last object with a timestamp in the range
+		 */
+		int toIndex(IRange<IQuantity> timerange) {
+			return search(timestamps, timerange.getEnd(), true);
+		}
+
+		/**
+		 * @return the number of timestamps in the range
+		 */
+		static int count(IQuantity[] timestamps, IRange<IQuantity> timerange) {
+			int from = search(timestamps, timerange.getStart(), false);
+			int to = search(timestamps, timerange.getEnd(), true);
+			return Math.max(0, to - from);
+		}
+
+		/**
+		 * @return the index of the first timestamp that is greater than, or if {@code inclusive} is
+		 *         {@code false} greater than or equal to, the searched timestamp
+		 */
+		private static int search(IQuantity[] timestamps, IQuantity timestamp, boolean inclusive) {
+			int low = 0;
+			int high = timestamps.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				int cmp = timestamps[mid].compareTo(timestamp);
+				if (cmp < 0 || (inclusive && cmp == 0)) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
 	private final Map<IQuantity, ReferenceTreeObject> map = new HashMap<>();
 	private final List<ReferenceTreeObject> rootObjects = new ArrayList<>();
 	private final List<ReferenceTreeObject> leakObjects = new ArrayList<>();
 	private final Map<IItem, ReferenceTreeObject> rootObjectsByLeakItems = new HashMap<>();
+	private TimestampIndex rootObjectIndex;
+	private TimestampIndex leakObjectIndex;
+	// The sorted timestamps of the leak objects kept alive by each root object
+	private Map<ReferenceTreeObject, IQuantity[]> leakTimestampsByRoot;
 
 	private ReferenceTreeModel() {
 	}
@@ -88,9 +164,29 @@ public class ReferenceTreeModel {
 						JdkAttributes.GC_ROOT.getAccessor(type), type);
 			}
 		}
+		model.buildIndexes();
 		return model;
 	}
 
+	/**
+	 * Builds the indexes used to answer time range queries. Must be called after all items have
+	 * been added.
+	 */
+	private void buildIndexes() {
+		rootObjectIndex = new TimestampIndex(rootObjects);
+		leakObjectIndex = new TimestampIndex(leakObjects);
+		Map<ReferenceTreeObject, List<IQuantity>> timestampsByRoot = new HashMap<>();
+		for (ReferenceTreeObject leakObject : leakObjectIndex.objects) {
+			timestampsByRoot.computeIfAbsent(leakObject.getRootObject(), root -> new ArrayList<>())
+					.add(leakObject.getTimestamp());
+		}
+		leakTimestampsByRoot = new HashMap<>();
+		for (Map.Entry<ReferenceTreeObject, List<IQuantity>> entry : timestampsByRoot.entrySet()) {
+			// Already sorted, since the leak objects were iterated in timestamp order
+			leakTimestampsByRoot.put(entry.getKey(), entry.getValue().toArray(new IQuantity[entry.getValue().size()]));
+		}
+	}
+
 	/**
 	 * @return a list of all objects that are Roots in the reference tree
 	 */
@@ -219,14 +315,12 @@ public class ReferenceTreeModel {
 	 *         range
 	 */
 	public Collection<ReferenceTreeObject> getRootObjects(IRange<IQuantity> timerange) {
-		List<ReferenceTreeObject> objects = new ArrayList<>();
-		for (ReferenceTreeObject referenceTreeObject : rootObjects) {
-			IQuantity itemTime = referenceTreeObject.getTimestamp();
-			if (timerange.getStart().compareTo(itemTime) <= 0 && timerange.getEnd().compareTo(itemTime) >= 0) {
-				objects.add(referenceTreeObject);
-			}
+		int from = rootObjectIndex.fromIndex(timerange);
+		int to = rootObjectIndex.toIndex(timerange);
+		if (from >= to) {
+			return new ArrayList<>();
 		}
-		return objects;
+		return new ArrayList<>(Arrays.asList(rootObjectIndex.objects).subList(from, to));
 	}
 
 	/**
@@ -235,25 +329,12 @@ public class ReferenceTreeModel {
 	 * @return a list of all Roots which has a leaked object during the specified time range
 	 */
 	public Collection<ReferenceTreeObject> getLeakObjects(IRange<IQuantity> timerange) {
-		List<ReferenceTreeObject> objects = new ArrayList<>();
-		for (ReferenceTreeObject referenceTreeObject : leakObjects) {
-			IQuantity itemTime = referenceTreeObject.getTimestamp();
-			if (timerange.getStart().compareTo(itemTime) <= 0 && timerange.getEnd().compareTo(itemTime) >= 0) {
-				ReferenceTreeObject parent = referenceTreeObject.getParent();
-				if (parent == null) {
-					objects.add(referenceTreeObject);
-					continue;
-				}
-				while (parent.getParent() != null) {
-					parent = parent.getParent();
-				}
-
-				if (objects.contains(parent) == false) {
-					objects.add(parent);
-				}
-			}
+		Set<ReferenceTreeObject> objects = new LinkedHashSet<>();
+		int to = leakObjectIndex.toIndex(timerange);
+		for (int i = leakObjectIndex.fromIndex(timerange); i < to; i++) {
+			objects.add(leakObjectIndex.objects[i].getRootObject());
 		}
-		return objects;
+		return new ArrayList<>(objects);
 	}
 
 	/**
@@ -266,15 +347,8 @@ public class ReferenceTreeModel {
 	 * @return number of leaked object during the specified timerange for a given leak candidate
 	 */
 	public int getLeakCountInRange(IRange<IQuantity> timerange, ReferenceTreeObject referenceTreeObject) {
-		int referencecount = 0;
-		for (ReferenceTreeObject rtObject : leakObjects) {
-			if (rtObject.getRootObject().equals(referenceTreeObject.getRootObject())
-					&& timerange.getStart().compareTo(rtObject.getTimestamp()) <= 0
-					&& timerange.getEnd().compareTo(rtObject.getTimestamp()) >= 0) {
-				++referencecount;
-			}
-		}
-		return referencecount;
+		IQuantity[] timestamps = leakTimestampsByRoot.get(referenceTreeObject.getRootObject());
+		return timestamps == null ? 0 : TimestampIndex.count(timestamps, timerange);
 	}
 
 	/**
@@ -34,6 +34,8 @@ package org.openjdk.jmc.flightrecorder.parser.filter;
 
 import java.util.List;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
 import org.openjdk.jmc.flightrecorder.parser.IEventSink;
 import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
@@ -80,6 +82,15 @@ public class FilterExtension implements IParserExtension {
 		};
 	}
 
+	/**
+	 * @return the time range to load events for, or {@code null} if events should be loaded
+	 *         regardless of time
+	 * @see IOnLoadFilter#getTimeRange()
+	 */
+	public IRange<IQuantity> getTimeRange() {
+		return recordingLoadFilter == null ? null : recordingLoadFilter.getTimeRange();
+	}
+
 	@Override
 	public String getValueInterpretation(String eventTypeId, String fieldId) {
 		return null;
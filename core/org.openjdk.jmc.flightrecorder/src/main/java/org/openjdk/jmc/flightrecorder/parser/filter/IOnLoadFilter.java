@@ -32,6 +32,9 @@
  */
 package org.openjdk.jmc.flightrecorder.parser.filter;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+
 /**
  * Filter used when loading a recording.
  */
@@ -46,4 +49,15 @@ public interface IOnLoadFilter {
 	 */
 	boolean allowEventType(String eventTypeId);
 
+	/**
+	 * Get the time range to load events for. Chunks that lie entirely outside of the range are
+	 * skipped without being parsed, and events that do not overlap the range are skipped as soon as
+	 * their timestamps have been read.
+	 *
+	 * @return the time range to load events for, or {@code null} to load events regardless of time
+	 */
+	default IRange<IQuantity> getTimeRange() {
+		return null;
+	}
+
 }
@@ -37,6 +37,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+
 /**
  * Utility methods for creating {@link IOnLoadFilter}s
  */
@@ -103,6 +106,42 @@ public class OnLoadFilters {
 		};
 	}
 
+	/**
+	 * Filter that allows all events that overlap a specified time range.
+	 *
+	 * @param timeRange
+	 *            the time range to load events for
+	 * @return a filter
+	 */
+	public static IOnLoadFilter timeRange(IRange<IQuantity> timeRange) {
+		return timeRange(ALLOW_ALL_FILTER, timeRange);
+	}
+
+	/**
+	 * Filter that allows the events allowed by another filter that also overlap a specified time
+	 * range.
+	 *
+	 * @param typeFilter
+	 *            the filter used for deciding which event types to include
+	 * @param timeRange
+	 *            the time range to load events for
+	 * @return a filter
+	 */
+	public static IOnLoadFilter timeRange(final IOnLoadFilter typeFilter, final IRange<IQuantity> timeRange) {
+		return new IOnLoadFilter() {
+
+			@Override
+			public boolean allowEventType(String typeId) {
+				return typeFilter.allowEventType(typeId);
+			}
+
+			@Override
+			public IRange<IQuantity> getTimeRange() {
+				return timeRange;
+			}
+		};
+	}
+
 	/**
 	 * Filter that disallows a specified set of events.
 	 *
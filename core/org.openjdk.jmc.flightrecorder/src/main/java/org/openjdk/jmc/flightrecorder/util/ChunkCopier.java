@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkHeaderV1;
+
+/**
+ * Concatenates, splits and filters JFR files chunk by chunk, without parsing the chunks.
+ * <p>
+ * Only the chunk headers are read, to find the chunk boundaries and the time range of each chunk.
+ * The chunks are then copied between files with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, which lets the operating system copy the data without
+ * passing it through the Java heap. Headers are read and target files are written in parallel.
+ * <p>
+ * The files must be uncompressed. The time range of a chunk is only available for recordings
+ * from JDK 9 and later. Concatenating and splitting by size also works for older recordings.
+ */
+public final class ChunkCopier {
+	private static final int[] JFR_MAGIC = new int[] {'F', 'L', 'R', 0};
+	private static final int MAJOR_VERSION_OFFSET = JFR_MAGIC.length;
+	// Version 0 chunk headers only hold the metadata offset, right after the version
+	private static final int V0_METADATA_OFFSET_OFFSET = 8;
+	private static final int V0_HEADER_SIZE = V0_METADATA_OFFSET_OFFSET + Long.BYTES;
+
+	/**
+	 * The location and time range of a chunk in a JFR file.
+	 */
+	public static final class ChunkHeader {
+		private final File file;
+		private final long offset;
+		private final long size;
+		private final int majorVersion;
+		private final long startTimeNanos;
+		private final long durationNanos;
+
+		ChunkHeader(File file, long offset, long size, int majorVersion, long startTimeNanos, long durationNanos) {
+			this.file = file;
+			this.offset = offset;
+			this.size = size;
+			this.majorVersion = majorVersion;
+			this.startTimeNanos = startTimeNanos;
+			this.durationNanos = durationNanos;
+		}
+
+		/**
+		 * @return the file containing the chunk
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the position of the chunk in the file
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return the size of the chunk in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return the major version of the chunk format
+		 */
+		public int getMajorVersion() {
+			return majorVersion;
+		}
+
+		/**
+		 * @return {@code true} if the time range of the chunk is known, which requires a recording
+		 *         from JDK 9 or later
+		 */
+		public boolean hasTimeRange() {
+			return majorVersion >= 1;
+		}
+
+		/**
+		 * @return the start time of the chunk in nanoseconds since the epoch
+		 */
+		public long getStartTimeNanos() {
+			checkTimeRange();
+			return startTimeNanos;
+		}
+
+		/**
+		 * @return the end time of the chunk in nanoseconds since the epoch
+		 */
+		public long getEndTimeNanos() {
+			checkTimeRange();
+			return startTimeNanos + durationNanos;
+		}
+
+		private void checkTimeRange() {
+			if (!hasTimeRange()) {
+				throw new IllegalStateException("The time range is not available for chunk at offset " + offset //$NON-NLS-1$
+						+ " in " + file); //$NON-NLS-1$
+			}
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + "@" + offset + "+" + size; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private ChunkCopier() {
+		throw new UnsupportedOperationException("Not to be instantiated"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Read the chunk headers of a JFR file.
+	 *
+	 * @param file
+	 *            an uncompressed JFR file
+	 * @return the chunks in the file, in file order
+	 * @throws IOException
+	 *             if the file could not be read, or is not a valid JFR file
+	 */
+	public static List<ChunkHeader> readChunkHeaders(File file) throws IOException {
+		List<ChunkHeader> chunks = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(ChunkHeaderV1.SIZE);
+			long offset = 0;
+			while (offset < fileSize) {
+				header.clear();
+				header.limit((int) Math.min(ChunkHeaderV1.SIZE, fileSize - offset));
+				readFully(channel, header, offset);
+				if (header.limit() < V0_HEADER_SIZE || !hasMagic(header)) {
+					if (offset == 0 && IOToolkit.isCompressedFile(file)) {
+						throw new IOException("The file must be decompressed first: " + file); //$NON-NLS-1$
+					}
+					throw new IOException("No chunk found at offset " + offset + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				int majorVersion = header.getShort(MAJOR_VERSION_OFFSET);
+				long size;
+				long startTime = 0;
+				long duration = 0;
+				if (majorVersion >= 1) {
+					if (header.limit() < ChunkHeaderV1.SIZE) {
+						throw new IOException("Truncated chunk header at offset " + offset + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					ChunkHeaderV1 chunkHeader = new ChunkHeaderV1(header.array());
+					size = chunkHeader.getChunkSize();
+					startTime = chunkHeader.getStartTimeNanos();
+					duration = chunkHeader.getDurationNanos();
+				} else {
+					// The chunk ends with the metadata event, which starts with its size
+					long metadataOffset = header.getLong(V0_METADATA_OFFSET_OFFSET);
+					ByteBuffer eventSize = ByteBuffer.allocate(Integer.BYTES);
+					readFully(channel, eventSize, offset + metadataOffset);
+					size = metadataOffset + eventSize.getInt(0);
+				}
+				if (size <= 0 || offset + size > fileSize) {
+					throw new IOException("Invalid chunk size " + size + " at offset " + offset + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				chunks.add(new ChunkHeader(file, offset, size, majorVersion, startTime, duration));
+				offset += size;
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Read the chunk headers of several JFR files in parallel.
+	 *
+	 * @param files
+	 *            uncompressed JFR files
+	 * @return the chunks in the files, in the order of the files
+	 * @throws IOException
+	 *             if a file could not be read, or is not a valid JFR file
+	 */
+	public static List<ChunkHeader> readChunkHeaders(List<File> files) throws IOException {
+		List<Callable<List<ChunkHeader>>> tasks = new ArrayList<>();
+		for (File file : files) {
+			tasks.add(() -> readChunkHeaders(file));
+		}
+		List<ChunkHeader> chunks = new ArrayList<>();
+		for (List<ChunkHeader> fileChunks : runAll(tasks)) {
+			chunks.addAll(fileChunks);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Sort chunks by start time, which is useful when concatenating files that have been rotated.
+	 *
+	 * @param chunks
+	 *            chunks with {@link ChunkHeader#hasTimeRange() known time ranges}
+	 * @return a sorted copy of the list
+	 */
+	public static List<ChunkHeader> sortByStartTime(List<ChunkHeader> chunks) {
+		List<ChunkHeader> sorted = new ArrayList<>(chunks);
+		Collections.sort(sorted, Comparator.comparingLong(ChunkHeader::getStartTimeNanos));
+		return sorted;
+	}
+
+	/**
+	 * Select the chunks that overlap a time range.
+	 *
+	 * @param chunks
+	 *            chunks with {@link ChunkHeader#hasTimeRange() known time ranges}
+	 * @param startNanos
+	 *            the start of the range in nanoseconds since the epoch, inclusive
+	 * @param endNanos
+	 *            the end of the range in nanoseconds since the epoch, exclusive
+	 * @return the chunks that contain data from the time range, in the same order
+	 */
+	public static List<ChunkHeader> filterByTime(List<ChunkHeader> chunks, long startNanos, long endNanos) {
+		List<ChunkHeader> selected = new ArrayList<>();
+		for (ChunkHeader chunk : chunks) {
+			if (chunk.getStartTimeNanos() < endNanos && chunk.getEndTimeNanos() >= startNanos) {
+				selected.add(chunk);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Group chunks into files of roughly a target size. A group is ended when adding the next chunk
+	 * would take its size further from the target, so files can be both larger and smaller than the
+	 * target.
+	 *
+	 * @param chunks
+	 *            the chunks to group
+	 * @param targetSize
+	 *            the target size of each group in bytes
+	 * @return the groups of chunks, in the order of the chunks
+	 */
+	public static List<List<ChunkHeader>> groupBySize(List<ChunkHeader> chunks, long targetSize) {
+		List<List<ChunkHeader>> groups = new ArrayList<>();
+		List<ChunkHeader> group = new ArrayList<>();
+		long sum = 0;
+		for (ChunkHeader chunk : chunks) {
+			if (sum != 0 && Math.abs(sum - targetSize) <= Math.abs(sum + chunk.getSize() - targetSize)) {
+				groups.add(group);
+				group = new ArrayList<>();
+				sum = 0;
+			}
+			group.add(chunk);
+			sum += chunk.getSize();
+		}
+		if (!group.isEmpty()) {
+			groups.add(group);
+		}
+		return groups;
+	}
+
+	/**
+	 * Group chunks by the period of time they start in, for instance to get one file per hour.
+	 *
+	 * @param chunks
+	 *            chunks with {@link ChunkHeader#hasTimeRange() known time ranges}
+	 * @param periodNanos
+	 *            the length of the periods in nanoseconds, counted from the epoch
+	 * @return the groups keyed by the start of their period in nanoseconds since the epoch, in order
+	 *         of time, with the chunks of each group sorted by start time
+	 */
+	public static Map<Long, List<ChunkHeader>> groupByTime(List<ChunkHeader> chunks, long periodNanos) {
+		if (periodNanos <= 0) {
+			throw new IllegalArgumentException("The period must be positive"); //$NON-NLS-1$
+		}
+		Map<Long, List<ChunkHeader>> groups = new LinkedHashMap<>();
+		for (ChunkHeader chunk : sortByStartTime(chunks)) {
+			long periodStart = Math.floorDiv(chunk.getStartTimeNanos(), periodNanos) * periodNanos;
+			groups.computeIfAbsent(periodStart, k -> new ArrayList<>()).add(chunk);
+		}
+		return groups;
+	}
+
+	/**
+	 * Copy chunks to a new file, replacing any existing file.
+	 *
+	 * @param chunks
+	 *            the chunks to copy, in the order to write them
+	 * @param target
+	 *            the file to write
+	 * @throws IOException
+	 *             if a chunk could not be copied
+	 */
+	public static void copyChunks(List<ChunkHeader> chunks, File target) throws IOException {
+		try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			FileChannel in = null;
+			File inFile = null;
+			try {
+				for (ChunkHeader chunk : chunks) {
+					if (!chunk.getFile().equals(inFile)) {
+						if (in != null) {
+							in.close();
+						}
+						inFile = chunk.getFile();
+						in = FileChannel.open(inFile.toPath(), StandardOpenOption.READ);
+					}
+					long position = chunk.getOffset();
+					long end = position + chunk.getSize();
+					while (position < end) {
+						long transferred = in.transferTo(position, end - position, out);
+						if (transferred <= 0) {
+							throw new IOException("Could not copy chunk " + chunk); //$NON-NLS-1$
+						}
+						position += transferred;
+					}
+				}
+			} finally {
+				if (in != null) {
+					in.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy groups of chunks to new files in parallel, replacing any existing files.
+	 *
+	 * @param targets
+	 *            the chunks to copy, keyed by the file to write them to
+	 * @throws IOException
+	 *             if a chunk could not be copied
+	 */
+	public static void copyChunks(Map<File, List<ChunkHeader>> targets) throws IOException {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (Entry<File, List<ChunkHeader>> target : targets.entrySet()) {
+			tasks.add(() -> {
+				copyChunks(target.getValue(), target.getKey());
+				return null;
+			});
+		}
+		runAll(tasks);
+	}
+
+	private static <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+		if (tasks.size() == 1) {
+			try {
+				return Collections.singletonList(tasks.get(0).call());
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+		int threads = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<T> results = new ArrayList<>();
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying chunks", e); //$NON-NLS-1$
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at offset " + position); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static boolean hasMagic(ByteBuffer header) {
+		for (int i = 0; i < JFR_MAGIC.length; i++) {
+			if (header.get(i) != JFR_MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkRewriterV1;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier.ChunkHeader;
+
+/**
+ * Removes event types from JFR files chunk by chunk, without parsing the events.
+ * <p>
+ * Only the metadata and the event headers of each chunk are read. The events that are kept are
+ * transferred verbatim between the files, together with the metadata and constant pools, and chunks
+ * without any of the removed events are transferred as a whole. This makes it possible to, for
+ * example, remove allocation samples, environment variables or system properties from a recording
+ * at close to the speed of copying the file. Optionally, the constants that are only referenced by
+ * the removed events, such as their stack traces, are removed as well. This requires reading each
+ * chunk into memory, and chunks larger than 2 GB are then not supported.
+ * <p>
+ * The files must be uncompressed and recorded with JDK 9 or later.
+ */
+public final class ChunkRewriter {
+
+	private ChunkRewriter() {
+	}
+
+	/**
+	 * Write chunks to a file, without the events of some event types.
+	 *
+	 * @param chunks
+	 *            the chunks to write, in the order to write them
+	 * @param target
+	 *            the file to write to, any existing file is overwritten
+	 * @param includeEventType
+	 *            predicate for the identifiers of the event types to keep, e.g.
+	 *            {@code "jdk.ObjectAllocationSample"}. The identifiers used for JDK 11 and later are
+	 *            also used for recordings from JDK 9 and 10.
+	 * @param pruneConstants
+	 *            {@code true} to also remove the constants that are not referenced by any kept
+	 *            event, {@code false} to keep the constant pools as they are
+	 */
+	public static void removeEventTypes(
+		List<ChunkHeader> chunks, File target, Predicate<String> includeEventType, boolean pruneConstants)
+			throws IOException, CouldNotLoadRecordingException {
+		try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			FileChannel in = null;
+			File inFile = null;
+			try {
+				for (ChunkHeader chunk : chunks) {
+					if (chunk.getMajorVersion() < 1) {
+						throw new IOException("Recordings from JDK 8 or earlier are not supported: " + chunk); //$NON-NLS-1$
+					}
+					if (pruneConstants && chunk.getSize() > Integer.MAX_VALUE) {
+						throw new IOException("Chunk is too large to prune constants in: " + chunk); //$NON-NLS-1$
+					}
+					if (!chunk.getFile().equals(inFile)) {
+						if (in != null) {
+							in.close();
+						}
+						inFile = chunk.getFile();
+						in = FileChannel.open(inFile.toPath(), StandardOpenOption.READ);
+					}
+					ChunkRewriterV1.rewrite(in, chunk.getOffset(), chunk.getSize(), out, includeEventType,
+							pruneConstants);
+				}
+			} finally {
+				if (in != null) {
+					in.close();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier.ChunkHeader;
+
+/**
+ * Program for concatenating, splitting, filtering and stripping JFR files chunk by chunk. Run
+ * without arguments to list usage.
+ */
+public class ChunkTool {
+	private final static int MIB = 1024 * 1024;
+	private static final DateTimeFormatter PERIOD_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm") //$NON-NLS-1$
+			.withZone(ZoneOffset.UTC);
+
+	public static void main(String[] args) throws IOException, CouldNotLoadRecordingException {
+		if (args.length < 3) {
+			printUsage();
+			System.exit(2);
+		}
+		String command = args[0];
+		long start = System.currentTimeMillis();
+		Map<File, List<ChunkHeader>> targets;
+		if (("strip".equals(command) || "strip-constants".equals(command)) && args.length > 3) { //$NON-NLS-1$ //$NON-NLS-2$
+			Set<String> removedTypes = new HashSet<>(Arrays.asList(args[1].split(","))); //$NON-NLS-1$
+			File target = new File(args[2]);
+			List<ChunkHeader> chunks = ChunkCopier.sortByStartTime(readTimedChunks(args, 3, command));
+			ChunkRewriter.removeEventTypes(chunks, target, type -> !removedTypes.contains(type),
+					"strip-constants".equals(command)); //$NON-NLS-1$
+			System.out.println(String.format("Wrote %d chunk(s) to %s", chunks.size(), target)); //$NON-NLS-1$
+			System.out.println(String.format("All done in %d ms!", System.currentTimeMillis() - start)); //$NON-NLS-1$
+			return;
+		} else if ("concat".equals(command)) { //$NON-NLS-1$
+			targets = concat(new File(args[1]), readChunks(args, 2));
+		} else if ("split-size".equals(command) && args.length > 3) { //$NON-NLS-1$
+			targets = splitBySize(Long.parseLong(args[1]) * MIB, args[2], readChunks(args, 3));
+		} else if ("split-time".equals(command) && args.length > 3) { //$NON-NLS-1$
+			targets = splitByTime(TimeUnit.MINUTES.toNanos(Long.parseLong(args[1])), args[2],
+					readTimedChunks(args, 3, command));
+		} else if ("filter".equals(command) && args.length > 4) { //$NON-NLS-1$
+			targets = filter(toNanos(args[1]), toNanos(args[2]), new File(args[3]),
+					readTimedChunks(args, 4, command));
+		} else {
+			printUsage();
+			System.exit(2);
+			return;
+		}
+		ChunkCopier.copyChunks(targets);
+		for (Entry<File, List<ChunkHeader>> target : targets.entrySet()) {
+			System.out.println(String.format("Wrote %d chunk(s) to %s", target.getValue().size(), target.getKey())); //$NON-NLS-1$
+		}
+		System.out.println(String.format("All done in %d ms!", System.currentTimeMillis() - start)); //$NON-NLS-1$
+	}
+
+	private static void printUsage() {
+		System.out.println("Usage:"); //$NON-NLS-1$
+		System.out.println("java ChunkTool concat targetFile files..."); //$NON-NLS-1$
+		System.out.println("java ChunkTool split-size targetSizePerFile(MiB) targetPrefix files..."); //$NON-NLS-1$
+		System.out.println("java ChunkTool split-time minutesPerFile targetPrefix files..."); //$NON-NLS-1$
+		System.out.println("java ChunkTool filter startTime endTime targetFile files..."); //$NON-NLS-1$
+		System.out.println("java ChunkTool strip eventTypes targetFile files..."); //$NON-NLS-1$
+		System.out.println("java ChunkTool strip-constants eventTypes targetFile files..."); //$NON-NLS-1$
+		System.out.println();
+		System.out.println("The files must be uncompressed and are processed along chunk boundaries, without"); //$NON-NLS-1$
+		System.out.println("parsing the events. Chunks are ordered by start time, except when concatenating"); //$NON-NLS-1$
+		System.out.println("recordings from JDK 8 or earlier, which are kept in the order given. Splitting by"); //$NON-NLS-1$
+		System.out.println("time writes one file per period, named by the UTC start time of the period."); //$NON-NLS-1$
+		System.out.println("Times for filtering are given in ISO-8601 format, e.g. 2021-03-01T12:00:00Z,"); //$NON-NLS-1$
+		System.out.println("and all chunks overlapping the range are kept."); //$NON-NLS-1$
+		System.out.println("Stripping removes the events of a comma separated list of event types, e.g."); //$NON-NLS-1$
+		System.out.println("jdk.ObjectAllocationSample,jdk.InitialEnvironmentVariable,jdk.InitialSystemProperty,"); //$NON-NLS-1$
+		System.out.println("by walking the events without parsing them. It requires recordings from JDK 9 or"); //$NON-NLS-1$
+		System.out.println("later. Stripping with constants also removes the constants only used by the removed"); //$NON-NLS-1$
+		System.out.println("events, such as their stack traces."); //$NON-NLS-1$
+	}
+
+	private static List<ChunkHeader> readChunks(String[] args, int firstFile) throws IOException {
+		List<File> files = new ArrayList<>();
+		for (String name : Arrays.asList(args).subList(firstFile, args.length)) {
+			File file = new File(name);
+			if (!file.exists()) {
+				System.out.println("The specified file does not exist: " + name); //$NON-NLS-1$
+				System.exit(3);
+			}
+			if (IOToolkit.isCompressedFile(file)) {
+				System.out.println("The specified file is compressed and must be decompressed first: " + name); //$NON-NLS-1$
+				System.exit(3);
+			}
+			files.add(file);
+		}
+		return ChunkCopier.readChunkHeaders(files);
+	}
+
+	private static List<ChunkHeader> readTimedChunks(String[] args, int firstFile, String command) throws IOException {
+		List<ChunkHeader> chunks = readChunks(args, firstFile);
+		for (ChunkHeader chunk : chunks) {
+			if (!chunk.hasTimeRange()) {
+				System.out.println("The " + command + " command requires recordings from JDK 9 or later: " //$NON-NLS-1$ //$NON-NLS-2$
+						+ chunk.getFile());
+				System.out.println();
+				printUsage();
+				System.exit(2);
+			}
+		}
+		return chunks;
+	}
+
+	private static Map<File, List<ChunkHeader>> concat(File target, List<ChunkHeader> chunks) {
+		boolean timed = chunks.stream().allMatch(ChunkHeader::hasTimeRange);
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		targets.put(target, timed ? ChunkCopier.sortByStartTime(chunks) : chunks);
+		return targets;
+	}
+
+	private static Map<File, List<ChunkHeader>> splitBySize(long targetSize, String prefix, List<ChunkHeader> chunks) {
+		boolean timed = chunks.stream().allMatch(ChunkHeader::hasTimeRange);
+		List<List<ChunkHeader>> groups = ChunkCopier
+				.groupBySize(timed ? ChunkCopier.sortByStartTime(chunks) : chunks, targetSize);
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		for (int i = 0; i < groups.size(); i++) {
+			targets.put(new File(prefix + "_" + i + ".jfr"), groups.get(i)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return targets;
+	}
+
+	private static Map<File, List<ChunkHeader>> splitByTime(long periodNanos, String prefix, List<ChunkHeader> chunks) {
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		for (Entry<Long, List<ChunkHeader>> group : ChunkCopier.groupByTime(chunks, periodNanos).entrySet()) {
+			Instant periodStart = Instant.ofEpochSecond(0, group.getKey());
+			targets.put(new File(prefix + "_" + PERIOD_FORMAT.format(periodStart) + ".jfr"), group.getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return targets;
+	}
+
+	private static Map<File, List<ChunkHeader>> filter(
+		long startNanos, long endNanos, File target, List<ChunkHeader> chunks) {
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		targets.put(target, ChunkCopier.filterByTime(ChunkCopier.sortByStartTime(chunks), startNanos, endNanos));
+		return targets;
+	}
+
+	private static long toNanos(String time) {
+		Instant instant = Instant.parse(time);
+		return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+	}
+}
@@ -33,14 +33,20 @@
 package org.openjdk.jmc.flightrecorder.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier.ChunkHeader;
 
 /**
- * Program for splitting a JFR file. Run without arguments to list usage.
+ * Program for splitting a JFR file. Run without arguments to list usage. The chunks are copied
+ * with {@link ChunkCopier}, see {@link ChunkTool} for more ways to split and merge files.
  */
 public class SplitRecording {
 	private final static int MIB = 1024 * 1024;
@@ -73,48 +79,47 @@ public class SplitRecording {
 	private static void split(File file, int targetSize) throws IOException {
 		System.out.println("Splitting " + file + "..."); //$NON-NLS-1$ //$NON-NLS-2$
 		String namePattern = getNamePatternFromFile(file);
-		Iterator<byte[]> chunks = ChunkReader.readChunks(file);
-		if (targetSize == -1) {
-			System.out.println("No target size - will split along chunk borders"); //$NON-NLS-1$
-			writeAllChunks(namePattern, chunks);
+		if (IOToolkit.isCompressedFile(file)) {
+			// The chunks are copied from the file by position, so it must be decompressed first
+			System.out.println("Decompressing " + file + "..."); //$NON-NLS-1$ //$NON-NLS-2$
+			File uncompressed = File.createTempFile("split", ".jfr"); //$NON-NLS-1$ //$NON-NLS-2$
+			try {
+				try (InputStream in = IOToolkit.openUncompressedStream(file)) {
+					IOToolkit.write(in, uncompressed, false);
+				}
+				split(uncompressed, namePattern, targetSize);
+			} finally {
+				uncompressed.delete();
+			}
 		} else {
-			System.out.println("Target size is " + targetSize / MIB + " MiB"); //$NON-NLS-1$ //$NON-NLS-2$
-			writecCollatedChunks(targetSize, namePattern, chunks);
+			split(file, namePattern, targetSize);
 		}
 		System.out.println("All done!"); //$NON-NLS-1$
 	}
 
-	private static void writecCollatedChunks(int targetSize, String namePattern, Iterator<byte[]> chunks)
-			throws IOException {
-		List<byte[]> writeList = new ArrayList<>();
-		int writeCount = 0;
-		int sum = 0;
-		while (chunks.hasNext()) {
-			byte[] nextChunk = chunks.next();
-
-			if (sum != 0) {
-				if (distance(sum, targetSize) <= distance(sum + nextChunk.length, targetSize)) {
-					writeChunks(writeCount++, writeList, namePattern);
-					writeList.clear();
-					sum = 0;
-				}
+	private static void split(File file, String namePattern, int targetSize) throws IOException {
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(file);
+		List<List<ChunkHeader>> groups;
+		if (targetSize == -1) {
+			System.out.println("No target size - will split along chunk borders"); //$NON-NLS-1$
+			groups = new ArrayList<>();
+			for (ChunkHeader chunk : chunks) {
+				List<ChunkHeader> group = new ArrayList<>();
+				group.add(chunk);
+				groups.add(group);
 			}
-			writeList.add(nextChunk);
-			sum += nextChunk.length;
+		} else {
+			System.out.println("Target size is " + targetSize / MIB + " MiB"); //$NON-NLS-1$ //$NON-NLS-2$
+			groups = ChunkCopier.groupBySize(chunks, targetSize);
 		}
-	}
-
-	private static void writeChunks(int i, List<byte[]> writeList, String namePattern) throws IOException {
-		writeChunks(getFile(i, namePattern), writeList);
-	}
-
-	private static int distance(int sum, int targetSize) {
-		return Math.abs(sum - targetSize);
-	}
-
-	private static void writeAllChunks(String namePattern, Iterator<byte[]> chunks) throws IOException {
-		for (int i = 0; chunks.hasNext(); i++) {
-			writeChunk(getFile(i, namePattern), chunks.next());
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		for (int i = 0; i < groups.size(); i++) {
+			targets.put(getFile(i, namePattern), groups.get(i));
+		}
+		ChunkCopier.copyChunks(targets);
+		for (Entry<File, List<ChunkHeader>> target : targets.entrySet()) {
+			System.out.println(String.format("Wrote %d chunk(s) to %s", target.getValue().size(), //$NON-NLS-1$
+					target.getKey().getName()));
 		}
 	}
 
@@ -129,24 +134,6 @@ public class SplitRecording {
 		return absolutePath + "_%d" + extension; //$NON-NLS-1$
 	}
 
-	private static void writeChunk(File file, byte[] chunk) throws IOException {
-		System.out.print("Writing " + file.getName() + "... "); //$NON-NLS-1$ //$NON-NLS-2$
-		try (FileOutputStream fos = new FileOutputStream(file)) {
-			fos.write(chunk);
-		}
-		System.out.println("finished!"); //$NON-NLS-1$
-	}
-
-	private static void writeChunks(File file, List<byte[]> chunks) throws IOException {
-		System.out.print(String.format("Writing %d chunk(s) to %s...", chunks.size(), file.getName())); //$NON-NLS-1$
-		try (FileOutputStream fos = new FileOutputStream(file)) {
-			for (byte[] chunk : chunks) {
-				fos.write(chunk);
-			}
-		}
-		System.out.println("finished!"); //$NON-NLS-1$
-	}
-
 	private static String getExtension(File file) {
 		int index = file.getName().lastIndexOf('.');
 		if (index == -1) {
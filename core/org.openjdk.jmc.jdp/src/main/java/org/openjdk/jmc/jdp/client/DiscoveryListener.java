@@ -32,6 +32,8 @@
  */
 package org.openjdk.jmc.jdp.client;
 
+import java.util.List;
+
 /**
  * Interface for listeners interested in notifications about discovered JVM services.
  */
@@ -44,4 +46,22 @@ public interface DiscoveryListener {
 	 *            an event describing the change in discovery status.
 	 */
 	public void onDiscovery(DiscoveryEvent event);
+
+	/**
+	 * Called with the changes in discovery status that have occurred since the last call. The
+	 * changes for a service are coalesced, so that there is at most one event per service in a
+	 * batch. For instance, a service that is found and then changed is reported as found with the
+	 * changed data, and a service that is found and lost again is not reported at all.
+	 * <p>
+	 * The default implementation calls {@link #onDiscovery(DiscoveryEvent)} for each event.
+	 *
+	 * @param events
+	 *            the events describing the changes in discovery status, in the order the services
+	 *            first changed status
+	 */
+	default void onDiscovery(List<DiscoveryEvent> events) {
+		for (DiscoveryEvent event : events) {
+			onDiscovery(event);
+		}
+	}
 }
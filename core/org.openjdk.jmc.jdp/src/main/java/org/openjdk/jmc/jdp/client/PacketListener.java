@@ -35,6 +35,10 @@ package org.openjdk.jmc.jdp.client;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.MulticastSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.openjdk.jmc.jdp.common.JDPPacket;
@@ -42,11 +46,27 @@ import org.openjdk.jmc.jdp.common.JDPPacket;
 /**
  * This package private class listens for JDP packets, and sends them to the packet processor for
  * processing.
+ * <p>
+ * JDP servers keep sending the same packet until their discovery data changes. The last packet
+ * from each source is remembered, and a packet that has the same content is not decoded again.
+ * The listener also sends the events queued by the processor to the listeners, once they have been
+ * collected for {@link PacketProcessor#DISPATCH_DELAY} milliseconds.
  */
 final class PacketListener implements Runnable {
 	private static final int BUFFER_LENGTH = 4096;
+	// The maximum number of sources to remember the last packet for
+	private static final int MAX_SOURCES = 4096;
 	private final MulticastSocket socket;
 	private final PacketProcessor packetProcessor;
+	private final Map<SocketAddress, JDPPacket> lastPackets = new LinkedHashMap<SocketAddress, JDPPacket>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<SocketAddress, JDPPacket> eldest) {
+			return size() > MAX_SOURCES;
+		}
+	};
 	private volatile boolean shutdown;
 
 	PacketListener(MulticastSocket socket, PacketProcessor packetProcessor) {
@@ -58,10 +78,27 @@ final class PacketListener implements Runnable {
 	public void run() {
 		byte[] buffer = new byte[BUFFER_LENGTH];
 		DatagramPacket dgram = new DatagramPacket(buffer, buffer.length);
+		int timeout = 0;
 
 		while (!shutdown) {
 			try {
+				long dispatchTime = packetProcessor.getDispatchTime();
+				int newTimeout = 0;
+				if (dispatchTime != Long.MAX_VALUE) {
+					long delay = dispatchTime - System.currentTimeMillis();
+					if (delay <= 0) {
+						packetProcessor.dispatchEvents();
+						continue;
+					}
+					newTimeout = (int) delay;
+				}
+				if (newTimeout != timeout) {
+					socket.setSoTimeout(newTimeout);
+					timeout = newTimeout;
+				}
 				socket.receive(dgram);
+			} catch (SocketTimeoutException e) {
+				continue;
 			} catch (IOException e) {
 				if (!shutdown) {
 					JDPClient.LOGGER.log(Level.SEVERE, "Problem listening for JDP packets! Shutting down!", e); //$NON-NLS-1$
@@ -69,16 +106,49 @@ final class PacketListener implements Runnable {
 				}
 				return;
 			}
+			process(dgram);
+			dgram.setLength(buffer.length);
+		}
+	}
 
-			byte[] data = new byte[dgram.getLength()];
-			System.arraycopy(dgram.getData(), dgram.getOffset(), data, 0, dgram.getLength());
+	/**
+	 * Decode a datagram, unless it has the same content as the last packet from the same source,
+	 * and send the packet to the processor.
+	 */
+	void process(DatagramPacket dgram) {
+		byte[] buffer = dgram.getData();
+		int offset = dgram.getOffset();
+		int length = dgram.getLength();
+		SocketAddress source = dgram.getSocketAddress();
+		JDPPacket packet = lastPackets.get(source);
+		if (packet == null || !hasContent(packet, buffer, offset, length)) {
+			byte[] data = new byte[length];
+			System.arraycopy(buffer, offset, data, 0, length);
 			try {
-				JDPPacket packet = new JDPPacket(data);
-				packetProcessor.process(packet);
+				packet = new JDPPacket(data);
 			} catch (Exception e) {
 				JDPClient.LOGGER.log(Level.WARNING, "Could not decode JDP packet. Skipping!", e); //$NON-NLS-1$
+				return;
+			}
+			lastPackets.put(source, packet);
+		}
+		packetProcessor.process(packet);
+	}
+
+	private static boolean hasContent(JDPPacket packet, byte[] buffer, int offset, int length) {
+		if (packet.getContentHash() != JDPPacket.hash(buffer, offset, length)) {
+			return false;
+		}
+		byte[] data = packet.getDiscoveryDataAsByteArray();
+		if (data.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (data[i] != buffer[offset + i]) {
+				return false;
 			}
 		}
+		return true;
 	}
 
 	public void stop() {
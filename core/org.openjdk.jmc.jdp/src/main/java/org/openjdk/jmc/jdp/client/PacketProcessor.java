@@ -35,6 +35,7 @@ package org.openjdk.jmc.jdp.client;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,12 +46,27 @@ import org.openjdk.jmc.jdp.common.JDPPacket;
 /**
  * The package private PacketProcessor will remember detected packets and transmit the appropriate
  * events (FOUND, CHANGED) to the registered listeners.
+ * <p>
+ * Events are not sent to the listeners directly. They are queued and coalesced per discoverable,
+ * and sent in batches by {@link #dispatchEvents()}, so that a burst of packets from many JVMs
+ * results in a few notifications.
  */
 final class PacketProcessor {
 	private static final String KEY_BROADCAST_PERIOD = "BROADCAST_INTERVAL"; //$NON-NLS-1$
 
+	/**
+	 * How long to collect events before they are sent to the listeners.
+	 */
+	static final long DISPATCH_DELAY = 100L;
+
 	private final List<DiscoveryListener> listeners = new ArrayList<>();
 	final Map<String, DiscoverableInfo> infoMap = new HashMap<>();
+	// Discoverables found since the pruner last checked for timed out discoverables
+	final List<DiscoverableInfo> unscheduled = new ArrayList<>();
+	private final Map<String, DiscoveryEvent> pendingEvents = new LinkedHashMap<>();
+	private long firstPendingTime;
+	// Keeps the batches in order when events are dispatched from more than one thread
+	private final Object dispatchLock = new Object();
 
 	static class DiscoverableInfo {
 		// The timestamp the packet was last discovered.
@@ -61,6 +77,8 @@ final class PacketProcessor {
 		boolean needToCalculateHeartBeat = true;
 		// The packet discovered
 		JDPPacket packet;
+		// The time after which the pruner checks if the packet has timed out
+		long expiryTime;
 	}
 
 	public synchronized void process(JDPPacket packet) {
@@ -73,16 +91,18 @@ final class PacketProcessor {
 			info.timestamp = now;
 			info.packet = packet;
 			infoMap.put(packet.getSessionId(), info);
+			unscheduled.add(info);
 			long broadcastPeriod = getBroadcastPeriodFromPayload(packet.getPayload());
 			if (broadcastPeriod > 0) {
 				info.heartBeat = broadcastPeriod;
 				info.needToCalculateHeartBeat = false;
 			}
 			JDPClient.LOGGER.fine("Found " + packet); //$NON-NLS-1$
-			fireEvent(new DiscoveryEvent(Kind.FOUND, packet));
+			queueEvent(new DiscoveryEvent(Kind.FOUND, packet));
 		} else if (!info.packet.equals(packet)) {
 			JDPClient.LOGGER.fine("Changed " + packet); //$NON-NLS-1$
-			fireEvent(new DiscoveryEvent(Kind.CHANGED, packet));
+			info.packet = packet;
+			queueEvent(new DiscoveryEvent(Kind.CHANGED, packet));
 		}
 		if (info.needToCalculateHeartBeat) {
 			long newHB = now - info.timestamp;
@@ -98,9 +118,60 @@ final class PacketProcessor {
 		return Long.parseLong(payload.get(KEY_BROADCAST_PERIOD));
 	}
 
-	synchronized void fireEvent(DiscoveryEvent event) {
-		for (DiscoveryListener listener : listeners) {
-			listener.onDiscovery(event);
+	/**
+	 * Queue an event, coalescing it with any event for the same discoverable that has not been sent
+	 * yet.
+	 */
+	synchronized void queueEvent(DiscoveryEvent event) {
+		String sessionId = event.getDiscoverable().getSessionId();
+		DiscoveryEvent pending = pendingEvents.get(sessionId);
+		if (pending == null) {
+			if (pendingEvents.isEmpty()) {
+				firstPendingTime = System.currentTimeMillis();
+			}
+			pendingEvents.put(sessionId, event);
+		} else if (pending.getKind() == Kind.FOUND) {
+			if (event.getKind() == Kind.LOST) {
+				// The listeners never knew about it
+				pendingEvents.remove(sessionId);
+			} else {
+				pendingEvents.put(sessionId, new DiscoveryEvent(Kind.FOUND, event.getDiscoverable()));
+			}
+		} else if (pending.getKind() == Kind.LOST && event.getKind() == Kind.FOUND) {
+			// The listeners still know about the discoverable from before it was lost
+			pendingEvents.put(sessionId, new DiscoveryEvent(Kind.CHANGED, event.getDiscoverable()));
+		} else {
+			pendingEvents.put(sessionId, event);
+		}
+	}
+
+	/**
+	 * @return the time at which the queued events should be sent, or {@link Long#MAX_VALUE} if there
+	 *         are no queued events
+	 */
+	synchronized long getDispatchTime() {
+		return pendingEvents.isEmpty() ? Long.MAX_VALUE : firstPendingTime + DISPATCH_DELAY;
+	}
+
+	/**
+	 * Send the queued events to the listeners. The listeners are called without holding the lock
+	 * of the processor.
+	 */
+	void dispatchEvents() {
+		synchronized (dispatchLock) {
+			List<DiscoveryEvent> events;
+			List<DiscoveryListener> currentListeners;
+			synchronized (this) {
+				if (pendingEvents.isEmpty()) {
+					return;
+				}
+				events = new ArrayList<>(pendingEvents.values());
+				pendingEvents.clear();
+				currentListeners = new ArrayList<>(listeners);
+			}
+			for (DiscoveryListener listener : currentListeners) {
+				listener.onDiscovery(events);
+			}
 		}
 	}
 
@@ -32,7 +32,7 @@
  */
 package org.openjdk.jmc.jdp.client;
 
-import java.util.Collection;
+import java.util.PriorityQueue;
 
 import org.openjdk.jmc.jdp.client.DiscoveryEvent.Kind;
 import org.openjdk.jmc.jdp.client.PacketProcessor.DiscoverableInfo;
@@ -40,6 +40,11 @@ import org.openjdk.jmc.jdp.client.PacketProcessor.DiscoverableInfo;
 /**
  * This package private class prunes packets that have timed out, discovering lost services. This
  * class is responsible for emitting {@link DiscoveryEvent.Type} LOST events.
+ * <p>
+ * The discoverables are kept in a queue ordered by the time they would time out if no more packets
+ * arrived, so that only the discoverables at the head of the queue need to be checked. A
+ * discoverable that has received packets since it was queued is queued again with a new expiry
+ * time, so the queue is not updated for every packet.
  */
 final class Pruner implements Runnable {
 	/**
@@ -64,6 +69,9 @@ final class Pruner implements Runnable {
 
 	private volatile boolean isRunning;
 	private final PacketProcessor processor;
+	// Only accessed when holding the lock of the processor
+	private final PriorityQueue<DiscoverableInfo> expiryQueue = new PriorityQueue<>(
+			(i1, i2) -> Long.compare(i1.expiryTime, i2.expiryTime));
 
 	public Pruner(PacketProcessor processor, int maxHBTime) {
 		this.processor = processor;
@@ -85,23 +93,36 @@ final class Pruner implements Runnable {
 		JDPClient.LOGGER.info("JDP prune thread shutting down!"); //$NON-NLS-1$
 	}
 
-	private void checkPackets() {
+	void checkPackets() {
 		JDPClient.LOGGER.finer("JDP prune checking..."); //$NON-NLS-1$
 		long now = System.currentTimeMillis();
 		synchronized (processor) {
-			Collection<DiscoverableInfo> values = processor.infoMap.values();
-			DiscoverableInfo[] discoverableInfos = values.toArray(new DiscoverableInfo[values.size()]);
-			for (PacketProcessor.DiscoverableInfo info : discoverableInfos) {
-				if (info.heartBeat != 0) {
+			for (DiscoverableInfo info : processor.unscheduled) {
+				info.expiryTime = getExpiryTime(info);
+				expiryQueue.add(info);
+			}
+			processor.unscheduled.clear();
+			DiscoverableInfo info;
+			while ((info = expiryQueue.peek()) != null && info.expiryTime < now) {
+				expiryQueue.poll();
+				long expiryTime = getExpiryTime(info);
+				if (expiryTime < now) {
 					// If we missed a few heart beats, we consider it down.
-					if (now - info.timestamp > (info.heartBeat * HB_MISSED_BEFORE_DOWN)) {
-						remove(info);
-					}
-				} else if ((now - info.timestamp) > maxHBTime) {
 					remove(info);
+				} else {
+					info.expiryTime = expiryTime;
+					expiryQueue.add(info);
 				}
 			}
 		}
+		processor.dispatchEvents();
+	}
+
+	private long getExpiryTime(DiscoverableInfo info) {
+		if (info.heartBeat != 0) {
+			return info.timestamp + (long) (info.heartBeat * HB_MISSED_BEFORE_DOWN);
+		}
+		return info.timestamp + maxHBTime;
 	}
 
 	/**
@@ -111,7 +132,7 @@ final class Pruner implements Runnable {
 	private void remove(DiscoverableInfo info) {
 		processor.infoMap.remove(info.packet.getSessionId());
 		JDPClient.LOGGER.fine("Lost " + info.packet); //$NON-NLS-1$
-		processor.fireEvent(new DiscoveryEvent(Kind.LOST, info.packet));
+		processor.queueEvent(new DiscoveryEvent(Kind.LOST, info.packet));
 	}
 
 	public void stop() {
@@ -54,17 +54,20 @@ public final class JDPPacket implements Discoverable {
 	private static final byte[] MAGIC = {(byte) 0xC0, (byte) 0xFF, (byte) 0xEE, (byte) 0x42};
 	private final Map<String, String> decoded;
 	private final byte[] encoded;
+	private final int contentHash;
 	private final String sessionId;
 
 	public JDPPacket(Map<String, String> discoveryData) {
 		decoded = discoveryData;
 		encoded = encode(discoveryData);
+		contentHash = hash(encoded, 0, encoded.length);
 		sessionId = decoded.get(KEY_DISCOVERABLE_ID);
 	}
 
 	public JDPPacket(byte[] data) throws CodingException {
 		decoded = decode(data);
 		encoded = data;
+		contentHash = hash(encoded, 0, encoded.length);
 		sessionId = decoded.get(KEY_DISCOVERABLE_ID);
 	}
 
@@ -82,6 +85,33 @@ public final class JDPPacket implements Discoverable {
 		return encoded;
 	}
 
+	/**
+	 * @return the hash of the encoded packet, as computed by {@link #hash(byte[], int, int)}
+	 */
+	public int getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * Computes the hash of an encoded packet. Received data with a hash that differs from the
+	 * {@link #getContentHash() content hash} of a packet does not need to be compared with it.
+	 *
+	 * @param data
+	 *            the buffer holding the encoded packet
+	 * @param offset
+	 *            the start of the packet in the buffer
+	 * @param length
+	 *            the length of the packet
+	 * @return the hash of the encoded packet
+	 */
+	public static int hash(byte[] data, int offset, int length) {
+		int hash = 1;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + data[i];
+		}
+		return hash;
+	}
+
 	private static byte[] encode(Map<String, String> discoveryData) throws CodingException {
 		// First generate the content
 		ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.collection.CardinalitySketch;
+import org.openjdk.jmc.common.collection.QuantileSketch;
+import org.openjdk.jmc.common.collection.TopKSketch;
+
+public class SketchTest {
+
+	@Test
+	public void testExactCardinality() {
+		CardinalitySketch<Integer> sketch = new CardinalitySketch<>();
+		for (int i = 0; i < 3000; i++) {
+			sketch.add(i % 1000);
+		}
+		assertTrue(sketch.isExact());
+		assertEquals(1000, sketch.getCount());
+	}
+
+	@Test
+	public void testEstimatedCardinality() {
+		CardinalitySketch<Long> merged = new CardinalitySketch<>();
+		for (int part = 0; part < 4; part++) {
+			CardinalitySketch<Long> sketch = new CardinalitySketch<>();
+			for (long i = 0; i < 100000; i++) {
+				// Every part sees half of the values of the previous part
+				sketch.add(i + part * 50000);
+			}
+			assertFalse(sketch.isExact());
+			assertEquals(100000, sketch.getCount(), 100000 * 0.03);
+			merged.merge(sketch);
+		}
+		assertEquals(250000, merged.getCount(), 250000 * 0.03);
+	}
+
+	@Test
+	public void testMergeExactIntoEstimate() {
+		CardinalitySketch<Integer> small = new CardinalitySketch<>();
+		CardinalitySketch<Integer> large = new CardinalitySketch<>();
+		for (int i = 0; i < 10; i++) {
+			small.add(-1 - i);
+		}
+		for (int i = 0; i < 20000; i++) {
+			large.add(i);
+		}
+		small.merge(large);
+		assertFalse(small.isExact());
+		assertEquals(20010, small.getCount(), 20010 * 0.03);
+	}
+
+	@Test
+	public void testExactTopK() {
+		TopKSketch<String> sketch = new TopKSketch<>(10);
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j <= i; j++) {
+				sketch.add("v" + i);
+			}
+		}
+		assertTrue(sketch.isExact());
+		List<TopKSketch.Entry<String>> top = sketch.getTop(3);
+		assertEquals(3, top.size());
+		assertEquals("v9", top.get(0).getValue());
+		assertEquals(10, top.get(0).getCount());
+		assertEquals("v7", top.get(2).getValue());
+		assertEquals(0, top.get(2).getError());
+		assertEquals(55, sketch.getTotalCount());
+	}
+
+	@Test
+	public void testHeavyHittersWithEvictions() {
+		Random random = new Random(4711);
+		TopKSketch<Integer> merged = new TopKSketch<>(50);
+		int[] heavyCounts = new int[3];
+		for (int part = 0; part < 3; part++) {
+			TopKSketch<Integer> sketch = new TopKSketch<>(50);
+			for (int i = 0; i < 20000; i++) {
+				int value;
+				if (i % 10 < 3) {
+					value = i % 10;
+					heavyCounts[value]++;
+				} else {
+					value = 100 + random.nextInt(10000);
+				}
+				sketch.add(value);
+			}
+			assertFalse(sketch.isExact());
+			merged.merge(sketch);
+		}
+		List<TopKSketch.Entry<Integer>> top = merged.getTop(3);
+		for (TopKSketch.Entry<Integer> entry : top) {
+			int value = entry.getValue();
+			assertTrue(value < 3);
+			assertTrue(entry.getCount() >= heavyCounts[value]);
+			assertTrue(entry.getCount() - entry.getError() <= heavyCounts[value]);
+		}
+		assertEquals(60000, merged.getTotalCount());
+	}
+
+	@Test
+	public void testQuantiles() {
+		Random random = new Random(4711);
+		double[] values = new double[30000];
+		QuantileSketch merged = new QuantileSketch();
+		for (int part = 0; part < 3; part++) {
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = 0; i < 10000; i++) {
+				// Log-normal values spanning several orders of magnitude, with some negative values
+				double value = Math.exp(random.nextGaussian() * 3) * (i % 20 == 0 ? -1 : 1);
+				values[part * 10000 + i] = value;
+				sketch.add(value);
+			}
+			merged.merge(sketch);
+		}
+		Arrays.sort(values);
+		assertEquals(30000, merged.getCount());
+		assertEquals(values[0], merged.getQuantile(0), 0);
+		assertEquals(values[values.length - 1], merged.getQuantile(1), 0);
+		for (double quantile : new double[] {0.01, 0.1, 0.5, 0.9, 0.99, 0.999}) {
+			double expected = values[(int) (quantile * (values.length - 1))];
+			assertEquals(expected, merged.getQuantile(quantile),
+					Math.abs(expected) * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+		}
+	}
+
+	@Test
+	public void testQuantilesOverManyMagnitudes() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.add(0);
+		for (int exponent = -300; exponent <= 300; exponent++) {
+			sketch.add(Math.pow(10, exponent));
+		}
+		assertEquals(602, sketch.getCount());
+		assertEquals(0, sketch.getQuantile(0), 0);
+		assertEquals(1e300, sketch.getQuantile(1), 1e300 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+		// The buckets closest to zero are collapsed, but the high quantiles keep their accuracy
+		assertEquals(1e290, sketch.getQuantile(591.0 / 601), 1e290 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+		assertTrue(sketch.getQuantile(0.5) > 1e0);
+	}
+}
@@ -32,9 +32,12 @@
  */
 package org.openjdk.jmc.common.test.item;
 
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.openjdk.jmc.common.collection.TopKSketch;
 import org.openjdk.jmc.common.item.Aggregators;
 import org.openjdk.jmc.common.item.Aggregators.AdvancedMaxAggregator;
 import org.openjdk.jmc.common.item.Aggregators.AdvancedMinAggregator;
@@ -210,4 +213,32 @@ public class AggregatorTest extends MCTestCase {
 	public static void main(String[] args) {
 		System.out.println(MockCollections.generateFullPrecisionString(MockCollections.generateNumberArray(400, 999)));
 	}
+
+	@Test
+	public void testApproximateCountDistinct() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(400, 999));
+		IQuantity count = items.getAggregate(
+				Aggregators.approximateCountDistinct("distinct", null, MockAttributes.INDEX_VALUE));
+		Assert.assertEquals(400, count.longValue());
+	}
+
+	@Test
+	public void testTopK() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(80, 999));
+		List<TopKSketch.Entry<IQuantity>> top = items.getAggregate(Aggregators.topK(MockAttributes.INDEX_VALUE, 5));
+		Assert.assertEquals(5, top.size());
+		for (TopKSketch.Entry<IQuantity> entry : top) {
+			Assert.assertEquals(1, entry.getCount());
+			Assert.assertEquals(0, entry.getError());
+		}
+	}
+
+	@Test
+	public void testQuantileAggregator() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(400, 999));
+		IQuantity median = items.getAggregate(Aggregators.quantile(MockAttributes.INDEX_VALUE, 0.5));
+		Assert.assertEquals(199.5, median.doubleValue(), 199.5 * 0.01);
+		IQuantity max = items.getAggregate(Aggregators.quantile(MockAttributes.INDEX_VALUE, 1));
+		Assert.assertEquals(399, max.doubleValue(), 0);
+	}
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.item;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.HashAggregation;
+import org.openjdk.jmc.common.item.HashAggregation.Group;
+import org.openjdk.jmc.common.item.IAccessorFactory;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.test.MCTestCase;
+import org.openjdk.jmc.common.test.mock.item.MockAggregators;
+import org.openjdk.jmc.common.test.mock.item.MockAttributes;
+import org.openjdk.jmc.common.test.mock.item.MockCollections;
+import org.openjdk.jmc.common.unit.IQuantity;
+
+@SuppressWarnings("nls")
+public class HashAggregationTest extends MCTestCase {
+	private final static double EPSILON = 1e-9;
+	private final static int GROUP_COUNT = 7;
+
+	private static final IAccessorFactory<Long> INDEX_MODULO = new IAccessorFactory<Long>() {
+		@Override
+		public <T> IMemberAccessor<Long, T> getAccessor(IType<T> type) {
+			IMemberAccessor<IQuantity, T> accessor = MockAttributes.INDEX_VALUE.getAccessor(type);
+			return item -> accessor.getMember(item).longValue() % GROUP_COUNT;
+		}
+	};
+
+	@Test
+	public void testGroupAggregates() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(10000, 999));
+		IAggregator<IQuantity, ?> count = Aggregators.count();
+		HashAggregation<Long> aggregation = HashAggregation.aggregate(items, INDEX_MODULO,
+				Arrays.asList(MockAggregators.SUM, count));
+
+		Assert.assertEquals(GROUP_COUNT, aggregation.getGroups().size());
+		Assert.assertEquals(10000, aggregation.getItemCount());
+		Set<Long> keys = new HashSet<>();
+		double totalSum = 0;
+		for (Group<Long> group : aggregation.getGroups()) {
+			keys.add(group.getKey());
+			IItemCollection groupItems = group.getItems();
+			Assert.assertEquals(groupItems.getAggregate(count).longValue(), group.getCount());
+			Assert.assertEquals(group.getCount(), group.getValue(count).longValue());
+			Assert.assertEquals(groupItems.getAggregate(MockAggregators.SUM).doubleValue(),
+					group.getValue(MockAggregators.SUM).doubleValue(), EPSILON);
+			totalSum += ((IQuantity) group.getValue(0)).doubleValue();
+		}
+		Assert.assertEquals(GROUP_COUNT, keys.size());
+		double expectedSum = items.getAggregate(MockAggregators.SUM).doubleValue();
+		Assert.assertEquals(expectedSum, totalSum, expectedSum * EPSILON);
+	}
+
+	@Test
+	public void testRetainedItems() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(10000, 999));
+		IAggregator<IQuantity, ?> count = Aggregators.count();
+		IAggregator<IQuantity, ?> firstIndex = Aggregators.firstValue(MockAttributes.INDEX_VALUE);
+		HashAggregation<Long> aggregation = HashAggregation.aggregate(items, INDEX_MODULO,
+				Arrays.asList(count, firstIndex), true);
+
+		Assert.assertEquals(GROUP_COUNT, aggregation.getGroups().size());
+		long retainedCount = 0;
+		for (Group<Long> group : aggregation.getGroups()) {
+			IItemCollection groupItems = group.getItems();
+			Assert.assertEquals(group.getCount(), groupItems.getAggregate(count).longValue());
+			Assert.assertEquals(group.getKey().longValue(), group.getValue(firstIndex).longValue() % GROUP_COUNT);
+			groupItems.forEach(is -> is.forEach(item -> Assert.assertEquals(group.getKey(),
+					INDEX_MODULO.getAccessor(is.getType()).getMember(item))));
+			retainedCount += groupItems.getAggregate(count).longValue();
+		}
+		Assert.assertEquals(aggregation.getItemCount(), retainedCount);
+	}
+
+	@Test
+	public void testEmptyCollection() {
+		IItemCollection items = MockCollections.getNumberCollection(new Number[0]);
+		HashAggregation<Long> aggregation = HashAggregation.aggregate(items, INDEX_MODULO,
+				Arrays.asList(MockAggregators.SUM));
+		Assert.assertTrue(aggregation.getGroups().isEmpty());
+		Assert.assertEquals(0, aggregation.getItemCount());
+	}
+}
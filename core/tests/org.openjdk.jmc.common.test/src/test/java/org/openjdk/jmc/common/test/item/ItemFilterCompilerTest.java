@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.item;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilterCompiler;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.MCTestCase;
+import org.openjdk.jmc.common.test.mock.item.MockAttributes;
+import org.openjdk.jmc.common.test.mock.item.MockCollections;
+import org.openjdk.jmc.common.test.mock.item.MockNumberType;
+import org.openjdk.jmc.common.test.mock.item.MockStacktraceType;
+import org.openjdk.jmc.common.test.mock.item.MockTypeIDs;
+import org.openjdk.jmc.common.unit.DecimalPrefix;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.LinearUnit;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.common.util.PredicateToolkit;
+
+@SuppressWarnings("nls")
+public class ItemFilterCompilerTest extends MCTestCase {
+	private static final LinearUnit UNITY = UnitLookup.NUMBER_UNITY;
+	private static final LinearUnit KILO = UnitLookup.NUMBER.getUnit(DecimalPrefix.KILO);
+
+	private static final IItemFilter MORE = ItemFilters.more(MockAttributes.DOUBLE_VALUE, UNITY.quantity(500));
+	private static final IItemFilter LESS_KILO = ItemFilters.less(MockAttributes.DOUBLE_VALUE, KILO.quantity(0.75));
+	private static final IItemFilter INDEX_AT_MOST = ItemFilters.lessOrEqual(MockAttributes.INDEX_VALUE,
+			UNITY.quantity(100));
+	private static final IItemFilter INDEX_AT_LEAST = ItemFilters.moreOrEqual(MockAttributes.INDEX_VALUE,
+			UNITY.quantity(100));
+	private static final IItemFilter INDEX_EQUALS = ItemFilters.equals(MockAttributes.INDEX_VALUE,
+			UNITY.quantity(42));
+
+	@Test
+	public void testSameResultAsFilter() {
+		List<IItemFilter> filters = Arrays.asList(MORE, LESS_KILO, INDEX_AT_MOST, INDEX_AT_LEAST, INDEX_EQUALS,
+				ItemFilters.and(MORE, LESS_KILO), ItemFilters.or(INDEX_EQUALS, ItemFilters.and(MORE, INDEX_AT_MOST)),
+				ItemFilters.not(ItemFilters.or(MORE, INDEX_AT_LEAST)), ItemFilters.not(ItemFilters.not(LESS_KILO)),
+				ItemFilters.and(ItemFilters.and(MORE, ItemFilters.all()), ItemFilters.or(INDEX_EQUALS, LESS_KILO)),
+				ItemFilters.or(ItemFilters.none(), ItemFilters.and(INDEX_AT_LEAST, ItemFilters.not(MORE))));
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(2000, 1000));
+		for (IItemIterable iterable : items) {
+			for (IItemFilter filter : filters) {
+				Predicate<IItem> expected = filter.getPredicate(iterable.getType());
+				Predicate<IItem> compiled = ItemFilterCompiler.compile(filter, iterable.getType());
+				for (IItem item : iterable) {
+					Assert.assertEquals(filter.toString(), expected.test(item), compiled.test(item));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testConstantFolding() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(10, 1000));
+		for (IItemIterable iterable : items) {
+			Assert.assertTrue(PredicateToolkit.isFalseGuaranteed(
+					ItemFilterCompiler.compile(ItemFilters.and(MORE, ItemFilters.none()), iterable.getType())));
+			Assert.assertTrue(PredicateToolkit.isTrueGuaranteed(
+					ItemFilterCompiler.compile(ItemFilters.or(LESS_KILO, ItemFilters.all()), iterable.getType())));
+			Assert.assertTrue(PredicateToolkit.isFalseGuaranteed(
+					ItemFilterCompiler.compile(ItemFilters.and(ItemFilters.type("other"), MORE), iterable.getType())));
+			Assert.assertTrue(PredicateToolkit.isTrueGuaranteed(ItemFilterCompiler.compile(
+					ItemFilters.and(ItemFilters.type(MockTypeIDs.MOCK_NUMBER_TYPE), ItemFilters.all()),
+					iterable.getType())));
+			Assert.assertTrue(PredicateToolkit.isFalseGuaranteed(
+					ItemFilterCompiler.compile(ItemFilters.not(ItemFilters.all()), iterable.getType())));
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Test
+	public void testFilterAggregatorTypes() {
+		IType<IItem> numberType = (IType) new MockNumberType();
+		IType<IItem> otherNumberType = (IType) new MockNumberType();
+		IType<IItem> stacktraceType = (IType) new MockStacktraceType();
+		IAggregator<IQuantity, ?> aggregator = Aggregators.filter(Aggregators.count(),
+				ItemFilters.and(ItemFilters.type(MockTypeIDs.MOCK_NUMBER_TYPE), MORE));
+		// The compiled filter must follow the type, also when the same type is seen again
+		Assert.assertTrue(aggregator.acceptType(numberType));
+		Assert.assertFalse(aggregator.acceptType(stacktraceType));
+		Assert.assertTrue(aggregator.acceptType(numberType));
+		Assert.assertTrue(aggregator.acceptType(otherNumberType));
+		Assert.assertFalse(aggregator.acceptType(stacktraceType));
+
+		Number[] values = MockCollections.generateNumberArray(2000, 1000);
+		long expected = 0;
+		for (Number value : values) {
+			if (value.doubleValue() > 500) {
+				expected++;
+			}
+		}
+		IItemCollection items = MockCollections.getNumberCollection(values);
+		Assert.assertEquals(expected, items.getAggregate(aggregator).longValue());
+		Assert.assertEquals(expected, items.getAggregate(aggregator).longValue());
+	}
+}
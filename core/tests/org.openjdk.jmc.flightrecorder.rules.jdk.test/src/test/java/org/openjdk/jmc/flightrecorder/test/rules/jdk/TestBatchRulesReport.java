@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test.rules.jdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.test.TestToolkit;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.report.BatchRulesEvaluator;
+import org.openjdk.jmc.flightrecorder.rules.report.JfrRulesReport;
+import org.openjdk.jmc.flightrecorder.rules.report.html.JfrHtmlRulesReport;
+
+/**
+ * Tests that batch evaluation writes one report for each recording, also when several recordings
+ * have the same file name.
+ */
+@SuppressWarnings("nls")
+public class TestBatchRulesReport {
+	private static final String RECORDING = "flight_recording_hidden.jfr";
+	private static final String OTHER_RECORDING = "parallel-gc_cpu.jfr";
+
+	@Test
+	public void testHtmlReports() throws Exception {
+		File directory = Files.createTempDirectory("batchReport").toFile();
+		List<File> recordings = createRecordings(directory);
+		File outputDirectory = new File(directory, "html");
+
+		BatchRulesEvaluator.Summary summary = JfrHtmlRulesReport.createReports(outputDirectory, recordings);
+		assertEquals(3, summary.getRecordingCount());
+		assertEquals(0, summary.getFailedRecordingCount());
+		assertReports(outputDirectory, "recording-1.jfr.html", "recording-2.jfr.html", "other.jfr.html");
+	}
+
+	@Test
+	public void testXmlReports() throws Exception {
+		File directory = Files.createTempDirectory("batchReport").toFile();
+		List<File> recordings = createRecordings(directory);
+		File outputDirectory = new File(directory, "xml");
+
+		String[] fileNames = recordings.stream().map(File::getPath).toArray(String[]::new);
+		BatchRulesEvaluator.Summary summary = JfrRulesReport.writeReports("xml", Severity.NA, false, false,
+				outputDirectory, fileNames);
+		assertEquals(3, summary.getRecordingCount());
+		assertEquals(0, summary.getFailedRecordingCount());
+		assertReports(outputDirectory, "recording-1.jfr.xml", "recording-2.jfr.xml", "other.jfr.xml");
+		// Each report is for its own recording
+		assertTrue(read(new File(outputDirectory, "recording-1.jfr.xml")).contains(recordings.get(0).getPath()));
+		assertTrue(read(new File(outputDirectory, "recording-2.jfr.xml")).contains(recordings.get(1).getPath()));
+		assertTrue(read(new File(outputDirectory, "other.jfr.xml")).contains(recordings.get(2).getPath()));
+	}
+
+	@Test
+	public void testReportNames() {
+		List<File> recordings = Arrays.asList(new File("a", "rec.jfr"), new File("b", "rec.jfr"),
+				new File("c", "rec-2.jfr"), new File("d", "rec"), new File("e", "rec"));
+		Map<File, String> names = BatchRulesEvaluator.getReportNames(recordings, "html");
+		assertEquals("rec-1.jfr.html", names.get(recordings.get(0)));
+		// rec-2.jfr.html is already used by the third recording
+		assertEquals("rec-3.jfr.html", names.get(recordings.get(1)));
+		assertEquals("rec-2.jfr.html", names.get(recordings.get(2)));
+		assertEquals("rec-4.html", names.get(recordings.get(3)));
+		assertEquals("rec-5.html", names.get(recordings.get(4)));
+	}
+
+	/**
+	 * Two recordings with the same name in different directories, and one other recording.
+	 */
+	private static List<File> createRecordings(File directory) throws IOException {
+		List<File> recordings = new ArrayList<>();
+		recordings.add(copy(RECORDING, new File(directory, "first"), "recording.jfr"));
+		recordings.add(copy(OTHER_RECORDING, new File(directory, "second"), "recording.jfr"));
+		recordings.add(copy(OTHER_RECORDING, new File(directory, "first"), "other.jfr"));
+		return recordings;
+	}
+
+	private static File copy(String resource, File directory, String name) throws IOException {
+		directory.mkdirs();
+		File file = new File(directory, name);
+		try (InputStream in = TestToolkit
+				.getNamedResource(TestBatchRulesReport.class, TestRulesWithJfr.RECORDINGS_DIR, resource).open()) {
+			IOToolkit.write(in, file, false);
+		}
+		return file;
+	}
+
+	private static void assertReports(File outputDirectory, String ... expectedNames) {
+		Set<String> names = new HashSet<>(Arrays.asList(outputDirectory.list()));
+		assertEquals(new HashSet<>(Arrays.asList(expectedNames)), names);
+		for (String name : names) {
+			assertTrue(name, new File(outputDirectory, name).length() > 0);
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
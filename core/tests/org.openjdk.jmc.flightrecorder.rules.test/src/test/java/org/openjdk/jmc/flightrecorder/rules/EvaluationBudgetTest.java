@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.rules.util.EvaluationBudget;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class EvaluationBudgetTest {
+
+	/**
+	 * A rule that counts the number of one second windows in the recording. If there is a budget,
+	 * then the rule waits for the time limit to pass before it starts counting.
+	 */
+	private static class WindowCountRule extends AbstractRule {
+		private final EvaluationBudget budget;
+
+		WindowCountRule(EvaluationBudget budget) {
+			super("WindowCount", "Window Count", "test", Collections.emptyList(), Collections.emptyList(),
+					Collections.emptyMap());
+			this.budget = budget;
+		}
+
+		@Override
+		protected IResult getResult(IItemCollection items, IPreferenceValueProvider vp, IResultValueProvider rp) {
+			while (budget != null && !budget.isTimeExceeded()) {
+				Thread.yield();
+			}
+			int[] windows = new int[1];
+			SlidingWindowToolkit.slidingWindowUnordered(new SlidingWindowToolkit.IUnorderedWindowVisitor() {
+				@Override
+				public void visitWindow(IItemCollection items, IQuantity startTime, IQuantity endTime) {
+					windows[0]++;
+				}
+
+				@Override
+				public boolean shouldContinue() {
+					return true;
+				}
+			}, items, UnitLookup.SECOND.quantity(1), UnitLookup.SECOND.quantity(1));
+			return ResultBuilder.createFor(this, vp).setSeverity(Severity.OK).setSummary(windows[0] + " windows")
+					.addResult(TypedResult.SCORE, UnitLookup.NUMBER_UNITY.quantity(windows[0])).build();
+		}
+	}
+
+	/**
+	 * A rule that counts the items in the recording. If there is a budget, then the rule waits for
+	 * the time limit to pass before it starts counting.
+	 */
+	private static class ItemCountRule extends AbstractRule {
+		private final EvaluationBudget budget;
+
+		ItemCountRule(EvaluationBudget budget) {
+			super("ItemCount", "Item Count", "test", Collections.emptyList(), Collections.emptyList(),
+					Collections.emptyMap());
+			this.budget = budget;
+		}
+
+		@Override
+		protected IResult getResult(IItemCollection items, IPreferenceValueProvider vp, IResultValueProvider rp) {
+			while (budget != null && !budget.isTimeExceeded()) {
+				Thread.yield();
+			}
+			long count = 0;
+			for (IItemIterable iterable : items) {
+				for (Iterator<IItem> iterator = iterable.iterator(); iterator.hasNext(); iterator.next()) {
+					count++;
+				}
+			}
+			return ResultBuilder.createFor(this, vp).setSeverity(Severity.OK).setSummary(count + " items")
+					.addResult(TypedResult.SCORE, UnitLookup.NUMBER_UNITY.quantity(count)).build();
+		}
+	}
+
+	private static IItemCollection items;
+
+	@BeforeClass
+	public static void loadRecording() throws IOException, CouldNotLoadRecordingException {
+		// Load before creating any budgets, so that the loading time is not part of the budgets
+		items = RecordingToolkit.getNamedRecording("8u60.jfr");
+	}
+
+	private static IResult evaluate(IRule rule, EvaluationBudget budget)
+			throws InterruptedException, ExecutionException {
+		Map<IRule, Future<IResult>> results = RulesToolkit.evaluateParallel(Collections.singletonList(rule), items,
+				null, 1, budget);
+		return results.get(rule).get();
+	}
+
+	@Test
+	public void testWithoutBudget() throws Exception {
+		IResult result = evaluate(new WindowCountRule(null), null);
+		assertTrue(result.getResult(TypedResult.SCORE).longValue() > 1);
+		assertNull(result.getResult(EvaluationBudget.PARTIAL_RESULT));
+	}
+
+	@Test
+	public void testPartialResult() throws Exception {
+		EvaluationBudget budget = new EvaluationBudget(UnitLookup.SECOND.quantity(2));
+		IResult result = evaluate(new WindowCountRule(budget), budget);
+		assertEquals(Severity.OK, result.getSeverity());
+		assertEquals(1, result.getResult(TypedResult.SCORE).longValue());
+		assertEquals(Boolean.TRUE, result.getResult(EvaluationBudget.PARTIAL_RESULT));
+		assertTrue(result.getSummary().startsWith("1 windows"));
+	}
+
+	@Test
+	public void testBudgetExhaustedBeforeStart() throws Exception {
+		EvaluationBudget budget = new EvaluationBudget(UnitLookup.SECOND.quantity(0));
+		IResult result = evaluate(new WindowCountRule(null), budget);
+		assertEquals(Severity.NA, result.getSeverity());
+		assertEquals(0, budget.getStartedRuleCount());
+		assertEquals(1, budget.getSkippedRuleCount());
+	}
+
+	@Test
+	public void testItemIterationStops() throws Exception {
+		long total = evaluate(new ItemCountRule(null), null).getResult(TypedResult.SCORE).longValue();
+		EvaluationBudget budget = new EvaluationBudget(UnitLookup.SECOND.quantity(2));
+		IResult result = evaluate(new ItemCountRule(budget), budget);
+		assertTrue(result.getResult(TypedResult.SCORE).longValue() < total);
+		assertEquals(Boolean.TRUE, result.getResult(EvaluationBudget.PARTIAL_RESULT));
+	}
+
+	@Test
+	public void testProgress() throws Exception {
+		EvaluationBudget budget = new EvaluationBudget(UnitLookup.MINUTE.quantity(10));
+		IResult result = evaluate(new ItemCountRule(null), budget);
+		assertNull(result.getResult(EvaluationBudget.PARTIAL_RESULT));
+		assertEquals(1, budget.getStartedRuleCount());
+		assertEquals(1, budget.getCompletedRuleCount());
+		assertEquals(0, budget.getPartialRuleCount());
+		assertEquals(0, budget.getSkippedRuleCount());
+
+		budget.stop();
+		assertEquals(Severity.NA, evaluate(new ItemCountRule(null), budget).getSeverity());
+		assertEquals(1, budget.getStartedRuleCount());
+		assertEquals(1, budget.getSkippedRuleCount());
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemConsumerFactory;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.mock.item.MockAttributes;
+import org.openjdk.jmc.common.test.mock.item.MockItem;
+import org.openjdk.jmc.common.test.mock.item.MockNumberType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.internal.EventArray;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.parser.ParserStats;
+
+/**
+ * Tests that event types that are large enough to be aggregated in parallel give the same results
+ * as when they are aggregated sequentially.
+ */
+@SuppressWarnings("nls")
+public class EventCollectionTest {
+	private static final String SINGLE_THREADED_AGGREGATION_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder."
+			+ "aggregation.singlethreaded";
+	// Well above the threshold for parallel aggregation
+	private static final int EVENT_COUNT = 100000;
+	private static final int DISTINCT_VALUES = 1000;
+
+	private static class CountingConsumer implements IItemConsumer<CountingConsumer> {
+		long count;
+
+		@Override
+		public void consume(IItem item) {
+			count++;
+		}
+
+		@Override
+		public CountingConsumer merge(CountingConsumer other) {
+			count += other.count;
+			return this;
+		}
+	}
+
+	@Test
+	public void testParallelAggregation() {
+		IItemCollection events = createCollection();
+		assertSameAggregates(events);
+		assertSameAggregates(events.apply(ItemFilters.more(MockAttributes.DOUBLE_VALUE,
+				UnitLookup.NUMBER_UNITY.quantity(DISTINCT_VALUES / 4))));
+	}
+
+	@Test
+	public void testParallelConsumers() {
+		IItemCollection events = createCollection();
+		AtomicInteger consumers = new AtomicInteger();
+		IAggregator<CountingConsumer, CountingConsumer> aggregator = Aggregators
+				.forConsumer(new IItemConsumerFactory<CountingConsumer>() {
+
+					@Override
+					public boolean acceptType(IType<IItem> type) {
+						return true;
+					}
+
+					@Override
+					public CountingConsumer newItemConsumer(IType<IItem> itemType) {
+						consumers.incrementAndGet();
+						return new CountingConsumer();
+					}
+				});
+		assertEquals(EVENT_COUNT, aggregate(events, aggregator, false).count);
+		assertTrue("Expected more than one consumer, got " + consumers.get(), consumers.get() > 1);
+		consumers.set(0);
+		assertEquals(EVENT_COUNT, aggregate(events, aggregator, true).count);
+		assertEquals(1, consumers.get());
+	}
+
+	private static void assertSameAggregates(IItemCollection events) {
+		assertSameAggregate(events, Aggregators.count());
+		assertSameAggregate(events, Aggregators.sum(MockAttributes.DOUBLE_VALUE));
+		assertSameAggregate(events, Aggregators.min(MockAttributes.DOUBLE_VALUE));
+		assertSameAggregate(events, Aggregators.max(MockAttributes.DOUBLE_VALUE));
+		assertSameAggregate(events, Aggregators.avg(MockAttributes.DOUBLE_VALUE));
+		assertSameAggregate(events, Aggregators.distinct(MockAttributes.DOUBLE_VALUE));
+		// The first of several items with the same min or max value must be found in both cases
+		assertSame(aggregate(events, Aggregators.itemWithMin(MockAttributes.DOUBLE_VALUE), true),
+				aggregate(events, Aggregators.itemWithMin(MockAttributes.DOUBLE_VALUE), false));
+		assertSame(aggregate(events, Aggregators.itemWithMax(MockAttributes.DOUBLE_VALUE), true),
+				aggregate(events, Aggregators.itemWithMax(MockAttributes.DOUBLE_VALUE), false));
+	}
+
+	private static <V> void assertSameAggregate(IItemCollection events, IAggregator<V, ?> aggregator) {
+		assertEquals(aggregator.getName(), aggregate(events, aggregator, true),
+				aggregate(events, aggregator, false));
+	}
+
+	private static <V> V aggregate(IItemCollection events, IAggregator<V, ?> aggregator, boolean singleThreaded) {
+		String oldValue = System.getProperty(SINGLE_THREADED_AGGREGATION_PROPERTY_KEY);
+		System.setProperty(SINGLE_THREADED_AGGREGATION_PROPERTY_KEY, Boolean.toString(singleThreaded));
+		try {
+			return events.getAggregate(aggregator);
+		} finally {
+			if (oldValue == null) {
+				System.clearProperty(SINGLE_THREADED_AGGREGATION_PROPERTY_KEY);
+			} else {
+				System.setProperty(SINGLE_THREADED_AGGREGATION_PROPERTY_KEY, oldValue);
+			}
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static IItemCollection createCollection() {
+		IType<IItem> type = (IType) new MockNumberType();
+		Random random = new Random(4711);
+		IItem[] items = new IItem[EVENT_COUNT];
+		for (int i = 0; i < items.length; i++) {
+			// Integer values keep the sums exact regardless of the order of addition
+			items[i] = new MockItem<Number, MockNumberType>(random.nextInt(DISTINCT_VALUES), type, (long) i);
+		}
+		EventArray array = new EventArray(items, type, new String[0]);
+		return EventCollection.build(new EventArrays(new EventArray[] {array},
+				Collections.<IRange<IQuantity>> emptySet(), new ParserStats()));
+	}
+}
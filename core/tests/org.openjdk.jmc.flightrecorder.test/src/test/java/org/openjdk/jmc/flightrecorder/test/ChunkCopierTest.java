@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier.ChunkHeader;
+
+/**
+ * Tests that JFR files can be concatenated, split and filtered by copying chunks.
+ */
+@SuppressWarnings("nls")
+public class ChunkCopierTest {
+	private static final String TWO_CHUNKS = "flush_metadata.jfr";
+	private static final String ONE_CHUNK = "9u0.jfr";
+
+	@Test
+	public void testReadChunkHeaders() throws IOException {
+		File file = copyRecording(TWO_CHUNKS);
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(file);
+		assertEquals(2, chunks.size());
+		assertEquals(0, chunks.get(0).getOffset());
+		assertEquals(chunks.get(0).getSize(), chunks.get(1).getOffset());
+		assertEquals(file.length(), chunks.get(1).getOffset() + chunks.get(1).getSize());
+		assertTrue(chunks.get(0).hasTimeRange());
+		assertTrue(chunks.get(0).getStartTimeNanos() <= chunks.get(1).getStartTimeNanos());
+	}
+
+	@Test
+	public void testConcatenate() throws IOException, CouldNotLoadRecordingException {
+		File first = copyRecording(TWO_CHUNKS);
+		File second = copyRecording(ONE_CHUNK);
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(Arrays.asList(first, second));
+		assertEquals(3, chunks.size());
+
+		File target = RecordingToolkit.createResultFile("chunkCopierTest", "concat.jfr", true);
+		ChunkCopier.copyChunks(ChunkCopier.sortByStartTime(chunks), target);
+		assertEquals(first.length() + second.length(), target.length());
+		assertEquals(count(first) + count(second), count(target));
+		assertEquals(3, ChunkCopier.readChunkHeaders(target).size());
+	}
+
+	@Test
+	public void testSplit() throws IOException, CouldNotLoadRecordingException {
+		File file = copyRecording(TWO_CHUNKS);
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(file);
+		List<List<ChunkHeader>> groups = ChunkCopier.groupBySize(chunks, 1);
+		assertEquals(2, groups.size());
+
+		Map<File, List<ChunkHeader>> targets = new LinkedHashMap<>();
+		for (int i = 0; i < groups.size(); i++) {
+			File target = RecordingToolkit.createResultFile("chunkCopierTest", "split" + i + ".jfr", true);
+			targets.put(target, groups.get(i));
+		}
+		ChunkCopier.copyChunks(targets);
+		long count = 0;
+		for (File target : targets.keySet()) {
+			assertEquals(1, ChunkCopier.readChunkHeaders(target).size());
+			count += count(target);
+		}
+		assertEquals(count(file), count);
+
+		assertEquals(1, ChunkCopier.groupBySize(chunks, file.length()).size());
+	}
+
+	@Test
+	public void testTimeRanges() throws IOException {
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(copyRecording(TWO_CHUNKS));
+		ChunkHeader last = chunks.get(1);
+		List<ChunkHeader> selected = ChunkCopier.filterByTime(chunks, last.getEndTimeNanos(),
+				last.getEndTimeNanos() + 1);
+		assertEquals(Collections.singletonList(last), selected);
+		assertEquals(chunks, ChunkCopier.filterByTime(chunks, Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(0, ChunkCopier.filterByTime(chunks, Long.MIN_VALUE, chunks.get(0).getStartTimeNanos()).size());
+
+		Map<Long, List<ChunkHeader>> groups = ChunkCopier.groupByTime(chunks, Long.MAX_VALUE / 2);
+		assertEquals(1, groups.size());
+		assertEquals(chunks, groups.values().iterator().next());
+		List<ChunkHeader> grouped = new ArrayList<>();
+		for (List<ChunkHeader> group : ChunkCopier.groupByTime(chunks, 1).values()) {
+			assertEquals(1, group.size());
+			grouped.addAll(group);
+		}
+		assertEquals(chunks, grouped);
+	}
+
+	private static File copyRecording(String name) throws IOException {
+		File file = RecordingToolkit.createResultFile("chunkCopierTest", name, true);
+		try (InputStream in = IOToolkit.openUncompressedStream(RecordingToolkit.getNamedRecordingResource(name));
+				OutputStream out = new FileOutputStream(file)) {
+			IOToolkit.copy(in, out);
+		}
+		return file;
+	}
+
+	private static long count(File file) throws IOException, CouldNotLoadRecordingException {
+		IItemCollection events = JfrLoaderToolkit.loadEvents(file);
+		return events.getAggregate(Aggregators.count()).longValue();
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCStackTrace;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier;
+import org.openjdk.jmc.flightrecorder.util.ChunkCopier.ChunkHeader;
+import org.openjdk.jmc.flightrecorder.util.ChunkRewriter;
+
+/**
+ * Tests that event types can be removed from JFR files without parsing the events.
+ */
+@SuppressWarnings("nls")
+public class ChunkRewriterTest {
+	private static final String TWO_CHUNKS = "flush_metadata.jfr";
+	private static final String INCREMENTAL_METADATA = "flush_incremental_metadata.jfr";
+	private static final String OLD_VERSION = "9u0.jfr";
+	// A recording with checkpoint events that are flagged as other checkpoint types than flush
+	private static final String CHECKPOINT_TYPES = "hs_err_jdk-16.jfr";
+	private static final Set<String> REMOVED_TYPES = new HashSet<>(
+			Arrays.asList("jdk.ObjectAllocationSample", "jdk.ObjectAllocationInNewTLAB", "jdk.InitialEnvironmentVariable",
+					"jdk.InitialSystemProperty", "jdk.ExecutionSample"));
+	private static final Predicate<String> KEEP_TYPE = type -> !REMOVED_TYPES.contains(type);
+
+	@Test
+	public void testKeepAll() throws IOException, CouldNotLoadRecordingException {
+		for (String name : Arrays.asList(TWO_CHUNKS, INCREMENTAL_METADATA, OLD_VERSION)) {
+			File file = copyRecording(name);
+			File target = rewrite(file, "keepAll.jfr", type -> true, false);
+			assertEquals(name, summarize(file), summarize(target));
+			// Chunks without removed events are transferred as they are
+			assertArrayEquals(name, Files.readAllBytes(file.toPath()), Files.readAllBytes(target.toPath()));
+			assertEquals(name, ChunkCopier.readChunkHeaders(file).size(), ChunkCopier.readChunkHeaders(target).size());
+		}
+	}
+
+	@Test
+	public void testPruneWithoutRemoving() throws IOException, CouldNotLoadRecordingException {
+		for (String name : Arrays.asList(TWO_CHUNKS, INCREMENTAL_METADATA, OLD_VERSION)) {
+			File file = copyRecording(name);
+			File target = rewrite(file, "pruneAll.jfr", type -> true, true);
+			assertEquals(name, summarize(file), summarize(target));
+		}
+	}
+
+	@Test
+	public void testRemoveEventTypes() throws IOException, CouldNotLoadRecordingException {
+		for (String name : Arrays.asList(TWO_CHUNKS, INCREMENTAL_METADATA, OLD_VERSION)) {
+			File file = copyRecording(name);
+			Map<String, Long> expected = summarize(file);
+			boolean removedAny = expected.keySet().removeIf(key -> REMOVED_TYPES.contains(getType(key)));
+			assertTrue(name, removedAny);
+
+			File target = rewrite(file, "remove.jfr", KEEP_TYPE, false);
+			assertEquals(name, expected, summarize(target));
+			File pruned = rewrite(file, "removeAndPrune.jfr", KEEP_TYPE, true);
+			assertEquals(name, expected, summarize(pruned));
+			assertTrue(name, target.length() < file.length());
+			assertTrue(name, pruned.length() < target.length());
+		}
+	}
+
+	@Test
+	public void testKeepCheckpointFlags() throws IOException, CouldNotLoadRecordingException {
+		for (String name : Arrays.asList(CHECKPOINT_TYPES, TWO_CHUNKS, INCREMENTAL_METADATA)) {
+			File file = copyRecording(name);
+			List<Byte> flags = readCheckpointFlags(file);
+			if (name.equals(CHECKPOINT_TYPES)) {
+				assertTrue(name, flags.stream().anyMatch(flag -> flag > 1));
+			}
+			assertEquals(name, flags, readCheckpointFlags(rewrite(file, "flags.jfr", KEEP_TYPE, false)));
+			assertEquals(name, flags, readCheckpointFlags(rewrite(file, "flagsPruned.jfr", KEEP_TYPE, true)));
+		}
+	}
+
+	private static File rewrite(
+		File file, String targetName, Predicate<String> includeEventType, boolean pruneConstants)
+			throws IOException, CouldNotLoadRecordingException {
+		List<ChunkHeader> chunks = ChunkCopier.readChunkHeaders(file);
+		File target = RecordingToolkit.createResultFile("chunkRewriterTest", targetName, true);
+		ChunkRewriter.removeEventTypes(chunks, target, includeEventType, pruneConstants);
+		return target;
+	}
+
+	private static File copyRecording(String name) throws IOException {
+		File file = RecordingToolkit.createResultFile("chunkRewriterTest", name, true);
+		try (InputStream in = IOToolkit.openUncompressedStream(RecordingToolkit.getNamedRecordingResource(name));
+				OutputStream out = new FileOutputStream(file)) {
+			IOToolkit.copy(in, out);
+		}
+		return file;
+	}
+
+	/**
+	 * Read the flag bytes of the checkpoint events of all chunks, following the offsets to the
+	 * previous checkpoint event from the last checkpoint event of each chunk.
+	 */
+	private static List<Byte> readCheckpointFlags(File file) throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		List<Byte> flags = new ArrayList<>();
+		int chunkStart = 0;
+		while (chunkStart < data.limit()) {
+			long chunkSize = data.getLong(chunkStart + 8);
+			long delta = data.getLong(chunkStart + 16);
+			boolean compressedInts = (data.getInt(chunkStart + 64) & 1) != 0;
+			long position = chunkStart;
+			while (delta != 0) {
+				position += delta;
+				data.position((int) position);
+				readInt(data, compressedInts); // size
+				readLong(data, compressedInts); // type
+				readLong(data, compressedInts); // start
+				readLong(data, compressedInts); // duration
+				delta = readLong(data, compressedInts);
+				flags.add(data.get());
+			}
+			chunkStart += chunkSize;
+		}
+		return flags;
+	}
+
+	private static long readInt(ByteBuffer data, boolean compressedInts) {
+		return compressedInts ? readCompressedLong(data) : data.getInt();
+	}
+
+	private static long readLong(ByteBuffer data, boolean compressedInts) {
+		return compressedInts ? readCompressedLong(data) : data.getLong();
+	}
+
+	private static long readCompressedLong(ByteBuffer data) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			byte b = data.get();
+			value += (b & 0x7FL) << (7 * i);
+			if (b >= 0) {
+				return value;
+			}
+		}
+		return value + ((data.get() & 0xFFL) << 56);
+	}
+
+	private static String getType(String key) {
+		return key.substring(0, key.indexOf(' '));
+	}
+
+	/**
+	 * Count the events by type, thread and top frame, to check that the constants referenced by the
+	 * events are intact.
+	 */
+	private static Map<String, Long> summarize(File file) throws IOException, CouldNotLoadRecordingException {
+		IItemCollection events = JfrLoaderToolkit.loadEvents(file);
+		Map<String, Long> counts = new HashMap<>();
+		for (IItemIterable items : events) {
+			IMemberAccessor<IMCThread, IItem> threadAccessor = JfrAttributes.EVENT_THREAD
+					.getAccessor(items.getType());
+			IMemberAccessor<IMCStackTrace, IItem> stackTraceAccessor = JfrAttributes.EVENT_STACKTRACE
+					.getAccessor(items.getType());
+			for (IItem item : items) {
+				StringBuilder key = new StringBuilder(items.getType().getIdentifier());
+				IMCThread thread = threadAccessor == null ? null : threadAccessor.getMember(item);
+				key.append(' ').append(thread == null ? null : thread.getThreadName());
+				IMCStackTrace stackTrace = stackTraceAccessor == null ? null : stackTraceAccessor.getMember(item);
+				if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+					IMCFrame frame = stackTrace.getFrames().get(0);
+					key.append(' ').append(frame.getMethod().getType().getFullName()).append('.')
+							.append(frame.getMethod().getMethodName()).append(':').append(frame.getFrameLineNumber());
+				}
+				counts.merge(key.toString(), 1L, Long::sum);
+			}
+		}
+		assertFalse(counts.isEmpty());
+		return counts;
+	}
+}
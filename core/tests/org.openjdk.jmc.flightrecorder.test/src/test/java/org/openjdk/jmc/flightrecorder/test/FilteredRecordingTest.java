@@ -42,10 +42,16 @@ import java.util.regex.Pattern;
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
 import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
@@ -89,6 +95,64 @@ public class FilteredRecordingTest {
 				"Expected event types matching '" + JVM_INFORMATION_REGEXP + "'");
 	}
 
+	@Test
+	public void testTimeRangeFilter() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			String recordingName = resourceSet.getResource(0).getName();
+			IItemCollection allItems;
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				allItems = JfrLoaderToolkit.loadEvents(recordingStream);
+			}
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for (IItemIterable ii : allItems) {
+				IMemberAccessor<IQuantity, IItem> startAccessor = JfrAttributes.START_TIME.getAccessor(ii.getType());
+				for (IItem item : ii) {
+					long start = startAccessor.getMember(item).clampedLongValueIn(UnitLookup.EPOCH_NS);
+					min = Math.min(min, start);
+					max = Math.max(max, start);
+				}
+			}
+			// Load the middle third of the recording
+			long windowStart = min + (max - min) / 3;
+			long windowEnd = max - (max - min) / 3;
+			long expectedCount = countItemsInRange(allItems, windowStart, windowEnd);
+
+			IOnLoadFilter filter = OnLoadFilters.timeRange(QuantityRange
+					.createWithEnd(UnitLookup.EPOCH_NS.quantity(windowStart), UnitLookup.EPOCH_NS.quantity(windowEnd)));
+			List<IParserExtension> extensions = new ArrayList<>(ParserExtensionRegistry.getParserExtensions());
+			extensions.add(new FilterExtension(filter));
+			IItemCollection filteredItems;
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				filteredItems = JfrLoaderToolkit.loadEvents(recordingStream, extensions);
+			}
+			long filteredCount = 0;
+			for (IItemIterable ii : filteredItems) {
+				filteredCount += ii.getItemCount();
+			}
+			Assert.assertEquals("Unexpected number of events in time range (Recording: " + recordingName + ")",
+					expectedCount, countItemsInRange(filteredItems, windowStart, windowEnd));
+			Assert.assertEquals("Expected only events in time range (Recording: " + recordingName + ")",
+					expectedCount, filteredCount);
+		}
+	}
+
+	private static long countItemsInRange(IItemCollection items, long windowStart, long windowEnd) {
+		long count = 0;
+		for (IItemIterable ii : items) {
+			IMemberAccessor<IQuantity, IItem> startAccessor = JfrAttributes.START_TIME.getAccessor(ii.getType());
+			IMemberAccessor<IQuantity, IItem> endAccessor = JfrAttributes.END_TIME.getAccessor(ii.getType());
+			for (IItem item : ii) {
+				long start = startAccessor.getMember(item).clampedLongValueIn(UnitLookup.EPOCH_NS);
+				long end = endAccessor.getMember(item).clampedLongValueIn(UnitLookup.EPOCH_NS);
+				if (end >= windowStart && start <= windowEnd) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
 	private void checkFilter(
 		IOnLoadFilter onLoadFilter, String typeToCheck, boolean expect, String unexpectedAfterFilterString)
 			throws IOException, CouldNotLoadRecordingException, AssertionError {
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.jdk.JdkTypeIDs;
+import org.openjdk.jmc.flightrecorder.memleak.ReferenceTreeModel;
+import org.openjdk.jmc.flightrecorder.memleak.ReferenceTreeObject;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class ReferenceTreeModelTest {
+	private static final IQuantity ONE_NS = UnitLookup.NANOSECOND.quantity(1);
+
+	@Test
+	public void testRangeQueriesMetadataControl() throws IOException, CouldNotLoadRecordingException {
+		verifyRangeQueries(buildModel("metadata_control.jfr"));
+	}
+
+	@Test
+	public void testRangeQueriesMetadataNew() throws IOException, CouldNotLoadRecordingException {
+		verifyRangeQueries(buildModel("metadata_new.jfr"));
+	}
+
+	@Test
+	public void testRangeOutsideRecording() throws IOException, CouldNotLoadRecordingException {
+		ReferenceTreeModel model = buildModel("metadata_control.jfr");
+		List<IQuantity> timestamps = getTimestamps(model);
+		IQuantity first = timestamps.get(0);
+		IQuantity last = timestamps.get(timestamps.size() - 1);
+		IRange<IQuantity> before = QuantityRange.createWithEnd(first.subtract(ONE_NS.multiply(10)),
+				first.subtract(ONE_NS));
+		IRange<IQuantity> after = QuantityRange.createWithEnd(last.add(ONE_NS), last.add(ONE_NS.multiply(10)));
+		assertEmptyRange(model, before);
+		assertEmptyRange(model, after);
+	}
+
+	@Test
+	public void testPointRange() throws IOException, CouldNotLoadRecordingException {
+		ReferenceTreeModel model = buildModel("metadata_control.jfr");
+		for (ReferenceTreeObject leakObject : model.getLeakObjects()) {
+			IRange<IQuantity> point = QuantityRange.createPoint(leakObject.getTimestamp());
+			assertTrue(model.getLeakObjects(point).contains(leakObject.getRootObject()));
+			assertTrue(model.getLeakCountInRange(point, leakObject) > 0);
+		}
+	}
+
+	private static ReferenceTreeModel buildModel(String recordingName)
+			throws IOException, CouldNotLoadRecordingException {
+		ReferenceTreeModel model = ReferenceTreeModel.buildReferenceTree(RecordingToolkit
+				.getNamedRecording(recordingName).apply(ItemFilters.type(JdkTypeIDs.OLD_OBJECT_SAMPLE)));
+		assertFalse("No old object samples in " + recordingName, model.getLeakObjects().isEmpty());
+		return model;
+	}
+
+	/**
+	 * Compares the range queries with a linear scan over all objects, for ranges starting and
+	 * ending at, just before and just after every timestamp in the model.
+	 */
+	private static void verifyRangeQueries(ReferenceTreeModel model) {
+		List<IQuantity> bounds = new ArrayList<>();
+		for (IQuantity timestamp : getTimestamps(model)) {
+			bounds.add(timestamp.subtract(ONE_NS));
+			bounds.add(timestamp);
+			bounds.add(timestamp.add(ONE_NS));
+		}
+		for (IQuantity start : bounds) {
+			for (IQuantity end : bounds) {
+				if (start.compareTo(end) > 0) {
+					continue;
+				}
+				IRange<IQuantity> range = QuantityRange.createWithEnd(start, end);
+				Collection<ReferenceTreeObject> rootObjects = model.getRootObjects(range);
+				assertEquals(scanRootObjects(model, range), new HashSet<>(rootObjects));
+				assertSorted(rootObjects);
+				Collection<ReferenceTreeObject> leakRoots = model.getLeakObjects(range);
+				assertEquals(scanLeakRoots(model, range), new HashSet<>(leakRoots));
+				assertEquals(leakRoots.size(), new HashSet<>(leakRoots).size());
+				for (ReferenceTreeObject root : model.getRootObjects()) {
+					assertEquals(scanLeakCount(model, range, root), model.getLeakCountInRange(range, root));
+				}
+			}
+		}
+	}
+
+	private static List<IQuantity> getTimestamps(ReferenceTreeModel model) {
+		Set<IQuantity> timestamps = new TreeSet<>();
+		for (ReferenceTreeObject object : model.getRootObjects()) {
+			if (object.getTimestamp() != null) {
+				timestamps.add(object.getTimestamp());
+			}
+		}
+		for (ReferenceTreeObject object : model.getLeakObjects()) {
+			timestamps.add(object.getTimestamp());
+		}
+		return new ArrayList<>(timestamps);
+	}
+
+	private static boolean contains(IRange<IQuantity> range, IQuantity timestamp) {
+		return timestamp != null && range.getStart().compareTo(timestamp) <= 0
+				&& range.getEnd().compareTo(timestamp) >= 0;
+	}
+
+	private static Set<ReferenceTreeObject> scanRootObjects(ReferenceTreeModel model, IRange<IQuantity> range) {
+		Set<ReferenceTreeObject> objects = new HashSet<>();
+		for (ReferenceTreeObject object : model.getRootObjects()) {
+			if (contains(range, object.getTimestamp())) {
+				objects.add(object);
+			}
+		}
+		return objects;
+	}
+
+	private static Set<ReferenceTreeObject> scanLeakRoots(ReferenceTreeModel model, IRange<IQuantity> range) {
+		Set<ReferenceTreeObject> objects = new HashSet<>();
+		for (ReferenceTreeObject object : model.getLeakObjects()) {
+			if (contains(range, object.getTimestamp())) {
+				ReferenceTreeObject root = object;
+				while (root.getParent() != null) {
+					root = root.getParent();
+				}
+				objects.add(root);
+			}
+		}
+		return objects;
+	}
+
+	private static int scanLeakCount(ReferenceTreeModel model, IRange<IQuantity> range, ReferenceTreeObject root) {
+		int count = 0;
+		for (ReferenceTreeObject object : model.getLeakObjects()) {
+			if (object.getRootObject().equals(root.getRootObject()) && contains(range, object.getTimestamp())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void assertEmptyRange(ReferenceTreeModel model, IRange<IQuantity> range) {
+		assertTrue(model.getRootObjects(range).isEmpty());
+		assertTrue(model.getLeakObjects(range).isEmpty());
+		for (ReferenceTreeObject root : model.getRootObjects()) {
+			assertEquals(0, model.getLeakCountInRange(range, root));
+		}
+	}
+
+	private static void assertSorted(Collection<ReferenceTreeObject> objects) {
+		IQuantity previous = null;
+		for (ReferenceTreeObject object : objects) {
+			assertTrue(previous == null || previous.compareTo(object.getTimestamp()) <= 0);
+			previous = object.getTimestamp();
+		}
+	}
+}
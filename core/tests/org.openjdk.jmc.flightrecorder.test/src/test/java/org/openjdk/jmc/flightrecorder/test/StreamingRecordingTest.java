@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.StreamingRecording;
+import org.openjdk.jmc.flightrecorder.internal.ChunkInfo;
+import org.openjdk.jmc.flightrecorder.internal.EventArray;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
+import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
+import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+
+/**
+ * Test that checks that a recording can be loaded incrementally.
+ */
+@SuppressWarnings("nls")
+public class StreamingRecordingTest {
+
+	@Test
+	public void testAppendChunks() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			String recordingName = resourceSet.getResource(0).getName();
+			byte[] data = readRecording(resourceSet);
+			long expectedCount = count(JfrLoaderToolkit.loadEvents(new ByteArrayInputStream(data)));
+			List<ChunkInfo> chunks = FlightRecordingLoader
+					.readChunkInfo(FlightRecordingLoader.createChunkSupplier(new ByteArrayInputStream(data)));
+
+			StreamingRecording recording = new StreamingRecording();
+			List<IItemCollection> notified = new ArrayList<>();
+			recording.addListener(notified::add);
+			long appendedCount = 0;
+			for (ChunkInfo chunk : chunks) {
+				// Append all data up to and including the chunk, as when fetching a running recording
+				int end = (int) (chunk.getChunkPosistion() + chunk.getChunkSize());
+				appendedCount += count(recording.append(new ByteArrayInputStream(data, 0, end)));
+				Assert.assertEquals("Unexpected number of events after appending data (Recording: " + recordingName
+						+ ")", appendedCount, count(recording.getEvents()));
+			}
+			Assert.assertEquals("Unexpected number of events (Recording: " + recordingName + ")", expectedCount,
+					appendedCount);
+			Assert.assertEquals("Unexpected number of chunks (Recording: " + recordingName + ")", chunks.size(),
+					recording.getChunkCount());
+			Assert.assertEquals(chunks.size(), notified.size());
+
+			IItemCollection before = recording.getEvents();
+			Assert.assertEquals("Expected no new events when appending loaded chunks (Recording: " + recordingName
+					+ ")", 0, count(recording.append(new ByteArrayInputStream(data))));
+			Assert.assertEquals(expectedCount, count(recording.getEvents()));
+			Assert.assertEquals(count(before), count(recording.getEvents()));
+		}
+	}
+
+	@Test
+	public void testBuiltEventsAreReleased() throws Exception {
+		byte[] data = readRecording(PrintoutsToolkit.getTestResources()[0]);
+		LoaderContext context = new LoaderContext(ParserExtensionRegistry.getParserExtensions(), false);
+		FlightRecordingLoader.readChunks(null, context,
+				FlightRecordingLoader.createChunkSupplier(new ByteArrayInputStream(data)), new HashSet<>(), true);
+		EventArrays built = context.buildNewEventArrays();
+		List<WeakReference<IItem>> references = new ArrayList<>();
+		for (EventArray array : built.getArrays()) {
+			for (IItem item : array.getEvents()) {
+				references.add(new WeakReference<>(item));
+			}
+		}
+		Assert.assertFalse(references.isEmpty());
+
+		// Once the built arrays are dropped, the context must not keep the events
+		built = null;
+		for (int i = 0; i < 100 && !isCleared(references); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertTrue("Events are still referenced by the loader context", isCleared(references));
+		for (EventArray array : context.buildNewEventArrays().getArrays()) {
+			Assert.assertEquals(0, array.getEvents().length);
+		}
+	}
+
+	private static boolean isCleared(List<WeakReference<IItem>> references) {
+		for (WeakReference<IItem> reference : references) {
+			if (reference.get() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] readRecording(IOResourceSet resourceSet) throws IOException {
+		try (InputStream in = IOToolkit.openUncompressedStream(resourceSet.getResource(0).open())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			IOToolkit.copy(in, out);
+			return out.toByteArray();
+		}
+	}
+
+	private static long count(IItemCollection items) {
+		IQuantity count = items.getAggregate(Aggregators.count());
+		return count == null ? 0 : count.longValue();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openjdk.jmc.flightrecorder.internal.util.StringCanonicalizer;
+
+@SuppressWarnings("nls")
+public class StringCanonicalizerTest {
+
+	@Test
+	public void testCanonicalInstance() {
+		StringCanonicalizer canonicalizer = new StringCanonicalizer();
+		String first = new String("java.lang.String");
+		String second = new String("java.lang.String");
+		assertNotSame(first, second);
+		assertSame(first, canonicalizer.canonicalize(first));
+		assertSame(first, canonicalizer.canonicalize(second));
+		assertSame(first, canonicalizer.canonicalize(new String(second)));
+		assertEquals(3, canonicalizer.getLookupCount());
+		assertEquals(2, canonicalizer.getHitCount());
+	}
+
+	@Test
+	public void testMisses() {
+		StringCanonicalizer canonicalizer = new StringCanonicalizer();
+		for (int i = 0; i < 100; i++) {
+			String string = "string" + i;
+			assertSame(string, canonicalizer.canonicalize(string));
+		}
+		assertEquals(100, canonicalizer.getLookupCount());
+		assertEquals(0, canonicalizer.getHitCount());
+		assertEquals(0, canonicalizer.getSavedBytes());
+	}
+
+	@Test
+	public void testNotCached() {
+		StringCanonicalizer canonicalizer = new StringCanonicalizer();
+		assertNull(canonicalizer.canonicalize(null));
+		StringBuilder longString = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			longString.append('x');
+		}
+		String first = longString.toString();
+		String second = longString.toString();
+		assertSame(first, canonicalizer.canonicalize(first));
+		assertSame(second, canonicalizer.canonicalize(second));
+		assertEquals(0, canonicalizer.getLookupCount());
+		assertEquals(0, canonicalizer.getHitCount());
+	}
+
+	@Test
+	public void testCollision() {
+		// "Aa" and "BB" have the same hash code, so the second replaces the first
+		StringCanonicalizer canonicalizer = new StringCanonicalizer(1);
+		String first = new String("Aa");
+		String second = new String("BB");
+		assertEquals(first.hashCode(), second.hashCode());
+		assertSame(first, canonicalizer.canonicalize(first));
+		assertSame(second, canonicalizer.canonicalize(second));
+		assertSame(second, canonicalizer.canonicalize(new String("BB")));
+		String third = new String("Aa");
+		assertSame(third, canonicalizer.canonicalize(third));
+		assertEquals(4, canonicalizer.getLookupCount());
+		assertEquals(1, canonicalizer.getHitCount());
+	}
+
+	@Test
+	public void testSavedBytes() {
+		StringCanonicalizer latin1 = new StringCanonicalizer();
+		latin1.canonicalize(new String("abcdefgh"));
+		latin1.canonicalize(new String("abcdefgh"));
+		StringCanonicalizer utf16 = new StringCanonicalizer();
+		utf16.canonicalize(new String("\u0100bcdefgh"));
+		utf16.canonicalize(new String("\u0100bcdefgh"));
+		// String header and an array with header and 16 bytes of characters
+		assertEquals(24 + 16 + 16, utf16.getSavedBytes());
+		assertTrue(latin1.getSavedBytes() > 0);
+		assertTrue(latin1.getSavedBytes() <= utf16.getSavedBytes());
+	}
+}
@@ -37,9 +37,18 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -162,4 +171,137 @@ class ChunkComplexTest {
 		});
 		assertEquals(2, eventCount[0]);
 	}
+
+	@Test
+	void writeEventsConcurrently() throws Exception {
+		int threads = 4;
+		int eventsPerThread = 200;
+		Type eventType = recording.registerEventType("dd.ConcurrentEvent", builder -> {
+			builder.addField("name", Types.Builtin.STRING);
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					TypedValue shared = eventType.asValue(access -> {
+						access.putField("startTime", System.nanoTime()).putField("name", "shared");
+					});
+					for (int i = 0; i < eventsPerThread; i++) {
+						String name = "event-" + thread + "-" + i;
+						recording.writeEvent(eventType.asValue(access -> {
+							access.putField("startTime", System.nanoTime()).putField("name", name);
+						}));
+						if (i % 50 == 0) {
+							// values created in an earlier constant pool epoch must remain usable
+							recording.writeEvent(shared).rotateChunk();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		recording.close();
+
+		IItemCollection events = JfrLoaderToolkit.loadEvents(jfrPath.toFile());
+		IAttribute<String> nameAttr = Attribute.attr("name", "name", UnitLookup.PLAIN_TEXT);
+		Set<String> names = new HashSet<>();
+		int[] sharedCount = new int[] {0};
+		events.forEach(iitem -> {
+			IMemberAccessor<String, IItem> nameAccessor = nameAttr.getAccessor(iitem.getType());
+			iitem.forEach(item -> {
+				String name = nameAccessor.getMember(item);
+				if ("shared".equals(name)) {
+					sharedCount[0]++;
+				} else {
+					names.add(name);
+				}
+			});
+		});
+		assertEquals(threads * eventsPerThread, names.size());
+		assertEquals(threads * eventsPerThread / 50, sharedCount[0]);
+	}
+
+	@Test
+	void writeEndedEpochsBeforeClose() throws Exception {
+		Type eventType = recording.registerEventType("dd.EpochEvent", builder -> {
+			builder.addField("name", Types.Builtin.STRING);
+		});
+		for (int i = 0; i < 10; i++) {
+			String name = "event-" + i;
+			recording.writeEvent(eventType.asValue(access -> {
+				access.putField("startTime", System.nanoTime()).putField("name", name);
+			})).rotateChunk();
+		}
+		// the data of the ended epochs is written out by the chunk data merging thread
+		long deadline = System.currentTimeMillis() + 10000;
+		while (Files.size(jfrPath) == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(Files.size(jfrPath) > 0);
+		recording.close();
+
+		assertEquals(10, countEvents(JfrLoaderToolkit.loadEvents(jfrPath.toFile()), "dd.EpochEvent"));
+	}
+
+	@Test
+	void writeEpochsToStream() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		Recording streamRecording = Recordings.newRecording(bos);
+		Type eventType = streamRecording.registerEventType("dd.EpochEvent", builder -> {
+			builder.addField("name", Types.Builtin.STRING);
+		});
+		for (int i = 0; i < 10; i++) {
+			String name = "event-" + i;
+			streamRecording.writeEvent(eventType.asValue(access -> {
+				access.putField("startTime", System.nanoTime()).putField("name", name);
+			})).rotateChunk();
+		}
+		streamRecording.close();
+
+		IItemCollection events = JfrLoaderToolkit.loadEvents(new ByteArrayInputStream(bos.toByteArray()));
+		assertEquals(10, countEvents(events, "dd.EpochEvent"));
+	}
+
+	@Test
+	void resolveTypesBeforeCheckpoint() throws Exception {
+		Types types = recording.getTypes();
+		Type outerType = recording.registerType("dd.Outer", builder -> {
+			builder.addField("name", Types.Builtin.STRING).addField("inner", types.getType("dd.Inner", true));
+		});
+		recording.registerType("dd.Inner", builder -> {
+			builder.addField("value", Types.Builtin.STRING);
+		});
+		Type eventType = recording.registerEventType("dd.OuterEvent", builder -> {
+			builder.addField("outer", outerType);
+		});
+		for (int i = 0; i < 2; i++) {
+			String name = "outer-" + i;
+			// the checkpoint written on rotation must not stop the events written after it
+			recording.writeEvent(eventType.asValue(access -> {
+				access.putField("startTime", System.nanoTime()).putField("outer", outer -> {
+					outer.putField("name", name);
+				});
+			})).rotateChunk();
+		}
+		recording.close();
+
+		assertEquals(2, countEvents(JfrLoaderToolkit.loadEvents(jfrPath.toFile()), "dd.OuterEvent"));
+	}
+
+	private static int countEvents(IItemCollection events, String typeId) {
+		int[] count = new int[] {0};
+		events.forEach(iitem -> {
+			if (typeId.equals(iitem.getType().getIdentifier())) {
+				iitem.forEach(item -> count[0]++);
+			}
+		});
+		return count[0];
+	}
 }
@@ -92,4 +92,20 @@ class ConstantPoolTest {
 
 		assertEquals(value, instance.get(value.getConstantPoolIndex()));
 	}
+
+	@Test
+	void newEpoch() {
+		TypedValueImpl value1 = instance.addOrGet("hello");
+		assertEquals(value1, instance.addOrGet("hello"));
+
+		ConstantPool previous = instance.newEpoch();
+		assertEquals(1, previous.size());
+		assertEquals(value1, previous.get(value1.getConstantPoolIndex()));
+		assertEquals(0, instance.size());
+		assertNull(instance.get(value1.getConstantPoolIndex()));
+
+		TypedValueImpl value2 = instance.addOrGet("hello");
+		assertTrue(value2.getConstantPoolIndex() > value1.getConstantPoolIndex());
+		assertEquals(1, instance.size());
+	}
 }
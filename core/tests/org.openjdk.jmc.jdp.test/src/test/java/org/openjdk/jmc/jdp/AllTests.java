@@ -37,6 +37,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import org.openjdk.jmc.jdp.client.JDPClientTest;
+import org.openjdk.jmc.jdp.client.JDPFleetTest;
 import org.openjdk.jmc.jdp.client.JDPJMXTest;
 import org.openjdk.jmc.jdp.client.JDPPacketTest;
 import org.openjdk.jmc.jdp.client.JDPServerTest;
@@ -45,7 +46,7 @@ import org.openjdk.jmc.jdp.client.JDPServerTest;
  * The test suite for all the tests related to the JDP component.
  */
 @RunWith(Suite.class)
-@SuiteClasses({JDPClientTest.class, JDPJMXTest.class, JDPPacketTest.class, JDPServerTest.class})
+@SuiteClasses({JDPClientTest.class, JDPFleetTest.class, JDPJMXTest.class, JDPPacketTest.class, JDPServerTest.class})
 public class AllTests {
 
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.jdp.client;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmc.jdp.common.JDPPacket;
+import org.openjdk.jmc.jdp.server.JDPServer;
+
+/**
+ * A stand-in for a multicast network with a fleet of simulated JVMs broadcasting JDP packets. The
+ * datagrams are handed directly to the packet handling of the client, without sockets, so that the
+ * discovery handling can be tested and benchmarked with many JVMs on one machine.
+ * <p>
+ * Run the main method to benchmark the discovery handling with 1000 simulated JVMs.
+ */
+@SuppressWarnings("nls")
+public final class JDPFleetHarness {
+	private static final int FIRST_PORT = 10000;
+
+	private final PacketProcessor processor = new PacketProcessor();
+	private final PacketListener listener = new PacketListener(null, processor);
+	private final Pruner pruner = new Pruner(processor, Pruner.DEFAULT_MAX_HB_TIME);
+	private final String[] sessionIds;
+	private final SocketAddress[] sources;
+	private final byte[][] packets;
+	private final int broadcastPeriod;
+	// Like the packet listener, all datagrams are received into the same buffer
+	private final byte[] buffer = new byte[4096];
+
+	/**
+	 * @param jvmCount
+	 *            the number of simulated JVMs
+	 * @param broadcastPeriod
+	 *            the broadcast period in milliseconds announced by the simulated JVMs
+	 */
+	public JDPFleetHarness(int jvmCount, int broadcastPeriod) {
+		this.broadcastPeriod = broadcastPeriod;
+		sessionIds = new String[jvmCount];
+		sources = new SocketAddress[jvmCount];
+		packets = new byte[jvmCount][];
+		InetAddress host = InetAddress.getLoopbackAddress();
+		for (int i = 0; i < jvmCount; i++) {
+			sessionIds[i] = TestToolkit.generateNewID("JVM" + i);
+			sources[i] = new InetSocketAddress(host, FIRST_PORT + i);
+			setGeneration(i, 0);
+		}
+	}
+
+	/**
+	 * Change the discovery data of a simulated JVM.
+	 *
+	 * @param jvm
+	 *            the index of the JVM
+	 * @param generation
+	 *            a number included in the discovery data
+	 */
+	public void setGeneration(int jvm, int generation) {
+		Map<String, String> data = new HashMap<>();
+		data.put(JDPServer.KEY_DISCOVERABLE_ID, sessionIds[jvm]);
+		data.put("BROADCAST_INTERVAL", Integer.toString(broadcastPeriod));
+		data.put("INSTANCE_NAME", "Simulated JVM " + jvm);
+		data.put("JMX_SERVICE_URL",
+				"service:jmx:rmi:///jndi/rmi://localhost:" + (FIRST_PORT + jvm) + "/jmxrmi");
+		data.put("GENERATION", Integer.toString(generation));
+		packets[jvm] = new JDPPacket(data).getDiscoveryDataAsByteArray();
+	}
+
+	/**
+	 * Let the simulated JVMs in a range send their packets once.
+	 *
+	 * @param from
+	 *            the index of the first JVM, inclusive
+	 * @param to
+	 *            the index of the last JVM, exclusive
+	 */
+	public void broadcast(int from, int to) {
+		for (int i = from; i < to; i++) {
+			System.arraycopy(packets[i], 0, buffer, 0, packets[i].length);
+			DatagramPacket dgram = new DatagramPacket(buffer, packets[i].length, sources[i]);
+			listener.process(dgram);
+		}
+	}
+
+	public void broadcastAll() {
+		broadcast(0, packets.length);
+	}
+
+	public String getSessionId(int jvm) {
+		return sessionIds[jvm];
+	}
+
+	public void addDiscoveryListener(DiscoveryListener listener) {
+		processor.addDiscoveryListener(listener);
+	}
+
+	/**
+	 * Check for timed out JVMs, and send the queued events.
+	 */
+	public void prune() {
+		pruner.checkPackets();
+	}
+
+	/**
+	 * Send the queued events.
+	 */
+	public void dispatch() {
+		processor.dispatchEvents();
+	}
+
+	PacketProcessor getProcessor() {
+		return processor;
+	}
+
+	public static void main(String[] args) {
+		int jvmCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		JDPFleetHarness harness = new JDPFleetHarness(jvmCount, 5000);
+		AtomicLong events = new AtomicLong();
+		AtomicLong batches = new AtomicLong();
+		harness.addDiscoveryListener(new DiscoveryListener() {
+			@Override
+			public void onDiscovery(DiscoveryEvent event) {
+				events.incrementAndGet();
+			}
+
+			@Override
+			public void onDiscovery(List<DiscoveryEvent> batch) {
+				batches.incrementAndGet();
+				DiscoveryListener.super.onDiscovery(batch);
+			}
+		});
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			if (round % 10 == 0) {
+				// Some of the JVMs change their discovery data now and then
+				harness.setGeneration(round % jvmCount, round);
+			}
+			harness.broadcastAll();
+			if (round % 10 == 0) {
+				harness.prune();
+			}
+		}
+		harness.prune();
+		long nanos = System.nanoTime() - start;
+		long packetCount = (long) jvmCount * rounds;
+		System.out.println(String.format("%d JVMs, %d packets in %d ms: %.0f packets/s, %d events in %d batches",
+				jvmCount, packetCount, nanos / 1000000, packetCount * 1e9 / nanos, events.get(), batches.get()));
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.jdp.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class JDPFleetTest {
+	private static final int JVM_COUNT = 1000;
+	private static final int BROADCAST_PERIOD = 1000;
+
+	private JDPFleetHarness harness;
+	private List<List<DiscoveryEvent>> batches;
+
+	@Before
+	public void setUp() {
+		harness = new JDPFleetHarness(JVM_COUNT, BROADCAST_PERIOD);
+		batches = new ArrayList<>();
+		harness.addDiscoveryListener(new DiscoveryListener() {
+			@Override
+			public void onDiscovery(DiscoveryEvent event) {
+			}
+
+			@Override
+			public void onDiscovery(List<DiscoveryEvent> events) {
+				batches.add(events);
+			}
+		});
+	}
+
+	@Test
+	public void testFoundInOneBatch() {
+		harness.broadcastAll();
+		harness.broadcastAll();
+		harness.dispatch();
+		assertEquals(1, batches.size());
+		assertEvents(DiscoveryEvent.Kind.FOUND, JVM_COUNT, batches.get(0));
+		assertEquals(JVM_COUNT, harness.getProcessor().getDiscoverables().size());
+
+		harness.broadcastAll();
+		harness.dispatch();
+		assertEquals("Unchanged packets should not cause events", 1, batches.size());
+	}
+
+	@Test
+	public void testUnchangedPacketsNotDecoded() {
+		harness.broadcast(0, 1);
+		Discoverable first = harness.getProcessor().infoMap.get(harness.getSessionId(0)).packet;
+		harness.broadcast(0, 1);
+		assertSame(first, harness.getProcessor().infoMap.get(harness.getSessionId(0)).packet);
+	}
+
+	@Test
+	public void testChangesCoalesced() {
+		harness.broadcastAll();
+		harness.dispatch();
+		for (int i = 0; i < 10; i++) {
+			harness.setGeneration(i, 1);
+		}
+		harness.broadcastAll();
+		for (int i = 0; i < 10; i++) {
+			harness.setGeneration(i, 2);
+		}
+		harness.broadcastAll();
+		harness.dispatch();
+		assertEquals(2, batches.size());
+		List<DiscoveryEvent> changed = batches.get(1);
+		assertEvents(DiscoveryEvent.Kind.CHANGED, 10, changed);
+		for (DiscoveryEvent event : changed) {
+			assertEquals("2", event.getDiscoverable().getPayload().get("GENERATION"));
+		}
+	}
+
+	@Test
+	public void testFoundAndChangedCoalesced() {
+		harness.broadcast(0, 1);
+		harness.setGeneration(0, 1);
+		harness.broadcast(0, 1);
+		harness.dispatch();
+		assertEquals(1, batches.size());
+		assertEvents(DiscoveryEvent.Kind.FOUND, 1, batches.get(0));
+		assertEquals("1", batches.get(0).get(0).getDiscoverable().getPayload().get("GENERATION"));
+	}
+
+	@Test
+	public void testLostInOneBatch() throws Exception {
+		harness.broadcastAll();
+		harness.dispatch();
+		harness.prune();
+		assertEquals(1, batches.size());
+
+		// The JVMs time out after 2.5 broadcast periods
+		Thread.sleep(BROADCAST_PERIOD * 3 / 2);
+		harness.broadcast(0, JVM_COUNT / 2);
+		Thread.sleep(BROADCAST_PERIOD * 3 / 2);
+		harness.prune();
+		assertEquals(2, batches.size());
+		assertEvents(DiscoveryEvent.Kind.LOST, JVM_COUNT / 2, batches.get(1));
+		assertEquals(JVM_COUNT / 2, harness.getProcessor().getDiscoverables().size());
+	}
+
+	private static void assertEvents(DiscoveryEvent.Kind kind, int count, List<DiscoveryEvent> events) {
+		assertEquals(count, events.size());
+		for (DiscoveryEvent event : events) {
+			assertTrue(event.toString(), event.getKind() == kind);
+		}
+	}
+}